@@ -0,0 +1,569 @@
+/* @(#)BufferedXMLReader.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package net.n3.nanoxml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayDeque;
+
+/**
+ * BufferedXMLReader reads the data to be parsed from char arrays.
+ * <p>
+ * This reader behaves like {@link StdXMLReader}, but instead of reading
+ * one character at a time through a {@code PushbackReader} and a
+ * {@code LineNumberReader}, it reads each stream in blocks into a char array.
+ * Line terminators are counted and converted into {@code '\n'} when a
+ * character is read for the first time, and characters are pushed back by
+ * moving the read position back into the array.
+ * <p>
+ * As with {@code StdXMLReader}, the line terminators of internal entities
+ * are not converted, and the line number of an internal entity is the line
+ * number of the stream which refers to it.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class BufferedXMLReader
+        implements IXMLReader {
+
+    /**
+     * The size of the char array of a stream.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * The number of characters for which room is left at the start of the
+     * char array when it is refilled, so that they can be pushed back.
+     */
+    private static final int UNREAD_SIZE = 2;
+    /**
+     * The system ID of streams which are not read from a URL.
+     */
+    private static final URL CURRENT_DIRECTORY = toURL("file:.");
+
+    /**
+     * A stacked stream.
+     */
+    private static class Stream {
+
+        Reader reader;
+
+        /**
+         * The characters of the stream. The characters between
+         * {@code pos} and {@code scanned} have already been read and
+         * have been pushed back. The characters between {@code scanned}
+         * and {@code limit} have not been read yet, their line terminators
+         * have not been converted.
+         */
+        char[] buf;
+
+        int pos;
+
+        int scanned;
+
+        int limit;
+
+        /**
+         * Whether line terminators are counted and converted.
+         */
+        boolean isCountingLines;
+
+        /**
+         * The number of line terminators which have been read.
+         */
+        int lineNr;
+
+        /**
+         * Whether the last character read was a carriage return.
+         */
+        boolean skipLF;
+
+        boolean isEOF;
+
+        URL systemId;
+
+        String publicId;
+
+        Stream(Reader reader, boolean isCountingLines, int bufferSize) {
+            this.reader = reader;
+            this.isCountingLines = isCountingLines;
+            this.buf = new char[bufferSize];
+        }
+
+        /**
+         * Returns the next character, or -1 if the stream is exhausted.
+         */
+        int read() throws IOException {
+            for (; ; ) {
+                if (pos < scanned) {
+                    return buf[pos++];
+                }
+                if (pos == limit && !fill()) {
+                    return -1;
+                }
+                char ch = buf[pos];
+                if (isCountingLines) {
+                    if (ch == '\n') {
+                        if (skipLF) {
+                            // Drop the line feed of a CR LF sequence
+                            skipLF = false;
+                            scanned = ++pos;
+                            continue;
+                        }
+                        lineNr++;
+                    } else if (ch == '\r') {
+                        ch = '\n';
+                        skipLF = true;
+                        lineNr++;
+                    } else {
+                        skipLF = false;
+                    }
+                }
+                scanned = ++pos;
+                return ch;
+            }
+        }
+
+        /**
+         * Pushes a character back.
+         */
+        void unread(char ch) {
+            if (pos == 0) {
+                char[] b = (limit + UNREAD_SIZE > buf.length) ? new char[buf.length + UNREAD_SIZE] : buf;
+                System.arraycopy(buf, 0, b, UNREAD_SIZE, limit);
+                buf = b;
+                pos += UNREAD_SIZE;
+                scanned += UNREAD_SIZE;
+                limit += UNREAD_SIZE;
+            }
+            buf[--pos] = ch;
+        }
+
+        /**
+         * Returns true if there are no characters left in the stream.
+         */
+        boolean atEOF() throws IOException {
+            for (; ; ) {
+                if (pos < scanned) {
+                    return false;
+                }
+                if (pos == limit && !fill()) {
+                    return true;
+                }
+                if (skipLF && buf[pos] == '\n') {
+                    skipLF = false;
+                    scanned = ++pos;
+                    continue;
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Reads the next block of characters into the char array. The
+         * characters which have already been read are discarded, except
+         * for room to push characters back.
+         *
+         * @return false if the stream is exhausted
+         */
+        private boolean fill() throws IOException {
+            if (isEOF) {
+                return false;
+            }
+            pos = scanned = limit = UNREAD_SIZE;
+            int count;
+            do {
+                count = reader.read(buf, limit, buf.length - limit);
+            } while (count == 0);
+            if (count < 0) {
+                isEOF = true;
+                return false;
+            }
+            limit += count;
+            return true;
+        }
+    }
+
+    /**
+     * The stack of streams.
+     */
+    private ArrayDeque<Stream> streams;
+
+    /**
+     * The current stream.
+     */
+    private Stream currentStream;
+
+    private static URL toURL(String spec) {
+        try {
+            return toURL(null, spec);
+        } catch (MalformedURLException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Resolves a system ID against the system ID of the current stream.
+     * <p>
+     * An opaque base, such as {@code "file:."}, is resolved like
+     * {@link URL#URL(URL, String)} does, by resolving against its scheme
+     * specific part.
+     *
+     * @param base the base URL, or null if the system ID must be absolute
+     * @param spec the system ID
+     * @throws MalformedURLException if the system ID is not a valid URI
+     */
+    private static URL toURL(URL base, String spec)
+            throws MalformedURLException {
+        try {
+            URI uri = new URI(spec);
+
+            if (base != null && !uri.isAbsolute()) {
+                URI baseURI = base.toURI();
+
+                if (baseURI.isOpaque()) {
+                    URI path = new URI(null, baseURI.getSchemeSpecificPart(), null).resolve(uri);
+                    uri = new URI(baseURI.getScheme(), path.getSchemeSpecificPart(), path.getFragment());
+                } else {
+                    uri = baseURI.resolve(uri);
+                }
+            }
+
+            return uri.toURL();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            MalformedURLException ex = new MalformedURLException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a new reader using a string as input.
+     *
+     * @param str the string containing the XML data
+     */
+    public static IXMLReader stringReader(String str) {
+        return new BufferedXMLReader(new StringReader(str));
+    }
+
+    /**
+     * Creates a new reader using a file as input.
+     *
+     * @param filename the name of the file containing the XML data
+     * @throws java.io.FileNotFoundException if the file could not be found
+     * @throws java.io.IOException           if an I/O error occurred
+     */
+    public static IXMLReader fileReader(String filename)
+            throws FileNotFoundException,
+            IOException {
+        BufferedXMLReader r = new BufferedXMLReader(new FileInputStream(filename));
+        r.setSystemID(new File(filename).toURI().toString());
+
+        for (Stream s : r.streams) {
+            s.systemId = r.currentStream.systemId;
+        }
+
+        return r;
+    }
+
+    /**
+     * Initializes the reader from a system and public ID.
+     *
+     * @param publicID the public ID which may be null.
+     * @param systemID the non-null system ID.
+     * @throws MalformedURLException if the system ID does not contain a valid URL
+     * @throws FileNotFoundException if the system ID refers to a local file which does not exist
+     * @throws IOException           if an error occurred opening the stream
+     */
+    public BufferedXMLReader(String publicID,
+                             String systemID)
+            throws MalformedURLException,
+            FileNotFoundException,
+            IOException {
+        URL systemIDasURL;
+
+        try {
+            systemIDasURL = toURL(null, systemID);
+        } catch (MalformedURLException e) {
+            systemIDasURL = new File(systemID).toURI().toURL();
+        }
+
+        this.currentStream = new Stream(null, true, BUFFER_SIZE);
+        this.streams = new ArrayDeque<Stream>();
+        this.currentStream.reader = this.open(publicID, systemIDasURL.toString());
+    }
+
+    /**
+     * Initializes the XML reader.
+     *
+     * @param reader the input for the XML data.
+     */
+    public BufferedXMLReader(Reader reader) {
+        this.currentStream = new Stream(reader, true, BUFFER_SIZE);
+        this.streams = new ArrayDeque<Stream>();
+        this.currentStream.publicId = "";
+        this.currentStream.systemId = CURRENT_DIRECTORY;
+    }
+
+    /**
+     * Initializes the XML reader.
+     *
+     * @param stream the input for the XML data.
+     * @throws java.io.IOException if an I/O error occurred
+     */
+    public BufferedXMLReader(InputStream stream)
+            throws IOException {
+        StringBuilder charsRead = new StringBuilder();
+        Reader reader = XMLUtil.stream2reader(stream, charsRead);
+        this.currentStream = new Stream(reader, true, BUFFER_SIZE);
+        this.streams = new ArrayDeque<Stream>();
+        this.currentStream.publicId = "";
+        this.currentStream.systemId = CURRENT_DIRECTORY;
+
+        this.push(new StringReader(charsRead.toString()), false);
+    }
+
+    /**
+     * Reads a character.
+     *
+     * @return the character
+     * @throws java.io.IOException if no character could be read
+     */
+    public char read()
+            throws IOException {
+        Stream s = this.currentStream;
+
+        // Fast path for characters which have already been read into the
+        // char array and which are not line terminators.
+        if (s.pos < s.limit) {
+            char ch = s.buf[s.pos];
+
+            if (s.pos < s.scanned) {
+                s.pos++;
+                return ch;
+            }
+
+            if (ch != '\n' && ch != '\r') {
+                s.skipLF = false;
+                s.scanned = ++s.pos;
+                return ch;
+            }
+        }
+
+        int ch = s.read();
+
+        while (ch < 0) {
+            if (this.streams.isEmpty()) {
+                throw new IOException("Unexpected EOF");
+            }
+
+            this.currentStream.reader.close();
+            this.currentStream = this.streams.pop();
+            ch = this.currentStream.read();
+        }
+
+        return (char) ch;
+    }
+
+    /**
+     * Returns true if the current stream has no more characters left to be
+     * read.
+     *
+     * @throws java.io.IOException if an I/O error occurred
+     */
+    public boolean atEOFOfCurrentStream()
+            throws IOException {
+        return this.currentStream.atEOF();
+    }
+
+    /**
+     * Returns true if there are no more characters left to be read.
+     *
+     * @throws java.io.IOException if an I/O error occurred
+     */
+    public boolean atEOF()
+            throws IOException {
+        while (this.currentStream.atEOF()) {
+            if (this.streams.isEmpty()) {
+                return true;
+            }
+
+            this.currentStream.reader.close();
+            this.currentStream = this.streams.pop();
+        }
+
+        return false;
+    }
+
+    /**
+     * Pushes the last character read back to the stream.
+     *
+     * @param ch the character to push back.
+     * @throws java.io.IOException if an I/O error occurred
+     */
+    public void unread(char ch)
+            throws IOException {
+        this.currentStream.unread(ch);
+    }
+
+    /**
+     * Opens a stream from a public and system ID.
+     *
+     * @param publicID the public ID, which may be null
+     * @param systemID the system ID, which is never null
+     * @throws java.net.MalformedURLException if the system ID does not contain a valid URL
+     * @throws java.io.FileNotFoundException  if the system ID refers to a local file which does not exist
+     * @throws java.io.IOException            if an error occurred opening the stream
+     */
+    public Reader openStream(String publicID,
+                             String systemID)
+            throws MalformedURLException,
+            FileNotFoundException,
+            IOException {
+        return open(publicID, systemID);
+    }
+
+    private Reader open(String publicID,
+                        String systemID)
+            throws MalformedURLException,
+            FileNotFoundException,
+            IOException {
+        URL url = toURL(this.currentStream.systemId, systemID);
+
+        if (url.getRef() != null) {
+            String ref = url.getRef();
+
+            if (url.getFile().length() > 0) {
+                String file = url.toString();
+                file = file.substring(0, file.indexOf('#'));
+                url = toURL(null, "jar:" + file + '!' + ref);
+            } else {
+                url = BufferedXMLReader.class.getResource(ref);
+            }
+        }
+
+        this.currentStream.publicId = publicID;
+        this.currentStream.systemId = url;
+        StringBuilder charsRead = new StringBuilder();
+        Reader reader = XMLUtil.stream2reader(url.openStream(), charsRead);
+
+        if (charsRead.length() == 0) {
+            return reader;
+        }
+
+        String charsReadStr = charsRead.toString();
+        PushbackReader pbreader = new PushbackReader(reader,
+                charsReadStr.length());
+        pbreader.unread(charsReadStr.toCharArray());
+        return pbreader;
+    }
+
+    /**
+     * Starts a new stream from a Java reader. The new stream is used
+     * temporary to read data from. If that stream is exhausted, control
+     * returns to the parent stream.
+     *
+     * @param reader the non-null reader to read the new data from
+     */
+    public void startNewStream(Reader reader) {
+        this.startNewStream(reader, false);
+    }
+
+    /**
+     * Starts a new stream from a Java reader. The new stream is used
+     * temporary to read data from. If that stream is exhausted, control
+     * returns to the parent stream.
+     *
+     * @param reader           the non-null reader to read the new data from
+     * @param isInternalEntity true if the reader is produced by resolving
+     *                         an internal entity
+     */
+    public void startNewStream(Reader reader,
+                               boolean isInternalEntity) {
+        push(reader, isInternalEntity);
+    }
+
+    private void push(Reader reader,
+                      boolean isInternalEntity) {
+        Stream oldStream = this.currentStream;
+        this.streams.push(this.currentStream);
+
+        // Entities and pushed back data are usually short, a small char
+        // array suffices for them.
+        this.currentStream = new Stream(reader, !isInternalEntity,
+                (reader instanceof StringReader) ? 64 : BUFFER_SIZE);
+        this.currentStream.systemId = oldStream.systemId;
+        this.currentStream.publicId = oldStream.publicId;
+    }
+
+    /**
+     * Returns the current "level" of the stream on the stack of streams.
+     */
+    @Override
+    public int getStreamLevel() {
+        return this.streams.size();
+    }
+
+    /**
+     * Returns the line number of the data in the current stream.
+     */
+    @Override
+    public int getLineNr() {
+        if (!this.currentStream.isCountingLines) {
+            Stream s = this.streams.peek();
+
+            if (!s.isCountingLines) {
+                return 0;
+            } else {
+                return s.lineNr + 1;
+            }
+        }
+
+        return this.currentStream.lineNr + 1;
+    }
+
+    /**
+     * Sets the system ID of the current stream.
+     *
+     * @param systemID the system ID
+     * @throws java.net.MalformedURLException if the system ID does not contain a valid URL
+     */
+    public void setSystemID(String systemID)
+            throws MalformedURLException {
+        this.currentStream.systemId = toURL(this.currentStream.systemId, systemID);
+    }
+
+    /**
+     * Sets the public ID of the current stream.
+     *
+     * @param publicID the public ID
+     */
+    public void setPublicID(String publicID) {
+        this.currentStream.publicId = publicID;
+    }
+
+    /**
+     * Returns the current system ID.
+     */
+    public String getSystemID() {
+        return this.currentStream.systemId.toString();
+    }
+
+    /**
+     * Returns the current public ID.
+     */
+    public String getPublicID() {
+        return this.currentStream.publicId;
+    }
+
+}
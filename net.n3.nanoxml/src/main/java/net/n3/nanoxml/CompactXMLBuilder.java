@@ -0,0 +1,305 @@
+/* @(#)CompactXMLBuilder.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package net.n3.nanoxml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * CompactXMLBuilder builds a tree of {@link CompactXMLElement}s.
+ * <p>
+ * The builder produces the same logical structure as {@link StdXMLBuilder},
+ * but stores the whole document in flat arrays instead of creating an
+ * object with lists of children and attributes for each element. This takes
+ * an order of magnitude less memory for large documents.
+ * <p>
+ * The resulting elements are immutable. Use this builder for documents
+ * which are only read.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class CompactXMLBuilder
+        implements IXMLBuilder {
+
+    /**
+     * The tree being built.
+     */
+    private CompactXMLTree tree;
+
+    /**
+     * The stack of open elements.
+     */
+    private int[] stack;
+
+    private int depth;
+
+    /**
+     * The root element, or null if the root element has not been closed yet.
+     */
+    private CompactXMLElement root;
+
+    /**
+     * The symbol table which interns the qualified names of the elements
+     * and attributes.
+     */
+    private XMLSymbolTable symbols;
+
+    /**
+     * Buffer for reading #PCDATA.
+     */
+    private char[] buf;
+
+    private StringBuilder str;
+
+    /**
+     * Creates the builder.
+     */
+    public CompactXMLBuilder() {
+    }
+
+    /**
+     * This method is called before the parser starts processing its input.
+     *
+     * @param systemID the system ID of the XML data source.
+     * @param lineNr   the line on which the parsing starts.
+     */
+    public void startBuilding(String systemID,
+                              int lineNr) {
+        this.tree = new CompactXMLTree();
+        this.stack = new int[16];
+        this.depth = 0;
+        this.root = null;
+        this.symbols = new XMLSymbolTable();
+        this.buf = new char[2048];
+        this.str = new StringBuilder();
+    }
+
+    /**
+     * This method is called when a processing instruction is encountered.
+     * PIs with target "xml" are handled by the parser.
+     *
+     * @param target the PI target.
+     * @param reader to read the data from the PI.
+     */
+    public void newProcessingInstruction(String target,
+                                         Reader reader) {
+        // nothing to do
+    }
+
+    /**
+     * This method is called when a new XML element is encountered.
+     *
+     * @param name     the name of the element.
+     * @param nsPrefix the prefix used to identify the namespace. If no
+     *                 namespace has been specified, this parameter is null.
+     * @param nsURI    the URI associated with the namespace. If no
+     *                 namespace has been specified, or no URI is
+     *                 associated with nsPrefix, this parameter is null.
+     * @param systemID the system ID of the XML data source.
+     * @param lineNr   the line in the source where the element starts.
+     */
+    public void startElement(String name,
+                             String nsPrefix,
+                             String nsURI,
+                             String systemID,
+                             int lineNr) {
+        String fullName = name;
+
+        if (nsPrefix != null) {
+            fullName = this.symbols.intern(nsPrefix, name);
+        }
+
+        // Like XMLElement, only strip the prefix from the short name if
+        // there is a namespace
+        String shortName = fullName;
+
+        if (nsURI != null) {
+            int index = fullName.indexOf(':');
+
+            if (index >= 0) {
+                shortName = (nsPrefix != null) ? name : fullName.substring(index + 1);
+            }
+        }
+
+        int parentNode = (this.depth == 0) ? CompactXMLTree.NULL : this.stack[this.depth - 1];
+        int node = this.tree.addNode(parentNode, this.tree.addString(fullName),
+                this.tree.addString(shortName),
+                this.tree.addString(nsURI),
+                this.tree.addString(systemID), lineNr);
+
+        if (this.depth == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+        }
+
+        this.stack[this.depth++] = node;
+    }
+
+    /**
+     * This method is called when the attributes of an XML element have been
+     * processed.
+     *
+     * @param name     the name of the element.
+     * @param nsPrefix the prefix used to identify the namespace. If no
+     *                 namespace has been specified, this parameter is null.
+     * @param nsURI    the URI associated with the namespace. If no
+     *                 namespace has been specified, or no URI is
+     *                 associated with nsPrefix, this parameter is null.
+     */
+    public void elementAttributesProcessed(String name,
+                                           String nsPrefix,
+                                           String nsURI) {
+        // nothing to do
+    }
+
+    /**
+     * This method is called when the end of an XML elemnt is encountered.
+     *
+     * @param name     the name of the element.
+     * @param nsPrefix the prefix used to identify the namespace. If no
+     *                 namespace has been specified, this parameter is null.
+     * @param nsURI    the URI associated with the namespace. If no
+     *                 namespace has been specified, or no URI is
+     *                 associated with nsPrefix, this parameter is null.
+     */
+    public void endElement(String name,
+                           String nsPrefix,
+                           String nsURI) {
+        int node = this.stack[--this.depth];
+
+        if (this.tree.childCount[node] == 1) {
+            int child = this.tree.lastChild[node];
+
+            if (this.tree.fullName[child] == CompactXMLTree.NULL) {
+                // The #PCDATA node is the last node of the tree, because it
+                // has no children
+                this.tree.content[node] = this.tree.content[child];
+                this.tree.removeLastNode();
+            }
+        }
+
+        if (this.depth == 0) {
+            this.tree.finish();
+            this.root = this.tree.getElement(node);
+        }
+    }
+
+    /**
+     * This method is called when a new attribute of an XML element is
+     * encountered.
+     *
+     * @param key      the key (name) of the attribute.
+     * @param nsPrefix the prefix used to identify the namespace. If no
+     *                 namespace has been specified, this parameter is null.
+     * @param nsURI    the URI associated with the namespace. If no
+     *                 namespace has been specified, or no URI is
+     *                 associated with nsPrefix, this parameter is null.
+     * @param value    the value of the attribute.
+     * @param type     the type of the attribute. If no type is known,
+     *                 "CDATA" is returned.
+     * @throws java.lang.Exception If an exception occurred while processing the event.
+     */
+    public void addAttribute(String key,
+                             String nsPrefix,
+                             String nsURI,
+                             String value,
+                             String type)
+            throws Exception {
+        String fullName = key;
+
+        if (nsPrefix != null) {
+            fullName = this.symbols.intern(nsPrefix, key);
+        }
+
+        int node = this.stack[this.depth - 1];
+
+        if (this.tree.findAttribute(node, fullName) >= 0) {
+            throw new XMLParseException(this.tree.getString(this.tree.systemID[node]),
+                    this.tree.lineNr[node],
+                    "Duplicate attribute: " + key);
+        }
+
+        if (nsPrefix != null) {
+            // Like XMLElement, replace an attribute with the same name in
+            // the same namespace
+            int a = this.tree.findAttribute(node, key, nsURI);
+
+            if (a >= 0) {
+                this.tree.attributeValue[a] = this.tree.addString(value);
+            } else {
+                this.tree.addAttribute(this.tree.addString(fullName),
+                        this.tree.addString(key), this.tree.addString(nsURI),
+                        this.tree.addString(value));
+            }
+        } else {
+            int fullNameIndex = this.tree.addString(fullName);
+            this.tree.addAttribute(fullNameIndex, fullNameIndex,
+                    CompactXMLTree.NULL, this.tree.addString(value));
+        }
+    }
+
+    /**
+     * This method is called when a PCDATA element is encountered. A Java
+     * reader is supplied from which you can read the data. The reader will
+     * only read the data of the element.
+     *
+     * @param reader   the Java reader from which you can retrieve the data.
+     * @param systemID the system ID of the XML data source.
+     * @param lineNr   the line in the source where the element starts.
+     */
+    public void addPCData(Reader reader,
+                          String systemID,
+                          int lineNr) {
+        this.str.setLength(0);
+
+        for (; ; ) {
+            int size;
+
+            try {
+                size = reader.read(this.buf);
+            } catch (IOException e) {
+                break;
+            }
+
+            if (size < 0) {
+                break;
+            }
+
+            this.str.append(this.buf, 0, size);
+        }
+
+        if (this.depth == 0) {
+            return;
+        }
+
+        int top = this.stack[this.depth - 1];
+        int last = this.tree.lastChild[top];
+
+        if (last != CompactXMLTree.NULL
+                && this.tree.fullName[last] == CompactXMLTree.NULL) {
+            // Like XMLElement, merge adjacent #PCDATA
+            this.str.insert(0, this.tree.getString(this.tree.content[last]));
+            this.tree.content[last] = this.tree.addString(this.str.toString());
+        } else {
+            int node = this.tree.addNode(top, CompactXMLTree.NULL,
+                    CompactXMLTree.NULL, CompactXMLTree.NULL,
+                    this.tree.addString(systemID), lineNr);
+            this.tree.content[node] = this.tree.addString(this.str.toString());
+        }
+    }
+
+    /**
+     * Returns the result of the building process. This method is called just
+     * before the <I>parse</I> method of IXMLParser returns.
+     *
+     * @return the root element, or null if the root element has not been
+     * closed yet.
+     * @see net.n3.nanoxml.IXMLParser#parse
+     */
+    public Object getResult() {
+        return this.root;
+    }
+
+}
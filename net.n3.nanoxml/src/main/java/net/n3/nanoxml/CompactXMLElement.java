@@ -0,0 +1,687 @@
+/* @(#)CompactXMLElement.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package net.n3.nanoxml;
+
+import java.io.CharArrayWriter;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * CompactXMLElement is an immutable XML element of a tree built by
+ * {@link CompactXMLBuilder}.
+ * <p>
+ * The element does not hold any data by itself. It refers to a node of a
+ * tree, which stores all elements of a document in flat arrays. Elements
+ * are created on demand, and the same element instance is returned for a
+ * node each time it is requested.
+ * <p>
+ * The element behaves like an {@link XMLElement} created by
+ * {@link StdXMLBuilder}, except that all methods which change the element
+ * throw an {@code UnsupportedOperationException}. The {@code createElement}
+ * methods create mutable {@code XMLElement}s.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class CompactXMLElement implements IXMLElement {
+
+    private final CompactXMLTree tree;
+    private final int node;
+
+    CompactXMLElement(CompactXMLTree tree, int node) {
+        this.tree = tree;
+        this.node = node;
+    }
+
+    /**
+     * Creates an element to be used for #PCDATA content.
+     */
+    public IXMLElement createPCDataElement() {
+        return new XMLElement();
+    }
+
+    /**
+     * Creates an empty element.
+     *
+     * @param fullName the name of the element.
+     */
+    public IXMLElement createElement(String fullName) {
+        return new XMLElement(fullName);
+    }
+
+    /**
+     * Creates an empty element.
+     *
+     * @param fullName the name of the element.
+     * @param systemID the system ID of the XML data where the element starts.
+     * @param lineNr   the line in the XML data where the element starts.
+     */
+    public IXMLElement createElement(String fullName,
+                                     String systemID,
+                                     int lineNr) {
+        return new XMLElement(fullName, systemID, lineNr);
+    }
+
+    /**
+     * Creates an empty element.
+     *
+     * @param fullName  the full name of the element
+     * @param namespace the namespace URI.
+     */
+    public IXMLElement createElement(String fullName,
+                                     String namespace) {
+        return new XMLElement(fullName, namespace);
+    }
+
+    /**
+     * Creates an empty element.
+     *
+     * @param fullName  the full name of the element
+     * @param namespace the namespace URI.
+     * @param systemID  the system ID of the XML data where the element starts.
+     * @param lineNr    the line in the XML data where the element starts.
+     */
+    public IXMLElement createElement(String fullName,
+                                     String namespace,
+                                     String systemID,
+                                     int lineNr) {
+        return new XMLElement(fullName, namespace, systemID, lineNr);
+    }
+
+    /**
+     * Returns the parent element. This method returns null for the root
+     * element.
+     */
+    public IXMLElement getParent() {
+        int parent = tree.parent[node];
+        return (parent == CompactXMLTree.NULL) ? null : tree.getElement(parent);
+    }
+
+    /**
+     * Returns the full name (i.e. the name including an eventual namespace
+     * prefix) of the element.
+     *
+     * @return the name, or null if the element only contains #PCDATA.
+     */
+    public String getFullName() {
+        return tree.getString(tree.fullName[node]);
+    }
+
+    /**
+     * Returns the name of the element.
+     *
+     * @return the name, or null if the element only contains #PCDATA.
+     */
+    public String getName() {
+        return tree.getString(tree.name[node]);
+    }
+
+    /**
+     * Returns the namespace of the element.
+     *
+     * @return the namespace, or null if no namespace is associated with the
+     * element.
+     */
+    public String getNamespace() {
+        return tree.getString(tree.namespace[node]);
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void setName(String name) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void setName(String fullName,
+                        String namespace) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void addChild(IXMLElement child) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void removeChild(IXMLElement child) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void removeChildAtIndex(int index) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Returns an enumeration of all child iterator.
+     *
+     * @return the non-null enumeration
+     */
+    public Iterable<IXMLElement> iterableChildren() {
+        return getChildren();
+    }
+
+    /**
+     * Returns whether the element is a leaf element.
+     *
+     * @return true if the element has no children.
+     */
+    public boolean isLeaf() {
+        return tree.childCount[node] == 0;
+    }
+
+    /**
+     * Returns whether the element has children.
+     *
+     * @return true if the element has children.
+     */
+    public boolean hasChildren() {
+        return tree.childCount[node] != 0;
+    }
+
+    /**
+     * Returns the number of children.
+     *
+     * @return the count.
+     */
+    public int getChildrenCount() {
+        return tree.childCount[node];
+    }
+
+    /**
+     * Returns a list containing all the child iterator.
+     *
+     * @return a new list.
+     */
+    public ArrayList<IXMLElement> getChildren() {
+        int start = tree.childStart[node];
+        int count = tree.childCount[node];
+        ArrayList<IXMLElement> result = new ArrayList<IXMLElement>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(tree.getElement(tree.childList[start + i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the child at a specific index.
+     *
+     * @param index the index of the child
+     * @return the non-null child
+     * @throws java.lang.ArrayIndexOutOfBoundsException if the index is out of
+     *                                                  bounds.
+     */
+    public IXMLElement getChildAtIndex(int index)
+            throws ArrayIndexOutOfBoundsException {
+        if (index < 0 || index >= tree.childCount[node]) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return tree.getElement(tree.childList[tree.childStart[node] + index]);
+    }
+
+    /**
+     * Searches a child element.
+     *
+     * @param name the full name of the child to search for.
+     * @return the child element, or null if no such child was found.
+     */
+    public IXMLElement getFirstChildNamed(String name) {
+        for (int i = tree.childStart[node], end = i + tree.childCount[node]; i < end; i++) {
+            int child = tree.childList[i];
+            if (isNamed(child, name)) {
+                return tree.getElement(child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Searches a child element.
+     *
+     * @param name      the name of the child to search for.
+     * @param namespace the namespace, which may be null.
+     * @return the child element, or null if no such child was found.
+     */
+    public IXMLElement getFirstChildNamed(String name,
+                                          String namespace) {
+        for (int i = tree.childStart[node], end = i + tree.childCount[node]; i < end; i++) {
+            int child = tree.childList[i];
+            if (isNamed(child, name, namespace)) {
+                return tree.getElement(child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a list of all child iterator named <I>name</I>.
+     *
+     * @param name the full name of the children to search for.
+     * @return the non-null list of child iterator.
+     */
+    public ArrayList<IXMLElement> getChildrenNamed(String name) {
+        ArrayList<IXMLElement> result = new ArrayList<IXMLElement>();
+        for (int i = tree.childStart[node], end = i + tree.childCount[node]; i < end; i++) {
+            int child = tree.childList[i];
+            if (isNamed(child, name)) {
+                result.add(tree.getElement(child));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a list of all child iterator named <I>name</I>.
+     *
+     * @param name      the name of the children to search for.
+     * @param namespace the namespace, which may be null.
+     * @return the non-null list of child iterator.
+     */
+    public ArrayList<IXMLElement> getChildrenNamed(String name,
+                                                   String namespace) {
+        ArrayList<IXMLElement> result = new ArrayList<IXMLElement>();
+        for (int i = tree.childStart[node], end = i + tree.childCount[node]; i < end; i++) {
+            int child = tree.childList[i];
+            if (isNamed(child, name, namespace)) {
+                result.add(tree.getElement(child));
+            }
+        }
+        return result;
+    }
+
+    private boolean isNamed(int child, String name) {
+        String childName = tree.getString(tree.fullName[child]);
+        return (childName != null) && childName.equals(name);
+    }
+
+    /**
+     * Matches a child by name and namespace. Like in XMLElement, a child
+     * without a namespace only matches a null name.
+     */
+    private boolean isNamed(int child, String name, String namespace) {
+        String str = tree.getString(tree.name[child]);
+        boolean found = (str != null) && (str.equals(name));
+        str = tree.getString(tree.namespace[child]);
+        if (str == null) {
+            found &= (name == null);
+        } else {
+            found &= str.equals(namespace);
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of attributes.
+     */
+    public int getAttributeCount() {
+        return tree.attributeCount[node];
+    }
+
+    /**
+     * @param name the non-null name of the attribute.
+     * @return the value, or null if the attribute does not exist.
+     * @deprecated As of NanoXML/Java 2.1, replaced by
+     * {@link #getAttribute(java.lang.String, java.lang.String)} Returns the
+     * value of an attribute.
+     */
+    @Deprecated
+    public String getAttribute(String name) {
+        return this.getAttribute(name, null);
+    }
+
+    /**
+     * Returns the value of an attribute.
+     *
+     * @param name         the non-null full name of the attribute.
+     * @param defaultValue the default value of the attribute.
+     * @return the value, or defaultValue if the attribute does not exist.
+     */
+    public String getAttribute(String name,
+                               String defaultValue) {
+        int a = tree.findAttribute(node, name);
+        return (a < 0) ? defaultValue : tree.strings[tree.attributeValue[a]];
+    }
+
+    /**
+     * Returns the value of an attribute.
+     *
+     * @param name         the non-null name of the attribute.
+     * @param namespace    the namespace URI, which may be null.
+     * @param defaultValue the default value of the attribute.
+     * @return the value, or defaultValue if the attribute does not exist.
+     */
+    public String getAttribute(String name,
+                               String namespace,
+                               String defaultValue) {
+        int a = tree.findAttribute(node, name, namespace);
+        return (a < 0) ? defaultValue : tree.strings[tree.attributeValue[a]];
+    }
+
+    /**
+     * Returns the value of an attribute.
+     *
+     * @param name         the non-null full name of the attribute.
+     * @param defaultValue the default value of the attribute.
+     * @return the value, or defaultValue if the attribute does not exist.
+     */
+    public int getAttribute(String name,
+                            int defaultValue) {
+        String value = this.getAttribute(name, Integer.toString(defaultValue));
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Returns the value of an attribute.
+     *
+     * @param name         the non-null name of the attribute.
+     * @param namespace    the namespace URI, which may be null.
+     * @param defaultValue the default value of the attribute.
+     * @return the value, or defaultValue if the attribute does not exist.
+     */
+    public int getAttribute(String name,
+                            String namespace,
+                            int defaultValue) {
+        String value = this.getAttribute(name, namespace,
+                Integer.toString(defaultValue));
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Returns an attribute by looking up a key in a hashtable. If the attribute
+     * doesn't exist, the value corresponding to defaultKey is returned.
+     *
+     * @param name       The name of the attribute.
+     * @param namespace  the namespace URI, which may be null.
+     * @param valueSet   HashMap mapping keySet().iterator to values.
+     * @param defaultKey Key to use if the attribute is missing.
+     */
+    public <T> T getAttribute(String name, String namespace,
+                              Map<String, T> valueSet,
+                              String defaultKey) {
+        String key = this.getAttribute(name, namespace, null);
+        if (key == null || !valueSet.containsKey(key)) {
+            return valueSet.get(defaultKey);
+        }
+        return valueSet.get(key);
+    }
+
+    /**
+     * Returns an attribute of the element. If the attribute doesn't exist,
+     * {@code defaultValue} is returned.
+     *
+     * @param name         The name of the attribute.
+     * @param namespace    the namespace URI, which may be null.
+     * @param defaultValue Key to use if the attribute is missing.
+     */
+    public double getDoubleAttribute(String name,
+                                     String namespace,
+                                     double defaultValue) {
+        String value = this.getAttribute(name, namespace, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the type of an attribute.
+     *
+     * @param name the non-null full name of the attribute.
+     * @return the type, or null if the attribute does not exist.
+     */
+    public String getAttributeType(String name) {
+        return (tree.findAttribute(node, name) < 0) ? null : "CDATA";
+    }
+
+    /**
+     * Returns the namespace of an attribute.
+     *
+     * @param name the non-null full name of the attribute.
+     * @return the namespace, or null if there is none associated.
+     */
+    public String getAttributeNamespace(String name) {
+        int a = tree.findAttribute(node, name);
+        return (a < 0) ? null : tree.getString(tree.attributeNamespace[a]);
+    }
+
+    /**
+     * Returns the type of an attribute.
+     *
+     * @param name      the non-null name of the attribute.
+     * @param namespace the namespace URI, which may be null.
+     * @return the type, or null if the attribute does not exist.
+     */
+    public String getAttributeType(String name,
+                                   String namespace) {
+        return (tree.findAttribute(node, name, namespace) < 0) ? null : "CDATA";
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void setAttribute(String name,
+                             String value) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void setAttribute(String fullName,
+                             String namespace,
+                             String value) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void removeAttribute(String name) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void removeAttribute(String name,
+                                String namespace) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    /**
+     * Returns an enumeration of all attribute names.
+     *
+     * @return the non-null enumeration.
+     */
+    public Iterable<String> iterableAttributeNames() {
+        ArrayList<String> result = new ArrayList<String>(tree.attributeCount[node]);
+        for (int a = tree.attributeStart[node], end = a + tree.attributeCount[node]; a < end; a++) {
+            result.add(tree.strings[tree.attributeFullName[a]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether an attribute exists.
+     *
+     * @return true if the attribute exists.
+     */
+    public boolean hasAttribute(String name) {
+        return tree.findAttribute(node, name) >= 0;
+    }
+
+    /**
+     * Returns whether an attribute exists.
+     *
+     * @return true if the attribute exists.
+     */
+    public boolean hasAttribute(String name,
+                                String namespace) {
+        return tree.findAttribute(node, name, namespace) >= 0;
+    }
+
+    /**
+     * Returns all attributes as a Properties object.
+     *
+     * @return the non-null set.
+     */
+    public Properties getAttributes() {
+        Properties result = new Properties();
+        for (int a = tree.attributeStart[node], end = a + tree.attributeCount[node]; a < end; a++) {
+            result.put(tree.strings[tree.attributeFullName[a]], tree.strings[tree.attributeValue[a]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns all attributes in a specific namespace as a Properties object.
+     *
+     * @param namespace the namespace URI of the attributes, which may be null.
+     * @return the non-null set.
+     */
+    public Properties getAttributesInNamespace(String namespace) {
+        Properties result = new Properties();
+        for (int a = tree.attributeStart[node], end = a + tree.attributeCount[node]; a < end; a++) {
+            String ns = tree.getString(tree.attributeNamespace[a]);
+            if (namespace == null ? ns == null : namespace.equals(ns)) {
+                result.put(tree.strings[tree.attributeName[a]], tree.strings[tree.attributeValue[a]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the system ID of the data where the element started.
+     *
+     * @return the system ID, or null if unknown.
+     * @see #getLineNr
+     */
+    public String getSystemID() {
+        return tree.getString(tree.systemID[node]);
+    }
+
+    /**
+     * Returns the line number in the data where the element started.
+     *
+     * @return the line number, or NO_LINE if unknown.
+     * @see #NO_LINE
+     * @see #getSystemID
+     */
+    public int getLineNr() {
+        return tree.lineNr[node];
+    }
+
+    /**
+     * Return the #PCDATA content of the element. If the element has a
+     * combination of #PCDATA content and child iterator, the #PCDATA sections
+     * can be retrieved as unnamed child objects. In this case, this method
+     * returns null.
+     *
+     * @return the content.
+     */
+    public String getContent() {
+        return tree.getString(tree.content[node]);
+    }
+
+    /**
+     * Throws an UnsupportedOperationException.
+     */
+    public void setContent(String content) {
+        throw new UnsupportedOperationException("CompactXMLElement is immutable");
+    }
+
+    @Override
+    public int hashCode() {
+        String name = getName();
+        int hash = 7;
+        hash = 97 * hash + getAttributeCount();
+        hash = 97 * hash + getChildrenCount();
+        hash = 97 * hash + (name != null ? name.hashCode() : 0);
+        return hash;
+    }
+
+    /**
+     * Returns true if the element equals another element.
+     *
+     * @param rawElement the element to compare to
+     */
+    public boolean equals(Object rawElement) {
+        return (rawElement instanceof IXMLElement)
+                && this.equalsXMLElement((IXMLElement) rawElement);
+    }
+
+    /**
+     * Returns true if the element equals another element.
+     *
+     * @param elt the element to compare to
+     */
+    public boolean equalsXMLElement(IXMLElement elt) {
+        if (elt == this) {
+            return true;
+        }
+        String name = getName();
+        if (name == null ? elt.getName() != null : !name.equals(elt.getName())) {
+            return false;
+        }
+        if (getAttributeCount() != elt.getAttributeCount()) {
+            return false;
+        }
+        for (int a = tree.attributeStart[node], end = a + tree.attributeCount[node]; a < end; a++) {
+            String attrName = tree.strings[tree.attributeName[a]];
+            String attrNamespace = tree.getString(tree.attributeNamespace[a]);
+            String value = elt.getAttribute(attrName, attrNamespace, null);
+            if (!tree.strings[tree.attributeValue[a]].equals(value)) {
+                return false;
+            }
+            if (!"CDATA".equals(elt.getAttributeType(attrName, attrNamespace))) {
+                return false;
+            }
+        }
+        if (getChildrenCount() != elt.getChildrenCount()) {
+            return false;
+        }
+        for (int i = 0, n = getChildrenCount(); i < n; i++) {
+            if (!getChildAtIndex(i).equalsXMLElement(elt.getChildAtIndex(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        CharArrayWriter buf = new CharArrayWriter();
+        XMLWriter w = new XMLWriter(buf);
+        try {
+            w.write(this);
+        } catch (java.io.IOException e) {
+            InternalError error = new InternalError("toString failed");
+            error.initCause(e);
+            throw error;
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Does nothing. The tree is discarded when none of its elements is
+     * referenced anymore.
+     */
+    public void dispose() {
+        // nothing to do
+    }
+}
@@ -0,0 +1,261 @@
+/* @(#)CompactXMLTree.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package net.n3.nanoxml;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * CompactXMLTree stores the elements of an XML document in flat arrays.
+ * <p>
+ * Each node of the tree is an index into the node arrays. A node is either
+ * an element or a #PCDATA node. #PCDATA nodes have no name. All strings
+ * are stored as indices into a shared string pool, in which every string
+ * occurs only once. The attributes of an element are stored consecutively
+ * in the attribute arrays, and so are the children of an element in the
+ * child list.
+ * <p>
+ * The tree is built by {@link CompactXMLBuilder} and is immutable
+ * afterwards.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class CompactXMLTree {
+
+    /**
+     * Value of a string index which represents null.
+     */
+    static final int NULL = -1;
+
+    // The string pool
+    String[] strings = new String[64];
+    int stringCount;
+    /**
+     * Maps strings to their index in the string pool. This map is only
+     * needed while the tree is built.
+     */
+    private HashMap<String, Integer> stringIndex = new HashMap<String, Integer>();
+
+    // The node arrays
+    int nodeCount;
+    int[] parent = new int[64];
+    int[] fullName = new int[64];
+    int[] name = new int[64];
+    int[] namespace = new int[64];
+    int[] content = new int[64];
+    int[] systemID = new int[64];
+    int[] lineNr = new int[64];
+    int[] attributeStart = new int[64];
+    int[] attributeCount = new int[64];
+    int[] childStart;
+    int[] childCount = new int[64];
+    /**
+     * The last child of a node. This array is only needed while the tree is
+     * built.
+     */
+    int[] lastChild = new int[64];
+
+    /**
+     * The indices of the children of all nodes. The children of a node are
+     * stored consecutively starting at the child start of the node.
+     */
+    int[] childList;
+
+    // The attribute arrays
+    int attributeTotal;
+    int[] attributeFullName = new int[64];
+    int[] attributeName = new int[64];
+    int[] attributeNamespace = new int[64];
+    int[] attributeValue = new int[64];
+
+    /**
+     * The elements which have been handed out for the nodes.
+     */
+    private CompactXMLElement[] elements;
+
+    /**
+     * Returns the index of a string in the string pool, adding the string if
+     * necessary.
+     */
+    int addString(String str) {
+        if (str == null) {
+            return NULL;
+        }
+        Integer index = stringIndex.get(str);
+        if (index == null) {
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            index = stringCount;
+            strings[stringCount++] = str;
+            stringIndex.put(str, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns a string from the string pool.
+     */
+    String getString(int index) {
+        return (index == NULL) ? null : strings[index];
+    }
+
+    /**
+     * Adds a node as the last child of its parent.
+     *
+     * @return the index of the new node
+     */
+    int addNode(int parentNode, int fullNameIndex, int nameIndex, int namespaceIndex, int systemIDIndex, int line) {
+        if (nodeCount == parent.length) {
+            int n = nodeCount * 2;
+            parent = Arrays.copyOf(parent, n);
+            fullName = Arrays.copyOf(fullName, n);
+            name = Arrays.copyOf(name, n);
+            namespace = Arrays.copyOf(namespace, n);
+            content = Arrays.copyOf(content, n);
+            systemID = Arrays.copyOf(systemID, n);
+            lineNr = Arrays.copyOf(lineNr, n);
+            attributeStart = Arrays.copyOf(attributeStart, n);
+            attributeCount = Arrays.copyOf(attributeCount, n);
+            childCount = Arrays.copyOf(childCount, n);
+            lastChild = Arrays.copyOf(lastChild, n);
+        }
+        int node = nodeCount++;
+        parent[node] = parentNode;
+        fullName[node] = fullNameIndex;
+        name[node] = nameIndex;
+        namespace[node] = namespaceIndex;
+        content[node] = NULL;
+        systemID[node] = systemIDIndex;
+        lineNr[node] = line;
+        attributeStart[node] = attributeTotal;
+        attributeCount[node] = 0;
+        childCount[node] = 0;
+        lastChild[node] = NULL;
+        if (parentNode != NULL) {
+            childCount[parentNode]++;
+            lastChild[parentNode] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Removes the last node of the tree.
+     */
+    void removeLastNode() {
+        int node = --nodeCount;
+        int parentNode = parent[node];
+        if (parentNode != NULL) {
+            childCount[parentNode]--;
+            lastChild[parentNode] = NULL;
+        }
+    }
+
+    /**
+     * Adds an attribute to the last node of the tree.
+     */
+    void addAttribute(int fullNameIndex, int nameIndex, int namespaceIndex, int valueIndex) {
+        if (attributeTotal == attributeValue.length) {
+            int n = attributeTotal * 2;
+            attributeFullName = Arrays.copyOf(attributeFullName, n);
+            attributeName = Arrays.copyOf(attributeName, n);
+            attributeNamespace = Arrays.copyOf(attributeNamespace, n);
+            attributeValue = Arrays.copyOf(attributeValue, n);
+        }
+        int a = attributeTotal++;
+        attributeFullName[a] = fullNameIndex;
+        attributeName[a] = nameIndex;
+        attributeNamespace[a] = namespaceIndex;
+        attributeValue[a] = valueIndex;
+        attributeCount[nodeCount - 1]++;
+    }
+
+    /**
+     * Searches an attribute of a node by its full name.
+     *
+     * @return the index of the attribute, or -1 if the attribute does not
+     * exist.
+     */
+    int findAttribute(int node, String fullNameStr) {
+        for (int a = attributeStart[node], end = a + attributeCount[node]; a < end; a++) {
+            if (strings[attributeFullName[a]].equals(fullNameStr)) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches an attribute of a node by its short name and namespace.
+     *
+     * @return the index of the attribute, or -1 if the attribute does not
+     * exist.
+     */
+    int findAttribute(int node, String nameStr, String namespaceStr) {
+        for (int a = attributeStart[node], end = a + attributeCount[node]; a < end; a++) {
+            if (strings[attributeName[a]].equals(nameStr)) {
+                String ns = getString(attributeNamespace[a]);
+                if (namespaceStr == null ? ns == null : namespaceStr.equals(ns)) {
+                    return a;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the child list and trims the arrays to their size.
+     */
+    void finish() {
+        int n = nodeCount;
+        childStart = new int[n];
+        for (int node = 0, start = 0; node < n; node++) {
+            childStart[node] = start;
+            start += childCount[node];
+        }
+        childList = new int[Math.max(0, n - 1)];
+        int[] filled = new int[n];
+        for (int node = 0; node < n; node++) {
+            int p = parent[node];
+            if (p != NULL) {
+                childList[childStart[p] + filled[p]++] = node;
+            }
+        }
+        strings = Arrays.copyOf(strings, stringCount);
+        stringIndex = null;
+        parent = Arrays.copyOf(parent, n);
+        fullName = Arrays.copyOf(fullName, n);
+        name = Arrays.copyOf(name, n);
+        namespace = Arrays.copyOf(namespace, n);
+        content = Arrays.copyOf(content, n);
+        systemID = Arrays.copyOf(systemID, n);
+        lineNr = Arrays.copyOf(lineNr, n);
+        attributeStart = Arrays.copyOf(attributeStart, n);
+        attributeCount = Arrays.copyOf(attributeCount, n);
+        childCount = Arrays.copyOf(childCount, n);
+        lastChild = null;
+        int m = attributeTotal;
+        attributeFullName = Arrays.copyOf(attributeFullName, m);
+        attributeName = Arrays.copyOf(attributeName, m);
+        attributeNamespace = Arrays.copyOf(attributeNamespace, m);
+        attributeValue = Arrays.copyOf(attributeValue, m);
+    }
+
+    /**
+     * Returns the element for a node. The same element instance is returned
+     * for all requests of the same node.
+     */
+    synchronized CompactXMLElement getElement(int node) {
+        if (elements == null) {
+            elements = new CompactXMLElement[nodeCount];
+        }
+        CompactXMLElement elt = elements[node];
+        if (elt == null) {
+            elt = new CompactXMLElement(this, node);
+            elements[node] = elt;
+        }
+        return elt;
+    }
+}
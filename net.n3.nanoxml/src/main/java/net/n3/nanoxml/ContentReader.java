@@ -110,8 +110,11 @@ class ContentReader
                 char ch;
 
                 if (this.bufferIndex >= bufferLength) {
-                    str = XMLUtil.read(this.reader, '&');
-                    ch = str.charAt(0);
+                    ch = this.reader.read();
+
+                    if (ch == '&') {
+                        str = XMLUtil.readEntity(this.reader, ch);
+                    }
                 } else {
                     ch = this.buffer.charAt(this.bufferIndex);
                     this.bufferIndex++;
@@ -164,8 +167,11 @@ class ContentReader
                 char ch;
 
                 if (this.bufferIndex >= bufferLength) {
-                    str = XMLUtil.read(this.reader, '&');
-                    ch = str.charAt(0);
+                    ch = this.reader.read();
+
+                    if (ch == '&') {
+                        str = XMLUtil.readEntity(this.reader, ch);
+                    }
                 } else {
                     ch = this.buffer.charAt(this.bufferIndex);
                     this.bufferIndex++;
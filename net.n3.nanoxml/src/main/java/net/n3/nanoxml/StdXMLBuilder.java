@@ -64,6 +64,13 @@ public class StdXMLBuilder
     private IXMLElement prototype;
 
 
+    /**
+     * The symbol table which interns the qualified names of the elements
+     * and attributes.
+     */
+    private XMLSymbolTable symbols;
+
+
     /**
      * Creates the builder.
      */
@@ -94,6 +101,7 @@ public class StdXMLBuilder
                               int lineNr) {
         this.stack = new ArrayDeque<IXMLElement>();
         this.root = null;
+        this.symbols = new XMLSymbolTable();
     }
 
 
@@ -131,7 +139,7 @@ public class StdXMLBuilder
         String fullName = name;
 
         if (nsPrefix != null) {
-            fullName = nsPrefix + ':' + name;
+            fullName = this.symbols.intern(nsPrefix, name);
         }
 
         IXMLElement elt = this.prototype.createElement(fullName, nsURI,
@@ -219,7 +227,7 @@ public class StdXMLBuilder
         String fullName = key;
 
         if (nsPrefix != null) {
-            fullName = nsPrefix + ':' + key;
+            fullName = this.symbols.intern(nsPrefix, key);
         }
 
         IXMLElement top = this.stack.peek();
@@ -255,7 +263,7 @@ public class StdXMLBuilder
                           int lineNr) {
         int bufSize = 2048;
         int sizeRead = 0;
-        StringBuffer str = new StringBuffer(bufSize);
+        StringBuilder str = new StringBuilder(bufSize);
         char[] buf = new char[bufSize];
 
         for (; ; ) {
@@ -70,6 +70,13 @@ public class StdXMLParser
     private IXMLValidator validator;
 
 
+    /**
+     * The symbol table which interns the element and attribute names and
+     * the namespace URIs of the current parse.
+     */
+    private XMLSymbolTable symbols;
+
+
     /**
      * Creates a new parser.
      */
@@ -78,6 +85,7 @@ public class StdXMLParser
         this.validator = null;
         this.reader = null;
         this.entityResolver = new XMLEntityResolver();
+        this.symbols = new XMLSymbolTable();
     }
 
 
@@ -170,6 +178,7 @@ public class StdXMLParser
     public Object parse()
             throws XMLException {
         try {
+            this.symbols = new XMLSymbolTable();
             this.builder.startBuilding(this.reader.getSystemID(),
                     this.reader.getLineNr());
             this.scanData();
@@ -359,7 +368,7 @@ public class StdXMLParser
 
         XMLUtil.skipWhitespace(this.reader, null);
         String systemID = null;
-        StringBuffer publicID = new StringBuffer();
+        StringBuilder publicID = new StringBuilder();
         String rootElement = XMLUtil.scanIdentifier(this.reader);
         XMLUtil.skipWhitespace(this.reader, null);
         char ch = this.reader.read();
@@ -416,15 +425,15 @@ public class StdXMLParser
     protected void processElement(String defaultNamespace,
                                   Properties namespaces)
             throws Exception {
-        String fullName = XMLUtil.scanIdentifier(this.reader);
+        String fullName = XMLUtil.scanIdentifier(this.reader, this.symbols);
         String name = fullName;
         XMLUtil.skipWhitespace(this.reader, null);
         String prefix = null;
         int colonIndex = name.indexOf(':');
 
         if (colonIndex > 0) {
-            prefix = name.substring(0, colonIndex);
-            name = name.substring(colonIndex + 1);
+            prefix = this.symbols.intern(name, 0, colonIndex);
+            name = this.symbols.intern(name, colonIndex + 1, name.length());
         }
 
         ArrayList<String> attrNames = new ArrayList<String>();
@@ -469,9 +478,10 @@ public class StdXMLParser
             String type = attrTypes.get(i);
 
             if ("xmlns".equals(key)) {
-                defaultNamespace = value;
+                defaultNamespace = this.symbols.intern(value);
             } else if (key.startsWith("xmlns:")) {
-                namespaces.put(key.substring(6), value);
+                namespaces.put(this.symbols.intern(key, 6, key.length()),
+                        this.symbols.intern(value));
             }
         }
 
@@ -498,8 +508,8 @@ public class StdXMLParser
             colonIndex = key.indexOf(':');
 
             if (colonIndex > 0) {
-                String attPrefix = key.substring(0, colonIndex);
-                key = key.substring(colonIndex + 1);
+                String attPrefix = this.symbols.intern(key, 0, colonIndex);
+                key = this.symbols.intern(key, colonIndex + 1, key.length());
                 this.builder.addAttribute(key, attPrefix,
                         namespaces.getProperty(attPrefix),
                         value, type);
@@ -538,7 +548,7 @@ public class StdXMLParser
             return;
         }
 
-        StringBuffer buffer = new StringBuffer(16);
+        StringBuilder buffer = new StringBuilder(16);
 
         for (; ; ) {
             buffer.setLength(0);
@@ -561,7 +571,7 @@ public class StdXMLParser
 
                 if (str.charAt(0) == '/') {
                     XMLUtil.skipWhitespace(this.reader, null);
-                    str = XMLUtil.scanIdentifier(this.reader);
+                    str = XMLUtil.scanIdentifier(this.reader, this.symbols);
 
                     if (!str.equals(fullName)) {
                         XMLUtil.errorWrongClosingTag(reader.getSystemID(),
@@ -624,10 +634,10 @@ public class StdXMLParser
                                     ArrayList<String> attrValues,
                                     ArrayList<String> attrTypes)
             throws Exception {
-        String key = XMLUtil.scanIdentifier(this.reader);
+        String key = XMLUtil.scanIdentifier(this.reader, this.symbols);
         XMLUtil.skipWhitespace(this.reader, null);
 
-        if (!"=".equals(XMLUtil.read(this.reader, '&'))) {
+        if (this.reader.read() != '=') {
             XMLUtil.errorExpectedInput(reader.getSystemID(),
                     reader.getLineNr(),
                     "`='");
@@ -33,13 +33,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.PushbackInputStream;
 import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayDeque;
@@ -182,59 +180,7 @@ public class StdXMLReader
      * @return the encoding, or null if no encoding has been specified.
      */
     protected String getEncoding(String str) {
-        if (!str.startsWith("<?xml")) {
-            return null;
-        }
-
-        int index = 5;
-
-        while (index < str.length()) {
-            StringBuffer key = new StringBuffer();
-
-            while ((index < str.length()) && (str.charAt(index) <= ' ')) {
-                index++;
-            }
-
-            while ((index < str.length())
-                    && (str.charAt(index) >= 'a')
-                    && (str.charAt(index) <= 'z')) {
-                key.append(str.charAt(index));
-                index++;
-            }
-
-            while ((index < str.length()) && (str.charAt(index) <= ' ')) {
-                index++;
-            }
-
-            if ((index >= str.length()) || (str.charAt(index) != '=')) {
-                break;
-            }
-
-            while ((index < str.length()) && (str.charAt(index) != '\'')
-                    && (str.charAt(index) != '"')) {
-                index++;
-            }
-
-            if (index >= str.length()) {
-                break;
-            }
-
-            char delimiter = str.charAt(index);
-            index++;
-            int index2 = str.indexOf(delimiter, index);
-
-            if (index2 < 0) {
-                break;
-            }
-
-            if ("encoding".equals(key.toString())) {
-                return str.substring(index, index2);
-            }
-
-            index = index2 + 1;
-        }
-
-        return null;
+        return XMLUtil.getEncoding(str);
     }
 
 
@@ -248,54 +194,10 @@ public class StdXMLReader
     protected Reader stream2reader(InputStream stream,
                                    StringBuffer charsRead)
             throws IOException {
-        PushbackInputStream pbstream = new PushbackInputStream(stream);
-        int b = pbstream.read();
-
-        switch (b) {
-            case 0x00:
-            case 0xFE:
-            case 0xFF:
-                pbstream.unread(b);
-                return new InputStreamReader(pbstream, "UTF-16");
-
-            case 0xEF:
-                for (int i = 0; i < 2; i++) {
-                    pbstream.read();
-                }
-
-                return new InputStreamReader(pbstream, "UTF-8");
-
-            case 0x3C:
-                b = pbstream.read();
-                charsRead.append('<');
-
-                while ((b > 0) && (b != 0x3E)) {
-                    charsRead.append((char) b);
-                    b = pbstream.read();
-                }
-
-                if (b > 0) {
-                    charsRead.append((char) b);
-                }
-
-                String encoding = this.getEncoding(charsRead.toString());
-
-                if (encoding == null) {
-                    return new InputStreamReader(pbstream, "UTF-8");
-                }
-
-                charsRead.setLength(0);
-
-                try {
-                    return new InputStreamReader(pbstream, encoding);
-                } catch (UnsupportedEncodingException e) {
-                    return new InputStreamReader(pbstream, "UTF-8");
-                }
-
-            default:
-                charsRead.append((char) b);
-                return new InputStreamReader(pbstream, "UTF-8");
-        }
+        StringBuilder buf = new StringBuilder();
+        Reader reader = XMLUtil.stream2reader(stream, buf);
+        charsRead.append(buf);
+        return reader;
     }
 
 
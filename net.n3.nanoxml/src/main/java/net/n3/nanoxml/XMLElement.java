@@ -59,6 +59,11 @@ public class XMLElement implements IXMLElement, Serializable {
      * No line number defined.
      */
     public static final int NO_LINE = -1;
+    /**
+     * The number of attributes above which attributes are looked up through
+     * a hash index instead of a linear search.
+     */
+    private static final int INDEX_THRESHOLD = 6;
     /**
      * The parent element.
      */
@@ -95,6 +100,22 @@ public class XMLElement implements IXMLElement, Serializable {
      * The line in the source data where this element starts.
      */
     private int lineNr;
+    /**
+     * Open addressing hash index of the attributes by full name. Each slot
+     * holds the index of an attribute plus one, or 0 if it is free. This
+     * field is null while the element has at most INDEX_THRESHOLD
+     * attributes.
+     * <p>
+     * The indices are only changed when attributes are added or removed, so
+     * that reading attributes does not modify the element, and can be done
+     * by multiple threads at the same time.
+     */
+    private transient int[] fullNameIndex;
+    /**
+     * Open addressing hash index of the attributes by short name. Slots are
+     * organized like in fullNameIndex.
+     */
+    private transient int[] nameIndex;
 
     /**
      * Creates an empty element to be used for #PCDATA content.
@@ -520,6 +541,16 @@ public class XMLElement implements IXMLElement, Serializable {
      * @return the attribute, or null if the attribute does not exist.
      */
     private XMLAttribute findAttribute(String fullName) {
+        if (fullNameIndex != null) {
+            int mask = fullNameIndex.length - 1;
+            for (int i = mix(fullName.hashCode()) & mask; fullNameIndex[i] != 0; i = (i + 1) & mask) {
+                XMLAttribute attr = attributes.get(fullNameIndex[i] - 1);
+                if (attr.getFullName().equals(fullName)) {
+                    return attr;
+                }
+            }
+            return null;
+        }
         for (XMLAttribute attr : attributes) {
             if (attr.getFullName().equals(fullName)) {
                 return attr;
@@ -537,21 +568,94 @@ public class XMLElement implements IXMLElement, Serializable {
      */
     private XMLAttribute findAttribute(String name,
                                        String namespace) {
-        for (XMLAttribute attr : attributes) {
-            boolean found = attr.getName().equals(name);
-            if (namespace == null) {
-                found &= (attr.getNamespace() == null);
-            } else {
-                found &= namespace.equals(attr.getNamespace());
+        if (nameIndex != null) {
+            int mask = nameIndex.length - 1;
+            for (int i = mix(name.hashCode()) & mask; nameIndex[i] != 0; i = (i + 1) & mask) {
+                XMLAttribute attr = attributes.get(nameIndex[i] - 1);
+                if (isAttribute(attr, name, namespace)) {
+                    return attr;
+                }
             }
-
-            if (found) {
+            return null;
+        }
+        for (XMLAttribute attr : attributes) {
+            if (isAttribute(attr, name, namespace)) {
                 return attr;
             }
         }
         return null;
     }
 
+    private static boolean isAttribute(XMLAttribute attr, String name, String namespace) {
+        boolean found = attr.getName().equals(name);
+        if (namespace == null) {
+            found &= (attr.getNamespace() == null);
+        } else {
+            found &= namespace.equals(attr.getNamespace());
+        }
+        return found;
+    }
+
+    /**
+     * Adds an attribute.
+     */
+    private void addAttribute(XMLAttribute attr) {
+        attributes.add(attr);
+        if (fullNameIndex != null) {
+            if (attributes.size() * 2 > fullNameIndex.length) {
+                buildIndex();
+            } else {
+                addToIndex(attributes.size() - 1);
+            }
+        } else if (attributes.size() > INDEX_THRESHOLD) {
+            buildIndex();
+        }
+    }
+
+    /**
+     * Rebuilds the hash indices after an attribute has been removed.
+     */
+    private void updateIndex() {
+        if (attributes.size() > INDEX_THRESHOLD) {
+            buildIndex();
+        } else {
+            fullNameIndex = null;
+            nameIndex = null;
+        }
+    }
+
+    /**
+     * Builds the hash indices of the attributes. The indices have at least
+     * twice as many slots as there are attributes.
+     */
+    private void buildIndex() {
+        int size = Integer.highestOneBit(attributes.size()) << 2;
+        fullNameIndex = new int[size];
+        nameIndex = new int[size];
+        for (int i = 0, n = attributes.size(); i < n; i++) {
+            addToIndex(i);
+        }
+    }
+
+    private void addToIndex(int index) {
+        XMLAttribute attr = attributes.get(index);
+        int mask = fullNameIndex.length - 1;
+        int i = mix(attr.getFullName().hashCode()) & mask;
+        while (fullNameIndex[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        fullNameIndex[i] = index + 1;
+        i = mix(attr.getName().hashCode()) & mask;
+        while (nameIndex[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        nameIndex[i] = index + 1;
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
     /**
      * Returns the number of attributes.
      */
@@ -752,7 +856,7 @@ public class XMLElement implements IXMLElement, Serializable {
         XMLAttribute attr = this.findAttribute(name);
         if (attr == null) {
             attr = new XMLAttribute(name, name, null, value, "CDATA");
-            this.attributes.add(attr);
+            this.addAttribute(attr);
         } else {
             attr.setValue(value);
         }
@@ -773,7 +877,7 @@ public class XMLElement implements IXMLElement, Serializable {
         XMLAttribute attr = this.findAttribute(name, namespace);
         if (attr == null) {
             attr = new XMLAttribute(fullName, name, namespace, value, "CDATA");
-            this.attributes.add(attr);
+            this.addAttribute(attr);
         } else {
             attr.setValue(value);
         }
@@ -790,6 +894,7 @@ public class XMLElement implements IXMLElement, Serializable {
             XMLAttribute attr = attributes.get(i);
             if (attr.getFullName().equals(name)) {
                 attributes.remove(i);
+                updateIndex();
                 return;
             }
         }
@@ -815,6 +920,7 @@ public class XMLElement implements IXMLElement, Serializable {
 
             if (found) {
                 attributes.remove(i);
+                updateIndex();
                 return;
             }
         }
@@ -1021,6 +1127,8 @@ public class XMLElement implements IXMLElement, Serializable {
         }
         this.attributes.clear();
         this.attributes = null;
+        this.fullNameIndex = null;
+        this.nameIndex = null;
         this.children = null;
         this.fullName = null;
         this.name = null;
@@ -0,0 +1,166 @@
+/* @(#)XMLSymbolTable.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package net.n3.nanoxml;
+
+/**
+ * XMLSymbolTable interns the names which are scanned during a parse.
+ * <p>
+ * An XML document usually uses a small vocabulary of element and attribute
+ * names over and over again. The symbol table returns the same string
+ * instance for all occurrences of a name, and only creates a string for
+ * the first occurrence. The instances are the canonical representations
+ * returned by {@link String#intern}, so that names can be compared by
+ * identity with string literals and with names from other parses.
+ * <p>
+ * A symbol table is meant to be used for a single parse. It is not
+ * thread safe.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class XMLSymbolTable {
+
+    /**
+     * Open addressing hash table of the symbols.
+     */
+    private String[] symbols = new String[256];
+
+    private int count;
+
+    /**
+     * Buffer for the characters of the symbol being scanned.
+     */
+    private char[] buffer = new char[32];
+
+    private int length;
+
+    /**
+     * Hash code of the symbol being scanned, computed like
+     * {@link String#hashCode}.
+     */
+    private int hash;
+
+    /**
+     * Clears the buffer for scanning a new symbol.
+     */
+    void clearBuffer() {
+        length = 0;
+        hash = 0;
+    }
+
+    /**
+     * Appends a character to the symbol being scanned.
+     */
+    void append(char ch) {
+        if (length == buffer.length) {
+            char[] b = new char[length * 2];
+            System.arraycopy(buffer, 0, b, 0, length);
+            buffer = b;
+        }
+        buffer[length++] = ch;
+        hash = 31 * hash + ch;
+    }
+
+    /**
+     * Returns the interned symbol for the characters in the buffer.
+     */
+    String internBuffer() {
+        int mask = symbols.length - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            String s = symbols[i];
+            if (s == null) {
+                return add(i, new String(buffer, 0, length));
+            }
+            if (s.hashCode() == hash && regionMatches(s, buffer, length)) {
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Returns the interned symbol for a substring.
+     *
+     * @param str   a string
+     * @param begin the index of the first character of the substring
+     * @param end   the index after the last character of the substring
+     */
+    String intern(String str, int begin, int end) {
+        int h = 0;
+        for (int j = begin; j < end; j++) {
+            h = 31 * h + str.charAt(j);
+        }
+        int n = end - begin;
+        int mask = symbols.length - 1;
+        for (int i = mix(h) & mask; ; i = (i + 1) & mask) {
+            String s = symbols[i];
+            if (s == null) {
+                return add(i, str.substring(begin, end));
+            }
+            if (s.hashCode() == h && s.length() == n && s.regionMatches(0, str, begin, n)) {
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Returns the interned symbol for a string.
+     */
+    String intern(String str) {
+        return intern(str, 0, str.length());
+    }
+
+    /**
+     * Returns the interned symbol for a qualified name.
+     *
+     * @param prefix the namespace prefix
+     * @param name   the local name
+     */
+    String intern(String prefix, String name) {
+        clearBuffer();
+        for (int j = 0, n = prefix.length(); j < n; j++) {
+            append(prefix.charAt(j));
+        }
+        append(':');
+        for (int j = 0, n = name.length(); j < n; j++) {
+            append(name.charAt(j));
+        }
+        return internBuffer();
+    }
+
+    private String add(int slot, String str) {
+        str = str.intern();
+        symbols[slot] = str;
+        if (++count * 2 > symbols.length) {
+            String[] old = symbols;
+            symbols = new String[old.length * 2];
+            int mask = symbols.length - 1;
+            for (String s : old) {
+                if (s != null) {
+                    int i = mix(s.hashCode()) & mask;
+                    while (symbols[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    symbols[i] = s;
+                }
+            }
+        }
+        return str;
+    }
+
+    private static boolean regionMatches(String s, char[] chars, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -28,7 +28,11 @@
 package net.n3.nanoxml;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 
 /**
  * Utility methods for NanoXML.
@@ -110,7 +114,7 @@ class XMLUtil {
      * @return the system ID
      * @throws java.io.IOException if an error occurred reading the data
      */
-    static String scanPublicID(StringBuffer publicID,
+    static String scanPublicID(StringBuilder publicID,
                                IXMLReader reader)
             throws IOException,
             XMLParseException {
@@ -151,7 +155,7 @@ class XMLUtil {
     static String scanIdentifier(IXMLReader reader)
             throws IOException,
             XMLParseException {
-        StringBuffer result = new StringBuffer();
+        StringBuilder result = new StringBuilder();
 
         for (; ; ) {
             char ch = reader.read();
@@ -170,6 +174,36 @@ class XMLUtil {
         return result.toString();
     }
 
+    /**
+     * Retrieves an identifier from the data and interns it.
+     *
+     * @param reader  the reader
+     * @param symbols the symbol table
+     * @throws java.io.IOException if an error occurred reading the data
+     */
+    static String scanIdentifier(IXMLReader reader,
+                                 XMLSymbolTable symbols)
+            throws IOException,
+            XMLParseException {
+        symbols.clearBuffer();
+
+        for (; ; ) {
+            char ch = reader.read();
+
+            if ((ch == '_') || (ch == ':') || (ch == '-') || (ch == '.')
+                    || ((ch >= 'a') && (ch <= 'z'))
+                    || ((ch >= 'A') && (ch <= 'Z'))
+                    || ((ch >= '0') && (ch <= '9')) || (ch > '\u007E')) {
+                symbols.append(ch);
+            } else {
+                reader.unread(ch);
+                break;
+            }
+        }
+
+        return symbols.internBuffer();
+    }
+
     /**
      * Retrieves a delimited string from the data.
      *
@@ -183,7 +217,7 @@ class XMLUtil {
                              IXMLEntityResolver entityResolver)
             throws IOException,
             XMLParseException {
-        StringBuffer result = new StringBuffer();
+        StringBuilder result = new StringBuilder();
         int startingLevel = reader.getStreamLevel();
         char delim = reader.read();
 
@@ -194,18 +228,17 @@ class XMLUtil {
         }
 
         for (; ; ) {
-            String str = XMLUtil.read(reader, entityChar);
-            char ch = str.charAt(0);
+            char ch = reader.read();
 
             if (ch == entityChar) {
+                String str = XMLUtil.readEntity(reader, ch);
                 if (str.charAt(1) == '#') {
                     result.append(XMLUtil.processCharLiteral(str));
                 } else {
                     XMLUtil.processEntity(str, reader, entityResolver);
                 }
             } else if (ch == '&') {
-                reader.unread(ch);
-                str = XMLUtil.read(reader, '&');
+                String str = XMLUtil.readEntity(reader, ch);
                 if (str.charAt(1) == '#') {
                     result.append(XMLUtil.processCharLiteral(str));
                 } else {
@@ -280,7 +313,7 @@ class XMLUtil {
      * @throws java.io.IOException if an error occurred reading the data
      */
     static void skipWhitespace(IXMLReader reader,
-                               StringBuffer buffer)
+                               StringBuilder buffer)
             throws IOException {
         char ch;
 
@@ -321,14 +354,33 @@ class XMLUtil {
             throws IOException,
             XMLParseException {
         char ch = reader.read();
-        StringBuffer buf = new StringBuffer();
-        buf.append(ch);
 
         if (ch == entityChar) {
-            while (ch != ';') {
-                ch = reader.read();
-                buf.append(ch);
-            }
+            return XMLUtil.readEntity(reader, ch);
+        }
+
+        return String.valueOf(ch);
+    }
+
+    /**
+     * Reads the remainder of an entity expression from the reader. It is
+     * assumed that the escape character is already read.
+     *
+     * @param reader     the reader
+     * @param entityChar the escape character (&amp; or %) which has been read
+     * @return the entity expression (like e.g. &amp;lt;)
+     * @throws java.io.IOException if an error occurred reading the data
+     */
+    static String readEntity(IXMLReader reader,
+                             char entityChar)
+            throws IOException {
+        StringBuilder buf = new StringBuilder(8);
+        buf.append(entityChar);
+        char ch = entityChar;
+
+        while (ch != ';') {
+            ch = reader.read();
+            buf.append(ch);
         }
 
         return buf.toString();
@@ -378,6 +430,131 @@ class XMLUtil {
         return true;
     }
 
+    /**
+     * Scans the encoding from an &lt;?xml...?&gt; tag.
+     *
+     * @param str the first tag in the XML data.
+     * @return the encoding, or null if no encoding has been specified.
+     */
+    static String getEncoding(String str) {
+        if (!str.startsWith("<?xml")) {
+            return null;
+        }
+
+        int index = 5;
+
+        while (index < str.length()) {
+            int keyStart;
+
+            while ((index < str.length()) && (str.charAt(index) <= ' ')) {
+                index++;
+            }
+
+            keyStart = index;
+
+            while ((index < str.length())
+                    && (str.charAt(index) >= 'a')
+                    && (str.charAt(index) <= 'z')) {
+                index++;
+            }
+
+            String key = str.substring(keyStart, index);
+
+            while ((index < str.length()) && (str.charAt(index) <= ' ')) {
+                index++;
+            }
+
+            if ((index >= str.length()) || (str.charAt(index) != '=')) {
+                break;
+            }
+
+            while ((index < str.length()) && (str.charAt(index) != '\'')
+                    && (str.charAt(index) != '"')) {
+                index++;
+            }
+
+            if (index >= str.length()) {
+                break;
+            }
+
+            char delimiter = str.charAt(index);
+            index++;
+            int index2 = str.indexOf(delimiter, index);
+
+            if (index2 < 0) {
+                break;
+            }
+
+            if ("encoding".equals(key)) {
+                return str.substring(index, index2);
+            }
+
+            index = index2 + 1;
+        }
+
+        return null;
+    }
+
+    /**
+     * Converts a stream to a reader while detecting the encoding.
+     *
+     * @param stream    the input for the XML data.
+     * @param charsRead buffer where to put characters that have been read
+     * @throws java.io.IOException if an I/O error occurred
+     */
+    static Reader stream2reader(InputStream stream,
+                                StringBuilder charsRead)
+            throws IOException {
+        PushbackInputStream pbstream = new PushbackInputStream(stream);
+        int b = pbstream.read();
+
+        switch (b) {
+            case 0x00:
+            case 0xFE:
+            case 0xFF:
+                pbstream.unread(b);
+                return new InputStreamReader(pbstream, "UTF-16");
+
+            case 0xEF:
+                for (int i = 0; i < 2; i++) {
+                    pbstream.read();
+                }
+
+                return new InputStreamReader(pbstream, "UTF-8");
+
+            case 0x3C:
+                b = pbstream.read();
+                charsRead.append('<');
+
+                while ((b > 0) && (b != 0x3E)) {
+                    charsRead.append((char) b);
+                    b = pbstream.read();
+                }
+
+                if (b > 0) {
+                    charsRead.append((char) b);
+                }
+
+                String encoding = XMLUtil.getEncoding(charsRead.toString());
+
+                if (encoding == null) {
+                    return new InputStreamReader(pbstream, "UTF-8");
+                }
+
+                charsRead.setLength(0);
+
+                try {
+                    return new InputStreamReader(pbstream, encoding);
+                } catch (UnsupportedEncodingException e) {
+                    return new InputStreamReader(pbstream, "UTF-8");
+                }
+
+            default:
+                charsRead.append((char) b);
+                return new InputStreamReader(pbstream, "UTF-8");
+        }
+    }
+
     /**
      * Throws an XMLParseException to indicate that an expected string is not
      * encountered.
@@ -0,0 +1,123 @@
+/* @(#)BufferedXMLReaderTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package net.n3.nanoxml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link BufferedXMLReader} behaves like {@link StdXMLReader}.
+ */
+public class BufferedXMLReaderTest {
+
+    /**
+     * Returns random text with all kinds of line terminators, which is
+     * longer than the char array of the reader.
+     */
+    private static String createText(Random r, int length) {
+        String[] parts = {"a", "bc", "\n", "\r", "\r\n", "\n\r", " ", "ä€"};
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < length) {
+            buf.append(parts[r.nextInt(parts.length)]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Performs the same random sequence of operations on the reader, and
+     * returns a log of the results.
+     * <p>
+     * {@code StdXMLReader} counts the line terminator which follows the
+     * last character read, when it checks for the end of a stream. So the
+     * line numbers are only logged if the end of the streams is not checked,
+     * and the reading stops when the reader throws an exception.
+     *
+     * @param isCheckingEOF whether to log {@code atEOFOfCurrentStream}
+     *                      instead of the line number
+     */
+    private static String exercise(IXMLReader reader, long seed, boolean isCheckingEOF) throws IOException {
+        Random r = new Random(seed);
+        StringBuilder log = new StringBuilder();
+        while (!isCheckingEOF || !reader.atEOF()) {
+            int op = r.nextInt(100);
+            if (op < 2) {
+                boolean isInternalEntity = r.nextBoolean();
+                reader.startNewStream(new StringReader(createText(r, r.nextInt(20))), isInternalEntity);
+                log.append("[start ").append(reader.getStreamLevel()).append(']');
+            } else {
+                char ch;
+                try {
+                    ch = reader.read();
+                } catch (IOException e) {
+                    break;
+                }
+                if (op < 30) {
+                    reader.unread(ch);
+                    ch = reader.read();
+                }
+                log.append(ch).append(':')
+                        .append(isCheckingEOF ? reader.atEOFOfCurrentStream() : reader.getLineNr())
+                        .append(' ');
+            }
+        }
+        return log.toString();
+    }
+
+    private static void assertIdentical(String text) throws IOException {
+        for (long seed = 0; seed < 5; seed++) {
+            for (boolean isCheckingEOF : new boolean[]{false, true}) {
+                assertEquals(exercise(new StdXMLReader(new StringReader(text)), seed, isCheckingEOF),
+                        exercise(new BufferedXMLReader(new StringReader(text)), seed, isCheckingEOF));
+            }
+        }
+    }
+
+    @Test
+    public void testReadIsIdenticalToStdXMLReader() throws IOException {
+        assertIdentical(createText(new Random(1), 20000));
+    }
+
+    @Test
+    public void testCarriageReturnLineFeedAcrossBufferBoundary() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 8191; i++) {
+            buf.append('x');
+        }
+        buf.append("\r\ny\rz\n");
+        assertIdentical(buf.toString());
+    }
+
+    @Test
+    public void testParseIsIdenticalToStdXMLReader() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+                + "<!DOCTYPE doc [<!ENTITY e \"entity\r\ntext\">]>\r\n"
+                + "<doc a=\"1\" b='&e;'>\r\n"
+                + "  <child>text &e; &amp; &#x41;</child>\r"
+                + "  <![CDATA[<cdata>\r\n]]>\n"
+                + "  <?pi data?><!-- comment -->\n"
+                + "  <empty/>ä€\n"
+                + "</doc>\n";
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        assertEquals(parse(new StdXMLReader(new ByteArrayInputStream(bytes))),
+                parse(new BufferedXMLReader(new ByteArrayInputStream(bytes))));
+    }
+
+    private static String parse(IXMLReader reader) throws Exception {
+        IXMLParser parser = XMLParserFactory.createDefaultXMLParser();
+        parser.setReader(reader);
+        IXMLElement elem = (IXMLElement) parser.parse();
+        StringWriter out = new StringWriter();
+        new XMLWriter(out).write(elem, true);
+        return out.toString() + "\nline " + elem.getChildAtIndex(0).getLineNr();
+    }
+}
@@ -0,0 +1,128 @@
+/* @(#)CompactXMLBuilderTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package net.n3.nanoxml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link CompactXMLBuilder} builds the same tree as
+ * {@link StdXMLBuilder}.
+ */
+public class CompactXMLBuilderTest {
+
+    private static final String XML = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE doc [<!ENTITY e \"entity\">"
+            + "<!ATTLIST item kind CDATA \"plain\">]>\n"
+            + "<doc xmlns=\"urn:default\" xmlns:x=\"urn:x\" a=\"1\" x:b=\"2\">\n"
+            + "  <item id=\"1\">first &e;</item>\n"
+            + "  <x:item id=\"2\" x:kind=\"special\"><![CDATA[<cdata>]]></x:item>\n"
+            + "  <group>\n"
+            + "    <item id=\"3\" n=\"4.5\"/>\n"
+            + "    <item id=\"4\">text &amp; more</item>\n"
+            + "  </group>\n"
+            + "  <empty></empty>\n"
+            + "</doc>\n";
+
+    private static IXMLElement parse(IXMLBuilder builder) throws Exception {
+        IXMLParser parser = XMLParserFactory.createDefaultXMLParser();
+        parser.setBuilder(builder);
+        parser.setReader(StdXMLReader.stringReader(XML));
+        return (IXMLElement) parser.parse();
+    }
+
+    /**
+     * Returns a description of the element and its descendants which
+     * includes everything that can be read through {@code IXMLElement}.
+     */
+    private static void dump(IXMLElement elem, StringBuilder buf) {
+        buf.append('<').append(elem.getFullName())
+                .append(" name=").append(elem.getName())
+                .append(" ns=").append(elem.getNamespace())
+                .append(" line=").append(elem.getLineNr())
+                .append(" system=").append(elem.getSystemID())
+                .append(" leaf=").append(elem.isLeaf())
+                .append(" children=").append(elem.getChildrenCount());
+        for (String name : elem.iterableAttributeNames()) {
+            buf.append(' ').append(name).append('=').append(elem.getAttribute(name, null))
+                    .append(" type=").append(elem.getAttributeType(name))
+                    .append(" ns=").append(elem.getAttributeNamespace(name));
+        }
+        buf.append(" content=").append(elem.getContent()).append(">\n");
+        for (IXMLElement child : elem.iterableChildren()) {
+            assertSame(elem, child.getParent());
+            dump(child, buf);
+        }
+        buf.append("</").append(elem.getFullName()).append(">\n");
+    }
+
+    private static String dump(IXMLElement elem) {
+        StringBuilder buf = new StringBuilder();
+        dump(elem, buf);
+        return buf.toString();
+    }
+
+    private static String write(IXMLElement elem) throws Exception {
+        StringWriter out = new StringWriter();
+        new XMLWriter(out).write(elem, true);
+        return out.toString();
+    }
+
+    @Test
+    public void testTreeIsIdenticalToStdXMLBuilder() throws Exception {
+        IXMLElement expected = parse(new StdXMLBuilder());
+        IXMLElement actual = parse(new CompactXMLBuilder());
+
+        assertTrue(actual instanceof CompactXMLElement);
+        assertEquals(dump(expected), dump(actual));
+        assertEquals(write(expected), write(actual));
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(expected.getAttributesInNamespace("urn:x"), actual.getAttributesInNamespace("urn:x"));
+    }
+
+    @Test
+    public void testQueriesAreIdenticalToStdXMLBuilder() throws Exception {
+        IXMLElement expected = parse(new StdXMLBuilder());
+        IXMLElement actual = parse(new CompactXMLBuilder());
+
+        assertEquals(names(expected.getChildrenNamed("item")), names(actual.getChildrenNamed("item")));
+        assertEquals(names(expected.getChildrenNamed("item", "urn:x")), names(actual.getChildrenNamed("item", "urn:x")));
+        assertEquals(expected.getFirstChildNamed("group").getChildrenCount(),
+                actual.getFirstChildNamed("group").getChildrenCount());
+
+        IXMLElement expectedItem = expected.getFirstChildNamed("group").getChildAtIndex(0);
+        IXMLElement actualItem = actual.getFirstChildNamed("group").getChildAtIndex(0);
+        assertEquals(expectedItem.getAttribute("id", 0), actualItem.getAttribute("id", 0));
+        assertEquals(expectedItem.getDoubleAttribute("n", null, 0), actualItem.getDoubleAttribute("n", null, 0));
+        assertEquals(expectedItem.getAttribute("kind", "none"), actualItem.getAttribute("kind", "none"));
+        assertEquals(expectedItem.hasAttribute("missing"), actualItem.hasAttribute("missing"));
+
+        // The same element instance is returned each time
+        assertSame(actual.getChildAtIndex(0), actual.getChildAtIndex(0));
+    }
+
+    @Test
+    public void testElementsAreImmutable() throws Exception {
+        final IXMLElement actual = parse(new CompactXMLBuilder());
+        assertThrows(UnsupportedOperationException.class, () -> actual.setAttribute("a", "2"));
+        assertThrows(UnsupportedOperationException.class, () -> actual.removeChildAtIndex(0));
+        assertThrows(UnsupportedOperationException.class, () -> actual.addChild(actual.createElement("new")));
+    }
+
+    private static ArrayList<String> names(ArrayList<IXMLElement> elements) {
+        ArrayList<String> names = new ArrayList<String>();
+        for (IXMLElement e : elements) {
+            names.add(e.getFullName() + "#" + e.getAttribute("id"));
+        }
+        return names;
+    }
+}
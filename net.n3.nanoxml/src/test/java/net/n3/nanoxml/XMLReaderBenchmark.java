@@ -0,0 +1,189 @@
+/* @(#)XMLReaderBenchmark.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package net.n3.nanoxml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing with {@link BufferedXMLReader} and with
+ * {@link StdXMLReader}.
+ * <p>
+ * The documents are generated in the style of the files written by the
+ * SVG, ODG and DOMStorable output formats of JHotDraw, with {@code figures}
+ * figures each.
+ * <p>
+ * The setup checks that both readers produce the same tree.
+ * Run the benchmark from the IDE through {@link #main}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XMLReaderBenchmark {
+
+    @Param({"svg", "odg", "jhotdraw"})
+    public String format;
+    @Param({"1000", "100000"})
+    public int figures;
+
+    private byte[] document;
+
+    @Setup
+    public void setup() throws Exception {
+        Random r = new Random(figures);
+        StringBuilder buf = new StringBuilder();
+        switch (format) {
+            case "svg":
+                createSVG(buf, r);
+                break;
+            case "odg":
+                createODG(buf, r);
+                break;
+            case "jhotdraw":
+                createJHotDraw(buf, r);
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal format: " + format);
+        }
+        document = buf.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (!toString(stdXMLReader()).equals(toString(bufferedXMLReader()))) {
+            throw new IOException("BufferedXMLReader and StdXMLReader disagree on " + format);
+        }
+    }
+
+    private static String number(Random r) {
+        return String.format(Locale.ENGLISH, "%.2f", r.nextDouble() * 1000);
+    }
+
+    private void createSVG(StringBuilder buf, Random r) {
+        buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+                + " version=\"1.2\" baseProfile=\"tiny\" width=\"1000\" height=\"1000\">\n"
+                + "<defs>\n<linearGradient id=\"g1\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"1\">"
+                + "<stop offset=\"0\" stop-color=\"#ff0000\"/><stop offset=\"1\" stop-color=\"#0000ff\"/>"
+                + "</linearGradient>\n</defs>\n");
+        for (int i = 0; i < figures; i++) {
+            buf.append("<g transform=\"translate(").append(number(r)).append(',').append(number(r)).append(")\">\n");
+            switch (i % 3) {
+                case 0:
+                    buf.append("  <rect x=\"").append(number(r)).append("\" y=\"").append(number(r))
+                            .append("\" width=\"").append(number(r)).append("\" height=\"").append(number(r))
+                            .append("\" fill=\"url(#g1)\" stroke=\"#000000\" stroke-width=\"1\"/>\n");
+                    break;
+                case 1:
+                    buf.append("  <path d=\"M ").append(number(r)).append(' ').append(number(r))
+                            .append(" C ").append(number(r)).append(' ').append(number(r))
+                            .append(' ').append(number(r)).append(' ').append(number(r))
+                            .append(' ').append(number(r)).append(' ').append(number(r))
+                            .append(" Z\" style=\"fill:none;stroke:#336699;stroke-width:2\"/>\n");
+                    break;
+                default:
+                    buf.append("  <text x=\"").append(number(r)).append("\" y=\"").append(number(r))
+                            .append("\" font-family=\"Dialog\" font-size=\"12\">Label &amp; &#x20AC; ")
+                            .append(i).append("</text>\n");
+                    break;
+            }
+            buf.append("</g>\n");
+        }
+        buf.append("</svg>\n");
+    }
+
+    private void createODG(StringBuilder buf, Random r) {
+        buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<office:document-content"
+                + " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+                + " xmlns:draw=\"urn:oasis:names:tc:opendocument:xmlns:drawing:1.0\""
+                + " xmlns:svg=\"urn:oasis:names:tc:opendocument:xmlns:svg-compatible:1.0\""
+                + " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\""
+                + " office:version=\"1.0\">\n"
+                + "<office:body><office:drawing><draw:page draw:name=\"page1\">\n");
+        for (int i = 0; i < figures; i++) {
+            if (i % 2 == 0) {
+                buf.append("<draw:rect draw:style-name=\"gr1\" svg:x=\"").append(number(r))
+                        .append("cm\" svg:y=\"").append(number(r)).append("cm\" svg:width=\"").append(number(r))
+                        .append("cm\" svg:height=\"").append(number(r)).append("cm\">")
+                        .append("<text:p>Shape ").append(i).append("</text:p></draw:rect>\n");
+            } else {
+                buf.append("<draw:custom-shape draw:style-name=\"gr2\" svg:x=\"").append(number(r))
+                        .append("cm\" svg:y=\"").append(number(r)).append("cm\" svg:width=\"").append(number(r))
+                        .append("cm\" svg:height=\"").append(number(r)).append("cm\">\n")
+                        .append("  <draw:enhanced-geometry svg:viewBox=\"0 0 21600 21600\""
+                                + " draw:type=\"ellipse\" draw:enhanced-path=\"U 10800 10800 10800 10800 0 360 Z N\"/>\n")
+                        .append("</draw:custom-shape>\n");
+            }
+        }
+        buf.append("</draw:page></office:drawing></office:body>\n</office:document-content>\n");
+    }
+
+    private void createJHotDraw(StringBuilder buf, Random r) {
+        buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<QuadTreeDrawing>\n<figures>\n");
+        for (int i = 0; i < figures; i++) {
+            buf.append("<Rectangle x=\"").append(number(r)).append("\" y=\"").append(number(r))
+                    .append("\" w=\"").append(number(r)).append("\" h=\"").append(number(r)).append("\">")
+                    .append("<a><strokeColor><color rgba=\"#ff000000\"/></strokeColor>")
+                    .append("<strokeWidth>1.0</strokeWidth>")
+                    .append("<fillColor><color rgba=\"#ffffffff\"/></fillColor></a>")
+                    .append("</Rectangle>\n");
+        }
+        buf.append("</figures>\n</QuadTreeDrawing>\n");
+    }
+
+    private static IXMLElement parse(IXMLReader reader) throws XMLException {
+        IXMLParser parser;
+        try {
+            parser = XMLParserFactory.createDefaultXMLParser();
+        } catch (ReflectiveOperationException e) {
+            throw new XMLException(e);
+        }
+        parser.setReader(reader);
+        return (IXMLElement) parser.parse();
+    }
+
+    private static String toString(IXMLElement elem) throws IOException {
+        StringWriter w = new StringWriter();
+        new XMLWriter(w).write(elem);
+        return w.toString();
+    }
+
+    @Benchmark
+    public IXMLElement stdXMLReader() throws IOException, XMLException {
+        return parse(new StdXMLReader(new ByteArrayInputStream(document)));
+    }
+
+    @Benchmark
+    public IXMLElement bufferedXMLReader() throws IOException, XMLException {
+        return parse(new BufferedXMLReader(new ByteArrayInputStream(document)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(XMLReaderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
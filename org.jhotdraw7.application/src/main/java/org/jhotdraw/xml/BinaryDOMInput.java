@@ -0,0 +1,690 @@
+/* @(#)BinaryDOMInput.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.xml;
+
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * DOMInput which reads the binary representation of a DOM written by
+ * {@link BinaryDOMOutput}.
+ * <p>
+ * The document is read into flat arrays. Numbers and booleans keep the
+ * type with which they were written, and are only converted to strings if
+ * they are read with a different type. The conversion yields the values
+ * that a {@code DOMInput} reading the XML form would return.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class BinaryDOMInput implements DOMInput {
+
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+    /**
+     * The doctype of the document, or null.
+     */
+    @Nullable
+    private String doctype;
+
+    // The dictionary
+    private String[] names = new String[64];
+    private int nameCount;
+    private HashMap<String, Integer> nameIndex = new HashMap<String, Integer>();
+
+    // The node arrays. Node 0 is the document.
+    private int nodeCount;
+    private int[] nodeName = new int[256];
+    private int[] nodeParent = new int[256];
+    private int[] firstAttribute = new int[256];
+    private int[] lastAttribute = new int[256];
+    private String[] nodeText = new String[256];
+    private int[] childStart;
+    private int[] childCount;
+    private int[] childList;
+
+    // The attribute arrays. The attributes of a node are linked by
+    // nextAttribute.
+    private int attributeCount;
+    private int[] attributeName = new int[256];
+    private int[] nextAttribute = new int[256];
+    private byte[] attributeType = new byte[256];
+    private long[] attributeValue = new long[256];
+    private String[] attributeString = new String[256];
+
+    /**
+     * The stack of open nodes.
+     */
+    private int[] stack = new int[16];
+    private int depth;
+    private int current;
+    /**
+     * The objects read by readObject, indexed by their id.
+     */
+    private Object[] idobjects = new Object[64];
+
+    // The input buffer
+    private InputStream in;
+    private byte[] buf = new byte[8192];
+    private int pos;
+    private int end;
+
+    public BinaryDOMInput(DOMFactory factory, InputStream in) throws IOException {
+        this.factory = factory;
+        this.in = in;
+        read();
+        this.in = null;
+        buf = null;
+    }
+
+    /**
+     * Returns the doctype of the document, or null if the document has no
+     * doctype.
+     */
+    @Nullable
+    public String getDoctype() {
+        return doctype;
+    }
+
+    /**
+     * Returns the tag name of the current element.
+     */
+    @Override
+    public String getTagName() {
+        return getName(nodeName[current]);
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        int a = findAttribute(current, name);
+        return (a == -1) ? defaultValue : toString(a);
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document and of
+     * all parent DOM elements.
+     */
+    @Override
+    public java.util.List<String> getInheritedAttribute(String name) {
+        LinkedList<String> values = new LinkedList<String>();
+        for (int i = 0; i < depth; i++) {
+            int a = findAttribute(stack[i], name);
+            values.add((a == -1) ? null : toString(a));
+        }
+        int a = findAttribute(current, name);
+        values.add((a == -1) ? null : toString(a));
+        return values;
+    }
+
+    /**
+     * Gets the text of the current element of the DOM Document.
+     */
+    @Override
+    public String getText() {
+        return getText(null);
+    }
+
+    /**
+     * Gets the text of the current element of the DOM Document.
+     */
+    @Override
+    public String getText(String defaultValue) {
+        String value = nodeText[current];
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public int getAttribute(String name, int defaultValue) {
+        int a = findAttribute(current, name);
+        if (a == -1) {
+            return defaultValue;
+        }
+        if (attributeType[a] == BinaryDOMOutput.INT) {
+            return (int) attributeValue[a];
+        }
+        String value = toString(a);
+        return (value.length() == 0) ? defaultValue : Long.decode(value).intValue();
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public double getAttribute(String name, double defaultValue) {
+        int a = findAttribute(current, name);
+        if (a == -1) {
+            return defaultValue;
+        }
+        switch (attributeType[a]) {
+            case BinaryDOMOutput.DOUBLE:
+                return Double.longBitsToDouble(attributeValue[a]);
+            case BinaryDOMOutput.INT:
+                return (int) attributeValue[a];
+            default:
+                String value = toString(a);
+                return (value.length() == 0) ? defaultValue : Double.parseDouble(value);
+        }
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public boolean getAttribute(String name, boolean defaultValue) {
+        int a = findAttribute(current, name);
+        if (a == -1) {
+            return defaultValue;
+        }
+        switch (attributeType[a]) {
+            case BinaryDOMOutput.TRUE:
+                return true;
+            case BinaryDOMOutput.FALSE:
+                return false;
+            default:
+                String value = toString(a);
+                return (value.length() == 0) ? defaultValue : Boolean.valueOf(value).booleanValue();
+        }
+    }
+
+    /**
+     * Returns the number of child elements of the current element.
+     */
+    @Override
+    public int getElementCount() {
+        return childCount[current];
+    }
+
+    /**
+     * Returns the number of child elements with the specified tag name
+     * of the current element.
+     */
+    @Override
+    public int getElementCount(String tagName) {
+        Integer name = nameIndex.get(tagName);
+        if (name == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = childStart[current], n = i + childCount[current]; i < n; i++) {
+            if (nodeName[childList[i]] == name) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens the element with the specified index and makes it the current node.
+     */
+    @Override
+    public void openElement(int index) {
+        if (index < 0 || index >= childCount[current]) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + childCount[current]);
+        }
+        push(childList[childStart[current] + index]);
+    }
+
+    /**
+     * Opens the first element with the specified name and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName) throws IOException {
+        Integer name = nameIndex.get(tagName);
+        if (name != null) {
+            for (int i = childStart[current], n = i + childCount[current]; i < n; i++) {
+                if (nodeName[childList[i]] == name) {
+                    push(childList[i]);
+                    return;
+                }
+            }
+        }
+        throw new IOException("no such element:" + tagName);
+    }
+
+    /**
+     * Opens the element with the specified name and index and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName, int index) throws IOException {
+        Integer name = nameIndex.get(tagName);
+        if (name != null) {
+            int count = 0;
+            for (int i = childStart[current], n = i + childCount[current]; i < n; i++) {
+                if (nodeName[childList[i]] == name) {
+                    if (count++ == index) {
+                        push(childList[i]);
+                        return;
+                    }
+                }
+            }
+        }
+        throw new IOException("no such element:" + tagName + " at index:" + index);
+    }
+
+    /**
+     * Closes the current element of the DOM Document.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        pop();
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject() throws IOException {
+        return readObject(0);
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject(int index) throws IOException {
+        openElement(index);
+        Object o;
+
+        int ref = getObjectId("ref");
+        int id = getObjectId("id");
+
+        if (ref != -1 && id != -1) {
+            throw new IOException("Element has both an id and a ref attribute: <" + getTagName() + " id=\"" + Integer.toString(id, 16) + "\" ref=\"" + Integer.toString(ref, 16) + "\">");
+        }
+        if (id != -1 && id < idobjects.length && idobjects[id] != null) {
+            throw new IOException("Duplicate id attribute: <" + getTagName() + " id=\"" + Integer.toString(id, 16) + "\">");
+        }
+        if (ref != -1 && (ref >= idobjects.length || idobjects[ref] == null)) {
+            throw new IOException("Referenced element not found: <" + getTagName() + " ref=\"" + Integer.toString(ref, 16) + "\">");
+        }
+
+        // Keep track of objects which have an ID
+        if (ref != -1) {
+            o = idobjects[ref];
+        } else {
+            o = factory.read(this);
+            if (id != -1) {
+                if (id >= idobjects.length) {
+                    idobjects = Arrays.copyOf(idobjects, Math.max(id + 1, idobjects.length * 2));
+                }
+                idobjects[id] = o;
+            }
+            if (o instanceof DOMStorable) {
+                ((DOMStorable) o).read(this);
+            }
+        }
+
+        closeElement();
+        return o;
+    }
+
+    /**
+     * Returns the object id stored in the specified attribute of the current
+     * element, or -1 if the element does not have the attribute.
+     */
+    private int getObjectId(String name) throws IOException {
+        int a = findAttribute(current, name);
+        if (a == -1) {
+            return -1;
+        }
+        switch (attributeType[a]) {
+            case BinaryDOMOutput.ID:
+            case BinaryDOMOutput.REF:
+                return (int) attributeValue[a];
+            default:
+                try {
+                    int id = Integer.parseInt(toString(a), 16);
+                    if (id >= 0) {
+                        return id;
+                    }
+                } catch (NumberFormatException e) {
+                    // fall through
+                }
+                throw new IOException("Illegal " + name + " attribute: <" + getTagName() + " " + name + "=\"" + toString(a) + "\">");
+        }
+    }
+
+    private void push(int node) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = current;
+        current = node;
+    }
+
+    private void pop() {
+        current = stack[--depth];
+    }
+
+    @Nullable
+    private String getName(int name) {
+        return (name == -1) ? null : names[name];
+    }
+
+    /**
+     * Searches an attribute of a node.
+     *
+     * @return the index of the attribute, or -1 if the node does not have the
+     * attribute.
+     */
+    private int findAttribute(int node, String name) {
+        for (int a = firstAttribute[node]; a != -1; a = nextAttribute[a]) {
+            String s = names[attributeName[a]];
+            if (s == name || s.equals(name)) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of an attribute in the form in which it is written
+     * to XML.
+     */
+    private String toString(int a) {
+        long value = attributeValue[a];
+        String str;
+        switch (attributeType[a]) {
+            case BinaryDOMOutput.STRING:
+                return attributeString[a];
+            case BinaryDOMOutput.INT:
+                return Integer.toString((int) value);
+            case BinaryDOMOutput.TRUE:
+                return "true";
+            case BinaryDOMOutput.FALSE:
+                return "false";
+            case BinaryDOMOutput.ID:
+            case BinaryDOMOutput.REF:
+                return Integer.toString((int) value, 16);
+            case BinaryDOMOutput.FLOAT:
+                str = Float.toString(Float.intBitsToFloat((int) value));
+                break;
+            default:
+                str = Double.toString(Double.longBitsToDouble(value));
+                break;
+        }
+        // Remove the awkard .0 at the end of each number
+        if (str.endsWith(".0")) str = str.substring(0, str.length() - 2);
+        return str;
+    }
+
+    /**
+     * Reads the document.
+     */
+    private void read() throws IOException {
+        for (byte b : BinaryDOMOutput.MAGIC) {
+            if (readByte() != b) {
+                throw new IOException("Not a binary DOM document.");
+            }
+        }
+        int version = readByte();
+        if (version != BinaryDOMOutput.VERSION) {
+            throw new IOException("Unsupported binary DOM version: " + version);
+        }
+        doctype = readString();
+        if (doctype.length() == 0) {
+            doctype = null;
+        }
+
+        int idName = addName("id");
+        int refName = addName("ref");
+        int top = addNode(-1, -1);
+        depth = 0;
+        for (int tag; (tag = read1()) != -1; ) {
+            switch (tag) {
+                case BinaryDOMOutput.ELEMENT: {
+                    int node = addNode(top, readName());
+                    push(node);
+                    top = node;
+                    break;
+                }
+                case BinaryDOMOutput.END:
+                    if (depth == 0) {
+                        throw new IOException("Unexpected end of element.");
+                    }
+                    pop();
+                    top = current;
+                    break;
+                case BinaryDOMOutput.STRING:
+                    setAttribute(top, readName(), tag, 0, readString());
+                    break;
+                case BinaryDOMOutput.INT: {
+                    int name = readName();
+                    int value = readVarint();
+                    setAttribute(top, name, tag, (value >>> 1) ^ -(value & 1), null);
+                    break;
+                }
+                case BinaryDOMOutput.DOUBLE: {
+                    int name = readName();
+                    long high = readInt();
+                    setAttribute(top, name, tag, (high << 32) | (readInt() & 0xffffffffL), null);
+                    break;
+                }
+                case BinaryDOMOutput.FLOAT:
+                    setAttribute(top, readName(), tag, readInt(), null);
+                    break;
+                case BinaryDOMOutput.TRUE:
+                case BinaryDOMOutput.FALSE:
+                    setAttribute(top, readName(), tag, 0, null);
+                    break;
+                case BinaryDOMOutput.ID:
+                    setAttribute(top, idName, tag, readVarint(), null);
+                    break;
+                case BinaryDOMOutput.REF:
+                    setAttribute(top, refName, tag, readVarint(), null);
+                    break;
+                case BinaryDOMOutput.TEXT: {
+                    String text = readString();
+                    String old = nodeText[top];
+                    nodeText[top] = (old == null) ? text : old + text;
+                    break;
+                }
+                default:
+                    throw new IOException("Illegal record: " + tag);
+            }
+        }
+        if (depth != 0) {
+            throw new EOFException("Unexpected end of document.");
+        }
+        current = 0;
+        buildChildList();
+    }
+
+    /**
+     * Builds the child lists of the nodes. Like in XML, an element which has
+     * a text does not have children.
+     */
+    private void buildChildList() {
+        int n = nodeCount;
+        childCount = new int[n];
+        for (int node = 1; node < n; node++) {
+            int p = nodeParent[node];
+            if (nodeText[p] == null) {
+                childCount[p]++;
+            }
+        }
+        childStart = new int[n];
+        int total = 0;
+        for (int node = 0; node < n; node++) {
+            childStart[node] = total;
+            total += childCount[node];
+        }
+        childList = new int[total];
+        int[] filled = new int[n];
+        for (int node = 1; node < n; node++) {
+            int p = nodeParent[node];
+            if (nodeText[p] == null) {
+                childList[childStart[p] + filled[p]++] = node;
+            }
+        }
+        nodeParent = null;
+        lastAttribute = null;
+        nodeName = Arrays.copyOf(nodeName, n);
+        firstAttribute = Arrays.copyOf(firstAttribute, n);
+        nodeText = Arrays.copyOf(nodeText, n);
+    }
+
+    private int addNode(int parent, int name) {
+        if (nodeCount == nodeName.length) {
+            int n = nodeCount * 2;
+            nodeName = Arrays.copyOf(nodeName, n);
+            nodeParent = Arrays.copyOf(nodeParent, n);
+            firstAttribute = Arrays.copyOf(firstAttribute, n);
+            lastAttribute = Arrays.copyOf(lastAttribute, n);
+            nodeText = Arrays.copyOf(nodeText, n);
+        }
+        int node = nodeCount++;
+        nodeName[node] = name;
+        nodeParent[node] = parent;
+        firstAttribute[node] = -1;
+        lastAttribute[node] = -1;
+        return node;
+    }
+
+    /**
+     * Sets an attribute of a node. Like in XML, a value replaces an earlier
+     * value of an attribute with the same name.
+     */
+    private void setAttribute(int node, int name, int type, long value, @Nullable String str) {
+        int a = firstAttribute[node];
+        while (a != -1 && attributeName[a] != name) {
+            a = nextAttribute[a];
+        }
+        if (a == -1) {
+            if (attributeCount == attributeName.length) {
+                int n = attributeCount * 2;
+                attributeName = Arrays.copyOf(attributeName, n);
+                nextAttribute = Arrays.copyOf(nextAttribute, n);
+                attributeType = Arrays.copyOf(attributeType, n);
+                attributeValue = Arrays.copyOf(attributeValue, n);
+                attributeString = Arrays.copyOf(attributeString, n);
+            }
+            a = attributeCount++;
+            attributeName[a] = name;
+            nextAttribute[a] = -1;
+            if (lastAttribute[node] == -1) {
+                firstAttribute[node] = a;
+            } else {
+                nextAttribute[lastAttribute[node]] = a;
+            }
+            lastAttribute[node] = a;
+        }
+        attributeType[a] = (byte) type;
+        attributeValue[a] = value;
+        attributeString[a] = str;
+    }
+
+    /**
+     * Adds a name to the dictionary, or returns its index if the dictionary
+     * already contains the name.
+     */
+    private int addName(String name) {
+        Integer index = nameIndex.get(name);
+        if (index != null) {
+            return index;
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        names[nameCount] = name.intern();
+        nameIndex.put(name, nameCount);
+        return nameCount++;
+    }
+
+    private int readName() throws IOException {
+        int value = readVarint();
+        if (value == 0) {
+            return addName(readString());
+        }
+        if (value > nameCount) {
+            throw new IOException("Illegal name: " + value);
+        }
+        return value - 1;
+    }
+
+    private String readString() throws IOException {
+        int n = readVarint();
+        if (n < 0) {
+            throw new IOException("Illegal string length: " + n);
+        }
+        if (end - pos >= n) {
+            String str = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return str;
+        }
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; ) {
+            if (pos == end && !fill()) {
+                throw new EOFException();
+            }
+            int count = Math.min(n - i, end - pos);
+            System.arraycopy(buf, pos, bytes, i, count);
+            pos += count;
+            i += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Illegal varint.");
+    }
+
+    private int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private int readByte() throws IOException {
+        int b = read1();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    /**
+     * Reads a byte, returns -1 at the end of the stream.
+     */
+    private int read1() throws IOException {
+        if (pos == end && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        end = n;
+        return true;
+    }
+}
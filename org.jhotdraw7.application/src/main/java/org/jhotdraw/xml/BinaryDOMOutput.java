@@ -0,0 +1,405 @@
+/* @(#)BinaryDOMOutput.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.xml;
+
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * DOMOutput which writes a compact binary representation of the DOM to an
+ * output stream. The document can be read with {@link BinaryDOMInput}.
+ * <p>
+ * The binary format stores the same information as the XML form written by
+ * the NanoXML DOMOutput, but avoids formatting and parsing numbers, and
+ * writes each tag and attribute name only once. A {@code DOMInput} reading
+ * the binary form returns the same values as a {@code DOMInput} reading the
+ * XML form.
+ * <p>
+ * The document is written as a stream of records. Each record starts with
+ * a tag byte:
+ * <pre>
+ * document  = MAGIC VERSION string { element }
+ * element   = ELEMENT name { attribute | element | TEXT string } END
+ * attribute = STRING name string | INT name varint | DOUBLE name int64
+ *           | FLOAT name int32 | TRUE name | FALSE name
+ *           | ID varint | REF varint
+ * name      = varint
+ * string    = varint bytes
+ * </pre>
+ * A name is the index of the name in the dictionary plus one. A name value
+ * of 0 is followed by a string, which is appended to the dictionary. The
+ * dictionary initially holds the names "id" and "ref", which are the names
+ * of the ID and REF records.
+ * Strings are written as their length in bytes followed by their UTF-8
+ * encoding. Varints are unsigned LEB128, ints are zig-zag encoded, int64 and
+ * int32 are the big-endian bits of a double and of a float. The ID and REF
+ * records hold the object identifiers written by {@link #writeObject}.
+ * The string after the version holds the doctype, it is empty if no doctype
+ * is set.
+ * <p>
+ * Call {@link #finish} after the last element has been closed.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class BinaryDOMOutput implements DOMOutput {
+
+    /**
+     * The magic number at the start of a binary DOM document.
+     */
+    static final byte[] MAGIC = {'J', 'H', 'D', 'B'};
+    static final int VERSION = 1;
+
+    // Record tags
+    static final int END = 0;
+    static final int ELEMENT = 1;
+    static final int STRING = 2;
+    static final int INT = 3;
+    static final int DOUBLE = 4;
+    static final int FLOAT = 5;
+    static final int TRUE = 6;
+    static final int FALSE = 7;
+    static final int ID = 8;
+    static final int REF = 9;
+    static final int TEXT = 10;
+
+    /**
+     * The doctype of the document.
+     */
+    @Nullable
+    private String doctype;
+    /**
+     * This map is used to marshall references to objects.
+     * A key in this map is a Java Object, a value in this map
+     * is the identifier of that object.
+     */
+    private IdentityHashMap<Object, Integer> objectids;
+    /**
+     * This map is used to cache prototype objects.
+     */
+    @Nullable
+    private HashMap<String, Object> prototypes;
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+    /**
+     * Maps names to their index in the dictionary.
+     */
+    private HashMap<String, Integer> names = new HashMap<String, Integer>();
+    /**
+     * The tag names of the open elements.
+     */
+    private ArrayList<String> tagNames = new ArrayList<String>();
+    private boolean isDocumentStarted;
+    private OutputStream out;
+    /**
+     * Buffer for bytes which have not been written to the output stream yet.
+     */
+    private byte[] buf = new byte[8192];
+    private int len;
+    /**
+     * The exception which occurred while writing, or null.
+     */
+    @Nullable
+    private IOException exception;
+
+    public BinaryDOMOutput(DOMFactory factory, OutputStream out) {
+        this.factory = factory;
+        this.out = out;
+        objectids = new IdentityHashMap<Object, Integer>();
+        names.put("id", 0);
+        names.put("ref", 1);
+    }
+
+    /**
+     * Writes all buffered data to the output stream. The output stream is not
+     * closed.
+     *
+     * @throws IOException           if an I/O error occurred while writing
+     *                               the document.
+     * @throws IllegalStateException if not all elements have been closed.
+     */
+    public void finish() throws IOException {
+        if (!tagNames.isEmpty()) {
+            throw new IllegalStateException("element not closed: " + tagNames.get(tagNames.size() - 1));
+        }
+        startDocument();
+        flushBuffer();
+        if (exception != null) {
+            throw exception;
+        }
+        out.flush();
+    }
+
+    /**
+     * Puts a new element into the DOM Document.
+     * The new element is added as a child to the current element in the DOM
+     * document. Then it becomes the current element.
+     * The element must be closed using closeElement.
+     */
+    @Override
+    public void openElement(String tagName) {
+        startDocument();
+        writeByte(ELEMENT);
+        writeName(tagName);
+        tagNames.add(tagName);
+    }
+
+    /**
+     * Closes the current element of the DOM Document.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        tagNames.remove(tagNames.size() - 1);
+        writeByte(END);
+    }
+
+    /**
+     * Adds a comment to the current element of the DOM Document.
+     */
+    @Override
+    public void addComment(String comment) {
+        // comments are not stored
+    }
+
+    /**
+     * Adds a text to current element of the DOM Document.
+     * Note: Multiple consecutives texts will be merged.
+     */
+    @Override
+    public void addText(String text) {
+        if (text.length() > 0) {
+            writeByte(TEXT);
+            writeString(text);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, String value) {
+        if (value != null) {
+            writeByte(STRING);
+            writeName(name);
+            writeString(value);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, int value) {
+        writeByte(INT);
+        writeName(name);
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, boolean value) {
+        writeByte(value ? TRUE : FALSE);
+        writeName(name);
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, float value) {
+        writeByte(FLOAT);
+        writeName(name);
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, double value) {
+        writeByte(DOUBLE);
+        writeName(name);
+        long bits = Double.doubleToLongBits(value);
+        writeInt((int) (bits >>> 32));
+        writeInt((int) bits);
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        String tagName = factory.getName(o);
+        if (tagName == null) throw new IllegalArgumentException("no tag name for:" + o);
+        openElement(tagName);
+        Integer ref = objectids.get(o);
+        if (ref != null) {
+            writeByte(REF);
+            writeVarint(ref);
+        } else {
+            int id = objectids.size();
+            objectids.put(o, id);
+            writeByte(ID);
+            writeVarint(id);
+            factory.write(this, o);
+        }
+        closeElement();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, float value, float defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, int value, int defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, double value, double defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, boolean value, boolean defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String value, String defaultValue) {
+        if (value != null && !value.equals(defaultValue)) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public Object getPrototype() {
+        if (prototypes == null) {
+            prototypes = new HashMap<String, Object>();
+        }
+        String tagName = tagNames.get(tagNames.size() - 1);
+        if (!prototypes.containsKey(tagName)) {
+            prototypes.put(tagName, factory.create(tagName));
+        }
+        return prototypes.get(tagName);
+    }
+
+    /**
+     * Sets the doctype. This method must be called before the first element
+     * is opened.
+     */
+    @Override
+    public void setDoctype(String doctype) {
+        this.doctype = doctype;
+    }
+
+    /**
+     * Writes the header of the document, if it has not been written yet.
+     */
+    private void startDocument() {
+        if (!isDocumentStarted) {
+            isDocumentStarted = true;
+            for (byte b : MAGIC) {
+                writeByte(b);
+            }
+            writeByte(VERSION);
+            writeString(doctype == null ? "" : doctype);
+        }
+    }
+
+    /**
+     * Writes a name. The name is added to the dictionary when it is written
+     * for the first time.
+     */
+    private void writeName(String name) {
+        Integer index = names.get(name);
+        if (index == null) {
+            names.put(name, names.size());
+            writeVarint(0);
+            writeString(name);
+        } else {
+            writeVarint(index + 1);
+        }
+    }
+
+    private void writeString(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        if (len + bytes.length > buf.length) {
+            flushBuffer();
+            if (bytes.length > buf.length) {
+                if (exception == null) {
+                    try {
+                        out.write(bytes);
+                    } catch (IOException e) {
+                        exception = e;
+                    }
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeByte(int b) {
+        if (len == buf.length) {
+            flushBuffer();
+        }
+        buf[len++] = (byte) b;
+    }
+
+    /**
+     * Writes the buffered bytes to the output stream. Since the methods of
+     * DOMOutput can not throw IOExceptions, an exception is kept until
+     * writeObject or finish is called.
+     */
+    private void flushBuffer() {
+        if (len > 0) {
+            if (exception == null) {
+                try {
+                    out.write(buf, 0, len);
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+            len = 0;
+        }
+    }
+}
@@ -3,6 +3,7 @@
  */
 package org.jhotdraw.xml;
 
+import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -35,7 +36,14 @@ public class DefaultDOMFactory extends JavaPrimitivesDOMFactory {
      * Adds a DOMStorable class to the DOMFactory.
      */
     public void addStorableClass(String name, Class<?> c) {
-        nameToPrototypeMap.put(name, c);
+        // Look up the constructor only once, instead of on each create
+        Object prototype = c;
+        try {
+            prototype = c.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            // create will report that the class is not instantiable
+        }
+        nameToPrototypeMap.put(name, prototype);
         classToNameMap.put(c, name);
     }
 
@@ -80,7 +88,13 @@ public class DefaultDOMFactory extends JavaPrimitivesDOMFactory {
         if (o == null) {
             throw new IllegalArgumentException("Storable name not known to factory: " + name);
         }
-        if (o instanceof Class<?>) {
+        if (o instanceof Constructor<?>) {
+            try {
+                return ((Constructor<?>) o).newInstance();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Storable class not instantiable by factory: " + name, e);
+            }
+        } else if (o instanceof Class<?>) {
             try {
                 return ((Class<?>) o).getDeclaredConstructor().newInstance();
             } catch (Exception e) {
@@ -13,8 +13,7 @@ import java.awt.Graphics2D;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
@@ -38,12 +37,12 @@ import static org.jhotdraw.draw.AttributeKeys.TEXT_SHADOW_OFFSET;
 public abstract class AbstractAttributedCompositeFigure extends AbstractCompositeFigure {
     private static final long serialVersionUID = 1L;
 
-    private HashMap<AttributeKey<?>, Object> attributes = new HashMap<AttributeKey<?>, Object>();
+    private AttributeSlots attributes = new AttributeSlots();
     /**
      * Forbidden attributes can't be put by the put() operation.
      * They can only be changed by put().
      */
-    private HashSet<AttributeKey<?>> forbiddenAttributes;
+    private BitSet forbiddenAttributes;
 
     /**
      * Creates a new instance.
@@ -53,17 +52,13 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
 
     public void setAttributeEnabled(AttributeKey<?> key, boolean b) {
         if (forbiddenAttributes == null) {
-            forbiddenAttributes = new HashSet<AttributeKey<?>>();
-        }
-        if (b) {
-            forbiddenAttributes.remove(key);
-        } else {
-            forbiddenAttributes.add(key);
+            forbiddenAttributes = new BitSet();
         }
+        forbiddenAttributes.set(key.getIndex(), !b);
     }
 
     public <T> boolean isAttributeEnabled(AttributeKey<?> key) {
-        return forbiddenAttributes == null || !forbiddenAttributes.contains(key);
+        return forbiddenAttributes == null || !forbiddenAttributes.get(key.getIndex());
     }
 
     @SuppressWarnings("unchecked")
@@ -75,7 +70,7 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
 
     @Override
     public Map<AttributeKey<?>, Object> getAttributes() {
-        return (Map<AttributeKey<?>, Object>) new HashMap<AttributeKey<?>, Object>(attributes);
+        return attributes.toMap();
     }
 
     /**
@@ -85,9 +80,8 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
      */
     @Override
     public <T> void set(AttributeKey<T> key, T newValue) {
-        if (forbiddenAttributes == null || !forbiddenAttributes.contains(key)) {
-            @SuppressWarnings("unchecked")
-            T oldValue = (T) attributes.put(key, newValue);
+        if (forbiddenAttributes == null || !forbiddenAttributes.get(key.getIndex())) {
+            T oldValue = attributes.put(key, newValue);
             setAttributeOnChildren(key, newValue);
             fireAttributeChanged(key, oldValue, newValue);
         }
@@ -104,13 +98,13 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
      */
     @Override
     public <T> T get(AttributeKey<T> key) {
-        return key.get(attributes);
+        return attributes.get(key);
     }
 
     @Override
     public Object getAttributesRestoreData() {
         LinkedList<Object> list = new LinkedList<Object>();
-        list.add(new HashMap<AttributeKey<?>, Object>(getAttributes()));
+        list.add(attributes.clone());
         for (Figure child : getChildren()) {
             list.add(child.getAttributesRestoreData());
         }
@@ -122,7 +116,10 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
     public void restoreAttributesTo(Object restoreData) {
         Iterator<Object> i = ((LinkedList<Object>) restoreData).iterator();
         attributes.clear();
-        setAttributes((Map<AttributeKey<?>, Object>) i.next());
+        AttributeSlots restoreSlots = (AttributeSlots) i.next();
+        for (int j = 0, n = restoreSlots.size(); j < n; j++) {
+            set((AttributeKey<Object>) restoreSlots.keyAt(j), restoreSlots.valueAt(j));
+        }
         for (Figure child : getChildren()) {
             child.restoreAttributesTo(i.next());
         }
@@ -156,7 +153,7 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
 
     protected void drawChildren(Graphics2D g) {
         for (Figure child : getChildren()) {
-            child.draw(g);
+            drawChild(g, child);
         }
     }
 
@@ -208,9 +205,9 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
     @Override
     public AbstractAttributedCompositeFigure clone() {
         AbstractAttributedCompositeFigure that = (AbstractAttributedCompositeFigure) super.clone();
-        that.attributes = new HashMap<AttributeKey<?>, Object>(this.attributes);
+        that.attributes = this.attributes.clone();
         if (this.forbiddenAttributes != null) {
-            that.forbiddenAttributes = new HashSet<AttributeKey<?>>(this.forbiddenAttributes);
+            that.forbiddenAttributes = (BitSet) this.forbiddenAttributes.clone();
         }
         return that;
     }
@@ -219,9 +216,9 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
         Figure prototype = (Figure) out.getPrototype();
 
         boolean isElementOpen = false;
-        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-            AttributeKey<?> key = entry.getKey();
-            if (forbiddenAttributes == null || !forbiddenAttributes.contains(key)) {
+        for (int i = 0, n = attributes.size(); i < n; i++) {
+            AttributeKey<?> key = attributes.keyAt(i);
+            if (forbiddenAttributes == null || !forbiddenAttributes.get(key.getIndex())) {
                 @SuppressWarnings("unchecked")
                 Object prototypeValue = prototype.get(key);
                 @SuppressWarnings("unchecked")
@@ -234,7 +231,7 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
                         isElementOpen = true;
                     }
                     out.openElement(key.getKey());
-                    out.writeObject(entry.getValue());
+                    out.writeObject(attributes.valueAt(i));
                     out.closeElement();
                 }
             }
@@ -254,7 +251,7 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
                 Object value = in.readObject();
                 AttributeKey<?> key = getAttributeKey(name);
                 if (key != null && key.isAssignable(value)) {
-                    if (forbiddenAttributes == null || !forbiddenAttributes.contains(key)) {
+                    if (forbiddenAttributes == null || !forbiddenAttributes.get(key.getIndex())) {
                         set((AttributeKey<Object>) key, value);
                     }
                 }
@@ -273,8 +270,8 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
      */
     @SuppressWarnings("unchecked")
     protected void applyAttributesTo(Figure that) {
-        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-            that.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        for (int i = 0, n = attributes.size(); i < n; i++) {
+            that.set((AttributeKey<Object>) attributes.keyAt(i), attributes.valueAt(i));
         }
     }
 
@@ -299,6 +296,6 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
     }
 
     public <T> boolean hasAttribute(AttributeKey<T> key) {
-        return attributes.containsKey(key);
+        return attributes.contains(key);
     }
 }
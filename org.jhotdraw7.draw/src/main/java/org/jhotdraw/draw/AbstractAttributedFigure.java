@@ -15,8 +15,7 @@ import java.awt.Stroke;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Map;
 
 import static org.jhotdraw.draw.AttributeKeys.FILL_COLOR;
@@ -43,12 +42,12 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     /**
      * Holds the attributes of the figure.
      */
-    private HashMap<AttributeKey<?>, Object> attributes = new HashMap<AttributeKey<?>, Object>();
+    private AttributeSlots attributes = new AttributeSlots();
     /**
      * Forbidden attributes can't be put by the put() operation. They can only
      * be changed by put().
      */
-    private HashSet<AttributeKey<?>> forbiddenAttributes;
+    private BitSet forbiddenAttributes;
 
     /**
      * Creates a new instance.
@@ -58,17 +57,13 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
 
     public void setAttributeEnabled(AttributeKey<?> key, boolean b) {
         if (forbiddenAttributes == null) {
-            forbiddenAttributes = new HashSet<AttributeKey<?>>();
-        }
-        if (b) {
-            forbiddenAttributes.remove(key);
-        } else {
-            forbiddenAttributes.add(key);
+            forbiddenAttributes = new BitSet();
         }
+        forbiddenAttributes.set(key.getIndex(), !b);
     }
 
     public boolean isAttributeEnabled(AttributeKey<?> key) {
-        return forbiddenAttributes == null || !forbiddenAttributes.contains(key);
+        return forbiddenAttributes == null || !forbiddenAttributes.get(key.getIndex());
     }
 
     @SuppressWarnings("unchecked")
@@ -80,20 +75,30 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
 
     @Override
     public Map<AttributeKey<?>, Object> getAttributes() {
-        return (Map<AttributeKey<?>, Object>) new HashMap<AttributeKey<?>, Object>(attributes);
+        return attributes.toMap();
     }
 
+    /**
+     * Returns a snapshot of the attributes. The snapshot shares its storage
+     * with the figure until the attributes of the figure are changed.
+     */
     @Override
     public Object getAttributesRestoreData() {
-        return getAttributes();
+        return attributes.clone();
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void restoreAttributesTo(Object restoreData) {
         attributes.clear();
-        @SuppressWarnings("unchecked")
-        HashMap<AttributeKey<?>, Object> restoreDataHashMap = (HashMap<AttributeKey<?>, Object>) restoreData;
-        setAttributes(restoreDataHashMap);
+        if (restoreData instanceof AttributeSlots) {
+            AttributeSlots restoreSlots = (AttributeSlots) restoreData;
+            for (int i = 0, n = restoreSlots.size(); i < n; i++) {
+                set((AttributeKey<Object>) restoreSlots.keyAt(i), restoreSlots.valueAt(i));
+            }
+        } else {
+            setAttributes((Map<AttributeKey<?>, Object>) restoreData);
+        }
     }
 
     /**
@@ -103,9 +108,8 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     @Override
     public <T> void set(AttributeKey<T> key, T newValue) {
         if (forbiddenAttributes == null
-                || !forbiddenAttributes.contains(key)) {
-            @SuppressWarnings("unchecked")
-            T oldValue = key.put(attributes, newValue);
+                || !forbiddenAttributes.get(key.getIndex())) {
+            T oldValue = attributes.put(key, newValue);
             fireAttributeChanged(key, oldValue, newValue);
         }
     }
@@ -115,7 +119,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
      */
     @Override
     public <T> T get(AttributeKey<T> key) {
-        return key.get(attributes);
+        return attributes.get(key);
     }
 
     @Override
@@ -196,9 +200,9 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     @Override
     public AbstractAttributedFigure clone() {
         AbstractAttributedFigure that = (AbstractAttributedFigure) super.clone();
-        that.attributes = new HashMap<AttributeKey<?>, Object>(this.attributes);
+        that.attributes = this.attributes.clone();
         if (this.forbiddenAttributes != null) {
-            that.forbiddenAttributes = new HashSet<AttributeKey<?>>(this.forbiddenAttributes);
+            that.forbiddenAttributes = (BitSet) this.forbiddenAttributes.clone();
         }
         return that;
     }
@@ -207,10 +211,10 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
         Figure prototype = (Figure) out.getPrototype();
 
         boolean isElementOpen = false;
-        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-            AttributeKey<?> key = entry.getKey();
+        for (int i = 0, n = attributes.size(); i < n; i++) {
+            AttributeKey<?> key = attributes.keyAt(i);
             if (forbiddenAttributes == null
-                    || !forbiddenAttributes.contains(key)) {
+                    || !forbiddenAttributes.get(key.getIndex())) {
                 @SuppressWarnings("unchecked")
                 Object prototypeValue = prototype.get(key);
                 @SuppressWarnings("unchecked")
@@ -223,7 +227,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
                         isElementOpen = true;
                     }
                     out.openElement(key.getKey());
-                    out.writeObject(entry.getValue());
+                    out.writeObject(attributes.valueAt(i));
                     out.closeElement();
                 }
             }
@@ -244,7 +248,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
                 AttributeKey<?> key = getAttributeKey(name);
                 if (key != null && key.isAssignable(value)) {
                     if (forbiddenAttributes == null
-                            || !forbiddenAttributes.contains(key)) {
+                            || !forbiddenAttributes.get(key.getIndex())) {
                         set((AttributeKey<Object>) key, value);
                     }
                 }
@@ -263,8 +267,8 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
      */
     @SuppressWarnings("unchecked")
     protected void applyAttributesTo(Figure that) {
-        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-            that.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        for (int i = 0, n = attributes.size(); i < n; i++) {
+            that.set((AttributeKey<Object>) attributes.keyAt(i), attributes.valueAt(i));
         }
     }
 
@@ -297,6 +301,6 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     }
 
     public boolean hasAttribute(AttributeKey<?> key) {
-        return attributes.containsKey(key);
+        return attributes.contains(key);
     }
 }
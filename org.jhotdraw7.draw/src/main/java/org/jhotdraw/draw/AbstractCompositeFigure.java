@@ -166,8 +166,11 @@ public abstract class AbstractCompositeFigure
     }
 
     public final void addAll(int index, Collection<? extends Figure> figures) {
+        // Add all figures at once, so that subclasses can optimize
+        // adding a large number of figures in basicAddAll.
+        basicAddAll(index, figures);
         for (Figure f : figures) {
-            basicAdd(index++, f);
+            index++;
             if (getDrawing() != null) {
                 f.addNotify(getDrawing());
             }
@@ -206,7 +209,7 @@ public abstract class AbstractCompositeFigure
 
     @Override
     public boolean remove(final Figure figure) {
-        int index = children.indexOf(figure);
+        int index = indexOf(figure);
         if (index == -1) {
             return false;
         } else {
@@ -517,18 +520,33 @@ public abstract class AbstractCompositeFigure
         if (clipBounds != null) {
             for (Figure child : getChildren()) {
                 if (child.isVisible() && child.getDrawingArea().intersects(clipBounds)) {
-                    child.draw(g);
+                    drawChild(g, child);
                 }
             }
         } else {
             for (Figure child : getChildren()) {
                 if (child.isVisible()) {
-                    child.draw(g);
+                    drawChild(g, child);
                 }
             }
         }
     }
 
+    /**
+     * Draws a child figure. If the graphics has a {@link LevelOfDetailPolicy}
+     * rendering hint, the policy may draw a simplified representation of
+     * the child instead.
+     *
+     * @param g     the graphics
+     * @param child the child figure
+     */
+    protected void drawChild(Graphics2D g, Figure child) {
+        LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+        if (lod == null || !lod.drawSimplified(g, child)) {
+            child.draw(g);
+        }
+    }
+
     @Override
     public Collection<Figure> getDecomposition() {
         LinkedList<Figure> list = new LinkedList<Figure>();
@@ -647,7 +665,7 @@ public abstract class AbstractCompositeFigure
 
     @Override
     public int basicRemove(Figure child) {
-        int index = children.indexOf(child);
+        int index = indexOf(child);
         if (index != -1) {
             basicRemoveChild(index);
         }
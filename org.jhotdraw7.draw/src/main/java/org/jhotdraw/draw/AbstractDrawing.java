@@ -3,8 +3,11 @@
  */
 package org.jhotdraw.draw;
 
+import org.jhotdraw.annotation.Nullable;
+import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.draw.io.OutputFormat;
+import org.jhotdraw.undo.CompositeEdit;
 import org.jhotdraw.xml.DOMInput;
 import org.jhotdraw.xml.DOMOutput;
 
@@ -13,7 +16,11 @@ import javax.swing.event.UndoableEditEvent;
 import javax.swing.event.UndoableEditListener;
 import javax.swing.undo.UndoableEdit;
 import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 
 /**
@@ -29,6 +36,72 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     private LinkedList<InputFormat> inputFormats = new LinkedList<InputFormat>();
     private LinkedList<OutputFormat> outputFormats = new LinkedList<OutputFormat>();
     private static final boolean DEBUG = false;
+    /**
+     * The nesting depth of the open batches of changes.
+     */
+    private transient int updateDepth;
+    /**
+     * The presentation name of the composite edit of the current batch.
+     */
+    @Nullable
+    private transient String updatePresentationName;
+    /**
+     * The composite edit of the current batch. This is null until the first
+     * undoable edit is fired during the batch.
+     */
+    @Nullable
+    private transient CompositeEdit updateEdit;
+    /**
+     * The figures which have changed during the current batch.
+     */
+    @Nullable
+    private transient LinkedHashSet<Figure> changedFigures;
+    /**
+     * The union of the areas which have been invalidated during the current
+     * batch.
+     */
+    @Nullable
+    private transient Rectangle2D.Double updateInvalidatedArea;
+    /**
+     * Re-routes the connections, whose connected figures have changed
+     * during the current batch.
+     */
+    @Nullable
+    private transient ConnectionRoutingScheduler connectionRoutingScheduler;
+
+    /**
+     * Handles the figure events fired by the children of the drawing.
+     * Coalesces the events while a batch of changes is open.
+     */
+    protected class DrawingEventHandler extends EventHandler {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new instance.
+         */
+        protected DrawingEventHandler() {
+        }
+
+        @Override
+        public void figureChanged(FigureEvent e) {
+            if (isUpdating()) {
+                if (!isChanging()) {
+                    addPendingChange(e.getFigure(), e.getInvalidatedArea());
+                }
+            } else {
+                super.figureChanged(e);
+            }
+        }
+
+        @Override
+        public void areaInvalidated(FigureEvent e) {
+            if (isUpdating()) {
+                addPendingChange(null, e.getInvalidatedArea());
+            } else {
+                super.areaInvalidated(e);
+            }
+        }
+    }
 
     /**
      * Creates a new instance.
@@ -36,6 +109,122 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     public AbstractDrawing() {
     }
 
+    @Override
+    protected EventHandler createEventHandler() {
+        return new DrawingEventHandler();
+    }
+
+    @Override
+    public void beginUpdate(@Nullable String presentationName) {
+        if (updateDepth++ == 0) {
+            updatePresentationName = presentationName;
+        }
+    }
+
+    @Override
+    public void endUpdate() {
+        if (updateDepth == 0) {
+            throw new IllegalStateException("endUpdate was called without a prior call to beginUpdate.");
+        }
+        try {
+            if (updateDepth == 1 && connectionRoutingScheduler != null) {
+                // Re-route the connections while the batch is still open,
+                // so that their changes are coalesced as well. Update the
+                // index first, so that the liners see the current bounds
+                // of the changed figures.
+                updateIndex();
+                connectionRoutingScheduler.route();
+            }
+        } finally {
+            updateDepth--;
+        }
+        if (updateDepth == 0) {
+            Collection<Figure> figures = (changedFigures == null) ? Collections.<Figure>emptySet() : changedFigures;
+            Rectangle2D.Double invalidatedArea = updateInvalidatedArea;
+            CompositeEdit edit = updateEdit;
+            changedFigures = null;
+            updateInvalidatedArea = null;
+            updateEdit = null;
+            updatePresentationName = null;
+
+            if (invalidatedArea != null) {
+                figuresChanged(figures, invalidatedArea);
+            }
+            if (edit != null) {
+                fireUndoableEditHappened(edit);
+            }
+        }
+    }
+
+    @Override
+    public boolean isUpdating() {
+        return updateDepth > 0;
+    }
+
+    /**
+     * Returns the scheduler which re-routes the connections, whose connected
+     * figures have changed during a batch of changes.
+     */
+    public ConnectionRoutingScheduler getConnectionRoutingScheduler() {
+        if (connectionRoutingScheduler == null) {
+            connectionRoutingScheduler = new ConnectionRoutingScheduler(this);
+        }
+        return connectionRoutingScheduler;
+    }
+
+    /**
+     * Records a change while a batch of changes is open.
+     *
+     * @param figure          the changed child figure, or null if only an
+     *                        area has been invalidated.
+     * @param invalidatedArea the invalidated area.
+     */
+    protected void addPendingChange(@Nullable Figure figure, Rectangle2D.Double invalidatedArea) {
+        if (figure != null) {
+            if (changedFigures == null) {
+                changedFigures = new LinkedHashSet<Figure>();
+            }
+            changedFigures.add(figure);
+        }
+        if (updateInvalidatedArea == null) {
+            updateInvalidatedArea = (Rectangle2D.Double) invalidatedArea.clone();
+        } else {
+            updateInvalidatedArea.add(invalidatedArea);
+        }
+    }
+
+    /**
+     * This method is invoked when the outermost batch of changes is about
+     * to be closed, before the connections are re-routed.
+     * <p>
+     * Subclasses which keep a spatial index of their children update the
+     * index for the figures which have changed since the last call. This
+     * implementation does nothing.
+     */
+    protected void updateIndex() {
+    }
+
+    /**
+     * This method is invoked when the outermost batch of changes is closed.
+     * <p>
+     * This implementation lays out the drawing once and fires a single
+     * {@code figureChanged} event for the union of the invalidated areas.
+     * If no child has changed, a single {@code areaInvalidated} event is
+     * fired instead.
+     *
+     * @param figures         the children which have changed during the batch.
+     * @param invalidatedArea the union of the invalidated areas.
+     */
+    protected void figuresChanged(Collection<Figure> figures, Rectangle2D.Double invalidatedArea) {
+        if (figures.isEmpty()) {
+            fireAreaInvalidated(invalidatedArea);
+        } else {
+            invalidate();
+            validate();
+            fireFigureChanged(invalidatedArea);
+        }
+    }
+
     @Override
     public void addUndoableEditListener(UndoableEditListener l) {
         listenerList.add(UndoableEditListener.class, l);
@@ -52,6 +241,11 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
      */
     @Override
     public void fireUndoableEditHappened(UndoableEdit edit) {
+        if (updatePresentationName != null && updateEdit == null) {
+            // Open the composite edit of the current batch
+            updateEdit = new CompositeEdit(updatePresentationName);
+            fireUndoableEditHappened(updateEdit);
+        }
         UndoableEditEvent event = null;
         if (listenerList.getListenerCount() > 0) {
             // Notify all listeners that have registered interest for
@@ -170,8 +364,14 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     @SuppressWarnings("unchecked")
     public AbstractDrawing clone() {
         AbstractDrawing that = (AbstractDrawing) super.clone();
+        that.connectionRoutingScheduler = null;
         that.inputFormats = (this.inputFormats == null) ? null : (LinkedList<InputFormat>) this.inputFormats.clone();
         that.outputFormats = (this.outputFormats == null) ? null : (LinkedList<OutputFormat>) this.outputFormats.clone();
+        that.updateDepth = 0;
+        that.updatePresentationName = null;
+        that.updateEdit = null;
+        that.changedFigures = null;
+        that.updateInvalidatedArea = null;
         return that;
     }
 }
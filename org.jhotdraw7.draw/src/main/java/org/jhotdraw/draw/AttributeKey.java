@@ -9,7 +9,10 @@ import org.jhotdraw.util.ResourceBundleUtil;
 
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.UndoableEdit;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -27,6 +30,10 @@ import java.util.Map;
  * </pre>
  * <p>
  * See {@link AttributeKeys} for a list of useful attribute keys.
+ * <p>
+ * Each key string is assigned a dense index by a global registry. Attribute
+ * keys with equal key strings share the same index. Figures use the index
+ * to store their attributes in an array.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -56,6 +63,15 @@ public class AttributeKey<T> implements Serializable {
      * assignability of attribute values at runtime.
      */
     private Class<T> clazz;
+    /**
+     * The index of the key string in the registry.
+     */
+    private transient int index;
+
+    /**
+     * Maps key strings to indices.
+     */
+    private static final HashMap<String, Integer> registryIndices = new HashMap<String, Integer>();
 
     /**
      * Creates a new instance with the specified attribute key, type token class,
@@ -99,6 +115,34 @@ public class AttributeKey<T> implements Serializable {
         this.defaultValue = defaultValue;
         this.isNullValueAllowed = isNullValueAllowed;
         this.labels = (labels == null) ? DrawLabels.getLabels() : labels;
+        this.index = register(this);
+    }
+
+    /**
+     * Registers the key string of the specified attribute key and returns
+     * its index.
+     */
+    private static synchronized int register(AttributeKey<?> key) {
+        Integer index = registryIndices.get(key.key);
+        if (index != null) {
+            return index;
+        }
+        int i = registryIndices.size();
+        registryIndices.put(key.key, i);
+        return i;
+    }
+
+    /**
+     * Returns the number of registered key strings. All indices are smaller
+     * than this number.
+     */
+    public static synchronized int getRegisteredKeyCount() {
+        return registryIndices.size();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        index = register(this);
     }
 
     /**
@@ -110,6 +154,16 @@ public class AttributeKey<T> implements Serializable {
         return key;
     }
 
+    /**
+     * Returns the index of the key string in the registry of attribute keys.
+     * Attribute keys with equal key strings have the same index.
+     *
+     * @return a dense index starting at 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Returns a localized human friendly presentation of the key.
      *
@@ -0,0 +1,232 @@
+/* @(#)AttributeSlots.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Holds the attributes of a figure in a compact array of slots. Each slot
+ * holds an attribute key and its value. The slots are sorted by
+ * {@link AttributeKey#getIndex}, so that an attribute can be found with a
+ * binary search. The array only grows by a few slots at a time, so that a
+ * figure with few attributes takes little memory. Attributes which are not
+ * set are not stored, their value is the shared default value of the key.
+ * <p>
+ * The array is shared copy-on-write between clones, so that cloning a
+ * figure, and taking a snapshot of its attributes for undo, does not copy
+ * the attributes until one of the copies is changed.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class AttributeSlots implements Cloneable, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Object[] EMPTY = new Object[0];
+    /**
+     * The number of slots by which the array grows.
+     */
+    private static final int SLACK = 4;
+
+    /**
+     * Holds the key of slot i at index 2 * i, and the value at index
+     * 2 * i + 1. Only the first size slots are used.
+     */
+    private transient Object[] slots = EMPTY;
+    private transient int size;
+    /**
+     * True if the slots array is shared with a clone.
+     */
+    private transient boolean isShared;
+
+    /**
+     * Returns the slot of the key with the specified index, or
+     * (-(insertion slot) - 1) if there is no such slot.
+     */
+    private int find(int index) {
+        Object[] s = slots;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = ((AttributeKey<?>) s[mid << 1]).getIndex();
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the value of the attribute, or the default value of the key
+     * if the attribute is not set.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(AttributeKey<T> key) {
+        int slot = find(key.getIndex());
+        return slot >= 0 ? (T) slots[(slot << 1) + 1] : key.getDefaultValue();
+    }
+
+    public boolean contains(AttributeKey<?> key) {
+        return find(key.getIndex()) >= 0;
+    }
+
+    /**
+     * Sets the value of an attribute.
+     *
+     * @return the previous value or null, if the attribute was not set.
+     * @throws NullPointerException if the value is null and the key does not
+     *                              allow null values.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T put(AttributeKey<T> key, @Nullable T value) {
+        if (value == null && !key.isNullValueAllowed()) {
+            throw new NullPointerException("Null value not allowed for AttributeKey " + key.getKey());
+        }
+        int slot = find(key.getIndex());
+        if (slot >= 0) {
+            if (isShared) {
+                slots = slots.clone();
+                isShared = false;
+            }
+            int i = slot << 1;
+            Object oldValue = slots[i + 1];
+            slots[i] = key;
+            slots[i + 1] = value;
+            return (T) oldValue;
+        }
+        slot = -slot - 1;
+        int i = slot << 1;
+        int n = size << 1;
+        if (n == slots.length || isShared) {
+            Object[] s = (n == slots.length) ? new Object[n + (SLACK << 1)] : new Object[slots.length];
+            System.arraycopy(slots, 0, s, 0, i);
+            System.arraycopy(slots, i, s, i + 2, n - i);
+            slots = s;
+            isShared = false;
+        } else {
+            System.arraycopy(slots, i, slots, i + 2, n - i);
+        }
+        slots[i] = key;
+        slots[i + 1] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes an attribute.
+     *
+     * @return the previous value or null, if the attribute was not set.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T remove(AttributeKey<T> key) {
+        int slot = find(key.getIndex());
+        if (slot < 0) {
+            return null;
+        }
+        if (isShared) {
+            slots = slots.clone();
+            isShared = false;
+        }
+        int i = slot << 1;
+        int n = size << 1;
+        Object oldValue = slots[i + 1];
+        System.arraycopy(slots, i + 2, slots, i, n - i - 2);
+        slots[n - 2] = null;
+        slots[n - 1] = null;
+        size--;
+        return (T) oldValue;
+    }
+
+    public void clear() {
+        slots = EMPTY;
+        size = 0;
+        isShared = false;
+    }
+
+    /**
+     * Returns the number of attributes. The attributes are held in the
+     * slots 0 to size() - 1.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the attribute key in the specified slot.
+     */
+    public AttributeKey<?> keyAt(int slot) {
+        return (AttributeKey<?>) slots[slot << 1];
+    }
+
+    /**
+     * Returns the attribute value in the specified slot.
+     */
+    @Nullable
+    public Object valueAt(int slot) {
+        return slots[(slot << 1) + 1];
+    }
+
+    /**
+     * Returns the attributes as a map.
+     */
+    public HashMap<AttributeKey<?>, Object> toMap() {
+        HashMap<AttributeKey<?>, Object> map = new HashMap<AttributeKey<?>, Object>(Math.max(16, size * 2));
+        for (int i = 0; i < size; i++) {
+            map.put(keyAt(i), valueAt(i));
+        }
+        return map;
+    }
+
+    @Override
+    public AttributeSlots clone() {
+        try {
+            AttributeSlots that = (AttributeSlots) super.clone();
+            if (slots.length != 0) {
+                this.isShared = true;
+                that.isShared = true;
+            }
+            return that;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeObject(keyAt(i));
+            out.writeObject(valueAt(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        slots = EMPTY;
+        size = 0;
+        for (int i = 0, n = in.readInt(); i < n; i++) {
+            AttributeKey<Object> key = (AttributeKey<Object>) in.readObject();
+            put(key, in.readObject());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
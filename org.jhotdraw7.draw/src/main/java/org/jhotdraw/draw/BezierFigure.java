@@ -12,8 +12,10 @@ import org.jhotdraw.draw.handle.BezierScaleHandle;
 import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.CompactBezierPath;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.geom.GrowStroke;
+import org.jhotdraw.geom.SegmentHitTester;
 import org.jhotdraw.util.ResourceBundleUtil;
 import org.jhotdraw.xml.DOMInput;
 import org.jhotdraw.xml.DOMOutput;
@@ -146,6 +148,10 @@ public class BezierFigure extends AbstractAttributedFigure {
     }
 
     protected void drawCaps(Graphics2D g) {
+        LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+        if (lod != null && !lod.isDecorationVisible(g, this)) {
+            return;
+        }
         if (getNodeCount() > 1) {
             if (get(START_DECORATION) != null) {
                 BezierPath cp = getCappedPath();
@@ -187,14 +193,14 @@ public class BezierFigure extends AbstractAttributedFigure {
     public boolean contains(Point2D.Double p) {
         double tolerance = Math.max(2f, AttributeKeys.getStrokeTotalWidth(this) / 2d);
         if (isClosed() || get(FILL_COLOR) != null && get(UNCLOSED_PATH_FILLED)) {
-            if (path.contains(p)) {
+            SegmentHitTester hitTester = path.getHitTester(SegmentHitTester.DEFAULT_FLATNESS);
+            if (hitTester.contains(p.x, p.y)) {
                 return true;
             }
+            // The path grown by the hit growth contains the point, if the
+            // point is near the outline of the path
             double grow = AttributeKeys.getPerpendicularHitGrowth(this) * 2d;
-            GrowStroke gs = new GrowStroke(grow,
-                    AttributeKeys.getStrokeTotalWidth(this)
-                            * get(STROKE_MITER_LIMIT));
-            if (gs.createStrokedShape(path).contains(p)) {
+            if (hitTester.outlineContains(p.x, p.y, grow)) {
                 return true;
             } else {
                 if (isClosed()) {
@@ -294,6 +300,22 @@ public class BezierFigure extends AbstractAttributedFigure {
         this.setClosed(newValue.isClosed());
     }
 
+    /**
+     * Returns a compact copy of the bezier path of this figure.
+     */
+    public CompactBezierPath getCompactBezierPath() {
+        return new CompactBezierPath(path);
+    }
+
+    /**
+     * Sets the bezier path of this figure to a copy of the specified compact
+     * path. The nodes of the current bezier path are reused.
+     */
+    public void setBezierPath(CompactBezierPath newValue) {
+        newValue.copyTo(path);
+        this.setClosed(newValue.isClosed());
+    }
+
     public Point2D.Double getPointOnPath(float relative, double flatness) {
         return path.getPointOnPath(relative, flatness);
     }
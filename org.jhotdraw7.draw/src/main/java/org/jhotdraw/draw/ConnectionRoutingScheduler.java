@@ -0,0 +1,300 @@
+/* @(#)ConnectionRoutingScheduler.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import org.jhotdraw.annotation.Nullable;
+import org.jhotdraw.draw.liner.CurvedLiner;
+import org.jhotdraw.draw.liner.ElbowLiner;
+import org.jhotdraw.draw.liner.Liner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Re-routes the connections of a drawing, whose connected figures have
+ * changed during a batch of changes.
+ * <p>
+ * While a batch of changes is open on an {@link AbstractDrawing}, a
+ * {@link LineConnectionFigure} does not re-route itself each time one of its
+ * connected figures changes. Instead, it is marked as dirty. When the
+ * outermost batch is closed, each dirty connection is re-routed exactly once.
+ * <p>
+ * A connection can be connected to another connection. Therefore the
+ * connections, which are connected to a dirty connection, are re-routed
+ * as well, and all of them are re-routed in the order of their dependencies:
+ * a connection is re-routed after the dirty connections it is connected to.
+ * <p>
+ * If the parallelism is greater than one, the layout of the connections,
+ * which use an {@link ElbowLiner} or a {@link CurvedLiner}, is computed
+ * concurrently by a pool of worker threads. Events are always fired on the
+ * calling thread. Only set the parallelism to a value greater than one, if
+ * the connectors of the connections can be queried concurrently.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ConnectionRoutingScheduler {
+
+    /**
+     * The minimal number of connections which are laid out by a single task.
+     */
+    private static final int TASK_SIZE = 64;
+    private static ExecutorService executor;
+
+    private AbstractDrawing drawing;
+    private LinkedHashSet<LineConnectionFigure> dirtyConnections = new LinkedHashSet<LineConnectionFigure>();
+    /**
+     * The connections which are being re-routed.
+     */
+    @Nullable
+    private LinkedHashSet<LineConnectionFigure> scheduledConnections;
+    private int parallelism = 1;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param drawing the drawing.
+     */
+    public ConnectionRoutingScheduler(AbstractDrawing drawing) {
+        this.drawing = drawing;
+    }
+
+    /**
+     * Sets the number of threads which lay out connections concurrently.
+     * <p>
+     * The default value is 1.
+     */
+    public void setParallelism(int newValue) {
+        parallelism = Math.max(1, newValue);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Marks a connection as dirty.
+     * <p>
+     * Connections which are being re-routed are not marked again, when they
+     * receive the change events of the connections they are connected to.
+     */
+    public void markDirty(LineConnectionFigure connection) {
+        if (scheduledConnections == null || !scheduledConnections.contains(connection)) {
+            dirtyConnections.add(connection);
+        }
+    }
+
+    /**
+     * Returns true if no connection is dirty.
+     */
+    public boolean isEmpty() {
+        return dirtyConnections.isEmpty();
+    }
+
+    /**
+     * Re-routes all dirty connections and the connections which are connected
+     * to them. Connections which become dirty otherwise while the connections
+     * are re-routed, are re-routed as well.
+     */
+    public void route() {
+        while (!dirtyConnections.isEmpty()) {
+            LinkedHashSet<LineConnectionFigure> dirty = dirtyConnections;
+            dirtyConnections = new LinkedHashSet<LineConnectionFigure>();
+            addDependentConnections(dirty);
+            scheduledConnections = dirty;
+            try {
+                for (List<LineConnectionFigure> level : sortByDependency(dirty)) {
+                    route(level);
+                }
+            } finally {
+                scheduledConnections = null;
+            }
+        }
+    }
+
+    /**
+     * Adds the connections of the drawing, which are directly or indirectly
+     * connected to a dirty connection, to the dirty connections.
+     */
+    private void addDependentConnections(LinkedHashSet<LineConnectionFigure> dirty) {
+        HashMap<Figure, List<LineConnectionFigure>> dependents = new HashMap<Figure, List<LineConnectionFigure>>();
+        for (Figure f : drawing.getChildren()) {
+            if (f instanceof LineConnectionFigure) {
+                LineConnectionFigure c = (LineConnectionFigure) f;
+                addDependent(dependents, c.getStartFigure(), c);
+                addDependent(dependents, c.getEndFigure(), c);
+            }
+        }
+        if (dependents.isEmpty()) {
+            return;
+        }
+        ArrayList<LineConnectionFigure> queue = new ArrayList<LineConnectionFigure>(dirty);
+        for (int i = 0; i < queue.size(); i++) {
+            List<LineConnectionFigure> list = dependents.get(queue.get(i));
+            if (list != null) {
+                for (LineConnectionFigure c : list) {
+                    if (dirty.add(c)) {
+                        queue.add(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addDependent(HashMap<Figure, List<LineConnectionFigure>> dependents, @Nullable Figure figure, LineConnectionFigure c) {
+        if (figure instanceof LineConnectionFigure) {
+            List<LineConnectionFigure> list = dependents.get(figure);
+            if (list == null) {
+                list = new ArrayList<LineConnectionFigure>(2);
+                dependents.put(figure, list);
+            }
+            list.add(c);
+        }
+    }
+
+    /**
+     * Re-routes a list of connections, which do not depend on each other.
+     */
+    private void route(List<LineConnectionFigure> connections) {
+        ArrayList<LineConnectionFigure> routed = new ArrayList<LineConnectionFigure>(connections.size());
+        ArrayList<LineConnectionFigure> concurrent = new ArrayList<LineConnectionFigure>();
+        for (LineConnectionFigure c : connections) {
+            if (c.getDrawing() != drawing || c.isChanging()) {
+                continue;
+            }
+            c.willChange();
+            c.updateConnection();
+            routed.add(c);
+            if (parallelism > 1 && isPureGeometry(c.getLiner())) {
+                concurrent.add(c);
+            }
+        }
+        try {
+            lineout(concurrent);
+        } finally {
+            for (LineConnectionFigure c : routed) {
+                c.changed();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the liner only computes geometry, and can therefore
+     * lay out different connections concurrently.
+     */
+    private boolean isPureGeometry(Liner liner) {
+        return liner != null
+                && (liner.getClass() == ElbowLiner.class || liner.getClass() == CurvedLiner.class);
+    }
+
+    /**
+     * Lays out the specified connections concurrently.
+     */
+    private void lineout(final List<LineConnectionFigure> connections) {
+        int n = connections.size();
+        int taskCount = Math.min(parallelism, (n + TASK_SIZE - 1) / TASK_SIZE);
+        if (taskCount <= 1) {
+            for (LineConnectionFigure c : connections) {
+                c.basicLineout();
+            }
+            return;
+        }
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(taskCount);
+        for (int t = 0; t < taskCount; t++) {
+            final int from = (int) ((long) n * t / taskCount);
+            final int to = (int) ((long) n * (t + 1) / taskCount);
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (int i = from; i < to; i++) {
+                        connections.get(i).basicLineout();
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Object> f : getExecutor().invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InternalError(cause);
+        }
+    }
+
+    /**
+     * Sorts the connections into levels. The connections of a level only
+     * depend on connections of lower levels.
+     */
+    private List<List<LineConnectionFigure>> sortByDependency(LinkedHashSet<LineConnectionFigure> connections) {
+        HashMap<LineConnectionFigure, Integer> levels = new HashMap<LineConnectionFigure, Integer>(connections.size() * 2);
+        ArrayList<List<LineConnectionFigure>> result = new ArrayList<List<LineConnectionFigure>>();
+        for (LineConnectionFigure c : connections) {
+            int level = getLevel(c, connections, levels);
+            while (result.size() <= level) {
+                result.add(new ArrayList<LineConnectionFigure>());
+            }
+            result.get(level).add(c);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the level of a connection. A connection has level 0, if it is
+     * not connected to a dirty connection. Cyclic dependencies are broken
+     * arbitrarily.
+     */
+    private int getLevel(LineConnectionFigure c, LinkedHashSet<LineConnectionFigure> connections, HashMap<LineConnectionFigure, Integer> levels) {
+        Integer level = levels.get(c);
+        if (level != null) {
+            return Math.max(0, level);
+        }
+        // Mark the connection as being visited, to detect cycles
+        levels.put(c, -1);
+        int result = 0;
+        Figure start = c.getStartFigure();
+        if (start instanceof LineConnectionFigure && connections.contains(start)) {
+            result = getLevel((LineConnectionFigure) start, connections, levels) + 1;
+        }
+        Figure end = c.getEndFigure();
+        if (end instanceof LineConnectionFigure && connections.contains(end)) {
+            result = Math.max(result, getLevel((LineConnectionFigure) end, connections, levels) + 1);
+        }
+        levels.put(c, result);
+        return result;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                        private int count;
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "ConnectionRoutingScheduler-" + (++count));
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+        }
+        return executor;
+    }
+}
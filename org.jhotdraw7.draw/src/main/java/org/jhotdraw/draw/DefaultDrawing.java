@@ -71,13 +71,13 @@ public class DefaultDrawing
         if (clipBounds != null) {
             for (Figure f : children) {
                 if (f.isVisible() && f.getDrawingArea().intersects(clipBounds)) {
-                    f.draw(g);
+                    drawChild(g, f);
                 }
             }
         } else {
             for (Figure f : children) {
                 if (f.isVisible()) {
-                    f.draw(g);
+                    drawChild(g, f);
                 }
             }
         }
@@ -169,7 +169,7 @@ public class DefaultDrawing
     public java.util.List<Figure> findFigures(Rectangle2D.Double bounds) {
         LinkedList<Figure> intersection = new LinkedList<Figure>();
         for (Figure f : getChildren()) {
-            if (f.isVisible() && f.getBounds().intersects(bounds)) {
+            if (f.isVisible() && f.getDrawingArea().intersects(bounds)) {
                 intersection.add(f);
             }
         }
@@ -14,6 +14,8 @@ import org.jhotdraw.draw.event.FigureSelectionListener;
 import org.jhotdraw.draw.event.HandleEvent;
 import org.jhotdraw.draw.event.HandleListener;
 import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.draw.handle.SelectionBoundsHandle;
+import org.jhotdraw.geom.PackedQuadTree;
 import org.jhotdraw.gui.EditableComponent;
 import org.jhotdraw.util.ResourceBundleUtil;
 import org.jhotdraw.util.ReversedList;
@@ -83,10 +85,16 @@ public class DefaultDrawingView
     @Nullable
     private Drawing drawing;
     /**
-     * Holds the selected figures in an ordered put. The ordering reflects
+     * Holds the selected figures in an ordered set. The ordering reflects
      * the sequence that was used to select the figures.
      */
-    private Set<Figure> selectedFigures = new LinkedHashSet<Figure>();
+    private FigureSelectionModel selectionModel = new FigureSelectionModel();
+    /**
+     * The selection event which is currently being delivered to the
+     * listeners.
+     */
+    @Nullable
+    private transient FigureSelectionEvent firingSelectionEvent;
     private LinkedList<Handle> selectionHandles = new LinkedList<Handle>();
     private boolean isConstrainerVisible = false;
     private Constrainer visibleConstrainer = new GridConstrainer(8, 8);
@@ -96,6 +104,40 @@ public class DefaultDrawingView
     private Handle activeHandle;
     private LinkedList<Handle> secondaryHandles = new LinkedList<Handle>();
     private boolean handlesAreValid = true;
+    public static final String HANDLES_VIRTUALIZED_PROPERTY = "handlesVirtualized";
+    /**
+     * Whether handles are only created for the selected figures which are
+     * in or near the visible area of the view.
+     */
+    private boolean isHandlesVirtualized = false;
+    /**
+     * If handles are virtualized, and more figures than this are selected,
+     * a single handle shows the bounds of the selection.
+     */
+    private int aggregateHandleThreshold = 1000;
+    /**
+     * The area (in view coordinates) for which handles have been created,
+     * if handles are virtualized. This is null, if the area is not known.
+     */
+    @Nullable
+    private transient Rectangle handleArea;
+    /**
+     * The figures for which handles have been created, if handles are
+     * virtualized.
+     */
+    private HashSet<Figure> handleOwners = new HashSet<Figure>();
+    /**
+     * The handle which shows the bounds of the selection, if the handles of
+     * the selected figures are aggregated.
+     */
+    @Nullable
+    private transient SelectionBoundsHandle aggregateHandle;
+    /**
+     * Spatial index over the drawing areas of the selection handles, if
+     * handles are virtualized. This is null, if the index is not valid.
+     */
+    @Nullable
+    private transient PackedQuadTree<Handle> handleIndex;
     @Nullable
     private transient Dimension cachedPreferredSize;
     private double scaleFactor = 1;
@@ -111,6 +153,21 @@ public class DefaultDrawingView
         public void figureHandlesChanged(FigureEvent e) {
             invalidateHandles();
         }
+
+        @Override
+        public void figureChanged(FigureEvent e) {
+            // The handles of the figure may have moved
+            handleIndex = null;
+            // A figure without handles may have moved into the handle area
+            Figure figure = e.getFigure();
+            if (handleArea != null && !handleOwners.contains(figure)
+                    && handleArea.intersects(drawingToView(figure.getDrawingArea()))) {
+                handleArea = null;
+            }
+            if (aggregateHandle != null) {
+                aggregateHandle.figuresChanged();
+            }
+        }
     };
     @Nullable
     private transient Rectangle2D.Double cachedDrawingArea;
@@ -137,6 +194,26 @@ public class DefaultDrawingView
      * Holds the drawing area (in view coordinates) which has not been redrawn yet in the drawing buffer.
      */
     private Rectangle dirtyArea = new Rectangle(0, 0, -1, -1);
+    public static final String DRAWING_TILED_PROPERTY = "drawingTiled";
+    /**
+     * Whether the drawing is rendered into a tile cache.
+     */
+    private boolean isDrawingTiled = false;
+    /**
+     * The maximal number of bytes used by the tile cache.
+     */
+    private long tileCacheMemoryBudget = 64L * 1024 * 1024;
+    /**
+     * Holds rendered tiles of the drawing, if the drawing is tiled.
+     */
+    @Nullable
+    private transient DrawingTileCache tileCache;
+    /**
+     * The level of detail policy. If this is null, all figures are drawn
+     * with full detail.
+     */
+    @Nullable
+    private transient LevelOfDetailPolicy levelOfDetailPolicy;
     private boolean paintEnabled = true;
     private static final boolean isWindows;
 
@@ -216,7 +293,7 @@ public class DefaultDrawingView
 
     @Override
     public boolean isSelectionEmpty() {
-        return selectedFigures.isEmpty();
+        return selectionModel.isEmpty();
     }
 
     private class EventHandler implements FigureListener, CompositeFigureListener, HandleListener, FocusListener {
@@ -406,7 +483,9 @@ public class DefaultDrawingView
         drawBackground(g);
         drawCanvas(g);
         drawConstrainer(g);
-        if (isDrawingDoubleBuffered()) {
+        if (isDrawingTiled()) {
+            drawDrawingTiled(g);
+        } else if (isDrawingDoubleBuffered()) {
             if (isWindows) {
                 drawDrawingNonvolatileBuffered(g);
             } else {
@@ -618,6 +697,30 @@ public class DefaultDrawingView
         dirtyArea.setSize(-1, -1);
     }
 
+    /**
+     * Draws the drawing using the tile cache.
+     */
+    protected void drawDrawingTiled(Graphics2D g) {
+        if (drawing == null || drawing.getChildCount() == 0 && emptyDrawingLabel != null) {
+            drawDrawing(g);
+            return;
+        }
+        if (tileCache == null) {
+            tileCache = new DrawingTileCache(tileCacheMemoryBudget);
+        }
+
+        // Set the font render context of the drawing as drawDrawing does
+        Graphics2D gd = (Graphics2D) g.create();
+        AffineTransform tx = gd.getTransform();
+        tx.translate(-translation.x, -translation.y);
+        tx.scale(scaleFactor, scaleFactor);
+        gd.setTransform(tx);
+        drawing.setFontRenderContext(gd.getFontRenderContext());
+        gd.dispose();
+
+        tileCache.paint(this, g, drawing, scaleFactor, translation);
+    }
+
     /**
      * Prints the drawing view.
      * Uses high quality rendering hints for printing. Only prints the drawing.
@@ -648,6 +751,9 @@ public class DefaultDrawingView
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
         g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
         g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        if (levelOfDetailPolicy != null) {
+            g.setRenderingHint(LevelOfDetailPolicy.KEY, levelOfDetailPolicy);
+        }
     }
 
     /**
@@ -732,8 +838,11 @@ public class DefaultDrawingView
     protected void drawHandles(java.awt.Graphics2D g) {
         if (editor != null && editor.getActiveView() == this) {
             validateHandles();
+            Rectangle clipBounds = isHandlesVirtualized ? g.getClipBounds() : null;
             for (Handle h : getSelectionHandles()) {
-                h.draw(g);
+                if (clipBounds == null || clipBounds.intersects(h.getDrawingArea())) {
+                    h.draw(g);
+                }
             }
 
             for (Handle h : getSecondaryHandles()) {
@@ -765,6 +874,9 @@ public class DefaultDrawingView
             this.drawing.addFigureListener(eventHandler);
         }
         dirtyArea.add(bufferedArea);
+        if (tileCache != null) {
+            tileCache.clear();
+        }
 
         firePropertyChange(DRAWING_PROPERTY, oldValue, newValue);
 
@@ -795,6 +907,9 @@ public class DefaultDrawingView
         Rectangle vr = drawingToView(r);
         vr.grow(2, 2);
         dirtyArea.add(vr);
+        if (tileCache != null) {
+            tileCache.invalidate(r);
+        }
 
         repaint(vr);
     }
@@ -816,6 +931,7 @@ public class DefaultDrawingView
             drawingBufferV.flush();
             drawingBufferV = null;
         }
+        tileCache = null;
     }
 
     /**
@@ -827,12 +943,53 @@ public class DefaultDrawingView
             System.out.println("DefaultDrawingView" + ".addToSelection(" + figure + ")");
         }
 
-        Set<Figure> oldSelection = new HashSet<Figure>(selectedFigures);
-        if (selectedFigures.add(figure)) {
+        if (!selectionModel.contains(figure)) {
+            freezeSelectionEvent();
+            selectionModel.add(figure);
+            selectionAdded(Collections.singleton(figure), Collections.<Figure>emptySet());
+        }
+    }
+
+    /**
+     * Adds a collection of figures to the current selection.
+     */
+    @Override
+    public void addToSelection(Collection<Figure> figures) {
+        freezeSelectionEvent();
+        Set<Figure> added = selectionModel.addAll(figures);
+        if (!added.isEmpty()) {
+            selectionAdded(added, Collections.<Figure>emptySet());
+        }
+    }
+
+    /**
+     * Creates the handles of the figures which have been added to the
+     * selection, and fires a selection event.
+     */
+    private void selectionAdded(Set<Figure> added, Set<Figure> removed) {
+        Rectangle invalidatedArea = null;
+        boolean createsHandles = handlesAreValid && getEditor() != null;
+        if (createsHandles && isHandlesVirtualized) {
+            if (aggregateHandle != null) {
+                aggregateHandle.figuresChanged();
+                createsHandles = false;
+            } else if (selectionModel.size() > aggregateHandleThreshold) {
+                // The aggregate handle is created when the handles are validated
+                invalidateHandles();
+                createsHandles = false;
+            } else {
+                handleIndex = null;
+            }
+        }
+        for (Figure figure : added) {
             figure.addFigureListener(handleInvalidator);
-            Set<Figure> newSelection = new HashSet<Figure>(selectedFigures);
-            Rectangle invalidatedArea = null;
-            if (handlesAreValid && getEditor() != null) {
+            if (createsHandles && isHandlesVirtualized) {
+                if (handleArea == null || !handleArea.intersects(drawingToView(figure.getDrawingArea()))) {
+                    continue;
+                }
+                handleOwners.add(figure);
+            }
+            if (createsHandles) {
                 for (Handle h : figure.createHandles(detailLevel)) {
                     h.setView(this);
                     selectionHandles.add(h);
@@ -845,66 +1002,48 @@ public class DefaultDrawingView
 
                 }
             }
-            fireSelectionChanged(oldSelection, newSelection);
-            if (invalidatedArea != null) {
-                repaint(invalidatedArea);
-            }
-
+        }
+        fireSelectionDelta(added, removed);
+        if (invalidatedArea != null) {
+            repaint(invalidatedArea);
         }
     }
 
     /**
-     * Adds a collection of figures to the current selection.
+     * Removes a figure from the selection.
      */
     @Override
-    public void addToSelection(Collection<Figure> figures) {
-        Set<Figure> oldSelection = new HashSet<Figure>(selectedFigures);
-        Set<Figure> newSelection = new HashSet<Figure>(selectedFigures);
-        boolean selectionChanged = false;
-        Rectangle invalidatedArea = null;
-        for (Figure figure : figures) {
-            if (selectedFigures.add(figure)) {
-                selectionChanged = true;
-                newSelection.add(figure);
-                figure.addFigureListener(handleInvalidator);
-                if (handlesAreValid && getEditor() != null) {
-                    for (Handle h : figure.createHandles(detailLevel)) {
-                        h.setView(this);
-                        selectionHandles.add(h);
-                        h.addHandleListener(eventHandler);
-                        if (invalidatedArea == null) {
-                            invalidatedArea = h.getDrawingArea();
-                        } else {
-                            invalidatedArea.add(h.getDrawingArea());
-                        }
-
-                    }
-                }
-            }
-        }
-        if (selectionChanged) {
-            fireSelectionChanged(oldSelection, newSelection);
-            if (invalidatedArea != null) {
-                repaint(invalidatedArea);
-            }
-
+    public void removeFromSelection(Figure figure) {
+        if (selectionModel.contains(figure)) {
+            freezeSelectionEvent();
+            selectionModel.remove(figure);
+            selectionRemoved(Collections.singleton(figure));
         }
     }
 
     /**
-     * Removes a figure from the selection.
+     * Removes a collection of figures from the selection.
      */
     @Override
-    public void removeFromSelection(Figure figure) {
-        Set<Figure> oldSelection = new HashSet<Figure>(selectedFigures);
-        if (selectedFigures.remove(figure)) {
-            Set<Figure> newSelection = new HashSet<Figure>(selectedFigures);
-            invalidateHandles();
+    public void removeFromSelection(Collection<Figure> figures) {
+        freezeSelectionEvent();
+        Set<Figure> removed = selectionModel.removeAll(figures);
+        if (!removed.isEmpty()) {
+            selectionRemoved(removed);
+        }
+    }
 
+    /**
+     * Invalidates the handles of the figures which have been removed from
+     * the selection, and fires a selection event.
+     */
+    private void selectionRemoved(Set<Figure> removed) {
+        invalidateHandles();
+        for (Figure figure : removed) {
             figure.removeFigureListener(handleInvalidator);
-            fireSelectionChanged(oldSelection, newSelection);
-            repaint();
         }
+        fireSelectionDelta(Collections.<Figure>emptySet(), removed);
+        repaint();
     }
 
     /**
@@ -913,7 +1052,7 @@ public class DefaultDrawingView
      */
     @Override
     public void toggleSelection(Figure figure) {
-        if (selectedFigures.contains(figure)) {
+        if (selectionModel.contains(figure)) {
             removeFromSelection(figure);
         } else {
             addToSelection(figure);
@@ -932,21 +1071,29 @@ public class DefaultDrawingView
      */
     @Override
     public void selectAll() {
-        Set<Figure> oldSelection = new HashSet<Figure>(selectedFigures);
-        selectedFigures.clear();
-
+        LinkedHashSet<Figure> selectable = new LinkedHashSet<Figure>();
         for (Figure figure : drawing.getChildren()) {
             if (figure.isSelectable()) {
-                selectedFigures.add(figure);
+                selectable.add(figure);
             }
 
         }
 
-        Set<Figure> newSelection = new HashSet<Figure>(selectedFigures);
-        invalidateHandles();
+        freezeSelectionEvent();
+        Set<Figure> removed = selectionModel.retainAll(selectable);
+        Set<Figure> added = selectionModel.addAll(selectable);
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            invalidateHandles();
+            for (Figure figure : removed) {
+                figure.removeFigureListener(handleInvalidator);
+            }
+            for (Figure figure : added) {
+                figure.addFigureListener(handleInvalidator);
+            }
 
-        fireSelectionChanged(oldSelection, newSelection);
-        repaint();
+            fireSelectionDelta(added, removed);
+            repaint();
+        }
 
     }
 
@@ -956,12 +1103,14 @@ public class DefaultDrawingView
     @Override
     public void clearSelection() {
         if (getSelectionCount() > 0) {
-            Set<Figure> oldSelection = new HashSet<Figure>(selectedFigures);
-            selectedFigures.clear();
-            Set<Figure> newSelection = new HashSet<Figure>(selectedFigures);
+            freezeSelectionEvent();
+            Set<Figure> removed = selectionModel.clear();
             invalidateHandles();
+            for (Figure figure : removed) {
+                figure.removeFigureListener(handleInvalidator);
+            }
 
-            fireSelectionChanged(oldSelection, newSelection);
+            fireSelectionDelta(Collections.<Figure>emptySet(), removed);
         }
     }
 
@@ -970,7 +1119,7 @@ public class DefaultDrawingView
      */
     @Override
     public boolean isFigureSelected(Figure checkFigure) {
-        return selectedFigures.contains(checkFigure);
+        return selectionModel.contains(checkFigure);
     }
 
     /**
@@ -979,7 +1128,7 @@ public class DefaultDrawingView
      */
     @Override
     public Set<Figure> getSelectedFigures() {
-        return Collections.unmodifiableSet(selectedFigures);
+        return selectionModel.getSelectedFigures();
     }
 
     /**
@@ -987,7 +1136,7 @@ public class DefaultDrawingView
      */
     @Override
     public int getSelectionCount() {
-        return selectedFigures.size();
+        return selectionModel.size();
     }
 
     /**
@@ -1038,6 +1187,10 @@ public class DefaultDrawingView
 
             selectionHandles.clear();
             secondaryHandles.clear();
+            handleOwners.clear();
+            handleArea = null;
+            handleIndex = null;
+            aggregateHandle = null;
             setActiveHandle(null);
             if (invalidatedArea != null) {
                 repaint(invalidatedArea);
@@ -1055,6 +1208,20 @@ public class DefaultDrawingView
         if (!handlesAreValid && getEditor() != null) {
             handlesAreValid = true;
             selectionHandles.clear();
+            if (isHandlesVirtualized) {
+                if (selectionModel.size() > aggregateHandleThreshold) {
+                    aggregateHandle = new SelectionBoundsHandle(
+                            selectionModel.getSelectedFigures().iterator().next(),
+                            selectionModel.getSelectedFigures());
+                    aggregateHandle.setView(this);
+                    selectionHandles.add(aggregateHandle);
+                    aggregateHandle.addHandleListener(eventHandler);
+                    repaint(aggregateHandle.getDrawingArea());
+                } else {
+                    validateVirtualizedHandles();
+                }
+                return;
+            }
             Rectangle invalidatedArea = null;
             while (true) {
                 for (Figure figure : getSelectedFigures()) {
@@ -1084,10 +1251,74 @@ public class DefaultDrawingView
                 repaint(invalidatedArea);
             }
 
+        } else if (handlesAreValid && isHandlesVirtualized && aggregateHandle == null
+                && getEditor() != null) {
+            validateVirtualizedHandles();
         }
 
     }
 
+    /**
+     * Creates the handles of the selected figures which are in or near the
+     * visible area of the view, and which do not have handles yet.
+     * <p>
+     * Handles are created for an area which is twice as large as the visible
+     * area, so that scrolling by a small amount does not require new handles.
+     */
+    private void validateVirtualizedHandles() {
+        Rectangle vr = getVisibleRect();
+        if (handleArea != null && (vr.isEmpty() || handleArea.contains(vr))) {
+            return;
+        }
+        Rectangle area = new Rectangle(vr.x - vr.width / 2, vr.y - vr.height / 2, vr.width * 2, vr.height * 2);
+        Rectangle invalidatedArea = null;
+        if (!area.isEmpty()) {
+            for (Figure figure : getSelectedFigures()) {
+                if (!handleOwners.contains(figure)
+                        && area.intersects(drawingToView(figure.getDrawingArea()))) {
+                    handleOwners.add(figure);
+                    for (Handle handle : figure.createHandles(detailLevel)) {
+                        handle.setView(this);
+                        selectionHandles.add(handle);
+                        handle.addHandleListener(eventHandler);
+                        if (invalidatedArea == null) {
+                            invalidatedArea = handle.getDrawingArea();
+                        } else {
+                            invalidatedArea.add(handle.getDrawingArea());
+                        }
+                    }
+                }
+            }
+        }
+        handleArea = area;
+        handleIndex = null;
+        if (invalidatedArea != null) {
+            repaint(invalidatedArea);
+        }
+    }
+
+    /**
+     * Returns the spatial index over the drawing areas of the selection
+     * handles. The order of a handle in the index is its position in the
+     * list of selection handles.
+     */
+    private PackedQuadTree<Handle> getHandleIndex() {
+        if (handleIndex == null) {
+            ArrayList<Rectangle2D.Double> areas = new ArrayList<Rectangle2D.Double>(selectionHandles.size());
+            for (Handle handle : selectionHandles) {
+                Rectangle r = handle.getDrawingArea();
+                areas.add(new Rectangle2D.Double(r.x, r.y, r.width, r.height));
+            }
+            handleIndex = new PackedQuadTree<Handle>();
+            handleIndex.bulkLoad(selectionHandles, areas);
+            int i = 0;
+            for (Handle handle : selectionHandles) {
+                handleIndex.setOrder(handleIndex.getHandle(handle), i++);
+            }
+        }
+        return handleIndex;
+    }
+
     /**
      * Finds a handle at a given coordinates.
      *
@@ -1104,6 +1335,16 @@ public class DefaultDrawingView
             }
 
         }
+        if (isHandlesVirtualized) {
+            getSelectionHandles();
+            java.util.List<Handle> c = getHandleIndex().findContainsInOrder(new Point2D.Double(p.x, p.y));
+            for (int i = c.size() - 1; i >= 0; i--) {
+                if (c.get(i).contains(p)) {
+                    return c.get(i);
+                }
+            }
+            return null;
+        }
         for (Handle handle : new ReversedList<Handle>(getSelectionHandles())) {
             if (handle.contains(p)) {
                 return handle;
@@ -1178,28 +1419,58 @@ public class DefaultDrawingView
     protected void fireSelectionChanged(
             Set<Figure> oldValue,
             Set<Figure> newValue) {
+        fireSelectionChanged(new FigureSelectionEvent(this, oldValue, newValue),
+                oldValue.isEmpty(), newValue.isEmpty());
+    }
+
+    /**
+     * Notifies the listeners about the figures which have been added to and
+     * removed from the selection. The old and the new selection of the event
+     * are only computed, if a listener requests them.
+     */
+    private void fireSelectionDelta(Set<Figure> added, Set<Figure> removed) {
+        int newCount = selectionModel.size();
+        int oldCount = newCount - added.size() + removed.size();
+        fireSelectionChanged(new FigureSelectionEvent(this, selectionModel.getSelectedFigures(), added, removed),
+                oldCount == 0, newCount == 0);
+    }
+
+    private void fireSelectionChanged(FigureSelectionEvent event, boolean wasEmpty, boolean isEmpty) {
         if (listenerList.getListenerCount() > 0) {
-            FigureSelectionEvent event = null;
-            // Notify all listeners that have registered interest for
-            // Guaranteed to return a non-null array
-            Object[] listeners = listenerList.getListenerList();
-            // Process the listeners last to first, notifying
-            // those that are interested in this event
-            for (int i = listeners.length - 2; i
-                    >= 0; i -=
-                         2) {
-                if (listeners[i] == FigureSelectionListener.class) {
-                    // Lazily create the event:
-                    if (event == null) {
-                        event = new FigureSelectionEvent(this, oldValue, newValue);
+            FigureSelectionEvent outerEvent = firingSelectionEvent;
+            firingSelectionEvent = event;
+            try {
+                // Notify all listeners that have registered interest for
+                // Guaranteed to return a non-null array
+                Object[] listeners = listenerList.getListenerList();
+                // Process the listeners last to first, notifying
+                // those that are interested in this event
+                for (int i = listeners.length - 2; i
+                        >= 0; i -=
+                             2) {
+                    if (listeners[i] == FigureSelectionListener.class) {
+                        ((FigureSelectionListener) listeners[i + 1]).selectionChanged(event);
                     }
-                    ((FigureSelectionListener) listeners[i + 1]).selectionChanged(event);
                 }
+            } finally {
+                firingSelectionEvent = outerEvent;
             }
 
         }
 
-        firePropertyChange(EditableComponent.SELECTION_EMPTY_PROPERTY, oldValue.isEmpty(), newValue.isEmpty());
+        firePropertyChange(EditableComponent.SELECTION_EMPTY_PROPERTY, wasEmpty, isEmpty);
+    }
+
+    /**
+     * If a listener changes the selection while a selection event is being
+     * delivered, the old and new selection of that event must be computed
+     * before the selection is changed.
+     */
+    private void freezeSelectionEvent() {
+        if (firingSelectionEvent != null) {
+            firingSelectionEvent.getOldSelection();
+            firingSelectionEvent.getNewSelection();
+        }
     }
 
     protected void invalidateDimension() {
@@ -1382,6 +1653,8 @@ public class DefaultDrawingView
     }
 
     protected void fireViewTransformChanged() {
+        handleArea = null;
+        handleIndex = null;
         for (Handle handle : selectionHandles) {
             handle.viewTransformChanged();
         }
@@ -1406,6 +1679,31 @@ public class DefaultDrawingView
         return detailLevel;
     }
 
+    /**
+     * Sets the level of detail policy.
+     * <p>
+     * The policy is passed to the figures with the rendering hint
+     * {@link LevelOfDetailPolicy#KEY}. The policy is not used when the drawing
+     * view is printed.
+     */
+    @Override
+    public void setLevelOfDetailPolicy(@Nullable LevelOfDetailPolicy newValue) {
+        LevelOfDetailPolicy oldValue = levelOfDetailPolicy;
+        levelOfDetailPolicy = newValue;
+        if (tileCache != null) {
+            tileCache.clear();
+        }
+        dirtyArea.setBounds(bufferedArea);
+        repaint();
+        firePropertyChange(LEVEL_OF_DETAIL_POLICY_PROPERTY, oldValue, newValue);
+    }
+
+    @Override
+    @Nullable
+    public LevelOfDetailPolicy getLevelOfDetailPolicy() {
+        return levelOfDetailPolicy;
+    }
+
     @Override
     public AffineTransform getDrawingToViewTransform() {
         AffineTransform t = new AffineTransform();
@@ -1610,6 +1908,116 @@ public class DefaultDrawingView
         return isDrawingDoubleBuffered;
     }
 
+    /**
+     * Sets whether the drawing is rendered into a cache of tiles.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * If this is set to true, the drawing view renders the drawing into
+     * tiles of 256 by 256 pixels, which are cached until the figures in them
+     * change. Panning and scrolling only render the tiles which have not
+     * been visible before. Tiles which are not in the cache are rendered in
+     * parallel. A figure is locked while it is drawn, so different figures
+     * may be drawn concurrently, but the same figure is never drawn
+     * concurrently. Only set this to true, if the {@code draw} method of
+     * each figure in the drawing only accesses the state of the figure and
+     * of its children.
+     * <p>
+     * This property takes precedence over the drawingDoubleBuffered property.
+     */
+    public void setDrawingTiled(boolean newValue) {
+        boolean oldValue = isDrawingTiled;
+        isDrawingTiled = newValue;
+        if (!isDrawingTiled) {
+            tileCache = null;
+        }
+        firePropertyChange(DRAWING_TILED_PROPERTY, oldValue, newValue);
+        repaint();
+    }
+
+    /**
+     * Returns true, if the drawing is rendered into a cache of tiles.
+     */
+    public boolean isDrawingTiled() {
+        return isDrawingTiled;
+    }
+
+    /**
+     * Sets whether the handles of the selected figures are virtualized.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * If this is set to true, handles are only created for the selected
+     * figures which are in or near the visible area of the view, only the
+     * handles which intersect the clip bounds are drawn, and handles are
+     * found with a spatial index. If more figures are selected than the
+     * aggregate handle threshold, a single handle shows the bounds of the
+     * selection instead.
+     * <p>
+     * Compatible handles are only found among the handles which have been
+     * created.
+     */
+    public void setHandlesVirtualized(boolean newValue) {
+        boolean oldValue = isHandlesVirtualized;
+        isHandlesVirtualized = newValue;
+        invalidateHandles();
+        firePropertyChange(HANDLES_VIRTUALIZED_PROPERTY, oldValue, newValue);
+        repaint();
+    }
+
+    /**
+     * Returns true, if the handles of the selected figures are virtualized.
+     */
+    public boolean isHandlesVirtualized() {
+        return isHandlesVirtualized;
+    }
+
+    /**
+     * Sets the number of selected figures above which a single handle
+     * shows the bounds of the selection, if handles are virtualized.
+     * <p>
+     * The default value is 1000.
+     */
+    public void setAggregateHandleThreshold(int newValue) {
+        aggregateHandleThreshold = newValue;
+        if (isHandlesVirtualized) {
+            invalidateHandles();
+            repaint();
+        }
+    }
+
+    /**
+     * Returns the number of selected figures above which a single handle
+     * shows the bounds of the selection.
+     */
+    public int getAggregateHandleThreshold() {
+        return aggregateHandleThreshold;
+    }
+
+    /**
+     * Sets the maximal number of bytes used by the tile cache.
+     * <p>
+     * The default value is 64 MB. The tile cache may temporarily exceed
+     * this value, if more tiles are visible than fit into the budget.
+     */
+    public void setTileCacheMemoryBudget(long newValue) {
+        tileCacheMemoryBudget = newValue;
+        if (tileCache != null) {
+            tileCache.setMemoryBudget(newValue);
+        }
+    }
+
+    /**
+     * Returns the maximal number of bytes used by the tile cache.
+     */
+    public long getTileCacheMemoryBudget() {
+        return tileCacheMemoryBudget;
+    }
+
     /**
      * Returns a paint for drawing the background of the drawing area.
      *
@@ -0,0 +1,141 @@
+/* @(#)DefaultLevelOfDetailPolicy.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import static org.jhotdraw.draw.AttributeKeys.FILL_COLOR;
+import static org.jhotdraw.draw.AttributeKeys.STROKE_COLOR;
+import static org.jhotdraw.draw.AttributeKeys.TEXT_COLOR;
+
+/**
+ * A {@link LevelOfDetailPolicy} with fixed thresholds in device pixels.
+ * <ul>
+ * <li>Figures whose drawing area is smaller than {@code minFigureSize}
+ * pixels are drawn as a flat rectangle in their fill, stroke or text color.
+ * Open bezier figures, such as lines and connections, are drawn as a hairline
+ * from their start point to their end point.</li>
+ * <li>Text with a font size smaller than {@code minTextSize} pixels is
+ * drawn as grey bars.</li>
+ * <li>Decorations are not drawn if the drawing is scaled by less than
+ * {@code minDecorationScale}.</li>
+ * </ul>
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class DefaultLevelOfDetailPolicy implements LevelOfDetailPolicy {
+    private static final Color TEXT_BAR_COLOR = new Color(0x80808080, true);
+    private static final Stroke HAIRLINE = new BasicStroke(0f);
+
+    private double minFigureSize;
+    private double minTextSize;
+    private double minDecorationScale;
+
+    /**
+     * Creates a new instance with a minimal figure size of 4 pixels, a
+     * minimal text size of 5 pixels and a minimal decoration scale of 0.5.
+     */
+    public DefaultLevelOfDetailPolicy() {
+        this(4, 5, 0.5);
+    }
+
+    public DefaultLevelOfDetailPolicy(double minFigureSize, double minTextSize, double minDecorationScale) {
+        this.minFigureSize = minFigureSize;
+        this.minTextSize = minTextSize;
+        this.minDecorationScale = minDecorationScale;
+    }
+
+    public double getMinFigureSize() {
+        return minFigureSize;
+    }
+
+    public double getMinTextSize() {
+        return minTextSize;
+    }
+
+    public double getMinDecorationScale() {
+        return minDecorationScale;
+    }
+
+    /**
+     * Returns the scale factor from drawing coordinates to device
+     * coordinates.
+     */
+    protected double getScale(Graphics2D g) {
+        return Math.sqrt(Math.abs(g.getTransform().getDeterminant()));
+    }
+
+    @Override
+    public boolean drawSimplified(Graphics2D g, Figure f) {
+        double scale = getScale(g);
+        Rectangle2D.Double r = f.getDrawingArea();
+        if (r.width * scale >= minFigureSize || r.height * scale >= minFigureSize) {
+            return false;
+        }
+
+        Color color = f.get(FILL_COLOR);
+        if (color == null) {
+            color = f.get(STROKE_COLOR);
+        }
+        if (color == null) {
+            color = f.get(TEXT_COLOR);
+        }
+        if (color == null) {
+            return true;
+        }
+        g.setColor(color);
+        if (f instanceof BezierFigure && !((BezierFigure) f).isClosed()) {
+            Point2D.Double p1 = f.getStartPoint();
+            Point2D.Double p2 = f.getEndPoint();
+            Stroke savedStroke = g.getStroke();
+            g.setStroke(HAIRLINE);
+            g.draw(new Line2D.Double(p1, p2));
+            g.setStroke(savedStroke);
+        } else {
+            // Cover at least one device pixel, so that the figure does not vanish
+            double min = 1 / scale;
+            if (r.width < min) {
+                r.x -= (min - r.width) / 2;
+                r.width = min;
+            }
+            if (r.height < min) {
+                r.y -= (min - r.height) / 2;
+                r.height = min;
+            }
+            g.fill(r);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTextReadable(Graphics2D g, double fontSize) {
+        return fontSize * getScale(g) >= minTextSize;
+    }
+
+    @Override
+    public void drawUnreadableText(Graphics2D g, Rectangle2D.Double textBounds, double fontSize) {
+        g.setColor(TEXT_BAR_COLOR);
+        double lineHeight = fontSize * 1.2;
+        double barHeight = fontSize * 0.6;
+        Rectangle2D.Double bar = new Rectangle2D.Double(textBounds.x, 0, textBounds.width, barHeight);
+        for (double y = textBounds.y + (lineHeight - barHeight) / 2,
+             maxY = textBounds.y + textBounds.height; y < maxY; y += lineHeight) {
+            bar.y = y;
+            bar.height = Math.min(barHeight, maxY - y);
+            g.fill(bar);
+        }
+    }
+
+    @Override
+    public boolean isDecorationVisible(Graphics2D g, Figure f) {
+        return getScale(g) >= minDecorationScale;
+    }
+}
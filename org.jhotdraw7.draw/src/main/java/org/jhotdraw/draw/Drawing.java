@@ -324,6 +324,50 @@ public interface Drawing extends CompositeFigure, Serializable, DOMStorable {
      */
     void fireUndoableEditHappened(UndoableEdit edit);
 
+    /**
+     * Begins a batch of changes to the figures of the drawing.
+     * <p>
+     * While a batch is open, the drawing coalesces the {@code figureChanged}
+     * and {@code areaInvalidated} events of its children. When the outermost
+     * batch is closed, the drawing updates its internal data structures
+     * once for all changed figures, and fires a single event with the union
+     * of the invalidated areas.
+     * <p>
+     * If a presentation name is specified, all undoable edits which are
+     * fired by the drawing during the batch are grouped into a single
+     * composite edit.
+     * <p>
+     * Calls to this method can be nested. Each call must be balanced by a
+     * call to {@link #endUpdate}, preferably in a finally block.
+     * <p>
+     * The default implementation does nothing. The drawing then fires its
+     * events immediately.
+     *
+     * @param presentationName the presentation name of the composite edit,
+     *                         or null if the undoable edits shall not be
+     *                         grouped.
+     */
+    default void beginUpdate(@Nullable String presentationName) {
+    }
+
+    /**
+     * Ends a batch of changes which has been started with
+     * {@link #beginUpdate}.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void endUpdate() {
+    }
+
+    /**
+     * Returns true if a batch of changes is open.
+     * <p>
+     * The default implementation returns false.
+     */
+    default boolean isUpdating() {
+        return false;
+    }
+
     /**
      * Returns the font render context used to do text leyout and text drawing.
      */
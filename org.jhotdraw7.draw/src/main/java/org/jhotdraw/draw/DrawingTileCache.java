@@ -0,0 +1,402 @@
+/* @(#)DrawingTileCache.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Caches a rendered image of a drawing in square tiles.
+ * <p>
+ * The tiles are keyed by the scale factor of the view and by their tile
+ * coordinates in the scaled drawing. The tile coordinates do not depend on
+ * the translation of the view, so that panning and scrolling only needs to
+ * render the tiles that have not been visible before.
+ * <p>
+ * Tiles which need to be rendered are rasterized in parallel by a shared
+ * pool of worker threads, with the event dispatch thread helping out. The
+ * figures of each tile and the graphics of each tile are determined on the
+ * event dispatch thread, which waits until all tiles have been rendered.
+ * The worker threads only invoke {@link Figure#draw}. Since figures lazily
+ * cache their shapes and text layouts, a thread locks a figure while it
+ * draws it. Thus, different figures are drawn concurrently, but a figure is
+ * never drawn by two threads at the same time. The {@code draw} method of a
+ * figure must therefore only access the state of the figure and of its
+ * children.
+ * <p>
+ * The least recently used tiles are evicted when the cache exceeds its
+ * memory budget. Tiles which are visible are never evicted.
+ * <p>
+ * This class must only be used on the event dispatch thread.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+class DrawingTileCache {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+    /**
+     * The number of bytes used by a tile.
+     */
+    private static final long TILE_BYTES = TILE_SIZE * TILE_SIZE * 4L;
+    /**
+     * The maximal number of evicted tile images which are kept for reuse.
+     */
+    private static final int MAX_FREE_IMAGES = 16;
+    /**
+     * The shared worker pool.
+     */
+    private static ExecutorService executor;
+
+    private static class TileKey {
+        private final double scale;
+        private final int x;
+        private final int y;
+
+        public TileKey(double scale, int x, int y) {
+            this.scale = scale;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey that = (TileKey) o;
+            return this.x == that.x && this.y == that.y && this.scale == that.scale;
+        }
+
+        @Override
+        public int hashCode() {
+            long s = Double.doubleToLongBits(scale);
+            return (int) (s ^ (s >>> 32)) * 31 * 31 + x * 31 + y;
+        }
+    }
+
+    private static class Tile {
+        private final TileKey key;
+        private final BufferedImage image;
+        /**
+         * The value of {@link #paintCount} when the tile was painted last.
+         */
+        private int paintedAt;
+
+        public Tile(TileKey key, BufferedImage image) {
+            this.key = key;
+            this.image = image;
+        }
+    }
+
+    /**
+     * The tiles in least recently used order.
+     */
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<TileKey, Tile>(64, 0.75f, true);
+    private final ArrayDeque<BufferedImage> freeImages = new ArrayDeque<BufferedImage>();
+    private long memoryBudget;
+    private int paintCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param memoryBudget the maximal number of bytes used by the tiles.
+     */
+    public DrawingTileCache(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public void setMemoryBudget(long newValue) {
+        memoryBudget = newValue;
+        evict();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Removes all tiles from the cache.
+     */
+    public void clear() {
+        tiles.clear();
+        freeImages.clear();
+    }
+
+    /**
+     * Invalidates all tiles which intersect the specified area of the
+     * drawing. The area is grown by 2 pixels on each tile to account for
+     * rounding errors and anti-aliasing.
+     *
+     * @param r an area in drawing coordinates
+     */
+    public void invalidate(Rectangle2D.Double r) {
+        for (Iterator<Tile> i = tiles.values().iterator(); i.hasNext(); ) {
+            Tile t = i.next();
+            double scale = t.key.scale;
+            if ((r.x + r.width) * scale + 2 >= t.key.x * TILE_SIZE
+                    && (r.y + r.height) * scale + 2 >= t.key.y * TILE_SIZE
+                    && r.x * scale - 2 <= (t.key.x + 1) * TILE_SIZE
+                    && r.y * scale - 2 <= (t.key.y + 1) * TILE_SIZE) {
+                i.remove();
+                recycle(t.image);
+            }
+        }
+    }
+
+    /**
+     * Paints the drawing into the specified view graphics. Renders all
+     * tiles which intersect the clip bounds of the graphics and are not
+     * in the cache.
+     *
+     * @param view        the drawing view
+     * @param g           the graphics of the view
+     * @param drawing     the drawing
+     * @param scale       the scale factor of the view
+     * @param translation the translation of the view
+     */
+    public void paint(DefaultDrawingView view, Graphics2D g, Drawing drawing, double scale, Point translation) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = view.getVisibleRect();
+        }
+        if (clip.isEmpty()) {
+            return;
+        }
+        paintCount++;
+        int x0 = Math.floorDiv(clip.x + translation.x, TILE_SIZE);
+        int y0 = Math.floorDiv(clip.y + translation.y, TILE_SIZE);
+        int x1 = Math.floorDiv(clip.x + clip.width - 1 + translation.x, TILE_SIZE);
+        int y1 = Math.floorDiv(clip.y + clip.height - 1 + translation.y, TILE_SIZE);
+
+        // Look up the tiles, and collect the tiles which need to be rendered
+        ArrayList<Tile> visible = new ArrayList<Tile>((x1 - x0 + 1) * (y1 - y0 + 1));
+        ArrayList<Tile> missing = new ArrayList<Tile>();
+        GraphicsConfiguration gc = view.getGraphicsConfiguration();
+        for (int ty = y0; ty <= y1; ty++) {
+            for (int tx = x0; tx <= x1; tx++) {
+                TileKey key = new TileKey(scale, tx, ty);
+                Tile t = tiles.get(key);
+                if (t == null) {
+                    t = new Tile(key, createImage(gc));
+                    missing.add(t);
+                }
+                t.paintedAt = paintCount;
+                visible.add(t);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            render(view, drawing, missing);
+            for (Tile t : missing) {
+                tiles.put(t.key, t);
+            }
+        }
+
+        // Composite the tiles
+        for (Tile t : visible) {
+            g.drawImage(t.image, t.key.x * TILE_SIZE - translation.x, t.key.y * TILE_SIZE - translation.y, null);
+        }
+        evict();
+    }
+
+    /**
+     * Renders the specified tiles.
+     */
+    private void render(DefaultDrawingView view, Drawing drawing, List<Tile> missing) {
+        double scale = missing.get(0).key.scale;
+
+        // Determine the figures which intersect the missing tiles
+        Rectangle2D.Double union = null;
+        for (Tile t : missing) {
+            Rectangle2D.Double r = getDrawingArea(t);
+            if (union == null) {
+                union = r;
+            } else {
+                union.add(r);
+            }
+        }
+        final List<Figure> candidates = drawing.findFigures(union);
+        final Rectangle2D.Double[] areas = new Rectangle2D.Double[candidates.size()];
+        for (int i = 0; i < areas.length; i++) {
+            areas[i] = candidates.get(i).getDrawingArea();
+        }
+
+        // Prepare the graphics of the tiles
+        ArrayList<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>(missing.size());
+        for (Tile t : missing) {
+            final Rectangle2D.Double r = getDrawingArea(t);
+            r.x -= 2 / scale;
+            r.y -= 2 / scale;
+            r.width += 4 / scale;
+            r.height += 4 / scale;
+            final Graphics2D g = t.image.createGraphics();
+            view.setViewRenderingHints(g);
+            g.setComposite(AlphaComposite.Src);
+            g.setColor(new Color(0x0, true));
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.setComposite(AlphaComposite.SrcOver);
+            g.translate(-t.key.x * TILE_SIZE, -t.key.y * TILE_SIZE);
+            g.clipRect(t.key.x * TILE_SIZE, t.key.y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            g.scale(scale, scale);
+            tasks.add(new FutureTask<Object>(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        drawFigures(g, r, candidates, areas);
+                    } finally {
+                        g.dispose();
+                    }
+                }
+            }, null));
+        }
+
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+        } else {
+            ExecutorService exec = getExecutor();
+            for (FutureTask<Object> task : tasks) {
+                exec.execute(task);
+            }
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Draws the figures which intersect the specified area.
+     */
+    private static void drawFigures(Graphics2D g, Rectangle2D.Double r, List<Figure> figures, Rectangle2D.Double[] areas) {
+        LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+        for (int i = 0; i < areas.length; i++) {
+            if (areas[i].intersects(r)) {
+                Figure f = figures.get(i);
+                synchronized (f) {
+                    if (f.isVisible() && (lod == null || !lod.drawSimplified(g, f))) {
+                        f.draw(g);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks, which have not been started by a worker thread yet,
+     * and waits until all tasks are done. If the current thread is
+     * interrupted while waiting, the tasks are nevertheless completed, and
+     * the interrupt status is restored afterwards.
+     */
+    private static void invokeAll(List<FutureTask<Object>> tasks) {
+        boolean interrupted = false;
+        try {
+            for (FutureTask<Object> f : tasks) {
+                // Does nothing if a worker thread has already started the task
+                f.run();
+                while (true) {
+                    try {
+                        f.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InternalError(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                        private int count;
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "DrawingTileCache-" + (++count));
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the area of the drawing covered by a tile.
+     */
+    private Rectangle2D.Double getDrawingArea(Tile t) {
+        double scale = t.key.scale;
+        return new Rectangle2D.Double(
+                t.key.x * TILE_SIZE / scale, t.key.y * TILE_SIZE / scale,
+                TILE_SIZE / scale, TILE_SIZE / scale);
+    }
+
+    private BufferedImage createImage(GraphicsConfiguration gc) {
+        BufferedImage img = freeImages.poll();
+        if (img == null) {
+            img = (gc == null)
+                    ? new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE)
+                    : gc.createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.TRANSLUCENT);
+        }
+        return img;
+    }
+
+    private void recycle(BufferedImage img) {
+        if (freeImages.size() < MAX_FREE_IMAGES) {
+            freeImages.add(img);
+        }
+    }
+
+    /**
+     * Evicts the least recently used tiles until the cache fits into its
+     * memory budget. Tiles which have been painted by the last call to
+     * {@code paint} are not evicted.
+     */
+    private void evict() {
+        long bytes = (tiles.size() + freeImages.size()) * TILE_BYTES;
+        for (Iterator<Tile> i = tiles.values().iterator(); bytes > memoryBudget && i.hasNext(); ) {
+            Tile t = i.next();
+            if (t.paintedAt == paintCount) {
+                break;
+            }
+            i.remove();
+            bytes -= TILE_BYTES;
+        }
+        while (bytes > memoryBudget && !freeImages.isEmpty()) {
+            freeImages.poll();
+            bytes -= TILE_BYTES;
+        }
+    }
+}
@@ -165,6 +165,10 @@ public interface DrawingView {
      * This constant is used to identify the activeHandle property of the DrawingView.
      */
     public static final String ACTIVE_HANDLE_PROPERTY = "activeHandle";
+    /**
+     * This constant is used to identify the level of detail policy property of the DrawingView.
+     */
+    public static final String LEVEL_OF_DETAIL_POLICY_PROPERTY = "levelOfDetailPolicy";
 
     /**
      * Gets the drawing.
@@ -205,6 +209,19 @@ public interface DrawingView {
      */
     public void removeFromSelection(Figure figure);
 
+    /**
+     * Removes a collection of figures from the selection.
+     * <p>
+     * The default implementation removes the figures one by one.
+     * Implementations should override this method, if they can remove
+     * many figures at once.
+     */
+    public default void removeFromSelection(Collection<Figure> figures) {
+        for (Figure f : figures) {
+            removeFromSelection(f);
+        }
+    }
+
     /**
      * If a figure isn't selected it is added to the selection.
      * Otherwise it is removed from the selection.
@@ -433,6 +450,31 @@ public interface DrawingView {
      */
     public int getHandleDetailLevel();
 
+    /**
+     * Sets the level of detail policy which is used for drawing the figures
+     * of the drawing. Set this to null, to draw all figures with full
+     * detail.
+     * This is a bound property.
+     * <p>
+     * The default implementation does nothing. Implementations which support
+     * a level of detail policy must override this method and
+     * {@link #getLevelOfDetailPolicy}.
+     */
+    public default void setLevelOfDetailPolicy(@Nullable LevelOfDetailPolicy newValue) {
+    }
+
+    /**
+     * Returns the level of detail policy.
+     * This is a bound property.
+     * <p>
+     * The default implementation returns null, that is, all figures are
+     * drawn with full detail.
+     */
+    @Nullable
+    public default LevelOfDetailPolicy getLevelOfDetailPolicy() {
+        return null;
+    }
+
     /**
      * Sets the enabled state of the drawing view.
      * This is a bound property.
@@ -0,0 +1,167 @@
+/* @(#)FigureSelectionModel.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Holds the selected figures of a {@link DrawingView}.
+ * <p>
+ * The figures are held in the sequence in which they have been selected.
+ * All operations which change the selection return the figures which have
+ * actually been added to or removed from the selection. This allows a
+ * drawing view to fire a {@link org.jhotdraw.draw.event.FigureSelectionEvent}
+ * which only describes the change, instead of copying the whole selection
+ * before and after each change.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class FigureSelectionModel implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private LinkedHashSet<Figure> selection = new LinkedHashSet<Figure>();
+    private transient Set<Figure> selectionView = new SelectionView();
+
+    /**
+     * Creates a new instance.
+     */
+    public FigureSelectionModel() {
+    }
+
+    /**
+     * Returns an unmodifiable view on the selected figures. The view
+     * reflects later changes of the selection.
+     */
+    public Set<Figure> getSelectedFigures() {
+        return selectionView;
+    }
+
+    public boolean contains(Figure figure) {
+        return selection.contains(figure);
+    }
+
+    public int size() {
+        return selection.size();
+    }
+
+    public boolean isEmpty() {
+        return selection.isEmpty();
+    }
+
+    /**
+     * Adds a figure to the selection.
+     *
+     * @return true if the figure was not already selected.
+     */
+    public boolean add(Figure figure) {
+        return selection.add(figure);
+    }
+
+    /**
+     * Adds a collection of figures to the selection.
+     *
+     * @return the figures which were not already selected, in the sequence
+     * of the collection.
+     */
+    public Set<Figure> addAll(Collection<? extends Figure> figures) {
+        LinkedHashSet<Figure> added = new LinkedHashSet<Figure>();
+        for (Figure f : figures) {
+            if (selection.add(f)) {
+                added.add(f);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Removes a figure from the selection.
+     *
+     * @return true if the figure was selected.
+     */
+    public boolean remove(Figure figure) {
+        return selection.remove(figure);
+    }
+
+    /**
+     * Removes a collection of figures from the selection.
+     *
+     * @return the figures which were selected.
+     */
+    public Set<Figure> removeAll(Collection<? extends Figure> figures) {
+        LinkedHashSet<Figure> removed = new LinkedHashSet<Figure>();
+        for (Figure f : figures) {
+            if (selection.remove(f)) {
+                removed.add(f);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all figures from the selection, which are not contained in the
+     * specified set.
+     *
+     * @return the figures which have been removed.
+     */
+    public Set<Figure> retainAll(Set<? extends Figure> figures) {
+        LinkedHashSet<Figure> removed = new LinkedHashSet<Figure>();
+        for (Iterator<Figure> i = selection.iterator(); i.hasNext(); ) {
+            Figure f = i.next();
+            if (!figures.contains(f)) {
+                i.remove();
+                removed.add(f);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all figures from the selection.
+     * <p>
+     * The selection is replaced by an empty set. Therefore this operation
+     * does not depend on the number of selected figures.
+     *
+     * @return the figures which were selected.
+     */
+    public Set<Figure> clear() {
+        Set<Figure> removed = Collections.unmodifiableSet(selection);
+        selection = new LinkedHashSet<Figure>();
+        return removed;
+    }
+
+    /**
+     * An unmodifiable view on the current selection set.
+     */
+    private class SelectionView extends AbstractSet<Figure> {
+
+        @Override
+        public Iterator<Figure> iterator() {
+            return Collections.unmodifiableSet(selection).iterator();
+        }
+
+        @Override
+        public int size() {
+            return selection.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return selection.contains(o);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        selectionView = new SelectionView();
+    }
+}
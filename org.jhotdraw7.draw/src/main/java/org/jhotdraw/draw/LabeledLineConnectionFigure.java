@@ -95,6 +95,8 @@ public class LabeledLineConnectionFigure extends LineConnectionFigure
      * Creates a new instance.
      */
     public LabeledLineConnectionFigure() {
+        // The locators of the labels query the path repeatedly
+        path.setFlatteningCached(true);
     }
     // DRAWING
 
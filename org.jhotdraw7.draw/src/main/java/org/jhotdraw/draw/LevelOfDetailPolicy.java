@@ -0,0 +1,92 @@
+/* @(#)LevelOfDetailPolicy.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A {@code LevelOfDetailPolicy} decides how much detail is used for drawing
+ * a figure on a {@link DrawingView}.
+ * <p>
+ * A drawing view passes its level of detail policy to the figures with the
+ * rendering hint {@link #KEY} of the {@code Graphics2D} object. Figures which
+ * support level of detail rendering retrieve the policy from the graphics
+ * and consult it before drawing expensive details like text or
+ * decorations. Composite figures and drawings consult it before drawing a
+ * child figure.
+ * <p>
+ * If the rendering hint is not set, figures are drawn with full detail.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public interface LevelOfDetailPolicy {
+
+    /**
+     * The rendering hint key for the level of detail policy. The value of
+     * the rendering hint must be a {@code LevelOfDetailPolicy}.
+     */
+    public static final RenderingHints.Key KEY = new HintKey();
+
+    /**
+     * The key class of the {@link #KEY} rendering hint.
+     */
+    public static class HintKey extends RenderingHints.Key {
+
+        private HintKey() {
+            super(0);
+        }
+
+        @Override
+        public boolean isCompatibleValue(Object val) {
+            return val == null || val instanceof LevelOfDetailPolicy;
+        }
+
+        @Override
+        public String toString() {
+            return "Level of detail policy";
+        }
+    }
+
+    /**
+     * Draws a simplified representation of the figure, if the figure is too
+     * small to be drawn with full detail.
+     *
+     * @param g the graphics with the current transformation from drawing
+     *          to device coordinates.
+     * @param f the figure
+     * @return true if a simplified representation has been drawn, false if
+     * the figure needs to be drawn with full detail.
+     */
+    public boolean drawSimplified(Graphics2D g, Figure f);
+
+    /**
+     * Returns true if text with the specified font size is readable.
+     *
+     * @param g        the graphics with the current transformation from
+     *                 drawing to device coordinates.
+     * @param fontSize the font size in drawing coordinates.
+     */
+    public boolean isTextReadable(Graphics2D g, double fontSize);
+
+    /**
+     * Draws a placeholder for text that is not readable.
+     *
+     * @param g          the graphics configured with the text color.
+     * @param textBounds the bounds of the text in drawing coordinates.
+     * @param fontSize   the font size in drawing coordinates.
+     */
+    public void drawUnreadableText(Graphics2D g, Rectangle2D.Double textBounds, double fontSize);
+
+    /**
+     * Returns true if the decorations of the figure shall be drawn.
+     *
+     * @param g the graphics with the current transformation from drawing
+     *          to device coordinates.
+     * @param f the figure
+     */
+    public boolean isDecorationVisible(Graphics2D g, Figure f);
+}
@@ -56,6 +56,11 @@ public class LineConnectionFigure extends LineFigure
      * end figure.
      */
     private ConnectionHandler connectionHandler = new ConnectionHandler(this);
+    /**
+     * True if the connection has been laid out by
+     * {@link ConnectionRoutingScheduler} after the last call to willChange.
+     */
+    private transient boolean isLineoutValid;
 
     private static class ConnectionHandler extends FigureAdapter implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -85,9 +90,15 @@ public class LineConnectionFigure extends LineFigure
             if (!owner.isChanging()) {
                 if (e.getSource() == owner.getStartFigure()
                         || e.getSource() == owner.getEndFigure()) {
-                    owner.willChange();
-                    owner.updateConnection();
-                    owner.changed();
+                    Drawing drawing = owner.getDrawing();
+                    if (drawing instanceof AbstractDrawing && drawing.isUpdating()) {
+                        // Re-route only once, when the batch of changes is closed
+                        ((AbstractDrawing) drawing).getConnectionRoutingScheduler().markDirty(owner);
+                    } else {
+                        owner.willChange();
+                        owner.updateConnection();
+                        owner.changed();
+                    }
                 }
             }
         }
@@ -173,7 +184,23 @@ public class LineConnectionFigure extends LineFigure
     @Override
     public void validate() {
         super.validate();
+        if (isLineoutValid) {
+            isLineoutValid = false;
+        } else {
+            lineout();
+        }
+    }
+
+    /**
+     * Lays out the connection between a call to willChange and changed.
+     * The layout is not repeated when changed is called.
+     * <p>
+     * This method is invoked by {@link ConnectionRoutingScheduler}, possibly
+     * on a worker thread.
+     */
+    void basicLineout() {
         lineout();
+        isLineoutValid = true;
     }
 
     @Override
@@ -581,6 +608,16 @@ public class LineConnectionFigure extends LineFigure
         return liner;
     }
 
+    /**
+     * Returns the drawing of this connection. Liners use the drawing to
+     * find the figures which a connection has to avoid.
+     */
+    @Override
+    @Nullable
+    public Drawing getDrawing() {
+        return super.getDrawing();
+    }
+
     @Override
     public void setStartPoint(Point2D.Double p) {
         setPoint(0, p);
@@ -99,7 +99,7 @@ public abstract class QuadTreeCompositeFigure
 
     public void draw(Graphics2D g, Collection<Figure> c) {
         for (Figure f : c) {
-            f.draw(g);
+            drawChild(g, f);
         }
     }
 
@@ -3,9 +3,10 @@
  */
 package org.jhotdraw.draw;
 
+import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.geom.Geom;
-import org.jhotdraw.geom.QuadTree;
+import org.jhotdraw.geom.PackedQuadTree;
 import org.jhotdraw.util.ReversedList;
 
 import java.awt.Color;
@@ -15,6 +16,8 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 
 import static org.jhotdraw.draw.AttributeKeys.CANVAS_FILL_COLOR;
@@ -25,8 +28,21 @@ import static org.jhotdraw.draw.AttributeKeys.TRANSFORM;
 
 /**
  * An implementation of {@link Drawing} which uses a
- * {@link org.jhotdraw.geom.QuadTree} to provide a good responsiveness for
+ * {@link org.jhotdraw.geom.PackedQuadTree} to provide a good responsiveness for
  * drawings which contain many figures.
+ * <p>
+ * When many figures are added at once, for example when a drawing is read
+ * from a file, the quad tree is bulk loaded instead of being built up figure
+ * by figure.
+ * <p>
+ * The drawing stores the z-index of each figure in the quad tree. This allows
+ * to sort the figures found by a spatial query without iterating over all
+ * children of the drawing, so that the cost of a repaint is proportional to
+ * the number of visible figures rather than to the size of the drawing.
+ * <p>
+ * {@link #findFiguresWithin} only tests the figures whose drawing area
+ * intersects the query rectangle. The bounds of the figures, transformed by
+ * their {@code TRANSFORM} attribute, are cached until the figures change.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -34,27 +50,90 @@ import static org.jhotdraw.draw.AttributeKeys.TRANSFORM;
 public class QuadTreeDrawing extends AbstractDrawing {
     private static final long serialVersionUID = 1L;
 
-    private QuadTree<Figure> quadTree = new QuadTree<Figure>();
+    /**
+     * If at least this many figures are added with {@link #basicAddAll}, the
+     * quad tree is rebuilt with a bulk load.
+     */
+    private static final int BULK_LOAD_THRESHOLD = 64;
+
+    private PackedQuadTree<Figure> quadTree = new PackedQuadTree<Figure>();
+    /**
+     * True if the children are not sorted by layer.
+     */
     private boolean needsSorting = false;
+    /**
+     * True if the z-indices stored in the quad tree do not match the
+     * indices of the children.
+     */
+    private boolean needsReindexing = false;
+    /**
+     * Caches the bounds of the children transformed by their
+     * {@code TRANSFORM} attribute. An entry is removed when the child changes.
+     */
+    @Nullable
+    private transient HashMap<Figure, Rectangle2D.Double> transformedBounds;
+    /**
+     * The figures which have changed during the current batch of changes,
+     * and whose entries in the quad tree have not been updated yet.
+     */
+    @Nullable
+    private transient LinkedHashSet<Figure> unindexedFigures;
 
     @Override
     public int indexOf(Figure figure) {
+        if (!needsReindexing) {
+            int h = quadTree.getHandle(figure);
+            if (h != -1) {
+                int index = quadTree.getOrder(h);
+                if (index < children.size() && children.get(index) == figure) {
+                    return index;
+                }
+            }
+        }
         return children.indexOf(figure);
     }
 
     @Override
     public void basicAdd(int index, Figure figure) {
         super.basicAdd(index, figure);
-        quadTree.add(figure, figure.getDrawingArea());
+        invalidateTransformedBounds(figure);
+        int h = quadTree.add(figure, figure.getDrawingArea());
+        if (index == children.size() - 1) {
+            quadTree.setOrder(h, index);
+        } else {
+            needsReindexing = true;
+        }
+        if (!isInLayerOrder(index)) {
+            needsSorting = true;
+        }
+    }
+
+    @Override
+    public void basicAddAll(int index, Collection<? extends Figure> newFigures) {
+        if (newFigures.size() < BULK_LOAD_THRESHOLD) {
+            super.basicAddAll(index, newFigures);
+            return;
+        }
+        ArrayList<Rectangle2D.Double> drawingAreas = new ArrayList<Rectangle2D.Double>(newFigures.size());
+        for (Figure f : newFigures) {
+            super.basicAdd(index++, f);
+            invalidateTransformedBounds(f);
+            drawingAreas.add(f.getDrawingArea());
+        }
+        quadTree.bulkLoad(newFigures, drawingAreas);
         needsSorting = true;
+        needsReindexing = true;
     }
 
     @Override
     public Figure basicRemoveChild(int index) {
         Figure figure = getChild(index);
         quadTree.remove(figure);
-        needsSorting = true;
+        invalidateTransformedBounds(figure);
         super.basicRemoveChild(index);
+        if (index != children.size()) {
+            needsReindexing = true;
+        }
         return figure;
     }
 
@@ -62,9 +141,8 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public void draw(Graphics2D g) {
         Rectangle2D clipBounds = g.getClipBounds();
         if (clipBounds != null) {
-            Collection<Figure> c = quadTree.findIntersects(clipBounds);
-            Collection<Figure> toDraw = sort(c);
-            draw(g, toDraw);
+            ensureSorted();
+            draw(g, quadTree.findIntersectsInOrder(clipBounds));
         } else {
             draw(g, children);
         }
@@ -76,19 +154,13 @@ public class QuadTreeDrawing extends AbstractDrawing {
     @Override
     public java.util.List<Figure> sort(Collection<? extends Figure> c) {
         ensureSorted();
-        ArrayList<Figure> sorted = new ArrayList<Figure>(c.size());
-        for (Figure f : children) {
-            if (c.contains(f)) {
-                sorted.add(f);
-            }
-        }
-        return sorted;
+        return quadTree.sortInOrder(c);
     }
 
     public void draw(Graphics2D g, Collection<Figure> c) {
         for (Figure f : c) {
             if (f.isVisible()) {
-                f.draw(g);
+                drawChild(g, f);
             }
         }
     }
@@ -104,9 +176,11 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        for (Figure f : getFiguresFrontToBack()) {
-            if (c.contains(f) && f.contains(p)) {
+        ensureSorted();
+        java.util.List<Figure> c = quadTree.findContainsInOrder(p);
+        for (int i = c.size() - 1; i >= 0; i--) {
+            Figure f = c.get(i);
+            if (f.contains(p)) {
                 return f.findFigureInside(p);
             }
         }
@@ -126,96 +200,75 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public Figure findFigure(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1: {
-                Figure f = c.iterator().next();
-                return (f.contains(p)) ? f : null;
-            }
-            default: {
-                for (Figure f : getFiguresFrontToBack()) {
-                    if (c.contains(f) && f.contains(p)) {
-                        return f;
-                    }
-                }
-                return null;
+        ensureSorted();
+        java.util.List<Figure> c = quadTree.findContainsInOrder(p);
+        for (int i = c.size() - 1; i >= 0; i--) {
+            Figure f = c.get(i);
+            if (f.contains(p)) {
+                return f;
             }
         }
+        return null;
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0: {
-                return null;
-            }
-            case 1: {
-                Figure f = c.iterator().next();
-                return (f == ignore || !f.contains(p)) ? null : f;
-            }
-            default: {
-                for (Figure f : getFiguresFrontToBack()) {
-                    if (f != ignore && f.contains(p)) {
-                        return f;
-                    }
-                }
-                return null;
+        ensureSorted();
+        java.util.List<Figure> c = quadTree.findContainsInOrder(p);
+        for (int i = c.size() - 1; i >= 0; i--) {
+            Figure f = c.get(i);
+            if (f != ignore && f.contains(p)) {
+                return f;
             }
         }
+        return null;
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Collection<? extends Figure> ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0: {
-                return null;
-            }
-            case 1: {
-                Figure f = c.iterator().next();
-                return (!ignore.contains(f) || !f.contains(p)) ? null : f;
-            }
-            default: {
-                for (Figure f : getFiguresFrontToBack()) {
-                    if (!ignore.contains(f) && f.contains(p)) {
-                        return f;
-                    }
-                }
-                return null;
+        ensureSorted();
+        java.util.List<Figure> c = quadTree.findContainsInOrder(p);
+        for (int i = c.size() - 1; i >= 0; i--) {
+            Figure f = c.get(i);
+            if (!ignore.contains(f) && f.contains(p)) {
+                return f;
             }
         }
+        return null;
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Figure figure) {
-        boolean isBehind = false;
-        for (Figure f : getFiguresFrontToBack()) {
-            if (isBehind) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
-                }
-            } else {
-                isBehind = figure == f;
-            }
-        }
-        return null;
+        ensureSorted();
+        int h = quadTree.getHandle(figure);
+        return (h == -1) ? null : findFigureBehind(p, quadTree.getOrder(h));
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Collection<? extends Figure> children) {
-        int inFrontOf = children.size();
-        for (Figure f : getFiguresFrontToBack()) {
-            if (inFrontOf == 0) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
-                }
-            } else {
-                if (children.contains(f)) {
-                    inFrontOf--;
-                }
+        ensureSorted();
+        int zIndex = Integer.MAX_VALUE;
+        for (Figure f : children) {
+            int h = quadTree.getHandle(f);
+            if (h == -1) {
+                return null;
+            }
+            zIndex = Math.min(zIndex, quadTree.getOrder(h));
+        }
+        return findFigureBehind(p, zIndex);
+    }
+
+    /**
+     * Returns the front-most visible figure which contains the specified
+     * point and which is behind the specified z-index.
+     */
+    private Figure findFigureBehind(Point2D.Double p, int zIndex) {
+        java.util.List<Figure> c = quadTree.findContainsInOrder(p);
+        for (int i = c.size() - 1; i >= 0; i--) {
+            Figure f = c.get(i);
+            if (quadTree.getOrder(quadTree.getHandle(f)) < zIndex
+                    && f.isVisible() && f.contains(p)) {
+                return f;
             }
         }
         return null;
@@ -223,38 +276,58 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public java.util.List<Figure> findFigures(Rectangle2D.Double r) {
-        LinkedList<Figure> c = new LinkedList<Figure>(quadTree.findIntersects(r));
-        switch (c.size()) {
-            case 0:
-                // fall through
-            case 1:
-                return c;
-            default:
-                return sort(c);
-        }
+        ensureSorted();
+        return quadTree.findIntersectsInOrder(r);
     }
 
+    /**
+     * Returns all visible figures whose bounds, transformed by their
+     * {@code TRANSFORM} attribute, lie within the specified bounds.
+     * <p>
+     * The drawing area of a figure encloses its transformed bounds. Therefore
+     * only the figures whose drawing area intersects the specified bounds
+     * are tested.
+     */
     @Override
     public java.util.List<Figure> findFiguresWithin(Rectangle2D.Double bounds) {
+        ensureSorted();
         LinkedList<Figure> contained = new LinkedList<Figure>();
-        for (Figure f : children) {
-            Rectangle2D.Double r = f.getBounds();
-            if (f.get(TRANSFORM) != null) {
-                Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
-                r = (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
-            }
-            if (f.isVisible() && Geom.contains(bounds, r)) {
+        for (Figure f : quadTree.findIntersectsInOrder(bounds)) {
+            if (f.isVisible() && Geom.contains(bounds, getCachedTransformedBounds(f))) {
                 contained.add(f);
             }
         }
         return contained;
     }
 
+    /**
+     * Returns the bounds of the figure transformed by its {@code TRANSFORM}
+     * attribute. The returned rectangle must not be changed.
+     */
+    private Rectangle2D.Double getCachedTransformedBounds(Figure f) {
+        if (transformedBounds == null) {
+            transformedBounds = new HashMap<Figure, Rectangle2D.Double>();
+        }
+        Rectangle2D.Double r = transformedBounds.get(f);
+        if (r == null) {
+            r = Geom.transformBounds(f.getBounds(), f.get(TRANSFORM));
+            transformedBounds.put(f, r);
+        }
+        return r;
+    }
+
+    private void invalidateTransformedBounds(Figure f) {
+        if (transformedBounds != null) {
+            transformedBounds.remove(f);
+        }
+    }
+
     @Override
     public void bringToFront(Figure figure) {
         if (children.remove(figure)) {
             children.add(figure);
             needsSorting = true;
+            needsReindexing = true;
             fireAreaInvalidated(figure.getDrawingArea());
         }
     }
@@ -264,25 +337,47 @@ public class QuadTreeDrawing extends AbstractDrawing {
         if (children.remove(figure)) {
             children.add(0, figure);
             needsSorting = true;
+            needsReindexing = true;
             fireAreaInvalidated(figure.getDrawingArea());
         }
     }
 
     @Override
     public boolean contains(Figure f) {
-        return children.contains(f);
+        return quadTree.contains(f);
     }
 
     /**
-     * Ensures that the children are sorted in z-order sequence.
+     * Ensures that the children are sorted in z-order sequence, and that
+     * the quad tree holds the z-index of each child.
      */
     private void ensureSorted() {
         if (needsSorting) {
             Collections.sort(children, FigureLayerComparator.INSTANCE);
             needsSorting = false;
+            needsReindexing = true;
+        }
+        if (needsReindexing) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                int h = quadTree.getHandle(children.get(i));
+                if (h != -1) {
+                    quadTree.setOrder(h, i);
+                }
+            }
+            needsReindexing = false;
         }
     }
 
+    /**
+     * Returns true if the child at the specified index is in layer order
+     * with its neighbours.
+     */
+    private boolean isInLayerOrder(int index) {
+        int layer = children.get(index).getLayer();
+        return (index == 0 || children.get(index - 1).getLayer() <= layer)
+                && (index == children.size() - 1 || layer <= children.get(index + 1).getLayer());
+    }
+
     @Override
     protected <T> void setAttributeOnChildren(AttributeKey<T> key, T newValue) {
         // empty
@@ -291,10 +386,14 @@ public class QuadTreeDrawing extends AbstractDrawing {
     @Override
     public QuadTreeDrawing clone() {
         QuadTreeDrawing that = (QuadTreeDrawing) super.clone();
-        that.quadTree = new QuadTree<Figure>();
-        for (Figure f : getChildren()) {
-            quadTree.add(f, f.getDrawingArea());
+        that.quadTree = new PackedQuadTree<Figure>();
+        ArrayList<Rectangle2D.Double> drawingAreas = new ArrayList<Rectangle2D.Double>(that.children.size());
+        for (Figure f : that.children) {
+            drawingAreas.add(f.getDrawingArea());
         }
+        that.quadTree.bulkLoad(that.children, drawingAreas);
+        that.needsReindexing = true;
+        that.transformedBounds = null;
         return that;
     }
 
@@ -306,19 +405,96 @@ public class QuadTreeDrawing extends AbstractDrawing {
     /**
      * Handles all figure events fired by Figures contained in the Drawing.
      */
-    protected class QuadTreeEventHandler extends AbstractCompositeFigure.EventHandler {
+    protected class QuadTreeEventHandler extends DrawingEventHandler {
         private static final long serialVersionUID = 1L;
 
         @Override
         public void figureChanged(FigureEvent e) {
-            if (!isChanging()) {
-                quadTree.remove(e.getFigure());
-                quadTree.add(e.getFigure(), e.getFigure().getDrawingArea());
-                needsSorting = true;
+            invalidateTransformedBounds(e.getFigure());
+            if (isUpdating()) {
+                super.figureChanged(e);
+            } else if (!isChanging()) {
+                Figure f = e.getFigure();
+                quadTree.update(f, f.getDrawingArea());
+                int index = indexOf(f);
+                if (index != -1 && !isInLayerOrder(index)) {
+                    needsSorting = true;
+                }
                 invalidate();
                 fireAreaInvalidated(e.getInvalidatedArea());
             }
         }
+
+        @Override
+        public void attributeChanged(FigureEvent e) {
+            invalidateTransformedBounds(e.getFigure());
+            super.attributeChanged(e);
+        }
+    }
+
+    @Override
+    protected void addPendingChange(@Nullable Figure figure, Rectangle2D.Double invalidatedArea) {
+        super.addPendingChange(figure, invalidatedArea);
+        if (figure != null) {
+            if (unindexedFigures == null) {
+                unindexedFigures = new LinkedHashSet<Figure>();
+            }
+            unindexedFigures.add(figure);
+        }
+    }
+
+    /**
+     * Updates the quad tree once for all figures which have changed during
+     * a batch of changes. If a large portion of the figures has changed,
+     * the quad tree is rebuilt from scratch.
+     */
+    @Override
+    protected void updateIndex() {
+        if (unindexedFigures == null) {
+            return;
+        }
+        Collection<Figure> figures = unindexedFigures;
+        unindexedFigures = null;
+        ArrayList<Figure> changed = new ArrayList<Figure>(figures.size());
+        for (Figure f : figures) {
+            invalidateTransformedBounds(f);
+            if (quadTree.contains(f)) {
+                changed.add(f);
+            }
+        }
+        if (changed.size() >= BULK_LOAD_THRESHOLD && changed.size() >= quadTree.size() / 4) {
+            ArrayList<Rectangle2D.Double> drawingAreas = new ArrayList<Rectangle2D.Double>(changed.size());
+            for (Figure f : changed) {
+                drawingAreas.add(f.getDrawingArea());
+            }
+            quadTree.bulkLoad(changed, drawingAreas);
+        } else {
+            for (Figure f : changed) {
+                quadTree.update(f, f.getDrawingArea());
+            }
+        }
+        if (!needsSorting) {
+            for (Figure f : changed) {
+                int index = indexOf(f);
+                if (index != -1 && !isInLayerOrder(index)) {
+                    needsSorting = true;
+                    break;
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Updates the quad tree for the figures which have changed since the
+     * connections have been re-routed.
+     */
+    @Override
+    protected void figuresChanged(Collection<Figure> figures, Rectangle2D.Double invalidatedArea) {
+        updateIndex();
+        fireAreaInvalidated(invalidatedArea);
     }
 
     @Override
@@ -107,6 +107,13 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
                     bounds.y + insets.top,
                     bounds.width - insets.left - insets.right,
                     bounds.height - insets.top - insets.bottom);
+            LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+            if (lod != null && !lod.isTextReadable(g, getFontSize())) {
+                if (getText() != null) {
+                    lod.drawUnreadableText(g, textRect, getFontSize());
+                }
+                return;
+            }
             float leftMargin = (float) textRect.x;
             float rightMargin = (float) Math.max(leftMargin + 1, textRect.x + textRect.width + 1);
             float verticalPos = (float) textRect.y;
@@ -82,6 +82,13 @@ public class TextFigure extends AbstractAttributedDecoratedFigure
     @Override
     protected void drawText(java.awt.Graphics2D g) {
         if (getText() != null || isEditable()) {
+            LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+            if (lod != null && !lod.isTextReadable(g, getFontSize())) {
+                if (getText() != null) {
+                    lod.drawUnreadableText(g, getBounds(), getFontSize());
+                }
+                return;
+            }
             TextLayout layout = getTextLayout();
             layout.draw(g, (float) origin.x, (float) (origin.y + layout.getAscent()));
         }
@@ -4,10 +4,10 @@
 package org.jhotdraw.draw.action;
 
 import org.jhotdraw.draw.DrawLabels;
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.event.TransformEdit;
-import org.jhotdraw.undo.CompositeEdit;
 import org.jhotdraw.util.ResourceBundleUtil;
 
 import java.awt.geom.AffineTransform;
@@ -48,10 +48,13 @@ public abstract class AlignAction extends AbstractSelectedAction {
 
     @Override
     public void actionPerformed(java.awt.event.ActionEvent e) {
-        CompositeEdit edit = new CompositeEdit(labels.getString("edit.align.text"));
-        fireUndoableEditHappened(edit);
-        alignFigures(getView().getSelectedFigures(), getSelectionBounds());
-        fireUndoableEditHappened(edit);
+        Drawing drawing = getDrawing();
+        drawing.beginUpdate(labels.getString("edit.align.text"));
+        try {
+            alignFigures(getView().getSelectedFigures(), getSelectionBounds());
+        } finally {
+            drawing.endUpdate();
+        }
     }
 
     protected abstract void alignFigures(Collection<Figure> selectedFigures, Rectangle2D.Double selectionBounds);
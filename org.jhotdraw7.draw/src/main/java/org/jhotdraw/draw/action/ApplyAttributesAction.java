@@ -63,14 +63,19 @@ public class ApplyAttributesAction extends AbstractSelectedAction {
         DrawingView view = getView();
         view.getDrawing().fireUndoableEditHappened(edit);
 
-        for (Figure figure : view.getSelectedFigures()) {
-            figure.willChange();
-            for (Map.Entry<AttributeKey<?>, Object> entry : editor.getDefaultAttributes().entrySet()) {
-                if (!excludedAttributes.contains(entry.getKey())) {
-                    figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        view.getDrawing().beginUpdate(null);
+        try {
+            for (Figure figure : view.getSelectedFigures()) {
+                figure.willChange();
+                for (Map.Entry<AttributeKey<?>, Object> entry : editor.getDefaultAttributes().entrySet()) {
+                    if (!excludedAttributes.contains(entry.getKey())) {
+                        figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+                    }
                 }
+                figure.changed();
             }
-            figure.changed();
+        } finally {
+            view.getDrawing().endUpdate();
         }
         view.getDrawing().fireUndoableEditHappened(edit);
     }
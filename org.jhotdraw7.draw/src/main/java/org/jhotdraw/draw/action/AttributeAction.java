@@ -7,6 +7,7 @@ import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.app.action.ActionUtil;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.DrawLabels;
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.util.ResourceBundleUtil;
@@ -98,15 +99,21 @@ public class AttributeAction extends AbstractSelectedAction {
             getEditor().setDefaultAttribute((AttributeKey<Object>) entry.getKey(), entry.getValue());
         }
 
+        final Drawing drawing = getDrawing();
         final ArrayList<Figure> selectedFigures = new ArrayList<Figure>(figures);
         final ArrayList<Object> restoreData = new ArrayList<Object>(selectedFigures.size());
-        for (Figure figure : selectedFigures) {
-            restoreData.add(figure.getAttributesRestoreData());
-            figure.willChange();
-            for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
-                figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        drawing.beginUpdate(null);
+        try {
+            for (Figure figure : selectedFigures) {
+                restoreData.add(figure.getAttributesRestoreData());
+                figure.willChange();
+                for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
+                    figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+                }
+                figure.changed();
             }
-            figure.changed();
+        } finally {
+            drawing.endUpdate();
         }
         UndoableEdit edit = new AbstractUndoableEdit() {
             private static final long serialVersionUID = 1L;
@@ -128,27 +135,37 @@ public class AttributeAction extends AbstractSelectedAction {
             public void undo() {
                 super.undo();
                 Iterator<Object> iRestore = restoreData.iterator();
-                for (Figure figure : selectedFigures) {
-                    figure.willChange();
-                    figure.restoreAttributesTo(iRestore.next());
-                    figure.changed();
+                drawing.beginUpdate(null);
+                try {
+                    for (Figure figure : selectedFigures) {
+                        figure.willChange();
+                        figure.restoreAttributesTo(iRestore.next());
+                        figure.changed();
+                    }
+                } finally {
+                    drawing.endUpdate();
                 }
             }
 
             @Override
             public void redo() {
                 super.redo();
-                for (Figure figure : selectedFigures) {
-                    //restoreData.add(figure.getAttributesRestoreData());
-                    figure.willChange();
-                    for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
-                        figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+                drawing.beginUpdate(null);
+                try {
+                    for (Figure figure : selectedFigures) {
+                        //restoreData.add(figure.getAttributesRestoreData());
+                        figure.willChange();
+                        for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
+                            figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+                        }
+                        figure.changed();
                     }
-                    figure.changed();
+                } finally {
+                    drawing.endUpdate();
                 }
             }
         };
-        getDrawing().fireUndoableEditHappened(edit);
+        drawing.fireUndoableEditHappened(edit);
     }
 
     @Override
@@ -6,6 +6,7 @@ package org.jhotdraw.draw.action;
 import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.DrawLabels;
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.event.FigureSelectionEvent;
@@ -110,16 +111,22 @@ public class DefaultAttributeAction extends AbstractSelectedAction {
         CompositeEdit edit = new CompositeEdit("attributes");
         fireUndoableEditHappened(edit);
         DrawingEditor editor = getEditor();
-        for (Figure figure : getView().getSelectedFigures()) {
-            figure.willChange();
-            for (int j = 0; j < keys.length; j++) {
-                figure.set((AttributeKey<Object>) keys[j], editor.getDefaultAttribute(keys[j]));
-            }
-            for (Map.Entry<AttributeKey<?>, Object> entry : fixedAttributes.entrySet()) {
-                figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        Drawing drawing = getDrawing();
+        drawing.beginUpdate(null);
+        try {
+            for (Figure figure : getView().getSelectedFigures()) {
+                figure.willChange();
+                for (int j = 0; j < keys.length; j++) {
+                    figure.set((AttributeKey<Object>) keys[j], editor.getDefaultAttribute(keys[j]));
+                }
+                for (Map.Entry<AttributeKey<?>, Object> entry : fixedAttributes.entrySet()) {
+                    figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
 
+                }
+                figure.changed();
             }
-            figure.changed();
+        } finally {
+            drawing.endUpdate();
         }
         fireUndoableEditHappened(edit);
     }
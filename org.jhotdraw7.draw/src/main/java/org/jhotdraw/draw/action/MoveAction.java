@@ -4,6 +4,7 @@
 package org.jhotdraw.draw.action;
 
 import org.jhotdraw.draw.DrawLabels;
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.event.TransformEdit;
@@ -41,13 +42,19 @@ public abstract class MoveAction extends AbstractSelectedAction {
         tx.translate(dx, dy);
 
         HashSet<Figure> transformedFigures = new HashSet<Figure>();
-        for (Figure f : getView().getSelectedFigures()) {
-            if (f.isTransformable()) {
-                transformedFigures.add(f);
-                f.willChange();
-                f.transform(tx);
-                f.changed();
+        Drawing drawing = getDrawing();
+        drawing.beginUpdate(null);
+        try {
+            for (Figure f : getView().getSelectedFigures()) {
+                if (f.isTransformable()) {
+                    transformedFigures.add(f);
+                    f.willChange();
+                    f.transform(tx);
+                    f.changed();
+                }
             }
+        } finally {
+            drawing.endUpdate();
         }
         fireUndoableEditHappened(new TransformEdit(transformedFigures, tx));
 
@@ -3,9 +3,14 @@
  */
 package org.jhotdraw.draw.event;
 
+import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.Figure;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -20,6 +25,12 @@ import java.util.Set;
  * Subject: {@link org.jhotdraw.draw.DrawingView}; Observer:
  * {@link FigureSelectionListener}; Event: {@link FigureSelectionEvent}.
  * <hr>
+ * <p>
+ * An event can be created from the figures which have been added to and
+ * removed from the selection. In this case, the old and the new selection
+ * are only computed when they are requested. They are computed from the
+ * selection of the view at that time, and are therefore only accurate while
+ * the event is delivered.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -27,8 +38,16 @@ import java.util.Set;
 public class FigureSelectionEvent extends java.util.EventObject {
     private static final long serialVersionUID = 1L;
 
+    @Nullable
     private Set<Figure> oldValue;
+    @Nullable
     private Set<Figure> newValue;
+    @Nullable
+    private transient Set<Figure> selection;
+    @Nullable
+    private transient Set<Figure> addedFigures;
+    @Nullable
+    private transient Set<Figure> removedFigures;
 
     /**
      * Creates a new instance.
@@ -39,15 +58,72 @@ public class FigureSelectionEvent extends java.util.EventObject {
         this.newValue = newValue;
     }
 
+    /**
+     * Creates a new instance which describes a change of the selection.
+     *
+     * @param source         the drawing view.
+     * @param selection      a view on the selection after the change.
+     * @param addedFigures   the figures which have been added to the selection.
+     * @param removedFigures the figures which have been removed from the
+     *                       selection.
+     */
+    public FigureSelectionEvent(DrawingView source, Set<Figure> selection, Set<Figure> addedFigures, Set<Figure> removedFigures) {
+        super(source);
+        this.selection = selection;
+        this.addedFigures = addedFigures;
+        this.removedFigures = removedFigures;
+    }
+
     public DrawingView getView() {
         return (DrawingView) source;
     }
 
     public Set<Figure> getOldSelection() {
+        if (oldValue == null) {
+            LinkedHashSet<Figure> s = new LinkedHashSet<Figure>(getNewSelection());
+            s.removeAll(addedFigures);
+            s.addAll(removedFigures);
+            oldValue = Collections.unmodifiableSet(s);
+        }
         return oldValue;
     }
 
     public Set<Figure> getNewSelection() {
+        if (newValue == null) {
+            newValue = Collections.unmodifiableSet(new LinkedHashSet<Figure>(selection));
+            selection = null;
+        }
         return newValue;
     }
+
+    /**
+     * Returns the figures which have been added to the selection.
+     */
+    public Set<Figure> getAddedFigures() {
+        if (addedFigures == null) {
+            LinkedHashSet<Figure> s = new LinkedHashSet<Figure>(newValue);
+            s.removeAll(oldValue);
+            addedFigures = Collections.unmodifiableSet(s);
+        }
+        return addedFigures;
+    }
+
+    /**
+     * Returns the figures which have been removed from the selection.
+     */
+    public Set<Figure> getRemovedFigures() {
+        if (removedFigures == null) {
+            LinkedHashSet<Figure> s = new LinkedHashSet<Figure>(oldValue);
+            s.removeAll(newValue);
+            removedFigures = Collections.unmodifiableSet(s);
+        }
+        return removedFigures;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // The changes are transient, they are computed again from the old
+        // and the new selection after deserialization
+        getOldSelection();
+        out.defaultWriteObject();
+    }
 }
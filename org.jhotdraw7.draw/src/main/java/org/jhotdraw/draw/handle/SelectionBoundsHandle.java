@@ -0,0 +1,153 @@
+/* @(#)SelectionBoundsHandle.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw.handle;
+
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.geom.Geom;
+
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+
+import static org.jhotdraw.draw.AttributeKeys.TRANSFORM;
+
+/**
+ * A non-interactive {@link Handle} which draws the bounds of a collection
+ * of figures.
+ * <p>
+ * A drawing view can use this handle instead of the handles of the
+ * individual figures, when a large number of figures is selected.
+ * <p>
+ * The bounds are computed lazily. When the view notifies the handle that one
+ * of the figures has changed, the bounds are recomputed once, after all
+ * pending events have been processed.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class SelectionBoundsHandle extends AbstractHandle {
+
+    private Collection<Figure> figures;
+    private boolean isUpdatePending;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param owner   one of the figures. This figure is returned by
+     *                {@link #getOwner}.
+     * @param figures the figures. The handle keeps a reference to the
+     *                collection, and does not copy it.
+     */
+    public SelectionBoundsHandle(Figure owner, Collection<Figure> figures) {
+        super(owner);
+        this.figures = figures;
+    }
+
+    /**
+     * Computes the union of the bounds of the figures, transformed by their
+     * {@code TRANSFORM} attribute.
+     */
+    private Rectangle2D.Double getFigureBounds() {
+        Rectangle2D.Double r = null;
+        for (Figure f : figures) {
+            Rectangle2D.Double b = Geom.transformBounds(f.getBounds(), f.get(TRANSFORM));
+            if (r == null) {
+                r = new Rectangle2D.Double(b.getX(), b.getY(), b.getWidth(), b.getHeight());
+            } else {
+                r.add(b);
+            }
+        }
+        return (r == null) ? new Rectangle2D.Double() : r;
+    }
+
+    @Override
+    protected Rectangle basicGetBounds() {
+        Rectangle r = view.drawingToView(getFigureBounds());
+        r.grow(2, 2);
+        return r;
+    }
+
+    /**
+     * Notifies the handle that one of the figures has changed. The bounds are
+     * updated later on the event dispatch thread, so that a change of many
+     * figures only causes a single update.
+     */
+    public void figuresChanged() {
+        if (!isUpdatePending) {
+            isUpdatePending = true;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    isUpdatePending = false;
+                    if (view != null) {
+                        updateBounds();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void areaInvalidated(FigureEvent evt) {
+        figuresChanged();
+    }
+
+    @Override
+    public void figureChanged(FigureEvent evt) {
+        figuresChanged();
+    }
+
+    @Override
+    public boolean contains(Point p) {
+        return false;
+    }
+
+    @Override
+    public void trackStart(Point anchor, int modifiersEx) {
+    }
+
+    @Override
+    public void trackStep(Point anchor, Point lead, int modifiersEx) {
+    }
+
+    @Override
+    public void trackEnd(Point anchor, Point lead, int modifiersEx) {
+    }
+
+    @Override
+    public void draw(Graphics2D g) {
+        Rectangle r = getBounds();
+        Stroke stroke1;
+        Color strokeColor1;
+        Stroke stroke2;
+        Color strokeColor2;
+        if (getEditor().getTool().supportsHandleInteraction()) {
+            stroke1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_1);
+            strokeColor1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_1);
+            stroke2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_2);
+            strokeColor2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_2);
+        } else {
+            stroke1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_1_DISABLED);
+            strokeColor1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_1_DISABLED);
+            stroke2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_2_DISABLED);
+            strokeColor2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_2_DISABLED);
+        }
+        if (stroke1 != null && strokeColor1 != null) {
+            g.setStroke(stroke1);
+            g.setColor(strokeColor1);
+            g.drawRect(r.x + 2, r.y + 2, r.width - 4, r.height - 4);
+        }
+        if (stroke2 != null && strokeColor2 != null) {
+            g.setStroke(stroke2);
+            g.setColor(strokeColor2);
+            g.drawRect(r.x + 2, r.y + 2, r.width - 4, r.height - 4);
+        }
+    }
+}
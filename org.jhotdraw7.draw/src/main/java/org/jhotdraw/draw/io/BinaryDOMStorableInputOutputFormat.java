@@ -0,0 +1,206 @@
+/* @(#)BinaryDOMStorableInputOutputFormat.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw.io;
+
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.gui.datatransfer.InputStreamTransferable;
+import org.jhotdraw.gui.filechooser.ExtensionFileFilter;
+import org.jhotdraw.xml.BinaryDOMInput;
+import org.jhotdraw.xml.BinaryDOMOutput;
+import org.jhotdraw.xml.DOMFactory;
+
+import javax.swing.JComponent;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An InputFormat and OutputFormat that can read and write Drawings with
+ * DOMStorable Figure's in a binary form.
+ * <p>
+ * This format stores the same information as
+ * {@link DOMStorableInputOutputFormat}, but uses {@link BinaryDOMOutput} and
+ * {@link BinaryDOMInput} instead of XML. This makes reading and writing of
+ * large drawings considerably faster, and the files smaller.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class BinaryDOMStorableInputOutputFormat implements OutputFormat, InputFormat {
+
+    private DOMFactory factory;
+    /**
+     * Format description used for the file filter.
+     */
+    private String description;
+    /**
+     * File name extension used for the file filter.
+     */
+    private String fileExtension;
+    /**
+     * The mime type is used for clipboard access.
+     */
+    private String mimeType;
+    /**
+     * The data flavor constructed from the mime type.
+     */
+    private DataFlavor dataFlavor;
+
+    /**
+     * Creates a new instance with format name "Binary Drawing", file
+     * extension "jhdb" and mime type "image/x-jhotdraw-binary".
+     */
+    public BinaryDOMStorableInputOutputFormat(DOMFactory factory) {
+        this(factory, "Binary Drawing", "jhdb", "image/x-jhotdraw-binary");
+    }
+
+    /**
+     * Creates a new instance using the specified parameters.
+     *
+     * @param factory       The factory for creating Figures from DOM elements.
+     * @param description   The format description to be used for the file filter.
+     * @param fileExtension The file extension to be used for file filter.
+     * @param mimeType      The Mime Type is used for clipboard access.
+     */
+    public BinaryDOMStorableInputOutputFormat(
+            DOMFactory factory,
+            String description, String fileExtension, String mimeType) {
+        this.factory = factory;
+        this.description = description;
+        this.fileExtension = fileExtension;
+        this.mimeType = mimeType;
+        try {
+            this.dataFlavor = new DataFlavor(mimeType);
+        } catch (ClassNotFoundException ex) {
+            InternalError error = new InternalError("Unable to create data flavor for mime type:" + mimeType);
+            error.initCause(ex);
+            throw error;
+        }
+    }
+
+    @Override
+    public javax.swing.filechooser.FileFilter getFileFilter() {
+        return new ExtensionFileFilter(description, fileExtension);
+    }
+
+    @Override
+    public JComponent getOutputFormatAccessory() {
+        return null;
+    }
+
+    @Override
+    public JComponent getInputFormatAccessory() {
+        return null;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        return flavor.equals(dataFlavor);
+    }
+
+    @Override
+    public void write(URI uri, Drawing drawing) throws IOException {
+        write(new File(uri), drawing);
+    }
+
+    public void write(File file, Drawing drawing) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(out, drawing);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public void write(OutputStream out, Drawing drawing) throws IOException {
+        BinaryDOMOutput domo = new BinaryDOMOutput(factory, out);
+        domo.openElement(factory.getName(drawing));
+        drawing.write(domo);
+        domo.closeElement();
+        domo.finish();
+    }
+
+    @Override
+    public void read(URI uri, Drawing drawing) throws IOException {
+        read(new File(uri), drawing);
+    }
+
+    @Override
+    public void read(URI uri, Drawing drawing, boolean replace) throws IOException {
+        read(new File(uri), drawing, replace);
+    }
+
+    public void read(File file, Drawing drawing) throws IOException {
+        read(file, drawing, true);
+    }
+
+    public void read(File file, Drawing drawing, boolean replace) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            read(in, drawing, replace);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
+        BinaryDOMInput domi = new BinaryDOMInput(factory, in);
+        domi.openElement(factory.getName(drawing));
+        if (replace) {
+            drawing.removeAllChildren();
+        }
+        drawing.read(domi);
+        domi.closeElement();
+    }
+
+    @Override
+    public void read(Transferable t, Drawing drawing, boolean replace) throws UnsupportedFlavorException, IOException {
+        LinkedList<Figure> figures = new LinkedList<Figure>();
+        InputStream in = (InputStream) t.getTransferData(new DataFlavor(mimeType, description));
+        BinaryDOMInput domi = new BinaryDOMInput(factory, in);
+        domi.openElement("Drawing-Clip");
+        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
+            Figure f = (Figure) domi.readObject(i);
+            figures.add(f);
+        }
+        domi.closeElement();
+        if (replace) {
+            drawing.removeAllChildren();
+        }
+        drawing.addAll(figures);
+    }
+
+    @Override
+    public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        BinaryDOMOutput domo = new BinaryDOMOutput(factory, buf);
+        domo.openElement("Drawing-Clip");
+        for (Figure f : figures) {
+            domo.writeObject(f);
+        }
+        domo.closeElement();
+        domo.finish();
+        return new InputStreamTransferable(new DataFlavor(mimeType, description), buf.toByteArray());
+    }
+}
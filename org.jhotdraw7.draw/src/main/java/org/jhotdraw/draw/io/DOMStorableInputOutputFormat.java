@@ -8,7 +8,7 @@ import org.jhotdraw.draw.Figure;
 import org.jhotdraw.gui.datatransfer.InputStreamTransferable;
 import org.jhotdraw.gui.filechooser.ExtensionFileFilter;
 import org.jhotdraw.nanoxml.NanoXMLDOMInput;
-import org.jhotdraw.nanoxml.NanoXMLDOMOutput;
+import org.jhotdraw.nanoxml.NanoXMLStreamingDOMOutput;
 import org.jhotdraw.xml.DOMFactory;
 
 import javax.swing.JComponent;
@@ -159,12 +159,11 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        NanoXMLDOMOutput domo = new NanoXMLDOMOutput(factory);
+        NanoXMLStreamingDOMOutput domo = new NanoXMLStreamingDOMOutput(factory, out);
         domo.openElement(factory.getName(drawing));
         drawing.write(domo);
         domo.closeElement();
-        domo.save(out);
-        domo.dispose();
+        domo.finish();
     }
 
     @Override
@@ -222,13 +221,13 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
     @Override
     public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException {
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        NanoXMLDOMOutput domo = new NanoXMLDOMOutput(factory);
+        NanoXMLStreamingDOMOutput domo = new NanoXMLStreamingDOMOutput(factory, buf);
         domo.openElement("Drawing-Clip");
         for (Figure f : figures) {
             domo.writeObject(f);
         }
         domo.closeElement();
-        domo.save(buf);
+        domo.finish();
         return new InputStreamTransferable(new DataFlavor(mimeType, description), buf.toByteArray());
     }
 }
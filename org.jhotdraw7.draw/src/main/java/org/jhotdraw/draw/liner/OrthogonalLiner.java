@@ -0,0 +1,671 @@
+/* @(#)OrthogonalLiner.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.draw.liner;
+
+import org.jhotdraw.annotation.Nullable;
+import org.jhotdraw.draw.ConnectionFigure;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.LineConnectionFigure;
+import org.jhotdraw.draw.connector.Connector;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.xml.DOMInput;
+import org.jhotdraw.xml.DOMOutput;
+import org.jhotdraw.xml.DOMStorable;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A {@link Liner} that constrains a connection to orthogonal lines, which
+ * are routed around the figures of the drawing.
+ * <p>
+ * The route is searched with the A* algorithm on a sparse orthogonal
+ * visibility graph. The grid lines of the graph are the edges of the
+ * figures near the connection, grown by the margin. The cost of a route is
+ * its length plus a penalty for each bend.
+ * <p>
+ * The figures are taken from the spatial index of the drawing, and their
+ * bounds are cached in an {@code OrthogonalRoutingGraph}, which is shared
+ * by all liners of the drawing and is updated when figures move. The liner
+ * reuses its last route, if neither the end points of the connection nor the
+ * figures near the route have changed.
+ * <p>
+ * If the connection is not part of a drawing, or if no route can be found,
+ * the connection is laid out like with an {@link ElbowLiner}.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class OrthogonalLiner
+        implements Liner, DOMStorable {
+
+    private static final int NORTH = 0;
+    private static final int EAST = 1;
+    private static final int SOUTH = 2;
+    private static final int WEST = 3;
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    /**
+     * The maximal number of nodes of the visibility graph.
+     */
+    private static final int MAX_NODES = 1 << 20;
+    /**
+     * The number of times the search region is grown, before the liner
+     * gives up.
+     */
+    private static final int MAX_TRIES = 3;
+
+    private double margin;
+    private double bendPenalty;
+
+    @Nullable
+    private transient Point2D.Double cachedStart;
+    @Nullable
+    private transient Point2D.Double cachedEnd;
+    @Nullable
+    private transient Rectangle2D.Double cachedRegion;
+    private transient long cachedSignature;
+    /**
+     * The coordinates of the nodes of the last route: x0, y0, x1, y1, ...
+     */
+    @Nullable
+    private transient double[] cachedRoute;
+
+    /**
+     * Creates a new instance.
+     */
+    public OrthogonalLiner() {
+        this(10);
+    }
+
+    public OrthogonalLiner(double margin) {
+        this.margin = margin;
+        this.bendPenalty = 2 * margin + 10;
+    }
+
+    /**
+     * Sets the distance which the connection keeps from the figures.
+     */
+    public void setMargin(double newValue) {
+        margin = newValue;
+        cachedRoute = null;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    /**
+     * Sets the cost of a bend, as a length.
+     */
+    public void setBendPenalty(double newValue) {
+        bendPenalty = newValue;
+        cachedRoute = null;
+    }
+
+    public double getBendPenalty() {
+        return bendPenalty;
+    }
+
+    @Override
+    public Collection<Handle> createHandles(BezierPath path) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void lineout(ConnectionFigure figure) {
+        BezierPath path = ((LineConnectionFigure) figure).getBezierPath();
+        Connector start = figure.getStartConnector();
+        Connector end = figure.getEndConnector();
+        if (start == null || end == null || path == null) {
+            return;
+        }
+        Drawing drawing = ((LineConnectionFigure) figure).getDrawing();
+        Figure startFigure = figure.getStartFigure();
+        Figure endFigure = figure.getEndFigure();
+        if (drawing == null || startFigure == endFigure) {
+            new ElbowLiner(2 * margin).lineout(figure);
+            return;
+        }
+
+        Point2D.Double sp = start.findStart(figure);
+        Point2D.Double ep = end.findEnd(figure);
+        Rectangle2D.Double sb = OrthogonalRoutingGraph.getObstacleBounds(startFigure);
+        Rectangle2D.Double eb = OrthogonalRoutingGraph.getObstacleBounds(endFigure);
+        int sdir = getDirection(sb, sp, ep);
+        int edir = getDirection(eb, ep, sp);
+        Point2D.Double s1 = getStub(sb, sp, sdir);
+        Point2D.Double e1 = getStub(eb, ep, edir);
+
+        OrthogonalRoutingGraph graph = OrthogonalRoutingGraph.getInstance(drawing);
+        ArrayList<Rectangle2D.Double> obstacles = new ArrayList<Rectangle2D.Double>();
+        double[] route = null;
+
+        // Reuse the last route, if nothing has changed
+        if (cachedRoute != null && sp.equals(cachedStart) && ep.equals(cachedEnd)) {
+            findObstacles(graph, drawing, cachedRegion, obstacles);
+            if (getSignature(obstacles) == cachedSignature) {
+                route = cachedRoute;
+            }
+        }
+
+        if (route == null) {
+            cachedRoute = null;
+            Rectangle2D.Double box = new Rectangle2D.Double(s1.x, s1.y, 0, 0);
+            box.add(e1);
+            double grow = Math.max(4 * margin, Math.max(box.width, box.height) / 4);
+            for (int i = 0; i < MAX_TRIES && route == null; i++, grow *= 3) {
+                Rectangle2D.Double region = new Rectangle2D.Double(
+                        box.x - grow, box.y - grow, box.width + 2 * grow, box.height + 2 * grow);
+                obstacles.clear();
+                findObstacles(graph, drawing, region, obstacles);
+                route = findRoute(graph, region, obstacles, s1, sdir, e1, edir);
+                if (route != null) {
+                    cachedStart = (Point2D.Double) sp.clone();
+                    cachedEnd = (Point2D.Double) ep.clone();
+                    cachedRegion = region;
+                    cachedSignature = getSignature(obstacles);
+                    cachedRoute = route;
+                }
+            }
+        }
+
+        if (route == null) {
+            new ElbowLiner(2 * margin).lineout(figure);
+            return;
+        }
+
+        path.clear();
+        path.add(new BezierPath.Node(sp.x, sp.y));
+        for (int i = 0; i < route.length; i += 2) {
+            path.add(new BezierPath.Node(route[i], route[i + 1]));
+        }
+        path.add(new BezierPath.Node(ep.x, ep.y));
+        removeRedundantNodes(path);
+
+        // Ensure all path nodes are straight
+        for (BezierPath.Node node : path) {
+            node.setMask(BezierPath.C0_MASK);
+        }
+
+        path.invalidatePath();
+    }
+
+    /**
+     * Finds the obstacles, which, grown by the margin, intersect the
+     * specified region.
+     */
+    private void findObstacles(OrthogonalRoutingGraph graph, Drawing drawing, Rectangle2D.Double region,
+                               ArrayList<Rectangle2D.Double> obstacles) {
+        graph.findObstacles(drawing, new Rectangle2D.Double(region.x - margin, region.y - margin,
+                region.width + 2 * margin, region.height + 2 * margin), obstacles);
+    }
+
+    /**
+     * Computes a signature of the bounds of the obstacles, which does not
+     * depend on their sequence.
+     */
+    private static long getSignature(ArrayList<Rectangle2D.Double> obstacles) {
+        long signature = obstacles.size();
+        for (Rectangle2D.Double r : obstacles) {
+            long h = Double.doubleToLongBits(r.x);
+            h = h * 31 + Double.doubleToLongBits(r.y);
+            h = h * 31 + Double.doubleToLongBits(r.width);
+            h = h * 31 + Double.doubleToLongBits(r.height);
+            h ^= h >>> 29;
+            h *= 0xbf58476d1ce4e5b9L;
+            h ^= h >>> 32;
+            signature += h;
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the direction in which a connection leaves a figure at the
+     * specified point. This is the side of the bounds of the figure, which is
+     * nearest to the point. Ties are broken in favor of the side which faces
+     * the other end of the connection.
+     */
+    private static int getDirection(Rectangle2D.Double b, Point2D.Double p, Point2D.Double other) {
+        double[] dist = {
+                p.y - b.y,
+                b.x + b.width - p.x,
+                b.y + b.height - p.y,
+                p.x - b.x};
+        int best = -1;
+        double bestDot = 0;
+        for (int d = 0; d < 4; d++) {
+            double dot = DX[d] * (other.x - p.x) + DY[d] * (other.y - p.y);
+            if (best == -1 || dist[d] < dist[best]
+                    || dist[d] == dist[best] && dot > bestDot) {
+                best = d;
+                bestDot = dot;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the point, where the connection leaves the bounds of the
+     * figure grown by the margin.
+     */
+    private Point2D.Double getStub(Rectangle2D.Double b, Point2D.Double p, int dir) {
+        switch (dir) {
+            case NORTH:
+                return new Point2D.Double(p.x, Math.min(p.y, b.y) - margin);
+            case EAST:
+                return new Point2D.Double(Math.max(p.x, b.x + b.width) + margin, p.y);
+            case SOUTH:
+                return new Point2D.Double(p.x, Math.max(p.y, b.y + b.height) + margin);
+            case WEST:
+            default:
+                return new Point2D.Double(Math.min(p.x, b.x) - margin, p.y);
+        }
+    }
+
+    /**
+     * Searches a route from s1 to e1 within the specified region.
+     *
+     * @return the coordinates of the nodes of the route, or null if no route
+     * was found.
+     */
+    @Nullable
+    private double[] findRoute(OrthogonalRoutingGraph graph, Rectangle2D.Double region,
+                               ArrayList<Rectangle2D.Double> obstacles,
+                               Point2D.Double s1, int sdir, Point2D.Double e1, int edir) {
+        double rx1 = region.x, rx2 = region.x + region.width;
+        double ry1 = region.y, ry2 = region.y + region.height;
+        double[] xs = unique(graph.getXLines(rx1, rx2, margin), rx1, rx2, s1.x, e1.x);
+        double[] ys = unique(graph.getYLines(ry1, ry2, margin), ry1, ry2, s1.y, e1.y);
+        int nx = xs.length, ny = ys.length;
+        if ((long) nx * ny > MAX_NODES) {
+            return null;
+        }
+
+        // Mark the nodes and edges which are inside an obstacle. Edge k
+        // connects node k with its neighbor to the east or to the south.
+        BitSet blockedNode = new BitSet();
+        BitSet blockedH = new BitSet();
+        BitSet blockedV = new BitSet();
+        for (Rectangle2D.Double b : obstacles) {
+            double l = b.x - margin, r = b.x + b.width + margin;
+            double t = b.y - margin, bt = b.y + b.height + margin;
+            if (l < s1.x && s1.x < r && t < s1.y && s1.y < bt
+                    || l < e1.x && e1.x < r && t < e1.y && e1.y < bt) {
+                // The connection could not leave this obstacle
+                continue;
+            }
+            int ia = upperBound(xs, l), ib = lowerBound(xs, r) - 1;
+            int ja = upperBound(ys, t), jb = lowerBound(ys, bt) - 1;
+            int ha = Math.max(ia - 1, 0), hb = Math.min(ib, nx - 2);
+            for (int j = ja; j <= jb; j++) {
+                if (ia <= ib) {
+                    blockedNode.set(j * nx + ia, j * nx + ib + 1);
+                }
+                if (ha <= hb) {
+                    blockedH.set(j * nx + ha, j * nx + hb + 1);
+                }
+            }
+            if (ia <= ib) {
+                for (int j = Math.max(ja - 1, 0), jEnd = Math.min(jb, ny - 2); j <= jEnd; j++) {
+                    blockedV.set(j * nx + ia, j * nx + ib + 1);
+                }
+            }
+        }
+        int startNode = Arrays.binarySearch(ys, s1.y) * nx + Arrays.binarySearch(xs, s1.x);
+        int goalNode = Arrays.binarySearch(ys, e1.y) * nx + Arrays.binarySearch(xs, e1.x);
+        int goalDir = (edir + 2) % 4;
+
+        // A* search over the states (node, direction of arrival). Only the
+        // states which are reached by the search are stored.
+        StateTable states = new StateTable();
+        Heap open = new Heap();
+        int startState = startNode * 4 + sdir;
+        states.update(startState, 0, -1);
+        open.push(startState, 0);
+        int goalState = -1;
+        double gx = e1.x, gy = e1.y;
+        while (!open.isEmpty()) {
+            int state = open.pop();
+            int slot = states.find(state);
+            if (states.isClosed(slot)) {
+                continue;
+            }
+            states.close(slot);
+            int node = state >> 2;
+            if (node == goalNode) {
+                goalState = state;
+                break;
+            }
+            double stateCost = states.getCost(slot);
+            int dir = state & 3;
+            int i = node % nx, j = node / nx;
+            for (int d = 0; d < 4; d++) {
+                if (d == ((dir + 2) & 3)) {
+                    continue;
+                }
+                int ni = i + DX[d], nj = j + DY[d];
+                if (ni < 0 || ni >= nx || nj < 0 || nj >= ny) {
+                    continue;
+                }
+                int next = nj * nx + ni;
+                if (blockedNode.get(next)) {
+                    continue;
+                }
+                if (d == EAST && blockedH.get(node) || d == WEST && blockedH.get(next)
+                        || d == SOUTH && blockedV.get(node) || d == NORTH && blockedV.get(next)) {
+                    continue;
+                }
+                double c = stateCost + Math.abs(xs[ni] - xs[i]) + Math.abs(ys[nj] - ys[j]);
+                if (d != dir) {
+                    c += bendPenalty;
+                }
+                if (next == goalNode && d != goalDir) {
+                    c += bendPenalty;
+                }
+                int nextState = next * 4 + d;
+                if (states.update(nextState, c, state)) {
+                    // Favor states near the goal among states of equal cost
+                    open.push(nextState, c + estimate(xs[ni], ys[nj], d, gx, gy, goalDir) * (1 + 1e-9));
+                }
+            }
+        }
+        if (goalState == -1) {
+            return null;
+        }
+
+        int count = 0;
+        for (int s = goalState; s != -1; s = states.getParent(states.find(s))) {
+            count++;
+        }
+        double[] route = new double[count * 2];
+        for (int s = goalState, k = count - 1; s != -1; s = states.getParent(states.find(s)), k--) {
+            int node = s >> 2;
+            route[k * 2] = xs[node % nx];
+            route[k * 2 + 1] = ys[node / nx];
+        }
+        return route;
+    }
+
+    /**
+     * Estimates the cost from a node to the goal. The estimate is the
+     * Manhattan distance plus the penalty for the minimal number of bends,
+     * and does not overestimate the cost.
+     *
+     * @param x       the x-coordinate of the node.
+     * @param y       the y-coordinate of the node.
+     * @param dir     the direction in which the node has been reached.
+     * @param gx      the x-coordinate of the goal.
+     * @param gy      the y-coordinate of the goal.
+     * @param goalDir the direction in which the goal should be reached.
+     */
+    private double estimate(double x, double y, int dir, double gx, double gy, int goalDir) {
+        double dx = gx - x, dy = gy - y;
+        double ahead = DX[dir] * dx + DY[dir] * dy;
+        double aside = DX[dir] * dy - DY[dir] * dx;
+        int bends;
+        if (dx == 0 && dy == 0) {
+            bends = 0;
+        } else if (ahead > 0 && aside == 0) {
+            bends = (dir == goalDir) ? 0 : 1;
+        } else if (ahead >= 0) {
+            int turn = (aside > 0) ? (dir + 1) & 3 : (dir + 3) & 3;
+            bends = (turn == goalDir) ? 1 : 2;
+        } else {
+            bends = 2;
+        }
+        return Math.abs(dx) + Math.abs(dy) + bends * bendPenalty;
+    }
+
+    /**
+     * Removes nodes which coincide with their predecessor, or which lie on a
+     * straight line between their neighbors.
+     */
+    private static void removeRedundantNodes(BezierPath path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            BezierPath.Node p = path.get(i - 1), q = path.get(i);
+            if (p.x[0] == q.x[0] && p.y[0] == q.y[0]) {
+                path.remove(i);
+            }
+        }
+        for (int i = path.size() - 2; i > 0; i--) {
+            BezierPath.Node p = path.get(i - 1), q = path.get(i), r = path.get(i + 1);
+            if (p.x[0] == q.x[0] && q.x[0] == r.x[0] || p.y[0] == q.y[0] && q.y[0] == r.y[0]) {
+                path.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the sorted distinct values of the array and the additional
+     * values, which lie between min and max.
+     */
+    private static double[] unique(double[] a, double min, double max, double... more) {
+        double[] b = Arrays.copyOf(a, a.length + more.length + 2);
+        System.arraycopy(more, 0, b, a.length, more.length);
+        b[b.length - 2] = min;
+        b[b.length - 1] = max;
+        Arrays.sort(b);
+        int n = 0;
+        for (double v : b) {
+            if (v >= min && v <= max && (n == 0 || v != b[n - 1])) {
+                b[n++] = v;
+            }
+        }
+        return Arrays.copyOf(b, n);
+    }
+
+    /**
+     * Returns the index of the first value which is greater than v.
+     */
+    private static int upperBound(double[] a, double v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= v) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the first value which is greater than or equal
+     * to v.
+     */
+    private static int lowerBound(double[] a, double v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < v) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public void read(DOMInput in) {
+        margin = in.getAttribute("margin", 10d);
+        bendPenalty = in.getAttribute("bendPenalty", 2 * margin + 10);
+    }
+
+    @Override
+    public void write(DOMOutput out) {
+        out.addAttribute("margin", margin);
+        out.addAttribute("bendPenalty", bendPenalty);
+    }
+
+    @Override
+    public Liner clone() {
+        try {
+            OrthogonalLiner that = (OrthogonalLiner) super.clone();
+            that.cachedRoute = null;
+            return that;
+        } catch (CloneNotSupportedException ex) {
+            InternalError error = new InternalError(ex.getMessage());
+            error.initCause(ex);
+            throw error;
+        }
+    }
+
+    /**
+     * An open addressing hash table, which holds the cost and the parent of
+     * the states reached by the search.
+     */
+    private static class StateTable {
+        private int[] keys = new int[256];
+        private double[] costs = new double[256];
+        private int[] parents = new int[256];
+        private boolean[] closed = new boolean[256];
+        private int size;
+
+        public StateTable() {
+            Arrays.fill(keys, -1);
+        }
+
+        /**
+         * Returns the slot of a state, or the free slot where the state can
+         * be inserted.
+         */
+        public int find(int state) {
+            int mask = keys.length - 1;
+            int slot = (state * 0x9e3779b9) >>> 1 & mask;
+            while (keys[slot] != -1 && keys[slot] != state) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Sets the cost and the parent of a state, if the state has not been
+         * reached yet, or if the new cost is lower.
+         *
+         * @return true if the state has been updated.
+         */
+        public boolean update(int state, double cost, int parent) {
+            int slot = find(state);
+            if (keys[slot] == -1) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    slot = find(state);
+                }
+                keys[slot] = state;
+                size++;
+            } else if (closed[slot] || costs[slot] <= cost) {
+                return false;
+            }
+            costs[slot] = cost;
+            parents[slot] = parent;
+            return true;
+        }
+
+        public double getCost(int slot) {
+            return costs[slot];
+        }
+
+        public int getParent(int slot) {
+            return parents[slot];
+        }
+
+        public boolean isClosed(int slot) {
+            return closed[slot];
+        }
+
+        public void close(int slot) {
+            closed[slot] = true;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            double[] oldCosts = costs;
+            int[] oldParents = parents;
+            boolean[] oldClosed = closed;
+            int length = oldKeys.length * 2;
+            keys = new int[length];
+            Arrays.fill(keys, -1);
+            costs = new double[length];
+            parents = new int[length];
+            closed = new boolean[length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    costs[slot] = oldCosts[i];
+                    parents[slot] = oldParents[i];
+                    closed[slot] = oldClosed[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * A binary min-heap of states. A state may be pushed more than once.
+     */
+    private static class Heap {
+        private int[] states = new int[64];
+        private double[] keys = new double[64];
+        private int size;
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void push(int state, double key) {
+            if (size == states.length) {
+                states = Arrays.copyOf(states, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (keys[p] <= key) {
+                    break;
+                }
+                states[i] = states[p];
+                keys[i] = keys[p];
+                i = p;
+            }
+            states[i] = state;
+            keys[i] = key;
+        }
+
+        public int pop() {
+            int result = states[0];
+            int state = states[--size];
+            double key = keys[size];
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= size) {
+                    break;
+                }
+                if (c + 1 < size && keys[c + 1] < keys[c]) {
+                    c++;
+                }
+                if (keys[c] >= key) {
+                    break;
+                }
+                states[i] = states[c];
+                keys[i] = keys[c];
+                i = c;
+            }
+            states[i] = state;
+            keys[i] = key;
+            return result;
+        }
+    }
+}
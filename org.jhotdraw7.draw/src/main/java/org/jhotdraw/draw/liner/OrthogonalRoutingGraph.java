@@ -0,0 +1,201 @@
+/* @(#)OrthogonalRoutingGraph.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.draw.liner;
+
+import org.jhotdraw.draw.ConnectionFigure;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.geom.Geom;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import static org.jhotdraw.draw.AttributeKeys.TRANSFORM;
+
+/**
+ * Caches the obstacles of a drawing for {@link OrthogonalLiner}.
+ * <p>
+ * The graph holds the bounds of the figures which have been found as
+ * obstacles, and the coordinates of their edges. The edges of the obstacles
+ * are the grid lines of the sparse orthogonal visibility graph, on which the
+ * liner searches a route.
+ * <p>
+ * The obstacles are taken from the spatial index of the drawing with
+ * {@link Drawing#findFigures}. Each time a region of the drawing is queried,
+ * the graph compares the bounds of the figures in the region with the cached
+ * bounds, and only updates the grid lines of the figures which have moved.
+ * <p>
+ * The graph only holds weak references to the figures and to the drawing.
+ * The grid lines of a figure which has been removed from the drawing are
+ * kept until the figure is garbage collected. They make the grid finer,
+ * but do not affect the validity of a route.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class OrthogonalRoutingGraph {
+
+    private static final WeakHashMap<Drawing, OrthogonalRoutingGraph> instances = new WeakHashMap<Drawing, OrthogonalRoutingGraph>();
+
+    private final WeakHashMap<Figure, Rectangle2D.Double> obstacleBounds = new WeakHashMap<Figure, Rectangle2D.Double>();
+    private final LineSet leftLines = new LineSet();
+    private final LineSet rightLines = new LineSet();
+    private final LineSet topLines = new LineSet();
+    private final LineSet bottomLines = new LineSet();
+
+    private OrthogonalRoutingGraph() {
+    }
+
+    /**
+     * Returns the graph of the specified drawing.
+     */
+    public static OrthogonalRoutingGraph getInstance(Drawing drawing) {
+        synchronized (instances) {
+            OrthogonalRoutingGraph graph = instances.get(drawing);
+            if (graph == null) {
+                graph = new OrthogonalRoutingGraph();
+                instances.put(drawing, graph);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Finds the obstacles whose bounds intersect the specified region.
+     * Connection figures and invisible figures are not obstacles.
+     *
+     * @param drawing   the drawing.
+     * @param region    the region.
+     * @param boundsOut the bounds of the obstacles are added to this list.
+     *                  The bounds must not be changed.
+     */
+    public synchronized void findObstacles(Drawing drawing, Rectangle2D.Double region,
+                                           List<Rectangle2D.Double> boundsOut) {
+        for (Figure f : drawing.findFigures(region)) {
+            if (f instanceof ConnectionFigure || !f.isVisible()) {
+                continue;
+            }
+            Rectangle2D.Double b = getObstacleBounds(f);
+            Rectangle2D.Double cached = obstacleBounds.get(f);
+            if (cached == null || !cached.equals(b)) {
+                if (cached != null) {
+                    removeLines(cached);
+                }
+                addLines(b);
+                obstacleBounds.put(f, b);
+                cached = b;
+            }
+            if (cached.intersects(region)) {
+                boundsOut.add(cached);
+            }
+        }
+        if (leftLines.size() > 4 * obstacleBounds.size() + 256) {
+            // Drop the lines of figures which have been garbage collected
+            leftLines.clear();
+            rightLines.clear();
+            topLines.clear();
+            bottomLines.clear();
+            for (Rectangle2D.Double b : obstacleBounds.values()) {
+                addLines(b);
+            }
+        }
+    }
+
+    /**
+     * Returns the x-coordinates of the grid lines between min and max,
+     * for obstacles grown by the specified margin.
+     */
+    public synchronized double[] getXLines(double min, double max, double margin) {
+        return merge(leftLines.get(min + margin, max + margin, -margin),
+                rightLines.get(min - margin, max - margin, margin));
+    }
+
+    /**
+     * Returns the y-coordinates of the grid lines between min and max,
+     * for obstacles grown by the specified margin.
+     */
+    public synchronized double[] getYLines(double min, double max, double margin) {
+        return merge(topLines.get(min + margin, max + margin, -margin),
+                bottomLines.get(min - margin, max - margin, margin));
+    }
+
+    private void addLines(Rectangle2D.Double b) {
+        leftLines.add(b.x);
+        rightLines.add(b.x + b.width);
+        topLines.add(b.y);
+        bottomLines.add(b.y + b.height);
+    }
+
+    private void removeLines(Rectangle2D.Double b) {
+        leftLines.remove(b.x);
+        rightLines.remove(b.x + b.width);
+        topLines.remove(b.y);
+        bottomLines.remove(b.y + b.height);
+    }
+
+    /**
+     * Returns the bounds of a figure, transformed by its {@code TRANSFORM}
+     * attribute.
+     */
+    static Rectangle2D.Double getObstacleBounds(Figure f) {
+        return Geom.transformBounds(f.getBounds(), f.get(TRANSFORM));
+    }
+
+    private static double[] merge(double[] a, double[] b) {
+        double[] c = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        Arrays.sort(c);
+        return c;
+    }
+
+    /**
+     * A sorted multiset of coordinates.
+     */
+    private static class LineSet {
+        private final TreeMap<Double, int[]> lines = new TreeMap<Double, int[]>();
+
+        public void add(double v) {
+            int[] count = lines.get(v);
+            if (count == null) {
+                lines.put(v, new int[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+
+        public void remove(double v) {
+            int[] count = lines.get(v);
+            if (count != null && --count[0] == 0) {
+                lines.remove(v);
+            }
+        }
+
+        public int size() {
+            return lines.size();
+        }
+
+        public void clear() {
+            lines.clear();
+        }
+
+        /**
+         * Returns the coordinates between min and max, shifted by the
+         * specified offset.
+         */
+        public double[] get(double min, double max, double offset) {
+            Map<Double, int[]> m = lines.subMap(min, true, max, true);
+            double[] result = new double[m.size()];
+            int i = 0;
+            for (Double v : m.keySet()) {
+                result[i++] = v + offset;
+            }
+            return result;
+        }
+    }
+}
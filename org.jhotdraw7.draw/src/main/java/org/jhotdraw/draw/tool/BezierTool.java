@@ -12,6 +12,7 @@ import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.geom.Bezier;
+import org.jhotdraw.geom.BezierFitter;
 import org.jhotdraw.geom.BezierPath;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.util.ResourceBundleUtil;
@@ -73,6 +74,17 @@ public class BezierTool extends AbstractTool {
      * Holds the view on which we are currently creating a figure.
      */
     private DrawingView creationView;
+    /**
+     * Fits the points of the current drag while they are being digitized.
+     */
+    @Nullable
+    private transient BezierFitter fitter;
+    /**
+     * The number of nodes of the created figure, which have been passed to
+     * the fitter.
+     */
+    private int fittedNodeCount;
+    private boolean isIncrementalFitting = true;
 
     /**
      * Creates a new instance.
@@ -165,6 +177,10 @@ public class BezierTool extends AbstractTool {
             }
         }
         nodeCountBeforeDrag = createdFigure.getNodeCount();
+        if (isIncrementalFitting) {
+            fitter = createFitter();
+            fittedNodeCount = nodeCountBeforeDrag - 1;
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -278,6 +294,9 @@ public class BezierTool extends AbstractTool {
                 digitizedPath.add(figurePath.get(nodeCountBeforeDrag - 1));
                 figurePath.remove(nodeCountBeforeDrag - 1);
             }
+            if (fitter != null) {
+                feedFitter(true);
+            }
             BezierPath fittedPath = calculateFittedCurve(digitizedPath);
             //figurePath.addPolyline(digitizedPath);
             figurePath.addAll(fittedPath);
@@ -285,6 +304,7 @@ public class BezierTool extends AbstractTool {
             createdFigure.changed();
             nodeCountBeforeDrag = createdFigure.getNodeCount();
         }
+        fitter = null;
 
         if (finishWhenMouseReleased == Boolean.TRUE) {
             if (createdFigure.getNodeCount() > 1) {
@@ -327,6 +347,22 @@ public class BezierTool extends AbstractTool {
         int x = evt.getX();
         int y = evt.getY();
         addPointToFigure(getView().viewToDrawing(new Point(x, y)));
+        if (fitter != null) {
+            feedFitter(false);
+        }
+    }
+
+    /**
+     * Passes the nodes of the created figure, which have been added during
+     * the current drag, to the fitter. The last node is only passed, if
+     * all is true, because {@link #addPointToFigure} may still move it.
+     */
+    private void feedFitter(boolean all) {
+        int end = createdFigure.getNodeCount() - (all ? 0 : 1);
+        for (; fittedNodeCount < end; fittedNodeCount++) {
+            BezierPath.Node node = createdFigure.getNode(fittedNodeCount);
+            fitter.addPoint(node.x[0], node.y[0]);
+        }
     }
 
     @Override
@@ -362,10 +398,47 @@ public class BezierTool extends AbstractTool {
         }
     }
 
+    /**
+     * Fits a bezier path to the points of a drag, when the mouse is released.
+     * <p>
+     * If the points have been fitted while they were being digitized, this
+     * method returns the path of the fitter. Subclasses which override this
+     * method without calling it, should turn incremental fitting off.
+     *
+     * @param path the digitized points of the drag.
+     */
     protected BezierPath calculateFittedCurve(BezierPath path) {
+        if (fitter != null) {
+            return fitter.finish();
+        }
         return Bezier.fitBezierPath(path, 1.5d / getView().getScaleFactor());
     }
 
+    /**
+     * Creates the fitter, which fits the points of a drag while they are
+     * being digitized. The fitter must yield the same path as
+     * {@link Bezier#fitBezierPath}.
+     */
+    protected BezierFitter createFitter() {
+        return new BezierFitter(1.5d / getView().getScaleFactor());
+    }
+
+    /**
+     * If this is set to true, the points of a drag are fitted while they are
+     * being digitized, using the fitter returned by {@link #createFitter}.
+     * Otherwise all points are fitted when the mouse is released. In both
+     * cases the fitted path is obtained from {@link #calculateFittedCurve}.
+     * <p>
+     * The default value is true.
+     */
+    public void setIncrementalFitting(boolean newValue) {
+        isIncrementalFitting = newValue;
+    }
+
+    public boolean isIncrementalFitting() {
+        return isIncrementalFitting;
+    }
+
     public void setToolDoneAfterCreation(boolean b) {
         isToolDoneAfterCreation = b;
     }
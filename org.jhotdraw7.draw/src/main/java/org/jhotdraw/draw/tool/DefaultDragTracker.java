@@ -4,6 +4,7 @@
 package org.jhotdraw.draw.tool;
 
 import org.jhotdraw.annotation.Nullable;
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.event.TransformEdit;
@@ -155,10 +156,16 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
             tx.translate(
                     constrainedRect.x - previousOrigin.x,
                     constrainedRect.y - previousOrigin.y);
-            for (Figure f : transformedFigures) {
-                f.willChange();
-                f.transform(tx);
-                f.changed();
+            Drawing drawing = view.getDrawing();
+            drawing.beginUpdate(null);
+            try {
+                for (Figure f : transformedFigures) {
+                    f.willChange();
+                    f.transform(tx);
+                    f.changed();
+                }
+            } finally {
+                drawing.endUpdate();
             }
 
             previousPoint = currentPoint;
@@ -8,6 +8,7 @@ import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.geom.Geom;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -18,8 +19,14 @@ import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+
+import static org.jhotdraw.draw.AttributeKeys.TRANSFORM;
 
 /**
  * {@code DefaultSelectAreaTracker} implements interactions with the background
@@ -29,6 +36,15 @@ import java.util.LinkedList;
  * {@code SelectionTool}. It comes into action, when the user presses
  * the mouse button over the background of a {@code Drawing}.
  * <p>
+ * By default, the figures within the rubberband are selected when the mouse
+ * button is released. If live selection is turned on, the selection is
+ * updated while the rubberband is dragged. Only the figures which intersect
+ * the area by which the rubberband has grown or shrunk are tested, so that
+ * the cost of a mouse drag does not depend on the size of the drawing.
+ * Live selection is not used while the shift key is held down, because
+ * then the figures within the rubberband are added to the current selection
+ * when the mouse button is released.
+ * <p>
  * Design pattern:<br>
  * Name: Chain of Responsibility.<br>
  * Role: Handler.<br>
@@ -72,6 +88,21 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
      */
     @Nullable
     private Figure hoverFigure = null;
+    /**
+     * Set this to true, to update the selection while the rubberband is
+     * dragged.
+     */
+    private boolean isLiveSelection = false;
+    /**
+     * The figures which have been added to the selection during live
+     * selection.
+     */
+    private HashSet<Figure> liveSelection = new HashSet<Figure>();
+    /**
+     * Whether the selection is updated while the rubberband of the current
+     * mouse drag is dragged.
+     */
+    private boolean isLiveDrag;
 
     /**
      * Creates a new instance.
@@ -83,18 +114,23 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
     public void mousePressed(MouseEvent evt) {
         super.mousePressed(evt);
         clearRubberBand();
+        liveSelection.clear();
+        isLiveDrag = isLiveSelection && !evt.isShiftDown();
     }
 
     @Override
     public void mouseReleased(MouseEvent evt) {
-        selectGroup(evt.isShiftDown());
+        if (!isLiveDrag) {
+            selectGroup(evt.isShiftDown());
+        }
         clearRubberBand();
-
+        liveSelection.clear();
     }
 
     @Override
     public void mouseDragged(MouseEvent evt) {
         Rectangle invalidatedArea = (Rectangle) rubberband.clone();
+        Rectangle oldRubberband = invalidatedArea;
         rubberband.setBounds(
                 Math.min(anchor.x, evt.getX()),
                 Math.min(anchor.y, evt.getY()),
@@ -106,6 +142,9 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
             invalidatedArea = invalidatedArea.union(rubberband);
         }
         fireAreaInvalidated(invalidatedArea);
+        if (isLiveDrag) {
+            updateLiveSelection(oldRubberband);
+        }
     }
 
     @Override
@@ -165,13 +204,97 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
         }
     }
 
+    /**
+     * Updates the selection after the rubberband has changed.
+     * <p>
+     * A figure can only enter the rubberband, if it intersects the area
+     * which has been added to the rubberband, and it can only leave the
+     * rubberband, if it intersects the area which has been removed from it.
+     */
+    private void updateLiveSelection(Rectangle oldRubberband) {
+        DrawingView view = getView();
+        if (view == null || view.getDrawing() == null) {
+            return;
+        }
+        ArrayList<Rectangle> strips = new ArrayList<Rectangle>(8);
+        if (oldRubberband.isEmpty()) {
+            if (!rubberband.isEmpty()) {
+                strips.add(rubberband);
+            }
+        } else if (rubberband.isEmpty()) {
+            strips.add(oldRubberband);
+        } else {
+            subtract(rubberband, oldRubberband, strips);
+            subtract(oldRubberband, rubberband, strips);
+        }
+        if (strips.isEmpty()) {
+            return;
+        }
+
+        Rectangle2D.Double bounds = rubberband.isEmpty() ? null : view.viewToDrawing(rubberband);
+        HashSet<Figure> candidates = new HashSet<Figure>();
+        for (Rectangle strip : strips) {
+            // Grow the strip, so that rounding errors in the view
+            // transformation can not make us miss a figure.
+            Rectangle r = (Rectangle) strip.clone();
+            r.grow(1, 1);
+            candidates.addAll(view.findFigures(r));
+        }
+        ArrayList<Figure> added = new ArrayList<Figure>();
+        ArrayList<Figure> removed = new ArrayList<Figure>();
+        for (Figure f : candidates) {
+            boolean isWithin = bounds != null && f.isVisible()
+                    && Geom.contains(bounds, Geom.transformBounds(f.getBounds(), f.get(TRANSFORM)));
+            if (isWithin) {
+                if (f.isSelectable() && !view.isFigureSelected(f)) {
+                    added.add(f);
+                    liveSelection.add(f);
+                }
+            } else if (liveSelection.remove(f)) {
+                removed.add(f);
+            }
+        }
+        if (!removed.isEmpty()) {
+            view.removeFromSelection(removed);
+        }
+        if (!added.isEmpty()) {
+            view.addToSelection(added);
+        }
+    }
+
+    /**
+     * Adds the parts of rectangle a which are not covered by rectangle b to
+     * the specified list. Adds at most four rectangles.
+     */
+    private static void subtract(Rectangle a, Rectangle b, List<Rectangle> out) {
+        Rectangle i = a.intersection(b);
+        if (i.isEmpty()) {
+            out.add(a);
+            return;
+        }
+        if (i.y > a.y) {
+            out.add(new Rectangle(a.x, a.y, a.width, i.y - a.y));
+        }
+        if (i.y + i.height < a.y + a.height) {
+            out.add(new Rectangle(a.x, i.y + i.height, a.width, a.y + a.height - i.y - i.height));
+        }
+        if (i.x > a.x) {
+            out.add(new Rectangle(a.x, i.y, i.x - a.x, i.height));
+        }
+        if (i.x + i.width < a.x + a.width) {
+            out.add(new Rectangle(i.x + i.width, i.y, a.x + a.width - i.x - i.width, i.height));
+        }
+    }
+
     private void selectGroup(boolean toggle) {
         Collection<Figure> figures = getView().findFiguresWithin(rubberband);
+        ArrayList<Figure> selectable = new ArrayList<Figure>(figures.size());
         for (Figure f : figures) {
             if (f.isSelectable()) {
-                getView().addToSelection(f);
+                selectable.add(f);
             }
         }
+        getView().addToSelection(selectable);
     }
 
     protected void clearHoverHandles() {
@@ -212,6 +335,26 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
         }
     }
 
+    /**
+     * If this is set to true, the selection is updated while the rubberband
+     * is dragged. If this is set to false, the selection is updated when the
+     * mouse button is released. The default value is false.
+     * <p>
+     * Live selection is not used for mouse drags which start with the shift
+     * key held down.
+     */
+    public void setLiveSelection(boolean newValue) {
+        isLiveSelection = newValue;
+    }
+
+    /**
+     * Returns true, if the selection is updated while the rubberband is
+     * dragged.
+     */
+    public boolean isLiveSelection() {
+        return isLiveSelection;
+    }
+
     @Override
     public void activate(DrawingEditor editor) {
         super.activate(editor);
@@ -18,6 +18,8 @@ import java.util.Arrays;
  * of Master of Science, University of Washington.
  * <p>
  * http://autotrace.sourceforge.net/Interactive_Curve_Design.ps.gz
+ * <p>
+ * The fitting methods delegate to {@link BezierFitter}.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -61,70 +63,22 @@ public class Bezier {
 
     /**
      * Fits a bezier path to the specified list of digitized points.
+     * <p>
+     * This is a convenience method for calling
+     * {@link BezierFitter#fitBezierPath(double[], int, double, int)}.
      *
      * @param digitizedPoints digited points.
      * @param error           the maximal allowed error between the bezier path and the
      *                        digitized points.
      */
     public static BezierPath fitBezierPath(java.util.List<Point2D.Double> digitizedPoints, double error) {
-        // Split into segments at corners
-        ArrayList<ArrayList<Point2D.Double>> segments;
-        segments = splitAtCorners(digitizedPoints, 77 / 180d * Math.PI, error * error);
-
-        // Clean up the data in the segments
-        for (int i = 0, n = segments.size(); i < n; i++) {
-            ArrayList<Point2D.Double> seg = segments.get(i);
-            seg = removeClosePoints(seg, error * 2);
-            seg = reduceNoise(seg, 0.8);
-
-            segments.set(i, seg);
+        double[] xy = new double[digitizedPoints.size() * 2];
+        int i = 0;
+        for (Point2D.Double p : digitizedPoints) {
+            xy[i++] = p.x;
+            xy[i++] = p.y;
         }
-
-
-        // Create fitted bezier path
-        BezierPath fittedPath = new BezierPath();
-
-
-        // Quickly deal with empty dataset
-        boolean isEmpty = false;
-        for (ArrayList<Point2D.Double> seg : segments) {
-            if (seg.isEmpty()) {
-                isEmpty = false;
-                break;
-            }
-        }
-        if (!isEmpty) {
-            // Process each segment of digitized points
-            double errorSquared = error * error;
-            for (ArrayList<Point2D.Double> seg : segments) {
-                switch (seg.size()) {
-                    case 0:
-                        break;
-                    case 1:
-                        fittedPath.add(new BezierPath.Node(seg.get(0)));
-                        break;
-                    case 2:
-                        if (fittedPath.isEmpty()) {
-                            fittedPath.add(new BezierPath.Node(seg.get(0)));
-                        }
-                        fittedPath.lineTo(seg.get(1).x, seg.get(1).y);
-                        break;
-                    default:
-                        if (fittedPath.isEmpty()) {
-                            fittedPath.add(new BezierPath.Node(seg.get(0)));
-                        }
-                        /*  Unit tangent vectors at endpoints */
-                        Point2D.Double tHat1;
-                        Point2D.Double tHat2;
-                        tHat1 = computeLeftTangent(seg, 0);
-                        tHat2 = computeRightTangent(seg, seg.size() - 1);
-
-                        fitCubic(seg, 0, seg.size() - 1, tHat1, tHat2, errorSquared, fittedPath);
-                        break;
-                }
-            }
-        }
-        return fittedPath;
+        return BezierFitter.fitBezierPath(xy, digitizedPoints.size(), error, 1);
     }
 
     /**
@@ -137,11 +91,30 @@ public class Bezier {
      *                        digitized points.
      */
     public static BezierPath fitBezierPath(BezierPath digitizedPoints, double error) {
-        ArrayList<Point2D.Double> d = new ArrayList<Point2D.Double>(digitizedPoints.size());
+        double[] xy = new double[digitizedPoints.size() * 2];
+        int i = 0;
         for (BezierPath.Node n : digitizedPoints) {
-            d.add(new Point2D.Double(n.x[0], n.y[0]));
+            xy[i++] = n.x[0];
+            xy[i++] = n.y[0];
         }
-        return fitBezierPath(d, error);
+        return BezierFitter.fitBezierPath(xy, digitizedPoints.size(), error, 1);
+    }
+
+    /**
+     * Fits a bezier path to the specified digitized points.
+     * <p>
+     * This is a convenience method for calling
+     * {@link BezierFitter#fitBezierPath(double[], int, double, int)}.
+     *
+     * @param xy          digitized points, with alternating x and y coordinates.
+     * @param pointCount  the number of digitized points.
+     * @param error       the maximal allowed error between the bezier path and the
+     *                    digitized points.
+     * @param parallelism the maximal number of segments between corner points,
+     *                    which are fitted concurrently.
+     */
+    public static BezierPath fitBezierPath(double[] xy, int pointCount, double error, int parallelism) {
+        return BezierFitter.fitBezierPath(xy, pointCount, error, parallelism);
     }
 
     /**
@@ -341,377 +314,6 @@ public class Bezier {
         return cleaned;
     }
 
-    /**
-     * Fit one or multiple subsequent cubic bezier curves to a (sub)set of
-     * digitized points. The digitized points represent a smooth curve without
-     * corners.
-     *
-     * @param d            Array of digitized points. Must not contain subsequent
-     *                     coincident points.
-     * @param first        Indice of first point in d.
-     * @param last         Indice of last point in d.
-     * @param tHat1        Unit tangent vectors at start point.
-     * @param tHat2        Unit tanget vector at end point.
-     * @param errorSquared User-defined errorSquared squared.
-     * @param bezierPath   Path to which the bezier curve segments are added.
-     */
-    private static void fitCubic(ArrayList<Point2D.Double> d, int first, int last,
-                                 Point2D.Double tHat1, Point2D.Double tHat2,
-                                 double errorSquared, BezierPath bezierPath) {
-
-        Point2D.Double[] bezCurve; /*Control points of fitted Bezier curve*/
-        double[] u;        /*  Parameter values for point  */
-        double maxError;    /*  Maximum fitting errorSquared	 */
-        int[] splitPoint = new int[1]; /*  Point to split point set at.
-        This is an array of size one, because we need it as an input/output parameter.
-         */
-        int nPts;        /*  Number of points in subset  */
-        double iterationError; /* Error below which you try iterating  */
-        int maxIterations = 4; /*  Max times to try iterating  */
-        Point2D.Double tHatCenter; /* Unit tangent vector at splitPoint */
-        int i;
-
-        // clone unit tangent vectors, so that we can alter their coordinates
-        // without affecting the input values.
-        tHat1 = (Point2D.Double) tHat1.clone();
-        tHat2 = (Point2D.Double) tHat2.clone();
-
-        iterationError = errorSquared * errorSquared;
-        nPts = last - first + 1;
-
-        /*  Use heuristic if region only has two points in it */
-        if (nPts == 2) {
-            double dist = v2DistanceBetween2Points(d.get(last), d.get(first)) / 3.0;
-
-            bezCurve = new Point2D.Double[4];
-            for (i = 0; i < bezCurve.length; i++) {
-                bezCurve[i] = new Point2D.Double();
-            }
-            bezCurve[0] = d.get(first);
-            bezCurve[3] = d.get(last);
-            v2Add(bezCurve[0], v2Scale(tHat1, dist), bezCurve[1]);
-            v2Add(bezCurve[3], v2Scale(tHat2, dist), bezCurve[2]);
-
-            bezierPath.curveTo(
-                    bezCurve[1].x, bezCurve[1].y,
-                    bezCurve[2].x, bezCurve[2].y,
-                    bezCurve[3].x, bezCurve[3].y);
-            return;
-        }
-
-        /*  Parameterize points, and attempt to fit curve */
-        u = chordLengthParameterize(d, first, last);
-        bezCurve = generateBezier(d, first, last, u, tHat1, tHat2);
-
-        /*  Find max deviation of points to fitted curve */
-        maxError = computeMaxError(d, first, last, bezCurve, u, splitPoint);
-        if (maxError < errorSquared) {
-            addCurveTo(bezCurve, bezierPath, errorSquared, first == 0 && last == d.size() - 1);
-            return;
-        }
-
-
-        /*  If errorSquared not too large, try some reparameterization  */
-        /*  and iteration */
-        if (maxError < iterationError) {
-            double[] uPrime;    /*  Improved parameter values */
-            for (i = 0; i < maxIterations; i++) {
-                uPrime = reparameterize(d, first, last, u, bezCurve);
-                bezCurve = generateBezier(d, first, last, uPrime, tHat1, tHat2);
-                maxError = computeMaxError(d, first, last, bezCurve, uPrime, splitPoint);
-                if (maxError < errorSquared) {
-                    addCurveTo(bezCurve, bezierPath, errorSquared, first == 0 && last == d.size() - 1);
-                    return;
-                }
-                u = uPrime;
-            }
-        }
-
-        /* Fitting failed -- split at max errorSquared point and fit recursively */
-        tHatCenter = computeCenterTangent(d, splitPoint[0]);
-        if (first < splitPoint[0]) {
-            fitCubic(d, first, splitPoint[0], tHat1, tHatCenter, errorSquared, bezierPath);
-        } else {
-            bezierPath.lineTo(d.get(splitPoint[0]).x, d.get(splitPoint[0]).y);
-            //   System.err.println("Can't split any further " + first + ".." + splitPoint[0]);
-        }
-        v2Negate(tHatCenter);
-        if (splitPoint[0] < last) {
-            fitCubic(d, splitPoint[0], last, tHatCenter, tHat2, errorSquared, bezierPath);
-        } else {
-            bezierPath.lineTo(d.get(last).x, d.get(last).y);
-            //  System.err.println("Can't split any further " + splitPoint[0] + ".." + last);
-        }
-    }
-
-    /**
-     * Adds the curve to the bezier path.
-     *
-     * @param bezCurve
-     * @param bezierPath
-     */
-    private static void addCurveTo(Point2D.Double[] bezCurve, BezierPath bezierPath, double errorSquared, boolean connectsCorners) {
-        BezierPath.Node lastNode = bezierPath.get(bezierPath.size() - 1);
-        double error = Math.sqrt(errorSquared);
-        if (connectsCorners && Geom.lineContainsPoint(lastNode.x[0], lastNode.y[0], bezCurve[3].x, bezCurve[3].y, bezCurve[1].x, bezCurve[1].y, error) &&
-                Geom.lineContainsPoint(lastNode.x[0], lastNode.y[0], bezCurve[3].x, bezCurve[3].y, bezCurve[2].x, bezCurve[2].y, error)) {
-            bezierPath.lineTo(
-                    bezCurve[3].x, bezCurve[3].y);
-
-        } else {
-            bezierPath.curveTo(
-                    bezCurve[1].x, bezCurve[1].y,
-                    bezCurve[2].x, bezCurve[2].y,
-                    bezCurve[3].x, bezCurve[3].y);
-        }
-    }
-
-    /**
-     * Approximate unit tangents at "left" endpoint of digitized curve.
-     *
-     * @param d   Digitized points.
-     * @param end Index to "left" end of region.
-     */
-    private static Point2D.Double computeLeftTangent(ArrayList<Point2D.Double> d, int end) {
-        Point2D.Double tHat1;
-        tHat1 = v2SubII(d.get(end + 1), d.get(end));
-        tHat1 = v2Normalize(tHat1);
-        return tHat1;
-    }
-
-    /**
-     * Approximate unit tangents at "right" endpoint of digitized curve.
-     *
-     * @param d   Digitized points.
-     * @param end Index to "right" end of region.
-     */
-    private static Point2D.Double computeRightTangent(ArrayList<Point2D.Double> d, int end) {
-        Point2D.Double tHat2;
-        tHat2 = v2SubII(d.get(end - 1), d.get(end));
-        tHat2 = v2Normalize(tHat2);
-        return tHat2;
-    }
-
-    /**
-     * Approximate unit tangents at "center" of digitized curve.
-     *
-     * @param d      Digitized points.
-     * @param center Index to "center" end of region.
-     */
-    private static Point2D.Double computeCenterTangent(ArrayList<Point2D.Double> d, int center) {
-        Point2D.Double V1, V2,
-                tHatCenter = new Point2D.Double();
-
-        V1 = v2SubII(d.get(center - 1), d.get(center));
-        V2 = v2SubII(d.get(center), d.get(center + 1));
-        tHatCenter.x = (V1.x + V2.x) / 2.0;
-        tHatCenter.y = (V1.y + V2.y) / 2.0;
-        tHatCenter = v2Normalize(tHatCenter);
-        return tHatCenter;
-    }
-
-    /**
-     * Assign parameter values to digitized points
-     * using relative distances between points.
-     *
-     * @param d     Digitized points.
-     * @param first Indice of first point of region in d.
-     * @param last  Indice of last point of region in d.
-     */
-    private static double[] chordLengthParameterize(ArrayList<Point2D.Double> d, int first, int last) {
-        int i;
-        double[] u;    /*  Parameterization		*/
-
-        u = new double[last - first + 1];
-
-        u[0] = 0.0;
-        for (i = first + 1; i <= last; i++) {
-            u[i - first] = u[i - first - 1] +
-                    v2DistanceBetween2Points(d.get(i), d.get(i - 1));
-        }
-
-        for (i = first + 1; i <= last; i++) {
-            u[i - first] = u[i - first] / u[last - first];
-        }
-
-        return (u);
-    }
-
-    /**
-     * Given set of points and their parameterization, try to find
-     * a better parameterization.
-     *
-     * @param d        Array of digitized points.
-     * @param first    Indice of first point of region in d.
-     * @param last     Indice of last point of region in d.
-     * @param u        Current parameter values.
-     * @param bezCurve Current fitted curve.
-     */
-    private static double[] reparameterize(ArrayList<Point2D.Double> d, int first, int last, double[] u, Point2D.Double[] bezCurve) {
-        int nPts = last - first + 1;
-        int i;
-        double[] uPrime; /*  New parameter values	*/
-
-        uPrime = new double[nPts];
-        for (i = first; i <= last; i++) {
-            uPrime[i - first] = newtonRaphsonRootFind(bezCurve, d.get(i), u[i - first]);
-        }
-        return (uPrime);
-    }
-
-    /**
-     * Use Newton-Raphson iteration to find better root.
-     *
-     * @param Q Current fitted bezier curve.
-     * @param P Digitized point.
-     * @param u Parameter value vor P.
-     */
-    private static double newtonRaphsonRootFind(Point2D.Double[] Q, Point2D.Double P, double u) {
-        double numerator, denominator;
-        Point2D.Double[] Q1 = new Point2D.Double[3], Q2 = new Point2D.Double[2];    /*  Q' and Q''			*/
-        Point2D.Double Q_u, Q1_u, Q2_u; /*u evaluated at Q, Q', & Q''	*/
-        double uPrime;        /*  Improved u	*/
-        int i;
-
-        /* Compute Q(u)	*/
-        Q_u = bezierII(3, Q, u);
-
-        /* Generate control vertices for Q'	*/
-        for (i = 0; i <= 2; i++) {
-            Q1[i] = new Point2D.Double(
-                    (Q[i + 1].x - Q[i].x) * 3.0,
-                    (Q[i + 1].y - Q[i].y) * 3.0);
-        }
-
-        /* Generate control vertices for Q'' */
-        for (i = 0; i <= 1; i++) {
-            Q2[i] = new Point2D.Double(
-                    (Q1[i + 1].x - Q1[i].x) * 2.0,
-                    (Q1[i + 1].y - Q1[i].y) * 2.0);
-        }
-
-        /* Compute Q'(u) and Q''(u)	*/
-        Q1_u = bezierII(2, Q1, u);
-        Q2_u = bezierII(1, Q2, u);
-
-        /* Compute f(u)/f'(u) */
-        numerator = (Q_u.x - P.x) * (Q1_u.x) + (Q_u.y - P.y) * (Q1_u.y);
-        denominator = (Q1_u.x) * (Q1_u.x) + (Q1_u.y) * (Q1_u.y) +
-                (Q_u.x - P.x) * (Q2_u.x) + (Q_u.y - P.y) * (Q2_u.y);
-
-        /* u = u - f(u)/f'(u) */
-        uPrime = u - (numerator / denominator);
-        return (uPrime);
-    }
-
-    /**
-     * Find the maximum squared distance of digitized points
-     * to fitted curve.
-     *
-     * @param d          Digitized points.
-     * @param first      Indice of first point of region in d.
-     * @param last       Indice of last point of region in d.
-     * @param bezCurve   Fitted Bezier curve
-     * @param u          Parameterization of points*
-     * @param splitPoint Point of maximum error (input/output parameter, must be
-     *                   an array of 1)
-     */
-    private static double computeMaxError(ArrayList<Point2D.Double> d, int first, int last, Point2D.Double[] bezCurve, double[] u, int[] splitPoint) {
-        int i;
-        double maxDist;        /*  Maximum error */
-        double dist;        /*  Current error */
-        Point2D.Double P; /*  Point on curve */
-        Point2D.Double v; /*  Vector from point to curve */
-
-        splitPoint[0] = (last - first + 1) / 2;
-        maxDist = 0.0;
-        for (i = first + 1; i < last; i++) {
-            P = bezierII(3, bezCurve, u[i - first]);
-            v = v2SubII(P, d.get(i));
-            dist = v2SquaredLength(v);
-            if (dist >= maxDist) {
-                maxDist = dist;
-                splitPoint[0] = i;
-            }
-        }
-        return (maxDist);
-    }
-
-    /**
-     * Use least-squares method to find Bezier control points for region.
-     *
-     * @param d      Array of digitized points.
-     * @param first  Indice of first point in d.
-     * @param last   Indice of last point in d.
-     * @param uPrime Parameter values for region .
-     * @param tHat1  Unit tangent vectors at start point.
-     * @param tHat2  Unit tanget vector at end point.
-     * @return A cubic bezier curve consisting of 4 control points.
-     */
-    private static Point2D.Double[] generateBezier(ArrayList<Point2D.Double> d, int first, int last, double[] uPrime, Point2D.Double tHat1, Point2D.Double tHat2) {
-        Point2D.Double[] bezCurve;
-
-        bezCurve = new Point2D.Double[4];
-        for (int i = 0; i < bezCurve.length; i++) {
-            bezCurve[i] = new Point2D.Double();
-        }
-
-
-        /*  Use the Wu/Barsky heuristic*/
-        double dist = v2DistanceBetween2Points(d.get(last), d.get(first)) / 3.0;
-
-        bezCurve[0] = d.get(first);
-        bezCurve[3] = d.get(last);
-        v2Add(bezCurve[0], v2Scale(tHat1, dist), bezCurve[1]);
-        v2Add(bezCurve[3], v2Scale(tHat2, dist), bezCurve[2]);
-        return (bezCurve);
-    }
-
-    /**
-     * Evaluate a Bezier curve at a particular parameter value.
-     *
-     * @param degree The degree of the bezier curve.
-     * @param V      Array of control points.
-     * @param t      Parametric value to find point for.
-     */
-    private static Point2D.Double bezierII(int degree, Point2D.Double[] V, double t) {
-        int i, j;
-        Point2D.Double q; /* Point on curve at parameter t	*/
-        Point2D.Double[] vTemp; /* Local copy of control points		*/
-
-        /* Copy array	*/
-        vTemp = new Point2D.Double[degree + 1];
-        for (i = 0; i <= degree; i++) {
-            vTemp[i] = (Point2D.Double) V[i].clone();
-        }
-
-        /* Triangle computation	*/
-        for (i = 1; i <= degree; i++) {
-            for (j = 0; j <= degree - i; j++) {
-                vTemp[j].x = (1.0 - t) * vTemp[j].x + t * vTemp[j + 1].x;
-                vTemp[j].y = (1.0 - t) * vTemp[j].y + t * vTemp[j + 1].y;
-            }
-        }
-
-        q = vTemp[0];
-        return q;
-    }
-
-    /* -------------------------------------------------------------------------
-     * GraphicsGems.c
-     * 2d and 3d Vector C Library
-     * by Andrew Glassner
-     * from "Graphics Gems", Academic Press, 1990
-     * -------------------------------------------------------------------------
-     */
-
-    /**
-     * Return the distance between two points
-     */
-    private static double v2DistanceBetween2Points(Point2D.Double a, Point2D.Double b) {
-        return Math.sqrt(v2SquaredDistanceBetween2Points(a, b));
-    }
-
     /**
      * Return the distance between two points
      */
@@ -720,132 +322,4 @@ public class Bezier {
         double dy = a.y - b.y;
         return (dx * dx) + (dy * dy);
     }
-
-    /**
-     * Scales the input vector to the new length and returns it.
-     * <p>
-     * This method alters the value of the input point!
-     */
-    private static Point2D.Double v2Scale(Point2D.Double v, double newlen) {
-        double len = v2Length(v);
-        if (len != 0.0) {
-            v.x *= newlen / len;
-            v.y *= newlen / len;
-        }
-
-        return v;
-    }
-
-    /**
-     * Scales the input vector by the specified factor and returns it.
-     * <p>
-     * This method alters the value of the input point!
-     */
-    private static Point2D.Double v2ScaleIII(Point2D.Double v, double s) {
-        Point2D.Double result = new Point2D.Double();
-        result.x = v.x * s;
-        result.y = v.y * s;
-        return result;
-    }
-
-    /**
-     * Returns length of input vector.
-     */
-    private static double v2Length(Point2D.Double a) {
-        return Math.sqrt(v2SquaredLength(a));
-    }
-
-    /**
-     * Returns squared length of input vector.
-     */
-    private static double v2SquaredLength(Point2D.Double a) {
-        return (a.x * a.x) + (a.y * a.y);
-    }
-
-    /**
-     * Return vector sum c = a+b.
-     * <p>
-     * This method alters the value of c.
-     */
-    private static Point2D.Double v2Add(Point2D.Double a, Point2D.Double b, Point2D.Double c) {
-        c.x = a.x + b.x;
-        c.y = a.y + b.y;
-        return c;
-    }
-
-    /**
-     * Return vector sum = a+b.
-     */
-    private static Point2D.Double v2AddII(Point2D.Double a, Point2D.Double b) {
-        Point2D.Double c = new Point2D.Double();
-        c.x = a.x + b.x;
-        c.y = a.y + b.y;
-        return c;
-    }
-
-    /**
-     * Negates the input vector and returns it.
-     */
-    private static Point2D.Double v2Negate(Point2D.Double v) {
-        v.x = -v.x;
-        v.y = -v.y;
-        return v;
-    }
-
-    /**
-     * Return the dot product of vectors a and b.
-     */
-    private static double v2Dot(Point2D.Double a, Point2D.Double b) {
-        return (a.x * b.x) + (a.y * b.y);
-    }
-
-    /**
-     * Normalizes the input vector and returns it.
-     */
-    private static Point2D.Double v2Normalize(Point2D.Double v) {
-        double len = v2Length(v);
-        if (len != 0.0) {
-            v.x /= len;
-            v.y /= len;
-        }
-
-        return v;
-    }
-
-    /**
-     * Subtract Vector a from Vector b.
-     *
-     * @param a Vector a - the value is not changed by this method
-     * @param b Vector b - the value is not changed by this method
-     * @return Vector a subtracted by Vector v.
-     */
-    private static Point2D.Double v2SubII(Point2D.Double a, Point2D.Double b) {
-        Point2D.Double c = new Point2D.Double();
-        c.x = a.x - b.x;
-        c.y = a.y - b.y;
-        return (c);
-    }
-
-    /**
-     * B0, B1, B2, B3 :
-     * Bezier multipliers
-     */
-    private static double b0(double u) {
-        double tmp = 1.0 - u;
-        return (tmp * tmp * tmp);
-    }
-
-    private static double b1(double u) {
-        double tmp = 1.0 - u;
-        return (3 * u * (tmp * tmp));
-    }
-
-    private static double b2(double u) {
-        double tmp = 1.0 - u;
-        return (3 * u * u * tmp);
-    }
-
-    private static double b3(double u) {
-        return (u * u * u);
-    }
 }
@@ -0,0 +1,825 @@
+/* @(#)BezierFitter.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fits a bezier path to digitized points while the points are being
+ * digitized.
+ * <p>
+ * The fitter implements the algorithm of Schneider, which is described in
+ * {@link Bezier}: the digitized points are split into segments at corner
+ * points, the points of each segment are cleaned up, and a sequence of cubic
+ * bezier curves is fitted to each segment. The fitting methods of
+ * {@link Bezier} delegate to this class.
+ * <p>
+ * A corner point can be detected as soon as enough points beyond it have
+ * been added. The fitter fits the segment which ends at the corner point
+ * immediately, and appends it to the fitted path. Only the points after the
+ * last corner point are kept. When all points have been added,
+ * {@link #finish} fits the remaining segment.
+ * <p>
+ * The fitted path is identical to the path which
+ * {@link #fitBezierPath(double[], int, double, int)} computes for the same
+ * points.
+ * <p>
+ * The points are held in a primitive array with alternating x and y
+ * coordinates. The static method {@link #fitBezierPath(double[], int, double, int)}
+ * fits all points of such an array at once, and can fit the segments
+ * concurrently.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class BezierFitter {
+
+    /**
+     * The minimal angle for corner points.
+     */
+    private static final double CORNER_ANGLE = 77 / 180d * Math.PI;
+    /**
+     * The minimal number of segments which are fitted by a single task.
+     */
+    private static final int TASK_SIZE = 8;
+    private static ExecutorService executor;
+
+    private final double error;
+    /**
+     * Squared minimal distance between a corner point and the adjacent points
+     * used for corner detection.
+     */
+    private final double squaredCornerDistance;
+    /**
+     * Points after the last corner point. The first point is the last corner
+     * point.
+     */
+    private double[] xy = new double[64];
+    private int count;
+    /**
+     * Index of the next point, which is tested for being a corner point.
+     */
+    private int candidate = 1;
+    /**
+     * Index of the point from which the search for a succeeding point of the
+     * candidate continues.
+     */
+    private int nextSearch;
+    private boolean isFirstSegment = true;
+    private BezierPath fittedPath = new BezierPath();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param error the maximal allowed error between the bezier path and the
+     *              digitized points.
+     */
+    public BezierFitter(double error) {
+        this.error = error;
+        double minDistance = error * error;
+        this.squaredCornerDistance = minDistance * minDistance;
+    }
+
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * Adds a digitized point.
+     *
+     * @return true if one or more segments have been fitted and appended to
+     * the fitted path.
+     */
+    public boolean addPoint(double x, double y) {
+        if (count * 2 == xy.length) {
+            xy = Arrays.copyOf(xy, xy.length * 2);
+        }
+        xy[count * 2] = x;
+        xy[count * 2 + 1] = y;
+        count++;
+
+        return fitCorners(false);
+    }
+
+    /**
+     * Tests the candidates for corner points, and fits the segments which end
+     * at a corner point.
+     * <p>
+     * A candidate can only be tested, when a succeeding point with the
+     * minimal distance has been added. If no such point has been added yet,
+     * the test is deferred, unless all points have been added.
+     *
+     * @param isComplete true if all points have been added.
+     * @return true if one or more segments have been fitted.
+     */
+    private boolean fitCorners(boolean isComplete) {
+        boolean hasFitted = false;
+        while (candidate < count - 1) {
+            int i = candidate;
+            int prev = findPrevious(xy, i, isFirstSegment ? -1 : 0, squaredCornerDistance);
+            int next = prev == -1 ? -1 : findNext(xy, i, Math.max(nextSearch, i + 1), count, squaredCornerDistance);
+            if (next == -1 && prev != -1 && !isComplete) {
+                // Wait for more points
+                nextSearch = count;
+                break;
+            }
+            if (next != -1 && isCorner(xy, prev, i, next, CORNER_ANGLE)) {
+                FittedSegment seg = new FittedSegment();
+                fitSegment(xy, 0, i, error, seg);
+                seg.appendTo(fittedPath);
+                hasFitted = true;
+
+                // Keep only the points starting at the corner point
+                System.arraycopy(xy, i * 2, xy, 0, (count - i) * 2);
+                count -= i;
+                isFirstSegment = false;
+                candidate = 1;
+            } else {
+                candidate++;
+            }
+            nextSearch = candidate + 1;
+        }
+        return hasFitted;
+    }
+
+    /**
+     * Returns the path which has been fitted so far. The path ends at the
+     * last corner point, which has been detected.
+     * <p>
+     * The returned path is owned by the fitter, and must not be changed.
+     */
+    public BezierPath getFittedPath() {
+        return fittedPath;
+    }
+
+    /**
+     * Returns the number of points after the last corner point, which have
+     * not been fitted yet.
+     */
+    public int getPendingPointCount() {
+        return isFirstSegment ? count : count - 1;
+    }
+
+    /**
+     * Fits the remaining points, and returns the fitted path.
+     * <p>
+     * The fitter is reset, and can be used for a new set of points.
+     */
+    public BezierPath finish() {
+        fitCorners(true);
+        if (count > 0) {
+            FittedSegment seg = new FittedSegment();
+            fitSegment(xy, 0, count - 1, error, seg);
+            seg.appendTo(fittedPath);
+        }
+        BezierPath result = fittedPath;
+        reset();
+        return result;
+    }
+
+    /**
+     * Discards all points and the fitted path.
+     */
+    public void reset() {
+        count = 0;
+        candidate = 1;
+        nextSearch = 0;
+        isFirstSegment = true;
+        fittedPath = new BezierPath();
+    }
+
+    /**
+     * Fits a bezier path to the specified digitized points.
+     * <p>
+     * The segments between corner points are fitted concurrently, if the
+     * parallelism is greater than one. The fitted path does not depend on the
+     * parallelism.
+     *
+     * @param xy          the digitized points, with alternating x and y
+     *                    coordinates.
+     * @param pointCount  the number of points.
+     * @param error       the maximal allowed error between the bezier path and
+     *                    the digitized points.
+     * @param parallelism the maximal number of segments which are fitted
+     *                    concurrently.
+     */
+    public static BezierPath fitBezierPath(double[] xy, int pointCount, double error, int parallelism) {
+        double minDistance = error * error;
+        int[] corners = findCorners(xy, pointCount, CORNER_ANGLE, minDistance);
+
+        // The first and the last point of each segment
+        final int segmentCount = corners.length + 1;
+        final int[] bounds = new int[segmentCount * 2];
+        int start = 0;
+        for (int i = 0; i < corners.length; i++) {
+            bounds[i * 2] = start;
+            bounds[i * 2 + 1] = corners[i];
+            start = corners[i];
+        }
+        bounds[segmentCount * 2 - 2] = start;
+        bounds[segmentCount * 2 - 1] = pointCount - 1;
+
+        final FittedSegment[] segments = new FittedSegment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new FittedSegment();
+        }
+
+        int taskCount = Math.min(parallelism, (segmentCount + TASK_SIZE - 1) / TASK_SIZE);
+        if (taskCount <= 1 || pointCount == 0) {
+            if (pointCount > 0) {
+                fitSegments(xy, bounds, 0, segmentCount, error, segments);
+            }
+        } else {
+            ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(taskCount);
+            for (int t = 0; t < taskCount; t++) {
+                final int from = (int) ((long) segmentCount * t / taskCount);
+                final int to = (int) ((long) segmentCount * (t + 1) / taskCount);
+                final double[] points = xy;
+                final double err = error;
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        fitSegments(points, bounds, from, to, err, segments);
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks);
+        }
+
+        BezierPath fittedPath = new BezierPath();
+        for (FittedSegment seg : segments) {
+            seg.appendTo(fittedPath);
+        }
+        return fittedPath;
+    }
+
+    /**
+     * Finds corners in the specified digitized points, and returns their
+     * indices.
+     * <p>
+     * This method yields the same corners as
+     * {@link Bezier#findCorners(java.util.List, double, double)}.
+     *
+     * @param xy          the digitized points, with alternating x and y
+     *                    coordinates.
+     * @param pointCount  the number of points.
+     * @param minAngle    Minimal angle for corner points
+     * @param minDistance Minimal distance between a point and adjacent points
+     *                    for corner detection
+     * @return the corner indices.
+     */
+    public static int[] findCorners(double[] xy, int pointCount, double minAngle, double minDistance) {
+        double squaredDistance = minDistance * minDistance;
+        int[] corners = new int[8];
+        int cornerCount = 0;
+        int previousCorner = -1;
+        for (int i = 1; i < pointCount - 1; i++) {
+            int prev = findPrevious(xy, i, previousCorner, squaredDistance);
+            if (prev == -1) {
+                continue;
+            }
+            int next = findNext(xy, i, i + 1, pointCount, squaredDistance);
+            if (next == -1) {
+                continue;
+            }
+            if (isCorner(xy, prev, i, next, minAngle)) {
+                if (cornerCount == corners.length) {
+                    corners = Arrays.copyOf(corners, cornerCount * 2);
+                }
+                corners[cornerCount++] = i;
+                previousCorner = i;
+            }
+        }
+        return Arrays.copyOf(corners, cornerCount);
+    }
+
+    /**
+     * Searches a preceding point of point i for corner detection.
+     *
+     * @return the index of the point or -1.
+     */
+    private static int findPrevious(double[] xy, int i, int previousCorner, double squaredDistance) {
+        for (int j = i - 1; j >= 0; j--) {
+            if (j == previousCorner || squaredDistance(xy, j, i) >= squaredDistance) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a succeeding point of point i for corner detection, starting
+     * at point from.
+     *
+     * @return the index of the point or -1.
+     */
+    private static int findNext(double[] xy, int i, int from, int pointCount, double squaredDistance) {
+        for (int j = from; j < pointCount; j++) {
+            if (squaredDistance(xy, j, i) >= squaredDistance) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isCorner(double[] xy, int prev, int i, int next, double minAngle) {
+        double px = xy[i * 2], py = xy[i * 2 + 1];
+        double aPrev = Math.atan2(xy[prev * 2 + 1] - py, xy[prev * 2] - px);
+        double aNext = Math.atan2(xy[next * 2 + 1] - py, xy[next * 2] - px);
+        double angle = Math.abs(aPrev - aNext);
+        return angle < Math.PI - minAngle || angle > Math.PI + minAngle;
+    }
+
+    private static double squaredDistance(double[] xy, int a, int b) {
+        double dx = xy[a * 2] - xy[b * 2];
+        double dy = xy[a * 2 + 1] - xy[b * 2 + 1];
+        return (dx * dx) + (dy * dy);
+    }
+
+    private static void fitSegments(double[] xy, int[] bounds, int from, int to, double error, FittedSegment[] segments) {
+        for (int i = from; i < to; i++) {
+            fitSegment(xy, bounds[i * 2], bounds[i * 2 + 1], error, segments[i]);
+        }
+    }
+
+    /**
+     * Cleans up the points of a segment, and fits bezier curves to them.
+     *
+     * @param xy    the digitized points.
+     * @param first index of the first point of the segment.
+     * @param last  index of the last point of the segment.
+     * @param error the maximal allowed error.
+     * @param out   the fitted segment.
+     */
+    private static void fitSegment(double[] xy, int first, int last, double error, FittedSegment out) {
+        double[] d = removeClosePoints(xy, first, last, error * 2);
+        int n = d.length / 2;
+        d = reduceNoise(d, n, 0.8);
+
+        switch (n) {
+            case 0:
+                break;
+            case 1:
+                out.add(FittedSegment.NODE, d[0], d[1]);
+                break;
+            case 2:
+                out.add(FittedSegment.NODE_IF_EMPTY, d[0], d[1]);
+                out.add(FittedSegment.LINE_TO, d[2], d[3]);
+                break;
+            default:
+                out.add(FittedSegment.NODE_IF_EMPTY, d[0], d[1]);
+                double[] tHat1 = normalize(d[2] - d[0], d[3] - d[1]);
+                double[] tHat2 = normalize(d[n * 2 - 4] - d[n * 2 - 2], d[n * 2 - 3] - d[n * 2 - 1]);
+                new CubicFitter(d, n, error * error, out).fitCubic(0, n - 1, tHat1, tHat2);
+                break;
+        }
+    }
+
+    /**
+     * Removes points which are closer together than the specified minimal
+     * distance, like {@link Bezier#removeClosePoints}.
+     *
+     * @return the remaining points.
+     */
+    private static double[] removeClosePoints(double[] xy, int first, int last, double minDistance) {
+        double[] cleaned = new double[(last - first + 1) * 2];
+        int n = 0;
+        double prevX = xy[first * 2], prevY = xy[first * 2 + 1];
+        cleaned[n * 2] = prevX;
+        cleaned[n * 2 + 1] = prevY;
+        n++;
+        double squaredDistance = minDistance * minDistance;
+        for (int i = first; i <= last; i++) {
+            double x = xy[i * 2], y = xy[i * 2 + 1];
+            boolean isAdded;
+            if (minDistance == 0) {
+                isAdded = prevX != x || prevY != y;
+            } else {
+                double dx = prevX - x;
+                double dy = prevY - y;
+                isAdded = (dx * dx) + (dy * dy) > squaredDistance;
+            }
+            if (isAdded) {
+                cleaned[n * 2] = x;
+                cleaned[n * 2 + 1] = y;
+                n++;
+                prevX = x;
+                prevY = y;
+            }
+        }
+        if (minDistance != 0) {
+            double lastX = xy[last * 2], lastY = xy[last * 2 + 1];
+            if (prevX != lastX || prevY != lastY) {
+                cleaned[n * 2 - 2] = lastX;
+                cleaned[n * 2 - 1] = lastY;
+            }
+        }
+        return Arrays.copyOf(cleaned, n * 2);
+    }
+
+    /**
+     * Reduces noise from the points, like {@link Bezier#reduceNoise}.
+     *
+     * @return the points with reduced noise.
+     */
+    private static double[] reduceNoise(double[] xy, int pointCount, double weight) {
+        double[] cleaned = new double[pointCount * 2];
+        if (pointCount > 0) {
+            double prevX = xy[0], prevY = xy[1];
+            cleaned[0] = prevX;
+            cleaned[1] = prevY;
+            double pnWeight = (1d - weight) / 2d; // weight of previous and next
+            for (int i = 1, n = pointCount - 1; i < n; i++) {
+                double curX = xy[i * 2], curY = xy[i * 2 + 1];
+                cleaned[i * 2] = curX * weight + pnWeight * prevX + pnWeight * xy[i * 2 + 2];
+                cleaned[i * 2 + 1] = curY * weight + pnWeight * prevY + pnWeight * xy[i * 2 + 3];
+                prevX = curX;
+                prevY = curY;
+            }
+            if (pointCount > 1) {
+                cleaned[pointCount * 2 - 2] = xy[pointCount * 2 - 2];
+                cleaned[pointCount * 2 - 1] = xy[pointCount * 2 - 1];
+            }
+        }
+        return cleaned;
+    }
+
+    private static double[] normalize(double x, double y) {
+        double[] v = {x, y};
+        double len = Math.sqrt((x * x) + (y * y));
+        if (len != 0.0) {
+            v[0] /= len;
+            v[1] /= len;
+        }
+        return v;
+    }
+
+    /**
+     * Runs the tasks on the executor, and waits until all of them are done.
+     * <p>
+     * If the current thread is interrupted, the tasks which have not been
+     * started yet are run on the current thread, so that all segments are
+     * fitted. The interrupt status is restored before this method returns.
+     */
+    private static void invokeAll(List<Callable<Object>> tasks) {
+        ExecutorService exec = getExecutor();
+        ArrayList<FutureTask<Object>> futures = new ArrayList<FutureTask<Object>>(tasks.size());
+        for (Callable<Object> task : tasks) {
+            FutureTask<Object> f = new FutureTask<Object>(task);
+            futures.add(f);
+            exec.execute(f);
+        }
+        boolean interrupted = false;
+        try {
+            for (FutureTask<Object> f : futures) {
+                while (true) {
+                    if (interrupted) {
+                        // Does nothing if a worker thread has already started the task
+                        f.run();
+                    }
+                    try {
+                        f.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InternalError(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                        private int count;
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "BezierFitter-" + (++count));
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    /**
+     * Holds the path elements of a fitted segment, until they are appended
+     * to the fitted path.
+     */
+    private static class FittedSegment {
+        /**
+         * Adds a node.
+         */
+        static final int NODE = 0;
+        /**
+         * Adds a node, if the path is empty.
+         */
+        static final int NODE_IF_EMPTY = 1;
+        static final int LINE_TO = 2;
+        static final int CURVE_TO = 3;
+
+        private double[] data = new double[16];
+        private int size;
+
+        public void add(int op, double... coords) {
+            if (size + coords.length + 1 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + coords.length + 1));
+            }
+            data[size++] = op;
+            System.arraycopy(coords, 0, data, size, coords.length);
+            size += coords.length;
+        }
+
+        public void appendTo(BezierPath path) {
+            for (int i = 0; i < size; ) {
+                switch ((int) data[i++]) {
+                    case NODE:
+                        path.add(new BezierPath.Node(data[i], data[i + 1]));
+                        i += 2;
+                        break;
+                    case NODE_IF_EMPTY:
+                        if (path.isEmpty()) {
+                            path.add(new BezierPath.Node(data[i], data[i + 1]));
+                        }
+                        i += 2;
+                        break;
+                    case LINE_TO:
+                        path.lineTo(data[i], data[i + 1]);
+                        i += 2;
+                        break;
+                    case CURVE_TO:
+                    default:
+                        path.curveTo(data[i], data[i + 1], data[i + 2], data[i + 3], data[i + 4], data[i + 5]);
+                        i += 6;
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fits cubic bezier curves to the points of a segment without corners.
+     * <p>
+     * The points are held in a primitive array.
+     * The bezier curves are stored with 8 coordinates in an array.
+     */
+    private static class CubicFitter {
+        private static final int MAX_ITERATIONS = 4;
+
+        private final double[] d;
+        private final int pointCount;
+        private final double errorSquared;
+        private final FittedSegment out;
+        /**
+         * The end point of the last path element.
+         */
+        private double lastX, lastY;
+
+        public CubicFitter(double[] d, int pointCount, double errorSquared, FittedSegment out) {
+            this.d = d;
+            this.pointCount = pointCount;
+            this.errorSquared = errorSquared;
+            this.out = out;
+            this.lastX = d[0];
+            this.lastY = d[1];
+        }
+
+        /**
+         * Fits one or multiple subsequent cubic bezier curves to the points
+         * from first to last.
+         */
+        public void fitCubic(int first, int last, double[] tHat1, double[] tHat2) {
+            // clone unit tangent vectors, so that we can alter their coordinates
+            // without affecting the input values.
+            tHat1 = tHat1.clone();
+            tHat2 = tHat2.clone();
+
+            double iterationError = errorSquared * errorSquared;
+            int nPts = last - first + 1;
+            int[] splitPoint = new int[1];
+
+            /*  Use heuristic if region only has two points in it */
+            if (nPts == 2) {
+                double[] bezCurve = generateBezier(first, last, tHat1, tHat2);
+                curveTo(bezCurve);
+                return;
+            }
+
+            /*  Parameterize points, and attempt to fit curve */
+            double[] u = chordLengthParameterize(first, last);
+            double[] bezCurve = generateBezier(first, last, tHat1, tHat2);
+
+            /*  Find max deviation of points to fitted curve */
+            double maxError = computeMaxError(first, last, bezCurve, u, splitPoint);
+            if (maxError < errorSquared) {
+                addCurveTo(bezCurve, first == 0 && last == pointCount - 1);
+                return;
+            }
+
+            /*  If error not too large, try some reparameterization and iteration */
+            if (maxError < iterationError) {
+                for (int i = 0; i < MAX_ITERATIONS; i++) {
+                    double[] uPrime = reparameterize(first, last, u, bezCurve);
+                    bezCurve = generateBezier(first, last, tHat1, tHat2);
+                    maxError = computeMaxError(first, last, bezCurve, uPrime, splitPoint);
+                    if (maxError < errorSquared) {
+                        addCurveTo(bezCurve, first == 0 && last == pointCount - 1);
+                        return;
+                    }
+                    u = uPrime;
+                }
+            }
+
+            /* Fitting failed -- split at max error point and fit recursively */
+            int split = splitPoint[0];
+            double[] tHatCenter = normalize(
+                    ((d[split * 2 - 2] - d[split * 2]) + (d[split * 2] - d[split * 2 + 2])) / 2.0,
+                    ((d[split * 2 - 1] - d[split * 2 + 1]) + (d[split * 2 + 1] - d[split * 2 + 3])) / 2.0);
+            if (first < split) {
+                fitCubic(first, split, tHat1, tHatCenter);
+            } else {
+                lineTo(d[split * 2], d[split * 2 + 1]);
+            }
+            tHatCenter[0] = -tHatCenter[0];
+            tHatCenter[1] = -tHatCenter[1];
+            if (split < last) {
+                fitCubic(split, last, tHatCenter, tHat2);
+            } else {
+                lineTo(d[last * 2], d[last * 2 + 1]);
+            }
+        }
+
+        private void addCurveTo(double[] bezCurve, boolean connectsCorners) {
+            double error = Math.sqrt(errorSquared);
+            if (connectsCorners && Geom.lineContainsPoint(lastX, lastY, bezCurve[6], bezCurve[7], bezCurve[2], bezCurve[3], error)
+                    && Geom.lineContainsPoint(lastX, lastY, bezCurve[6], bezCurve[7], bezCurve[4], bezCurve[5], error)) {
+                lineTo(bezCurve[6], bezCurve[7]);
+            } else {
+                curveTo(bezCurve);
+            }
+        }
+
+        private void lineTo(double x, double y) {
+            out.add(FittedSegment.LINE_TO, x, y);
+            lastX = x;
+            lastY = y;
+        }
+
+        private void curveTo(double[] bezCurve) {
+            out.add(FittedSegment.CURVE_TO, bezCurve[2], bezCurve[3], bezCurve[4], bezCurve[5], bezCurve[6], bezCurve[7]);
+            lastX = bezCurve[6];
+            lastY = bezCurve[7];
+        }
+
+        /**
+         * Uses the Wu/Barsky heuristic to find the control points.
+         * <p>
+         * This method scales the tangent vectors to the length of the
+         * control vectors.
+         */
+        private double[] generateBezier(int first, int last, double[] tHat1, double[] tHat2) {
+            double dist = distance(last, first) / 3.0;
+            scale(tHat1, dist);
+            scale(tHat2, dist);
+            double x0 = d[first * 2], y0 = d[first * 2 + 1];
+            double x3 = d[last * 2], y3 = d[last * 2 + 1];
+            return new double[]{
+                    x0, y0,
+                    x0 + tHat1[0], y0 + tHat1[1],
+                    x3 + tHat2[0], y3 + tHat2[1],
+                    x3, y3};
+        }
+
+        private double[] chordLengthParameterize(int first, int last) {
+            double[] u = new double[last - first + 1];
+            u[0] = 0.0;
+            for (int i = first + 1; i <= last; i++) {
+                u[i - first] = u[i - first - 1] + distance(i, i - 1);
+            }
+            for (int i = first + 1; i <= last; i++) {
+                u[i - first] = u[i - first] / u[last - first];
+            }
+            return u;
+        }
+
+        private double[] reparameterize(int first, int last, double[] u, double[] bezCurve) {
+            double[] uPrime = new double[last - first + 1];
+            for (int i = first; i <= last; i++) {
+                uPrime[i - first] = newtonRaphsonRootFind(bezCurve, d[i * 2], d[i * 2 + 1], u[i - first]);
+            }
+            return uPrime;
+        }
+
+        /**
+         * Uses Newton-Raphson iteration to find a better parameter value
+         * for point P.
+         */
+        private static double newtonRaphsonRootFind(double[] q, double px, double py, double u) {
+            double[] q1 = new double[6];
+            double[] q2 = new double[4];
+            double[] qu = new double[2], q1u = new double[2], q2u = new double[2];
+
+            /* Compute Q(u)	*/
+            bezier(3, q, u, qu);
+
+            /* Generate control vertices for Q'	*/
+            for (int i = 0; i <= 2; i++) {
+                q1[i * 2] = (q[i * 2 + 2] - q[i * 2]) * 3.0;
+                q1[i * 2 + 1] = (q[i * 2 + 3] - q[i * 2 + 1]) * 3.0;
+            }
+
+            /* Generate control vertices for Q'' */
+            for (int i = 0; i <= 1; i++) {
+                q2[i * 2] = (q1[i * 2 + 2] - q1[i * 2]) * 2.0;
+                q2[i * 2 + 1] = (q1[i * 2 + 3] - q1[i * 2 + 1]) * 2.0;
+            }
+
+            /* Compute Q'(u) and Q''(u)	*/
+            bezier(2, q1, u, q1u);
+            bezier(1, q2, u, q2u);
+
+            /* Compute f(u)/f'(u) */
+            double numerator = (qu[0] - px) * (q1u[0]) + (qu[1] - py) * (q1u[1]);
+            double denominator = (q1u[0]) * (q1u[0]) + (q1u[1]) * (q1u[1])
+                    + (qu[0] - px) * (q2u[0]) + (qu[1] - py) * (q2u[1]);
+
+            /* u = u - f(u)/f'(u) */
+            return u - (numerator / denominator);
+        }
+
+        /**
+         * Finds the maximum squared distance of the points to the fitted
+         * curve.
+         */
+        private double computeMaxError(int first, int last, double[] bezCurve, double[] u, int[] splitPoint) {
+            double[] p = new double[2];
+            splitPoint[0] = (last - first + 1) / 2;
+            double maxDist = 0.0;
+            for (int i = first + 1; i < last; i++) {
+                bezier(3, bezCurve, u[i - first], p);
+                double vx = p[0] - d[i * 2];
+                double vy = p[1] - d[i * 2 + 1];
+                double dist = (vx * vx) + (vy * vy);
+                if (dist >= maxDist) {
+                    maxDist = dist;
+                    splitPoint[0] = i;
+                }
+            }
+            return maxDist;
+        }
+
+        /**
+         * Evaluates a bezier curve at a particular parameter value.
+         */
+        private static void bezier(int degree, double[] v, double t, double[] result) {
+            double[] vTemp = Arrays.copyOf(v, degree * 2 + 2);
+            for (int i = 1; i <= degree; i++) {
+                for (int j = 0; j <= degree - i; j++) {
+                    vTemp[j * 2] = (1.0 - t) * vTemp[j * 2] + t * vTemp[j * 2 + 2];
+                    vTemp[j * 2 + 1] = (1.0 - t) * vTemp[j * 2 + 1] + t * vTemp[j * 2 + 3];
+                }
+            }
+            result[0] = vTemp[0];
+            result[1] = vTemp[1];
+        }
+
+        private double distance(int a, int b) {
+            double dx = d[a * 2] - d[b * 2];
+            double dy = d[a * 2 + 1] - d[b * 2 + 1];
+            return Math.sqrt((dx * dx) + (dy * dy));
+        }
+
+        private static void scale(double[] v, double newLength) {
+            double len = Math.sqrt((v[0] * v[0]) + (v[1] * v[1]));
+            if (len != 0.0) {
+                v[0] *= newLength / len;
+                v[1] *= newLength / len;
+            }
+        }
+    }
+}
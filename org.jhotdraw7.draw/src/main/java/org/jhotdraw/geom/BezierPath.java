@@ -77,6 +77,41 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * The winding rule for filling the bezier path.
      */
     private int windingRule = Path2D.Double.WIND_EVEN_ODD;
+    /**
+     * If this value is set to true, the flattened path is cached.
+     */
+    private boolean isFlatteningCached;
+    /**
+     * We cache the flattened path to speed up arc length operations.
+     * The array holds the coordinates x0, y0, x1, y1, ... of the polyline.
+     */
+    @Nullable
+    private transient double[] flatCoords;
+    /**
+     * The arc length from the start of the flattened path to each of its
+     * points.
+     */
+    @Nullable
+    private transient double[] flatLengths;
+    /**
+     * The number of points of the flattened path.
+     */
+    private transient int flatCount;
+    /**
+     * The flatness which was used to flatten the path.
+     */
+    private transient double flatFlatness;
+    /**
+     * We cache a hit tester over the flattened path to speed up the search
+     * for the nearest point on the path.
+     */
+    @Nullable
+    private transient SegmentHitTester flatHitTester;
+    /**
+     * We cache a hit tester to speed up outline tests.
+     */
+    @Nullable
+    private transient SegmentHitTester hitTester;
 
     /**
      * Defines a vertex (node) of the bezier path.
@@ -345,6 +380,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         generalPath = null;
         bounds = null;
         outer = -1;
+        flatCoords = null;
+        flatLengths = null;
+        flatHitTester = null;
+        hitTester = null;
     }
 
     /**
@@ -450,7 +489,21 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param tolerance The tolerance for the test.
      */
     public boolean outlineContains(Point2D.Double p, double tolerance) {
-        return Shapes.outlineContains(this, p, tolerance);
+        return getHitTester(tolerance).outlineContains(p.x, p.y, tolerance);
+    }
+
+    /**
+     * Returns a hit tester for this bezier path. The hit tester is cached
+     * until {@link #invalidatePath} is called, or until a hit tester with a
+     * different flatness is requested.
+     *
+     * @param flatness The flatness of the line segments of the hit tester.
+     */
+    public SegmentHitTester getHitTester(double flatness) {
+        if (hitTester == null || hitTester.getFlatness() != flatness) {
+            hitTester = new SegmentHitTester(this, flatness);
+        }
+        return hitTester;
     }
 
     @Override
@@ -666,6 +719,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     @Override
     public BezierPath clone() {
         BezierPath that = (BezierPath) super.clone();
+        that.flatCoords = null;
+        that.flatLengths = null;
+        that.flatHitTester = null;
+        that.hitTester = null;
         for (int i = 0, n = this.size(); i < n; i++) {
             that.set(i, (Node) this.get(i).clone());
         }
@@ -754,6 +811,66 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         return outer;
     }
 
+    /**
+     * Sets whether the path caches its flattened geometry.
+     * <p>
+     * If this is set to true, the path keeps the polyline, which approximates
+     * the path, together with a table of the arc lengths of its points. The
+     * table is computed on the first arc length operation after
+     * {@link #invalidatePath}, and speeds up all subsequent operations with
+     * the same flatness.
+     * <p>
+     * The default value is false.
+     */
+    public void setFlatteningCached(boolean newValue) {
+        isFlatteningCached = newValue;
+        if (!newValue) {
+            flatCoords = null;
+            flatLengths = null;
+            flatHitTester = null;
+        }
+    }
+
+    /**
+     * Returns true if the path caches its flattened geometry.
+     */
+    public boolean isFlatteningCached() {
+        return isFlatteningCached;
+    }
+
+    /**
+     * Flattens the path, if the flattened path is not cached or has been
+     * flattened with a different flatness.
+     */
+    private void validateFlattening(double flatness) {
+        if (flatCoords != null && flatFlatness == flatness) {
+            return;
+        }
+        validatePath();
+        double[] xy = new double[32];
+        double[] len = new double[16];
+        int n = 0;
+        double[] coords = new double[6];
+        for (PathIterator i = generalPath.getPathIterator(null, flatness); !i.isDone(); i.next()) {
+            if (i.currentSegment(coords) == PathIterator.SEG_CLOSE) {
+                continue;
+            }
+            if (n == len.length) {
+                xy = Arrays.copyOf(xy, n * 4);
+                len = Arrays.copyOf(len, n * 2);
+            }
+            xy[n * 2] = coords[0];
+            xy[n * 2 + 1] = coords[1];
+            len[n] = (n == 0) ? 0 : len[n - 1] + Geom.length(xy[n * 2 - 2], xy[n * 2 - 1], coords[0], coords[1]);
+            n++;
+        }
+        flatCoords = xy;
+        flatLengths = len;
+        flatCount = n;
+        flatFlatness = flatness;
+        flatHitTester = null;
+    }
+
     /**
      * Returns a relative point on the path.
      * Where 0 is the start point of the path and 1 is the end point of the
@@ -774,6 +891,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         } else if (relative >= 1) {
             return get(size() - 1).getControlPoint(0);
         }
+        if (isFlatteningCached) {
+            return getPointAtLength(getLengthOfPath(flatness) * relative, flatness);
+        }
         validatePath();
 
         // Compute the relative point on the path
@@ -782,20 +902,17 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         double pos = 0;
         double[] coords = new double[6];
         PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
+        i.currentSegment(coords);
         double prevX = coords[0];
         double prevY = coords[1];
         i.next();
         for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
+            if (i.currentSegment(coords) == PathIterator.SEG_CLOSE) {
+                continue;
+            }
             double segLen = Geom.length(prevX, prevY, coords[0], coords[1]);
             if (pos + segLen >= relativeLen) {
-                //if (true) return new Point2D.Double(coords[0], coords[1]);
                 // Compute the relative Point2D.Double on the line
-                /*
-                return new Point2D.Double(
-                prevX * pos / len + coords[0] * (pos + segLen) / len,
-                prevY * pos / len + coords[1] * (pos + segLen) / len
-                );*/
                 double factor = (relativeLen - pos) / segLen;
 
                 return new Point2D.Double(
@@ -806,7 +923,107 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             prevX = coords[0];
             prevY = coords[1];
         }
-        throw new InternalError("We should never get here");
+        return new Point2D.Double(prevX, prevY);
+    }
+
+    /**
+     * Returns the point on the path, which has the specified arc length from
+     * the start point of the path.
+     * <p>
+     * If the flattened path is cached, this method needs O(log n) time.
+     *
+     * @param length   the arc length. The value is clamped to the length of
+     *                 the path.
+     * @param flatness the flatness used to approximate the path.
+     * @return the point, or null if the path is empty.
+     */
+    @Nullable
+    public Point2D.Double getPointAtLength(double length, double flatness) {
+        if (size() == 0) {
+            return null;
+        }
+        validateFlattening(flatness);
+        double[] xy = flatCoords;
+        double[] len = flatLengths;
+        int n = flatCount;
+        if (!isFlatteningCached) {
+            flatCoords = null;
+            flatLengths = null;
+        }
+        if (length <= 0 || n == 1) {
+            return new Point2D.Double(xy[0], xy[1]);
+        } else if (length >= len[n - 1]) {
+            return new Point2D.Double(xy[n * 2 - 2], xy[n * 2 - 1]);
+        }
+        // Find the first point, whose arc length is not less than length
+        int k = Arrays.binarySearch(len, 0, n, length);
+        if (k >= 0) {
+            while (k > 0 && len[k - 1] == length) {
+                k--;
+            }
+            return new Point2D.Double(xy[k * 2], xy[k * 2 + 1]);
+        }
+        k = -k - 1;
+        double factor = (length - len[k - 1]) / (len[k] - len[k - 1]);
+        return new Point2D.Double(
+                xy[k * 2 - 2] * (1 - factor) + xy[k * 2] * factor,
+                xy[k * 2 - 1] * (1 - factor) + xy[k * 2 + 1] * factor);
+    }
+
+    /**
+     * Returns the arc length from the start point of the path to the point
+     * on the path, which is nearest to the specified point.
+     * <p>
+     * If the flattened path is cached, this method does not flatten the
+     * path again, and finds the nearest segment of the flattened path with a
+     * {@link SegmentHitTester}, which is cached as well. Then this method
+     * typically needs O(log n) time, where n is the number of points of the
+     * flattened path. Otherwise it needs O(n) time.
+     *
+     * @param p        a point.
+     * @param flatness the flatness used to approximate the path.
+     * @return the arc length, or 0 if the path is empty.
+     */
+    public double getLengthAtPoint(Point2D.Double p, double flatness) {
+        if (size() == 0) {
+            return 0;
+        }
+        validateFlattening(flatness);
+        double[] xy = flatCoords;
+        double[] len = flatLengths;
+        int n = flatCount;
+        if (!isFlatteningCached) {
+            flatCoords = null;
+            flatLengths = null;
+        }
+        if (isFlatteningCached) {
+            if (flatHitTester == null) {
+                flatHitTester = new SegmentHitTester(xy, n, flatness);
+            }
+            int k = flatHitTester.getNearestSegment(p.x, p.y) + 1;
+            if (k == 0) {
+                return 0;
+            }
+            double x1 = xy[k * 2 - 2], y1 = xy[k * 2 - 1];
+            double dx = xy[k * 2] - x1, dy = xy[k * 2 + 1] - y1;
+            double d2 = dx * dx + dy * dy;
+            double t = (d2 == 0) ? 0 : Math.max(0, Math.min(1, ((p.x - x1) * dx + (p.y - y1) * dy) / d2));
+            return len[k - 1] + t * (len[k] - len[k - 1]);
+        }
+        double result = 0;
+        double best = Geom.length2(p.x, p.y, xy[0], xy[1]);
+        for (int k = 1; k < n; k++) {
+            double x1 = xy[k * 2 - 2], y1 = xy[k * 2 - 1];
+            double dx = xy[k * 2] - x1, dy = xy[k * 2 + 1] - y1;
+            double d2 = dx * dx + dy * dy;
+            double t = (d2 == 0) ? 0 : Math.max(0, Math.min(1, ((p.x - x1) * dx + (p.y - y1) * dy) / d2));
+            double dist = Geom.length2(p.x, p.y, x1 + t * dx, y1 + t * dy);
+            if (dist < best) {
+                best = dist;
+                result = len[k - 1] + t * (len[k] - len[k - 1]);
+            }
+        }
+        return result;
     }
 
     /**
@@ -815,14 +1032,22 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param flatness the flatness used to approximate the length.
      */
     public double getLengthOfPath(double flatness) {
+        if (isFlatteningCached) {
+            validateFlattening(flatness);
+            return (flatCount == 0) ? 0 : flatLengths[flatCount - 1];
+        }
+        validatePath();
         double len = 0;
         PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
         double[] coords = new double[6];
+        i.currentSegment(coords);
         double prevX = coords[0];
         double prevY = coords[1];
         i.next();
         for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
+            if (i.currentSegment(coords) == PathIterator.SEG_CLOSE) {
+                continue;
+            }
             len += Geom.length(prevX, prevY, coords[0], coords[1]);
             prevX = coords[0];
             prevY = coords[1];
@@ -838,6 +1063,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * Returns -1, if the point is not on the path.
      */
     public double getRelativePositionOnPath(Point2D.Double find, double flatness) {
+        if (isFlatteningCached) {
+            return getRelativePositionOnFlattenedPath(find, flatness);
+        }
         // XXX - This method works only for straight lines!
         double len = getLengthOfPath(flatness);
         double relativeLen = 0d;
@@ -890,6 +1118,30 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         return -1;
     }
 
+    /**
+     * Returns the relative position of the specified point on the cached
+     * flattened path.
+     *
+     * @return relative position on path, or -1 if the point is not on the
+     * path.
+     */
+    private double getRelativePositionOnFlattenedPath(Point2D.Double find, double flatness) {
+        validateFlattening(flatness);
+        double[] xy = flatCoords;
+        double[] len = flatLengths;
+        if (flatCount == 0) {
+            return -1;
+        }
+        double total = len[flatCount - 1];
+        for (int k = 1; k < flatCount; k++) {
+            if (Geom.lineContainsPoint(xy[k * 2 - 2], xy[k * 2 - 1], xy[k * 2], xy[k * 2 + 1], find.x, find.y, flatness)) {
+                double relativeLen = len[k - 1] + Geom.length(xy[k * 2 - 2], xy[k * 2 - 1], find.x, find.y);
+                return (total == 0) ? 0 : Math.min(relativeLen, total) / total;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Gets the segment of the polyline that is hit by
      * the given Point2D.Double.
@@ -1112,10 +1364,58 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         double x0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.x[2] : lastPoint.x[0];
         double y0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.y[2] : lastPoint.y[0];
 
+        PathIterator i = createArcIterator(x0, y0, rx, ry, xAxisRotation, largeArcFlag, sweepFlag, x, y);
+        if (i == null) {
+            return;
+        }
+
+        // Add the segments to the bezier path
+        double[] coords = new double[6];
+        i.next(); // skip first moveto
+        while (!i.isDone()) {
+            int type = i.currentSegment(coords);
+            switch (type) {
+                case PathIterator.SEG_CLOSE:
+                    // ignore
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    lineTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_MOVETO:
+                    // ignore
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    quadTo(coords[0], coords[1], coords[2], coords[3]);
+                    break;
+            }
+            i.next();
+        }
+    }
+
+    /**
+     * Creates a path iterator over the cubic curves which approximate an
+     * elliptical arc from (x0, y0) to (x, y). The first segment of the
+     * iterator is a moveto to the start point of the arc.
+     * <p>
+     * See {@link #arcTo} for a description of the parameters. The radii
+     * must not be 0.
+     *
+     * @return the iterator, or null if the start point and the end point of
+     * the arc are identical.
+     */
+    @Nullable
+    static PathIterator createArcIterator(double x0, double y0,
+                                          double rx, double ry,
+                                          double xAxisRotation,
+                                          boolean largeArcFlag, boolean sweepFlag,
+                                          double x, double y) {
         if (x0 == x && y0 == y) {
             // If the endpoints (x, y) and (x0, y0) are identical, then this
             // is equivalent to omitting the elliptical arc segment entirely.
-            return;
+            return null;
         }
 
         // Compute the half distance between the current and the final point
@@ -1203,34 +1503,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                 Arc2D.OPEN);
 
         // Create a path iterator of the rotated arc
-        PathIterator i = arc.getPathIterator(
+        return arc.getPathIterator(
                 AffineTransform.getRotateInstance(
                         angle, arc.getCenterX(), arc.getCenterY()));
-
-        // Add the segments to the bezier path
-        double[] coords = new double[6];
-        i.next(); // skip first moveto
-        while (!i.isDone()) {
-            int type = i.currentSegment(coords);
-            switch (type) {
-                case PathIterator.SEG_CLOSE:
-                    // ignore
-                    break;
-                case PathIterator.SEG_CUBICTO:
-                    curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
-                    break;
-                case PathIterator.SEG_LINETO:
-                    lineTo(coords[0], coords[1]);
-                    break;
-                case PathIterator.SEG_MOVETO:
-                    // ignore
-                    break;
-                case PathIterator.SEG_QUADTO:
-                    quadTo(coords[0], coords[1], coords[2], coords[3]);
-                    break;
-            }
-            i.next();
-        }
     }
 
     /**
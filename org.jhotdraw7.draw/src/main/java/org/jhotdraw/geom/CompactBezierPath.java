@@ -0,0 +1,703 @@
+/* @(#)CompactBezierPath.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.geom;
+
+import org.jhotdraw.annotation.Nullable;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.IllegalPathStateException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A compact representation of a {@link BezierPath}.
+ * <p>
+ * A BezierPath holds a {@link BezierPath.Node} object with three coordinate
+ * arrays for each node. A CompactBezierPath holds the coordinates and the
+ * masks of all nodes in flat primitive arrays. This saves most of the memory
+ * of large paths, for example of paths which have been drawn free hand.
+ * <p>
+ * The nodes have the same meaning as the nodes of a BezierPath: each node has
+ * the control points C0, C1 and C2, and a mask which defines which of the
+ * control points C1 and C2 are in use.
+ * <p>
+ * A CompactBezierPath implements {@link Shape} directly. It does not create a
+ * {@code Path2D} for its shape operations.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public final class CompactBezierPath implements Shape, Serializable, Cloneable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Flag in the masks array, which is set if a node keeps its control
+     * points C1 and C2 colinear.
+     */
+    private static final int COLINEAR_FLAG = 4;
+    /**
+     * The coordinates of the nodes: x0, y0, x1, y1, x2, y2 for each node.
+     */
+    private double[] coords;
+    /**
+     * The masks of the nodes.
+     */
+    private byte[] masks;
+    /**
+     * The number of nodes.
+     */
+    private int size;
+    /**
+     * If this value is set to true, closes the bezier path.
+     */
+    private boolean isClosed;
+    /**
+     * The winding rule for filling the bezier path.
+     */
+    private int windingRule = Path2D.Double.WIND_EVEN_ODD;
+    /**
+     * We cache a Rectangle2D.Double instance to speed up getBounds operations.
+     */
+    @Nullable
+    private transient Rectangle2D.Double bounds;
+
+    /**
+     * Creates a new instance.
+     */
+    public CompactBezierPath() {
+        this(8);
+    }
+
+    /**
+     * Creates a new instance with the specified capacity.
+     *
+     * @param initialCapacity the initial number of nodes.
+     */
+    public CompactBezierPath(int initialCapacity) {
+        coords = new double[Math.max(1, initialCapacity) * 6];
+        masks = new byte[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Creates a compact copy of the specified bezier path.
+     */
+    public CompactBezierPath(BezierPath that) {
+        this(that.size());
+        setTo(that);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > masks.length) {
+            int newCapacity = Math.max(capacity, masks.length * 2);
+            coords = Arrays.copyOf(coords, newCapacity * 6);
+            masks = Arrays.copyOf(masks, newCapacity);
+        }
+    }
+
+    /**
+     * Trims the capacity of the arrays to the number of nodes.
+     */
+    public void trimToSize() {
+        if (size < masks.length) {
+            int capacity = Math.max(1, size);
+            coords = Arrays.copyOf(coords, capacity * 6);
+            masks = Arrays.copyOf(masks, capacity);
+        }
+    }
+
+    /**
+     * Adds a node with control point C0.
+     */
+    public void add(double x0, double y0) {
+        add(BezierPath.C0_MASK, x0, y0, x0, y0, x0, y0);
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param mask the mask of the node.
+     */
+    public void add(int mask, double x0, double y0, double x1, double y1, double x2, double y2) {
+        insert(size, mask, x0, y0, x1, y1, x2, y2);
+    }
+
+    /**
+     * Inserts a node at the specified index.
+     *
+     * @param mask the mask of the node.
+     */
+    public void insert(int index, int mask, double x0, double y0, double x1, double y1, double x2, double y2) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index:" + index + ", size:" + size);
+        }
+        ensureCapacity(size + 1);
+        if (index < size) {
+            System.arraycopy(coords, index * 6, coords, index * 6 + 6, (size - index) * 6);
+            System.arraycopy(masks, index, masks, index + 1, size - index);
+        }
+        int k = index * 6;
+        coords[k] = x0;
+        coords[k + 1] = y0;
+        coords[k + 2] = x1;
+        coords[k + 3] = y1;
+        coords[k + 4] = x2;
+        coords[k + 5] = y2;
+        masks[index] = (byte) ((mask & BezierPath.C1C2_MASK) | COLINEAR_FLAG);
+        size++;
+        invalidatePath();
+    }
+
+    /**
+     * Removes the node at the specified index.
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        System.arraycopy(coords, index * 6 + 6, coords, index * 6, (size - index - 1) * 6);
+        System.arraycopy(masks, index + 1, masks, index, size - index - 1);
+        size--;
+        invalidatePath();
+    }
+
+    /**
+     * Removes all nodes.
+     */
+    public void clear() {
+        size = 0;
+        invalidatePath();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index:" + index + ", size:" + size);
+        }
+    }
+
+    /**
+     * Returns the x-coordinate of a control point of a node.
+     *
+     * @param index     the index of the node.
+     * @param ctrlIndex the index of the control point: 0, 1 or 2.
+     */
+    public double getX(int index, int ctrlIndex) {
+        checkIndex(index);
+        return coords[index * 6 + ctrlIndex * 2];
+    }
+
+    /**
+     * Returns the y-coordinate of a control point of a node.
+     *
+     * @param index     the index of the node.
+     * @param ctrlIndex the index of the control point: 0, 1 or 2.
+     */
+    public double getY(int index, int ctrlIndex) {
+        checkIndex(index);
+        return coords[index * 6 + ctrlIndex * 2 + 1];
+    }
+
+    /**
+     * Returns a control point of a node.
+     *
+     * @param index     the index of the node.
+     * @param ctrlIndex the index of the control point: 0, 1 or 2.
+     */
+    public Point2D.Double get(int index, int ctrlIndex) {
+        return new Point2D.Double(getX(index, ctrlIndex), getY(index, ctrlIndex));
+    }
+
+    /**
+     * Sets a control point of a node.
+     *
+     * @param index     the index of the node.
+     * @param ctrlIndex the index of the control point: 0, 1 or 2.
+     */
+    public void set(int index, int ctrlIndex, double x, double y) {
+        checkIndex(index);
+        coords[index * 6 + ctrlIndex * 2] = x;
+        coords[index * 6 + ctrlIndex * 2 + 1] = y;
+        invalidatePath();
+    }
+
+    public int getMask(int index) {
+        checkIndex(index);
+        return masks[index] & BezierPath.C1C2_MASK;
+    }
+
+    public void setMask(int index, int mask) {
+        checkIndex(index);
+        masks[index] = (byte) ((masks[index] & COLINEAR_FLAG) | (mask & BezierPath.C1C2_MASK));
+        invalidatePath();
+    }
+
+    /**
+     * Returns true if the node keeps its control points C1 and C2 colinear.
+     * This is the value of {@link BezierPath.Node#keepColinear}.
+     */
+    public boolean isKeepColinear(int index) {
+        checkIndex(index);
+        return (masks[index] & COLINEAR_FLAG) != 0;
+    }
+
+    public void setKeepColinear(int index, boolean newValue) {
+        checkIndex(index);
+        masks[index] = (byte) (newValue ? masks[index] | COLINEAR_FLAG : masks[index] & ~COLINEAR_FLAG);
+    }
+
+    /**
+     * This must be called after the CompactBezierPath has been changed
+     * through a method, which does not invalidate the path by itself.
+     */
+    public void invalidatePath() {
+        bounds = null;
+    }
+
+    public void setClosed(boolean newValue) {
+        if (isClosed != newValue) {
+            isClosed = newValue;
+            invalidatePath();
+        }
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Sets winding rule for filling the bezier path.
+     *
+     * @param newValue Must be Path2D.Double.WIND_EVEN_ODD or Path2D.Double.WIND_NON_ZERO.
+     */
+    public void setWindingRule(int newValue) {
+        windingRule = newValue;
+    }
+
+    /**
+     * Gets winding rule for filling the bezier path.
+     *
+     * @return Path2D.Double.WIND_EVEN_ODD or Path2D.Double.WIND_NON_ZERO.
+     */
+    public int getWindingRule() {
+        return windingRule;
+    }
+
+    /**
+     * Adds the first node to the bezier path.
+     * <p>
+     * This is a convenience method for adding the first node with a single
+     * control point C0 to the bezier path.
+     */
+    public void moveTo(double x1, double y1) {
+        if (size != 0) {
+            throw new IllegalPathStateException("moveTo only allowed when empty");
+        }
+        add(x1, y1);
+        setKeepColinear(0, false);
+    }
+
+    /**
+     * Adds a (at least) linear 'curve' to the bezier path.
+     * <p>
+     * The bezier path must already have at least one node.
+     *
+     * @see BezierPath#lineTo
+     */
+    public void lineTo(double x1, double y1) {
+        if (size == 0) {
+            throw new IllegalPathStateException("lineTo only allowed when not empty");
+        }
+        setKeepColinear(size - 1, false);
+        add(x1, y1);
+    }
+
+    /**
+     * Adds a (at least) quadratic curve to the bezier path.
+     * <p>
+     * The bezier path must already have at least one node.
+     *
+     * @see BezierPath#quadTo
+     */
+    public void quadTo(double x1, double y1,
+                       double x2, double y2) {
+        if (size == 0) {
+            throw new IllegalPathStateException("quadTo only allowed when not empty");
+        }
+        add(BezierPath.C1_MASK, x2, y2, x1, y1, x2, y2);
+    }
+
+    /**
+     * Adds a cubic curve to the bezier path.
+     * <p>
+     * The bezier path must already have at least one node.
+     *
+     * @see BezierPath#curveTo
+     */
+    public void curveTo(double x1, double y1,
+                        double x2, double y2,
+                        double x3, double y3) {
+        if (size == 0) {
+            throw new IllegalPathStateException("curveTo only allowed when not empty");
+        }
+        int last = size - 1;
+        int k = last * 6;
+        masks[last] |= BezierPath.C2_MASK;
+        coords[k + 4] = x1;
+        coords[k + 5] = y1;
+        if ((masks[last] & BezierPath.C1C2_MASK) == BezierPath.C1C2_MASK) {
+            setKeepColinear(last, Math.abs(
+                    Geom.angle(coords[k], coords[k + 1], coords[k + 2], coords[k + 3])
+                            - Geom.angle(coords[k + 4], coords[k + 5], coords[k], coords[k + 1])) < 0.001);
+        }
+        add(BezierPath.C1_MASK, x3, y3, x2, y2, x3, y3);
+    }
+
+    /**
+     * Adds an elliptical arc to the bezier path.
+     *
+     * @see BezierPath#arcTo
+     */
+    public void arcTo(double rx, double ry,
+                      double xAxisRotation,
+                      boolean largeArcFlag, boolean sweepFlag,
+                      double x, double y) {
+        // Ensure radii are valid
+        if (rx == 0 || ry == 0) {
+            lineTo(x, y);
+            return;
+        }
+
+        // Get the current (x, y) coordinates of the path
+        int k = (size - 1) * 6;
+        boolean hasC2 = (masks[size - 1] & BezierPath.C2_MASK) != 0;
+        double x0 = hasC2 ? coords[k + 4] : coords[k];
+        double y0 = hasC2 ? coords[k + 5] : coords[k + 1];
+
+        PathIterator i = BezierPath.createArcIterator(x0, y0, rx, ry, xAxisRotation, largeArcFlag, sweepFlag, x, y);
+        if (i == null) {
+            return;
+        }
+        double[] c = new double[6];
+        for (i.next(); !i.isDone(); i.next()) {
+            switch (i.currentSegment(c)) {
+                case PathIterator.SEG_CUBICTO:
+                    curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    lineTo(c[0], c[1]);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    quadTo(c[0], c[1], c[2], c[3]);
+                    break;
+                default:
+                    // ignore
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Transforms the CompactBezierPath.
+     *
+     * @param tx the transformation.
+     */
+    public void transform(AffineTransform tx) {
+        tx.transform(coords, 0, coords, 0, size * 3);
+        invalidatePath();
+    }
+
+    /**
+     * Sets all values of this path to that bezier path, so that this path
+     * describes the same shape as that path.
+     */
+    public void setTo(BezierPath that) {
+        size = 0;
+        ensureCapacity(that.size());
+        for (BezierPath.Node node : that) {
+            int k = size * 6;
+            coords[k] = node.x[0];
+            coords[k + 1] = node.y[0];
+            coords[k + 2] = node.x[1];
+            coords[k + 3] = node.y[1];
+            coords[k + 4] = node.x[2];
+            coords[k + 5] = node.y[2];
+            masks[size] = (byte) ((node.mask & BezierPath.C1C2_MASK) | (node.keepColinear ? COLINEAR_FLAG : 0));
+            size++;
+        }
+        isClosed = that.isClosed();
+        windingRule = that.getWindingRule();
+        invalidatePath();
+    }
+
+    /**
+     * Sets all values of that bezier path to this path. Existing nodes of
+     * that bezier path are reused.
+     */
+    public void copyTo(BezierPath that) {
+        while (that.size() > size) {
+            that.remove(that.size() - 1);
+        }
+        for (int i = 0; i < size; i++) {
+            BezierPath.Node node;
+            if (i < that.size()) {
+                node = that.get(i);
+            } else {
+                node = new BezierPath.Node();
+                that.add(node);
+            }
+            int k = i * 6;
+            node.x[0] = coords[k];
+            node.y[0] = coords[k + 1];
+            node.x[1] = coords[k + 2];
+            node.y[1] = coords[k + 3];
+            node.x[2] = coords[k + 4];
+            node.y[2] = coords[k + 5];
+            node.mask = masks[i] & BezierPath.C1C2_MASK;
+            node.keepColinear = (masks[i] & COLINEAR_FLAG) != 0;
+        }
+        that.setClosed(isClosed);
+        that.setWindingRule(windingRule);
+        that.invalidatePath();
+    }
+
+    /**
+     * Creates a BezierPath with the same nodes as this path.
+     */
+    public BezierPath toBezierPath() {
+        BezierPath that = new BezierPath();
+        that.ensureCapacity(size);
+        copyTo(that);
+        return that;
+    }
+
+    @Override
+    public Rectangle2D.Double getBounds2D() {
+        if (bounds == null) {
+            if (size == 0) {
+                bounds = new Rectangle2D.Double();
+            } else {
+                double x1 = coords[0], y1 = coords[1], x2 = x1, y2 = y1;
+                // Like BezierPath, we include all control points of a
+                // single node
+                boolean isOpen = !isClosed && size > 1;
+                for (int i = 0; i < size; i++) {
+                    int mask = masks[i];
+                    for (int c = 0; c < 3; c++) {
+                        if (c == 1 && ((mask & BezierPath.C1_MASK) == 0 || i == 0 && isOpen)
+                                || c == 2 && ((mask & BezierPath.C2_MASK) == 0 || i == size - 1 && isOpen)) {
+                            continue;
+                        }
+                        double x = coords[i * 6 + c * 2];
+                        double y = coords[i * 6 + c * 2 + 1];
+                        if (x < x1) {
+                            x1 = x;
+                        } else if (x > x2) {
+                            x2 = x;
+                        }
+                        if (y < y1) {
+                            y1 = y;
+                        } else if (y > y2) {
+                            y2 = y;
+                        }
+                    }
+                }
+                bounds = new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
+            }
+        }
+        return (Rectangle2D.Double) bounds.clone();
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return getBounds2D().getBounds();
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        return Path2D.contains(getPathIterator(null), x, y);
+    }
+
+    @Override
+    public boolean contains(Point2D p) {
+        return contains(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean intersects(double x, double y, double w, double h) {
+        return Path2D.intersects(getPathIterator(null), x, y, w, h);
+    }
+
+    @Override
+    public boolean intersects(Rectangle2D r) {
+        return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double w, double h) {
+        return Path2D.contains(getPathIterator(null), x, y, w, h);
+    }
+
+    @Override
+    public boolean contains(Rectangle2D r) {
+        return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    /**
+     * Returns true, if the outline of this bezier path contains the specified
+     * point.
+     *
+     * @param p         The point to be tested.
+     * @param tolerance The tolerance for the test.
+     */
+    public boolean outlineContains(Point2D.Double p, double tolerance) {
+        return new SegmentHitTester(this, tolerance).outlineContains(p.x, p.y, tolerance);
+    }
+
+    @Override
+    public PathIterator getPathIterator(@Nullable AffineTransform at) {
+        return new Iterator(at);
+    }
+
+    @Override
+    public PathIterator getPathIterator(@Nullable AffineTransform at, double flatness) {
+        return new FlatteningPathIterator(new Iterator(at), flatness);
+    }
+
+    /**
+     * Creates a deep copy of the CompactBezierPath.
+     */
+    @Override
+    public CompactBezierPath clone() {
+        try {
+            CompactBezierPath that = (CompactBezierPath) super.clone();
+            that.coords = coords.clone();
+            that.masks = masks.clone();
+            that.bounds = null;
+            return that;
+        } catch (CloneNotSupportedException ex) {
+            InternalError error = new InternalError(ex.getMessage());
+            error.initCause(ex);
+            throw error;
+        }
+    }
+
+    /**
+     * Iterates over the segments of the path, in the same way as a
+     * {@link BezierPathIterator} iterates over a BezierPath.
+     */
+    private class Iterator implements PathIterator {
+        /**
+         * Index of the next node.
+         */
+        private int index;
+        /**
+         * The number of segments.
+         */
+        private int end;
+        @Nullable
+        private AffineTransform affine;
+        private double[] buf = new double[6];
+
+        public Iterator(@Nullable AffineTransform at) {
+            this.affine = at;
+            this.end = size + (isClosed ? 2 : 0);
+        }
+
+        @Override
+        public int getWindingRule() {
+            return windingRule;
+        }
+
+        @Override
+        public boolean isDone() {
+            return index >= end;
+        }
+
+        @Override
+        public void next() {
+            if (!isDone()) {
+                index++;
+            }
+        }
+
+        @Override
+        public int currentSegment(float[] coords) {
+            int type = currentSegment(buf);
+            for (int i = 0; i < 6; i++) {
+                coords[i] = (float) buf[i];
+            }
+            return type;
+        }
+
+        @Override
+        public int currentSegment(double[] c) {
+            int numCoords;
+            int type;
+            if (index > size || index == size && size < 2) {
+                // We only get here for closed paths
+                return SEG_CLOSE;
+            } else if (index == 0) {
+                c[0] = coords[0];
+                c[1] = coords[1];
+                numCoords = 1;
+                type = SEG_MOVETO;
+            } else {
+                // At index == size, we return the segment which closes the path
+                int previous = (index - 1) * 6;
+                int current = (index == size) ? 0 : index * 6;
+                boolean hasC2 = (masks[index - 1] & BezierPath.C2_MASK) != 0;
+                boolean hasC1 = (masks[current / 6] & BezierPath.C1_MASK) != 0;
+                if (!hasC2) {
+                    if (!hasC1) {
+                        numCoords = 1;
+                        type = SEG_LINETO;
+                        c[0] = coords[current];
+                        c[1] = coords[current + 1];
+                    } else {
+                        numCoords = 2;
+                        type = SEG_QUADTO;
+                        c[0] = coords[current + 2];
+                        c[1] = coords[current + 3];
+                        c[2] = coords[current];
+                        c[3] = coords[current + 1];
+                    }
+                } else {
+                    if (!hasC1) {
+                        numCoords = 2;
+                        type = SEG_QUADTO;
+                        c[0] = coords[previous + 4];
+                        c[1] = coords[previous + 5];
+                        c[2] = coords[current];
+                        c[3] = coords[current + 1];
+                    } else {
+                        numCoords = 3;
+                        type = SEG_CUBICTO;
+                        c[0] = coords[previous + 4];
+                        c[1] = coords[previous + 5];
+                        c[2] = coords[current + 2];
+                        c[3] = coords[current + 3];
+                        c[4] = coords[current];
+                        c[5] = coords[current + 1];
+                    }
+                }
+            }
+            if (affine != null) {
+                affine.transform(c, 0, c, 0, numCoords);
+            }
+            return type;
+        }
+    }
+}
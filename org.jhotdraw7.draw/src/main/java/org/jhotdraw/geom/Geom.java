@@ -862,5 +862,20 @@ public class Geom {
                 && (r2.getX() + max(0, r2.getWidth())) <= r1.getX() + max(0, r1.getWidth())
                 && (r2.getY() + max(0, r2.getHeight())) <= r1.getY() + max(0, r1.getHeight());
     }
-}
 
+    /**
+     * Returns the bounds of the rectangle transformed by the specified
+     * transform. Returns the rectangle itself, if the transform is null.
+     *
+     * @param r  a rectangle.
+     * @param tx a transform or null.
+     * @return the bounds of the transformed rectangle.
+     */
+    public static Rectangle2D.Double transformBounds(Rectangle2D.Double r, @Nullable AffineTransform tx) {
+        if (tx == null) {
+            return r;
+        }
+        Rectangle2D rt = tx.createTransformedShape(r).getBounds2D();
+        return (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
+    }
+}
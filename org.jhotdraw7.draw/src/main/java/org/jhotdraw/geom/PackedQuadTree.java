@@ -0,0 +1,965 @@
+/* @(#)PackedQuadTree.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A QuadTree which stores the bounds of its objects in packed primitive arrays.
+ * <p>
+ * Unlike {@link QuadTree}, this class does not create a map entry and a
+ * rectangle for each object. Each object is assigned an {@code int} handle,
+ * its bounds are stored in a {@code double} array indexed by the handle, and
+ * each node of the tree holds an {@code int} array of handles.
+ * <p>
+ * An object is stored in the deepest node which fully contains its bounds,
+ * so each object is stored exactly once. This allows to query the tree with a
+ * {@link Visitor} without having to remove duplicates from the result, and
+ * thus without allocating any objects per query.
+ * <p>
+ * Method {@link #bulkLoad} builds the tree top-down from a set of objects by
+ * recursively partitioning them into quadrants. This is considerably faster
+ * than adding the objects one by one, because no node needs to be split
+ * after it has been filled.
+ * <p>
+ * Each object can be given an {@code int} order, for example its z-index in
+ * a drawing. The {@code find...InOrder} methods return the objects found by
+ * a query sorted by this order. They only sort the objects that are found,
+ * and thus their cost is proportional to the size of the result rather
+ * than to the size of the tree.
+ * <p>
+ * This class is not thread safe. Queries may be performed concurrently, as
+ * long as the tree is not changed at the same time.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class PackedQuadTree<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A visitor for the objects found by a query.
+     *
+     * @param <T> the type of the objects
+     */
+    public interface Visitor<T> {
+
+        /**
+         * Visits an object.
+         *
+         * @param o an object found by the query
+         * @return true if the query shall continue, false if it shall stop
+         */
+        boolean visit(T o);
+    }
+
+    /**
+     * The index of the node which holds all objects whose bounds are empty
+     * or not finite, and thus can not be contained by the root node.
+     */
+    private static final int OUTSIDE = 0;
+    /**
+     * The index of the root node.
+     */
+    private static final int ROOT = 1;
+    /**
+     * Marks a free handle in {@link #handleNode}.
+     */
+    private static final int FREE = -1;
+
+    private int maxCapacity = 32;
+    private double minSize = 32;
+
+    /**
+     * The objects. The array is indexed by handle. Free handles are null.
+     * The array is serialized by {@link #writeObject}.
+     */
+    private transient Object[] objects;
+    /**
+     * The bounds of the objects. The array holds 4 values per handle:
+     * minX, minY, maxX, maxY.
+     */
+    private double[] objectBounds;
+    /**
+     * The node which holds a handle, or {@link #FREE}.
+     */
+    private int[] handleNode;
+    /**
+     * The slot of a handle in the item array of its node. If the handle is
+     * free, this is the next free handle.
+     */
+    private int[] handleSlot;
+    /**
+     * The order of each handle.
+     */
+    private int[] handleOrder;
+    /**
+     * The highest handle ever used plus one.
+     */
+    private int handleLimit;
+    /**
+     * The head of the list of free handles, or -1.
+     */
+    private int freeHandle = -1;
+    /**
+     * The number of objects in the tree.
+     */
+    private int size;
+
+    /**
+     * Open addressing hash table from objects to handles. The table uses
+     * identity hashing. Empty slots contain 0, removed slots contain -1,
+     * used slots contain the handle plus 1.
+     */
+    private transient int[] table;
+    /**
+     * Number of used and removed slots in the table.
+     */
+    private transient int tableFill;
+
+    /**
+     * The bounds of the nodes. The array holds 4 values per node:
+     * minX, minY, maxX, maxY.
+     */
+    private double[] nodeBounds;
+    /**
+     * The index of the first of the four child nodes of a node. The children
+     * are stored consecutively in the order north west, north east,
+     * south west, south east. A value of 0 denotes a leaf.
+     */
+    private int[] nodeChildren;
+    /**
+     * The handles of the objects stored in each node.
+     */
+    private int[][] nodeItems;
+    /**
+     * The number of handles stored in each node.
+     */
+    private int[] nodeItemCount;
+    /**
+     * The number of nodes in use.
+     */
+    private int nodeCount;
+
+    /**
+     * Creates a new instance.
+     */
+    public PackedQuadTree() {
+        this(new Rectangle2D.Double(0, 0, 800, 600));
+    }
+
+    public PackedQuadTree(Rectangle2D.Double bounds) {
+        objects = new Object[16];
+        objectBounds = new double[16 * 4];
+        handleNode = new int[16];
+        handleSlot = new int[16];
+        handleOrder = new int[16];
+        table = new int[32];
+        nodeBounds = new double[16 * 4];
+        nodeChildren = new int[16];
+        nodeItems = new int[16][];
+        nodeItemCount = new int[16];
+        resetNodes(bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height);
+    }
+
+    /**
+     * Returns the number of objects in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the tree contains the specified object.
+     */
+    public boolean contains(T o) {
+        return getHandle(o) != -1;
+    }
+
+    /**
+     * Returns the handle of the specified object, or -1 if the tree does
+     * not contain the object.
+     */
+    public int getHandle(T o) {
+        int mask = table.length - 1;
+        for (int i = hash(o) & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (entry > 0 && objects[entry - 1] == o) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the object with the specified handle.
+     */
+    @SuppressWarnings("unchecked")
+    public T getObject(int handle) {
+        return (T) objects[handle];
+    }
+
+    /**
+     * Returns the order of the object with the specified handle.
+     */
+    public int getOrder(int handle) {
+        return handleOrder[handle];
+    }
+
+    /**
+     * Sets the order of the object with the specified handle.
+     *
+     * @param handle the handle
+     * @param order  a non-negative number
+     */
+    public void setOrder(int handle, int order) {
+        handleOrder[handle] = order;
+    }
+
+    /**
+     * Stores the bounds of the object with the specified handle into the
+     * provided rectangle.
+     *
+     * @return the provided rectangle
+     */
+    public Rectangle2D.Double getBounds(int handle, Rectangle2D.Double r) {
+        int b = handle * 4;
+        r.x = objectBounds[b];
+        r.y = objectBounds[b + 1];
+        r.width = objectBounds[b + 2] - r.x;
+        r.height = objectBounds[b + 3] - r.y;
+        return r;
+    }
+
+    /**
+     * Adds an object to the tree. If the tree already contains the object,
+     * its bounds are updated.
+     *
+     * @param o      the object
+     * @param bounds the bounds of the object
+     * @return the handle of the object
+     */
+    public int add(T o, Rectangle2D bounds) {
+        int h = getHandle(o);
+        if (h != -1) {
+            detach(h);
+        } else {
+            h = allocateHandle(o);
+        }
+        setObjectBounds(h, bounds);
+        insert(h);
+        return h;
+    }
+
+    /**
+     * Updates the bounds of an object. This is the same as {@link #add}.
+     */
+    public int update(T o, Rectangle2D bounds) {
+        return add(o, bounds);
+    }
+
+    /**
+     * Removes an object from the tree.
+     *
+     * @return true if the tree contained the object
+     */
+    public boolean remove(T o) {
+        int h = getHandle(o);
+        if (h == -1) {
+            return false;
+        }
+        detach(h);
+        freeHandle(h);
+        return true;
+    }
+
+    /**
+     * Removes all objects from the tree.
+     */
+    public void clear() {
+        Arrays.fill(objects, 0, handleLimit, null);
+        Arrays.fill(table, 0);
+        tableFill = 0;
+        handleLimit = 0;
+        freeHandle = -1;
+        size = 0;
+        int r = ROOT * 4;
+        resetNodes(nodeBounds[r], nodeBounds[r + 1], nodeBounds[r + 2], nodeBounds[r + 3]);
+    }
+
+    /**
+     * Adds the specified objects to the tree and rebuilds the tree from
+     * scratch. Use this method when a large number of objects is added at
+     * once, for example when a drawing is read from a file.
+     *
+     * @param objects the objects
+     * @param bounds  the bounds of the objects, must have the same size
+     *                and iteration order as {@code objects}
+     */
+    public void bulkLoad(Collection<? extends T> objects, Collection<? extends Rectangle2D> bounds) {
+        if (objects.size() != bounds.size()) {
+            throw new IllegalArgumentException("objects.size:" + objects.size() + " != bounds.size:" + bounds.size());
+        }
+        Iterator<? extends Rectangle2D> bi = bounds.iterator();
+        for (T o : objects) {
+            Rectangle2D b = bi.next();
+            int h = getHandle(o);
+            if (h == -1) {
+                h = allocateHandle(o);
+            }
+            setObjectBounds(h, b);
+        }
+        reorganize();
+    }
+
+    /**
+     * Rebuilds the tree so that its root node covers the bounds of all
+     * objects.
+     */
+    public void reorganize() {
+        int[] handles = new int[size];
+        int n = 0;
+        int outside = 0;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int h = 0; h < handleLimit; h++) {
+            if (objects[h] != null) {
+                if (!isFinite(h)) {
+                    // These are appended to the outside node after the reset
+                    handles[size - ++outside] = h;
+                    continue;
+                }
+                handles[n++] = h;
+                int b = h * 4;
+                minX = Math.min(minX, objectBounds[b]);
+                minY = Math.min(minY, objectBounds[b + 1]);
+                maxX = Math.max(maxX, objectBounds[b + 2]);
+                maxY = Math.max(maxY, objectBounds[b + 3]);
+            }
+        }
+        if (minX > maxX) {
+            int r = ROOT * 4;
+            resetNodes(nodeBounds[r], nodeBounds[r + 1], nodeBounds[r + 2], nodeBounds[r + 3]);
+        } else {
+            resetNodes(minX, minY, maxX, maxY);
+        }
+        for (int i = n; i < size; i++) {
+            append(OUTSIDE, handles[i]);
+        }
+        build(ROOT, handles, new int[n], 0, n);
+    }
+
+    /**
+     * Visits all objects whose bounds contain the specified point.
+     *
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitContains(Point2D.Double p, Visitor<? super T> visitor) {
+        return visitContains(OUTSIDE, p.x, p.y, visitor, null)
+                && visitContains(ROOT, p.x, p.y, visitor, null);
+    }
+
+    /**
+     * Visits all objects whose bounds intersect the specified rectangle.
+     *
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitIntersects(Rectangle2D r, Visitor<? super T> visitor) {
+        double minX = r.getMinX(), minY = r.getMinY(), maxX = r.getMaxX(), maxY = r.getMaxY();
+        return visitIntersects(OUTSIDE, minX, minY, maxX, maxY, false, visitor, null)
+                && visitIntersects(ROOT, minX, minY, maxX, maxY, false, visitor, null);
+    }
+
+    /**
+     * Visits all objects whose bounds are inside the specified rectangle.
+     *
+     * @return false if the visitor stopped the query
+     */
+    public boolean visitInside(Rectangle2D r, Visitor<? super T> visitor) {
+        double minX = r.getMinX(), minY = r.getMinY(), maxX = r.getMaxX(), maxY = r.getMaxY();
+        return visitIntersects(OUTSIDE, minX, minY, maxX, maxY, true, visitor, null)
+                && visitIntersects(ROOT, minX, minY, maxX, maxY, true, visitor, null);
+    }
+
+    public Collection<T> findContains(Point2D.Double p) {
+        final HashSet<T> result = new HashSet<T>();
+        visitContains(p, new CollectingVisitor<T>(result));
+        return result;
+    }
+
+    public Collection<T> findIntersects(Rectangle2D r) {
+        final HashSet<T> result = new HashSet<T>();
+        visitIntersects(r, new CollectingVisitor<T>(result));
+        return result;
+    }
+
+    public Collection<T> findInside(Rectangle2D r) {
+        final HashSet<T> result = new HashSet<T>();
+        visitInside(r, new CollectingVisitor<T>(result));
+        return result;
+    }
+
+    /**
+     * Returns all objects whose bounds contain the specified point, sorted
+     * by their order.
+     */
+    public List<T> findContainsInOrder(Point2D.Double p) {
+        Hits hits = new Hits();
+        visitContains(OUTSIDE, p.x, p.y, null, hits);
+        visitContains(ROOT, p.x, p.y, null, hits);
+        return sortHits(hits);
+    }
+
+    /**
+     * Returns all objects whose bounds intersect the specified rectangle,
+     * sorted by their order.
+     */
+    public List<T> findIntersectsInOrder(Rectangle2D r) {
+        return findInOrder(r, false);
+    }
+
+    /**
+     * Returns all objects whose bounds are inside the specified rectangle,
+     * sorted by their order.
+     */
+    public List<T> findInsideInOrder(Rectangle2D r) {
+        return findInOrder(r, true);
+    }
+
+    private List<T> findInOrder(Rectangle2D r, boolean inside) {
+        double minX = r.getMinX(), minY = r.getMinY(), maxX = r.getMaxX(), maxY = r.getMaxY();
+        Hits hits = new Hits();
+        visitIntersects(OUTSIDE, minX, minY, maxX, maxY, inside, null, hits);
+        visitIntersects(ROOT, minX, minY, maxX, maxY, inside, null, hits);
+        return sortHits(hits);
+    }
+
+    /**
+     * Sorts the objects in the specified collection by their order.
+     * Objects which are not in the tree are omitted.
+     */
+    public List<T> sortInOrder(Collection<? extends T> c) {
+        Hits hits = new Hits();
+        for (T o : c) {
+            int h = getHandle(o);
+            if (h != -1) {
+                hits.add(h);
+            }
+        }
+        return sortHits(hits);
+    }
+
+    /**
+     * Adds all visited objects to a collection.
+     */
+    private static class CollectingVisitor<T> implements Visitor<T> {
+        private final Collection<T> result;
+
+        public CollectingVisitor(Collection<T> result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean visit(T o) {
+            result.add(o);
+            return true;
+        }
+    }
+
+    /**
+     * Collects the handles found by a query which is performed without a
+     * visitor. Each query uses its own instance, so that a query can be
+     * performed while another query is in progress, for example from a
+     * visitor.
+     */
+    private static class Hits {
+        private int[] handles = new int[16];
+        private int count;
+
+        public void add(int h) {
+            if (count == handles.length) {
+                handles = Arrays.copyOf(handles, count * 2);
+            }
+            handles[count++] = h;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Queries
+    //
+    // If the visitor is null, the handles of the found objects are added
+    // to the hits.
+    // ---------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private List<T> sortHits(Hits hits) {
+        int n = hits.count;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int h = hits.handles[i];
+            keys[i] = ((long) handleOrder[h] << 32) | h;
+        }
+        Arrays.sort(keys);
+        ArrayList<T> result = new ArrayList<T>(n);
+        for (int i = 0; i < n; i++) {
+            result.add((T) objects[(int) keys[i]]);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean visitContains(int node, double x, double y, Visitor<? super T> visitor, Hits hits) {
+        if (node != OUTSIDE) {
+            int nb = node * 4;
+            if (x < nodeBounds[nb] || y < nodeBounds[nb + 1]
+                    || x > nodeBounds[nb + 2] || y > nodeBounds[nb + 3]) {
+                return true;
+            }
+        }
+        int[] items = nodeItems[node];
+        for (int i = 0, n = nodeItemCount[node]; i < n; i++) {
+            int h = items[i];
+            int b = h * 4;
+            if (x >= objectBounds[b] && y >= objectBounds[b + 1]
+                    && x <= objectBounds[b + 2] && y <= objectBounds[b + 3]) {
+                if (visitor == null) {
+                    hits.add(h);
+                } else if (!visitor.visit((T) objects[h])) {
+                    return false;
+                }
+            }
+        }
+        int c = nodeChildren[node];
+        if (c != 0) {
+            for (int i = 0; i < 4; i++) {
+                if (!visitContains(c + i, x, y, visitor, hits)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean visitIntersects(int node, double minX, double minY, double maxX, double maxY,
+                                    boolean inside, Visitor<? super T> visitor, Hits hits) {
+        if (node != OUTSIDE) {
+            int nb = node * 4;
+            if (maxX < nodeBounds[nb] || maxY < nodeBounds[nb + 1]
+                    || minX > nodeBounds[nb + 2] || minY > nodeBounds[nb + 3]) {
+                return true;
+            }
+        }
+        int[] items = nodeItems[node];
+        for (int i = 0, n = nodeItemCount[node]; i < n; i++) {
+            int h = items[i];
+            int b = h * 4;
+            boolean hit = inside
+                    ? objectBounds[b] >= minX && objectBounds[b + 1] >= minY
+                    && objectBounds[b + 2] <= maxX && objectBounds[b + 3] <= maxY
+                    : objectBounds[b] <= maxX && objectBounds[b + 1] <= maxY
+                    && objectBounds[b + 2] >= minX && objectBounds[b + 3] >= minY;
+            if (hit) {
+                if (visitor == null) {
+                    hits.add(h);
+                } else if (!visitor.visit((T) objects[h])) {
+                    return false;
+                }
+            }
+        }
+        int c = nodeChildren[node];
+        if (c != 0) {
+            for (int i = 0; i < 4; i++) {
+                if (!visitIntersects(c + i, minX, minY, maxX, maxY, inside, visitor, hits)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------------
+    // Tree maintenance
+    // ---------------------------------------------------------------------
+
+    private void resetNodes(double minX, double minY, double maxX, double maxY) {
+        nodeCount = 2;
+        nodeChildren[OUTSIDE] = 0;
+        nodeChildren[ROOT] = 0;
+        nodeItemCount[OUTSIDE] = 0;
+        nodeItemCount[ROOT] = 0;
+        int r = ROOT * 4;
+        nodeBounds[r] = minX;
+        nodeBounds[r + 1] = minY;
+        nodeBounds[r + 2] = maxX;
+        nodeBounds[r + 3] = maxY;
+    }
+
+    /**
+     * Creates the four children of a node.
+     */
+    private void split(int node) {
+        int nb = node * 4;
+        double minX = nodeBounds[nb], minY = nodeBounds[nb + 1];
+        double maxX = nodeBounds[nb + 2], maxY = nodeBounds[nb + 3];
+        createChildren(node, (minX + maxX) / 2, (minY + maxY) / 2);
+    }
+
+    /**
+     * Creates the four children of a node, which meet at the specified
+     * point.
+     */
+    private void createChildren(int node, double midX, double midY) {
+        if (nodeCount + 4 > nodeChildren.length) {
+            int capacity = nodeChildren.length * 2;
+            nodeBounds = Arrays.copyOf(nodeBounds, capacity * 4);
+            nodeChildren = Arrays.copyOf(nodeChildren, capacity);
+            nodeItems = Arrays.copyOf(nodeItems, capacity);
+            nodeItemCount = Arrays.copyOf(nodeItemCount, capacity);
+        }
+        int nb = node * 4;
+        double minX = nodeBounds[nb], minY = nodeBounds[nb + 1];
+        double maxX = nodeBounds[nb + 2], maxY = nodeBounds[nb + 3];
+        int c = nodeCount;
+        nodeCount += 4;
+        nodeChildren[node] = c;
+        setNode(c, minX, minY, midX, midY);
+        setNode(c + 1, midX, minY, maxX, midY);
+        setNode(c + 2, minX, midY, midX, maxY);
+        setNode(c + 3, midX, midY, maxX, maxY);
+    }
+
+    private void setNode(int node, double minX, double minY, double maxX, double maxY) {
+        int nb = node * 4;
+        nodeBounds[nb] = minX;
+        nodeBounds[nb + 1] = minY;
+        nodeBounds[nb + 2] = maxX;
+        nodeBounds[nb + 3] = maxY;
+        nodeChildren[node] = 0;
+        nodeItemCount[node] = 0;
+    }
+
+    /**
+     * Returns the quadrant (0 to 3) of the node which fully contains the
+     * specified handle, or -1 if the handle straddles the point where the
+     * children of the node meet. The node must have children.
+     */
+    private int quadrantOf(int node, int h) {
+        int cb = nodeChildren[node] * 4;
+        double midX = nodeBounds[cb + 2];
+        double midY = nodeBounds[cb + 3];
+        int b = h * 4;
+        int q;
+        if (objectBounds[b + 2] <= midX) {
+            q = 0;
+        } else if (objectBounds[b] >= midX) {
+            q = 1;
+        } else {
+            return -1;
+        }
+        if (objectBounds[b + 3] <= midY) {
+            return q;
+        } else if (objectBounds[b + 1] >= midY) {
+            return q + 2;
+        } else {
+            return -1;
+        }
+    }
+
+    private boolean canSplit(int node) {
+        int nb = node * 4;
+        return nodeBounds[nb + 2] - nodeBounds[nb] > minSize
+                && nodeBounds[nb + 3] - nodeBounds[nb + 1] > minSize;
+    }
+
+    /**
+     * Inserts a detached handle into the tree.
+     */
+    private void insert(int h) {
+        if (isInsideRoot(h)) {
+            insert(ROOT, h);
+        } else if (isFinite(h)) {
+            growRoot(h);
+            insert(ROOT, h);
+        } else {
+            append(OUTSIDE, h);
+        }
+    }
+
+    private boolean isInsideRoot(int h) {
+        int b = h * 4;
+        int r = ROOT * 4;
+        return objectBounds[b] >= nodeBounds[r] && objectBounds[b + 1] >= nodeBounds[r + 1]
+                && objectBounds[b + 2] <= nodeBounds[r + 2] && objectBounds[b + 3] <= nodeBounds[r + 3];
+    }
+
+    /**
+     * Returns true if the bounds of the handle are finite and not empty.
+     */
+    private boolean isFinite(int h) {
+        int b = h * 4;
+        return objectBounds[b] <= objectBounds[b + 2] && objectBounds[b + 1] <= objectBounds[b + 3]
+                && objectBounds[b] > Double.NEGATIVE_INFINITY && objectBounds[b + 1] > Double.NEGATIVE_INFINITY
+                && objectBounds[b + 2] < Double.POSITIVE_INFINITY && objectBounds[b + 3] < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Grows the root node until it contains the bounds of the specified
+     * handle.
+     * <p>
+     * A root node without children is enlarged. Otherwise the root node is
+     * made a quadrant of a new root node of twice its size, as often as
+     * needed. This does not move any objects to other nodes.
+     */
+    private void growRoot(int h) {
+        int b = h * 4;
+        int r = ROOT * 4;
+        if (nodeChildren[ROOT] == 0) {
+            nodeBounds[r] = Math.min(nodeBounds[r], objectBounds[b]);
+            nodeBounds[r + 1] = Math.min(nodeBounds[r + 1], objectBounds[b + 1]);
+            nodeBounds[r + 2] = Math.max(nodeBounds[r + 2], objectBounds[b + 2]);
+            nodeBounds[r + 3] = Math.max(nodeBounds[r + 3], objectBounds[b + 3]);
+            return;
+        }
+        while (!isInsideRoot(h)) {
+            double minX = nodeBounds[r], minY = nodeBounds[r + 1];
+            double maxX = nodeBounds[r + 2], maxY = nodeBounds[r + 3];
+            boolean growsWest = objectBounds[b] < minX;
+            boolean growsNorth = objectBounds[b + 1] < minY;
+            int children = nodeChildren[ROOT];
+            int[] items = nodeItems[ROOT];
+            int count = nodeItemCount[ROOT];
+
+            nodeBounds[r] = growsWest ? minX - (maxX - minX) : minX;
+            nodeBounds[r + 1] = growsNorth ? minY - (maxY - minY) : minY;
+            nodeBounds[r + 2] = growsWest ? maxX : maxX + (maxX - minX);
+            nodeBounds[r + 3] = growsNorth ? maxY : maxY + (maxY - minY);
+            createChildren(ROOT, growsWest ? minX : maxX, growsNorth ? minY : maxY);
+
+            // The quadrant which covers the old root node takes over its
+            // children and items
+            int q = nodeChildren[ROOT] + (growsWest ? 1 : 0) + (growsNorth ? 2 : 0);
+            nodeChildren[q] = children;
+            nodeItems[ROOT] = nodeItems[q];
+            nodeItemCount[ROOT] = 0;
+            nodeItems[q] = items;
+            nodeItemCount[q] = count;
+            for (int i = 0; i < count; i++) {
+                handleNode[items[i]] = q;
+            }
+        }
+    }
+
+    private void insert(int node, int h) {
+        while (true) {
+            if (nodeChildren[node] == 0) {
+                if (nodeItemCount[node] < maxCapacity || !canSplit(node)) {
+                    append(node, h);
+                    return;
+                }
+                split(node);
+                // Push the items of the node down into its new children
+                int[] items = nodeItems[node];
+                int n = nodeItemCount[node];
+                nodeItemCount[node] = 0;
+                for (int i = 0; i < n; i++) {
+                    int item = items[i];
+                    int q = quadrantOf(node, item);
+                    append(q == -1 ? node : nodeChildren[node] + q, item);
+                }
+            }
+            int q = quadrantOf(node, h);
+            if (q == -1) {
+                append(node, h);
+                return;
+            }
+            node = nodeChildren[node] + q;
+        }
+    }
+
+    /**
+     * Builds a subtree from the specified handles.
+     *
+     * @param node    the root of the subtree
+     * @param handles the handles
+     * @param scratch a scratch array of the same size as handles
+     * @param from    the start index in handles (inclusive)
+     * @param to      the end index in handles (exclusive)
+     */
+    private void build(int node, int[] handles, int[] scratch, int from, int to) {
+        if (to - from <= maxCapacity || !canSplit(node)) {
+            for (int i = from; i < to; i++) {
+                append(node, handles[i]);
+            }
+            return;
+        }
+        split(node);
+
+        // Partition the handles by quadrant with a counting sort:
+        // first the handles which stay in this node, then quadrants 0 to 3.
+        int[] starts = new int[6];
+        for (int i = from; i < to; i++) {
+            starts[quadrantOf(node, handles[i]) + 2]++;
+        }
+        starts[0] = from;
+        for (int i = 1; i < 6; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] next = Arrays.copyOf(starts, 5);
+        for (int i = from; i < to; i++) {
+            int h = handles[i];
+            scratch[next[quadrantOf(node, h) + 1]++] = h;
+        }
+        System.arraycopy(scratch, from, handles, from, to - from);
+
+        for (int i = starts[0]; i < starts[1]; i++) {
+            append(node, handles[i]);
+        }
+        int c = nodeChildren[node];
+        for (int q = 0; q < 4; q++) {
+            build(c + q, handles, scratch, starts[q + 1], starts[q + 2]);
+        }
+    }
+
+    private void append(int node, int h) {
+        int[] items = nodeItems[node];
+        int n = nodeItemCount[node];
+        if (items == null) {
+            items = nodeItems[node] = new int[Math.max(4, maxCapacity / 4)];
+        } else if (n == items.length) {
+            items = nodeItems[node] = Arrays.copyOf(items, n * 2);
+        }
+        items[n] = h;
+        nodeItemCount[node] = n + 1;
+        handleNode[h] = node;
+        handleSlot[h] = n;
+    }
+
+    /**
+     * Removes a handle from its node.
+     */
+    private void detach(int h) {
+        int node = handleNode[h];
+        int slot = handleSlot[h];
+        int[] items = nodeItems[node];
+        int last = --nodeItemCount[node];
+        if (slot != last) {
+            int moved = items[last];
+            items[slot] = moved;
+            handleSlot[moved] = slot;
+        }
+    }
+
+    private void setObjectBounds(int h, Rectangle2D r) {
+        int b = h * 4;
+        objectBounds[b] = r.getMinX();
+        objectBounds[b + 1] = r.getMinY();
+        objectBounds[b + 2] = r.getMaxX();
+        objectBounds[b + 3] = r.getMaxY();
+    }
+
+    // ---------------------------------------------------------------------
+    // Handles
+    // ---------------------------------------------------------------------
+
+    private static int hash(Object o) {
+        int h = System.identityHashCode(o);
+        return h ^ (h >>> 16);
+    }
+
+    private int allocateHandle(T o) {
+        int h;
+        if (freeHandle != -1) {
+            h = freeHandle;
+            freeHandle = handleSlot[h];
+        } else {
+            if (handleLimit == objects.length) {
+                int capacity = objects.length * 2;
+                objects = Arrays.copyOf(objects, capacity);
+                objectBounds = Arrays.copyOf(objectBounds, capacity * 4);
+                handleNode = Arrays.copyOf(handleNode, capacity);
+                handleSlot = Arrays.copyOf(handleSlot, capacity);
+                handleOrder = Arrays.copyOf(handleOrder, capacity);
+            }
+            h = handleLimit++;
+        }
+        if ((tableFill + 1) * 2 > table.length) {
+            rehash(Math.max(table.length, Integer.highestOneBit((size + 1) * 4)));
+        }
+        objects[h] = o;
+        handleOrder[h] = 0;
+        size++;
+        tableInsert(h);
+        return h;
+    }
+
+    private void freeHandle(int h) {
+        int mask = table.length - 1;
+        for (int i = hash(objects[h]) & mask; ; i = (i + 1) & mask) {
+            if (table[i] == h + 1) {
+                table[i] = -1;
+                break;
+            }
+        }
+        objects[h] = null;
+        handleNode[h] = FREE;
+        handleSlot[h] = freeHandle;
+        freeHandle = h;
+        size--;
+    }
+
+    private void tableInsert(int h) {
+        int mask = table.length - 1;
+        int i = hash(objects[h]) & mask;
+        while (table[i] > 0) {
+            i = (i + 1) & mask;
+        }
+        if (table[i] == 0) {
+            tableFill++;
+        }
+        table[i] = h + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        tableFill = 0;
+        for (int h = 0; h < handleLimit; h++) {
+            if (objects[h] != null) {
+                tableInsert(h);
+            }
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int h = 0; h < handleLimit; h++) {
+            out.writeObject(objects[h]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        objects = new Object[handleNode.length];
+        for (int h = 0; h < handleLimit; h++) {
+            objects[h] = in.readObject();
+        }
+        // Identity hash codes are not preserved by serialization
+        rehash(Math.max(32, Integer.highestOneBit(Math.max(1, size) * 4)));
+    }
+}
@@ -0,0 +1,472 @@
+/* @(#)SegmentHitTester.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Tests whether a point lies on the outline or in the interior of a shape,
+ * by computing distances to the line segments of the flattened shape.
+ * <p>
+ * The hit tester flattens the shape once, and builds a hierarchy of bounding
+ * boxes over runs of consecutive segments. A test only visits the segments
+ * whose bounding boxes are near the point. This is much faster than creating
+ * a stroked shape with {@link java.awt.BasicStroke} or {@link GrowStroke} and
+ * testing whether the stroked shape contains the point.
+ * <p>
+ * The outline tests use the euclidean distance from the point to the
+ * segments. This is the same as testing whether a stroke with round joins
+ * and round caps contains the point. Since the shape is flattened, the
+ * distances are exact up to the flatness.
+ * <p>
+ * The hit tester is immutable. It does not observe the shape. A new hit
+ * tester must be created when the shape has changed.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class SegmentHitTester {
+
+    /**
+     * The flatness which is used by {@link #SegmentHitTester(Shape)}.
+     */
+    public static final double DEFAULT_FLATNESS = 0.1;
+    /**
+     * The maximal number of segments in a leaf of the hierarchy.
+     */
+    private static final int LEAF_SIZE = 8;
+
+    private final double flatness;
+    private final int windingRule;
+    /**
+     * The segments with the coordinates x0, y0, x1, y1.
+     */
+    private double[] segments = new double[64];
+    /**
+     * For each segment, true if the segment implicitly closes a subpath.
+     * These segments are only used for testing the interior.
+     */
+    private boolean[] isImplicit = new boolean[16];
+    private int segmentCount;
+    /**
+     * The bounding boxes of the nodes of the hierarchy with the coordinates
+     * minX, minY, maxX, maxY. The left child of a node immediately follows
+     * the node.
+     */
+    private double[] nodeBounds;
+    /**
+     * For each node, the index of the right child, or -1 if the node is a
+     * leaf.
+     */
+    private int[] nodeRight;
+    /**
+     * For each node, the range of its segments.
+     */
+    private int[] nodeFrom, nodeTo;
+    private int nodeCount;
+
+    /**
+     * Creates a new instance with the default flatness.
+     *
+     * @param shape the shape.
+     */
+    public SegmentHitTester(Shape shape) {
+        this(shape, DEFAULT_FLATNESS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param shape    the shape.
+     * @param flatness the maximal distance between the line segments and
+     *                 the curves of the shape.
+     */
+    public SegmentHitTester(Shape shape, double flatness) {
+        this.flatness = flatness;
+        PathIterator i = shape.getPathIterator(null, flatness);
+        this.windingRule = i.getWindingRule();
+        addSegments(i);
+        buildHierarchy();
+    }
+
+    /**
+     * Creates a new instance for a polyline. Segment i of the hit tester
+     * connects point i with point i + 1 of the polyline. The polyline is
+     * closed implicitly for testing the interior.
+     *
+     * @param xy         the coordinates x0, y0, x1, y1, ... of the points of
+     *                   the polyline.
+     * @param pointCount the number of points.
+     * @param flatness   the flatness with which the polyline approximates a
+     *                   shape.
+     */
+    public SegmentHitTester(double[] xy, int pointCount, double flatness) {
+        this.flatness = flatness;
+        this.windingRule = PathIterator.WIND_EVEN_ODD;
+        for (int i = 1; i < pointCount; i++) {
+            addSegment(xy[i * 2 - 2], xy[i * 2 - 1], xy[i * 2], xy[i * 2 + 1], false);
+        }
+        if (pointCount > 1) {
+            addSegment(xy[pointCount * 2 - 2], xy[pointCount * 2 - 1], xy[0], xy[1], true);
+        }
+        buildHierarchy();
+    }
+
+    private void buildHierarchy() {
+        segments = Arrays.copyOf(segments, segmentCount * 4);
+        isImplicit = Arrays.copyOf(isImplicit, segmentCount);
+
+        int capacity = Math.max(1, 2 * ((segmentCount + LEAF_SIZE - 1) / LEAF_SIZE));
+        nodeBounds = new double[capacity * 4];
+        nodeRight = new int[capacity];
+        nodeFrom = new int[capacity];
+        nodeTo = new int[capacity];
+        buildNode(0, segmentCount);
+    }
+
+    public double getFlatness() {
+        return flatness;
+    }
+
+    /**
+     * Returns the bounds of the flattened shape.
+     */
+    public Rectangle2D.Double getBounds() {
+        if (segmentCount == 0) {
+            return new Rectangle2D.Double();
+        }
+        return new Rectangle2D.Double(nodeBounds[0], nodeBounds[1],
+                nodeBounds[2] - nodeBounds[0], nodeBounds[3] - nodeBounds[1]);
+    }
+
+    /**
+     * Returns true, if the distance of the point to the outline of the
+     * shape is less than or equal to the tolerance.
+     *
+     * @param x         the x-coordinate of the point.
+     * @param y         the y-coordinate of the point.
+     * @param tolerance the tolerance.
+     */
+    public boolean outlineContains(double x, double y, double tolerance) {
+        if (segmentCount == 0) {
+            return false;
+        }
+        double toleranceSquared = tolerance * tolerance;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 4;
+            if (x < nodeBounds[b] - tolerance || y < nodeBounds[b + 1] - tolerance
+                    || x > nodeBounds[b + 2] + tolerance || y > nodeBounds[b + 3] + tolerance) {
+                continue;
+            }
+            if (nodeRight[node] == -1) {
+                for (int s = nodeFrom[node], end = nodeTo[node]; s < end; s++) {
+                    if (!isImplicit[s] && squaredDistance(s, x, y) <= toleranceSquared) {
+                        return true;
+                    }
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = nodeRight[node];
+                stack[top++] = node + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the distance of the point to the outline of the shape.
+     * Returns {@code Double.POSITIVE_INFINITY} if the shape has no outline.
+     *
+     * @param x the x-coordinate of the point.
+     * @param y the y-coordinate of the point.
+     */
+    public double getDistance(double x, double y) {
+        double best = Double.POSITIVE_INFINITY;
+        if (segmentCount == 0) {
+            return best;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (squaredBoxDistance(node, x, y) >= best) {
+                continue;
+            }
+            if (nodeRight[node] == -1) {
+                for (int s = nodeFrom[node], end = nodeTo[node]; s < end; s++) {
+                    if (!isImplicit[s]) {
+                        best = Math.min(best, squaredDistance(s, x, y));
+                    }
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                // Visit the nearer child first
+                int left = node + 1, right = nodeRight[node];
+                if (squaredBoxDistance(left, x, y) <= squaredBoxDistance(right, x, y)) {
+                    stack[top++] = right;
+                    stack[top++] = left;
+                } else {
+                    stack[top++] = left;
+                    stack[top++] = right;
+                }
+            }
+        }
+        return Math.sqrt(best);
+    }
+
+    /**
+     * Returns the index of the segment of the outline, which is nearest to
+     * the point. If multiple segments have the same distance, the segment
+     * with the lowest index is returned.
+     *
+     * @param x the x-coordinate of the point.
+     * @param y the y-coordinate of the point.
+     * @return the index of the segment, or -1 if the shape has no outline.
+     */
+    public int getNearestSegment(double x, double y) {
+        double best = Double.POSITIVE_INFINITY;
+        int nearest = -1;
+        if (segmentCount == 0) {
+            return nearest;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (squaredBoxDistance(node, x, y) > best) {
+                continue;
+            }
+            if (nodeRight[node] == -1) {
+                for (int s = nodeFrom[node], end = nodeTo[node]; s < end; s++) {
+                    if (!isImplicit[s]) {
+                        double d = squaredDistance(s, x, y);
+                        if (d < best || d == best && s < nearest) {
+                            best = d;
+                            nearest = s;
+                        }
+                    }
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                // Visit the nearer child first
+                int left = node + 1, right = nodeRight[node];
+                if (squaredBoxDistance(left, x, y) <= squaredBoxDistance(right, x, y)) {
+                    stack[top++] = right;
+                    stack[top++] = left;
+                } else {
+                    stack[top++] = left;
+                    stack[top++] = right;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns true, if the interior of the shape contains the point.
+     * Each subpath is closed implicitly, and the winding rule of the shape
+     * is applied, like in {@link Shape#contains(double, double)}.
+     *
+     * @param x the x-coordinate of the point.
+     * @param y the y-coordinate of the point.
+     */
+    public boolean contains(double x, double y) {
+        if (segmentCount == 0) {
+            return false;
+        }
+        int crossings = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 4;
+            // Only segments to the right of the point can cross the ray
+            // which is cast from the point in positive x-direction
+            if (y < nodeBounds[b + 1] || y >= nodeBounds[b + 3] || x >= nodeBounds[b + 2]) {
+                continue;
+            }
+            if (nodeRight[node] == -1) {
+                for (int s = nodeFrom[node], end = nodeTo[node]; s < end; s++) {
+                    crossings += pointCrossings(s, x, y);
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = nodeRight[node];
+                stack[top++] = node + 1;
+            }
+        }
+        return windingRule == PathIterator.WIND_NON_ZERO ? crossings != 0 : (crossings & 1) != 0;
+    }
+
+    private void addSegments(PathIterator i) {
+        double[] coords = new double[6];
+        double moveX = 0, moveY = 0;
+        double prevX = 0, prevY = 0;
+        boolean isOpen = false;
+        for (; !i.isDone(); i.next()) {
+            switch (i.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    if (isOpen) {
+                        addSegment(prevX, prevY, moveX, moveY, true);
+                    }
+                    moveX = prevX = coords[0];
+                    moveY = prevY = coords[1];
+                    isOpen = false;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    addSegment(prevX, prevY, coords[0], coords[1], false);
+                    prevX = coords[0];
+                    prevY = coords[1];
+                    isOpen = true;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    if (isOpen) {
+                        addSegment(prevX, prevY, moveX, moveY, false);
+                    }
+                    prevX = moveX;
+                    prevY = moveY;
+                    isOpen = false;
+                    break;
+                default:
+                    // A flattening path iterator does not return curves
+                    break;
+            }
+        }
+        if (isOpen) {
+            addSegment(prevX, prevY, moveX, moveY, true);
+        }
+    }
+
+    private void addSegment(double x0, double y0, double x1, double y1, boolean implicit) {
+        if (segmentCount * 4 == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+            isImplicit = Arrays.copyOf(isImplicit, isImplicit.length * 2);
+        }
+        int s = segmentCount * 4;
+        segments[s] = x0;
+        segments[s + 1] = y0;
+        segments[s + 2] = x1;
+        segments[s + 3] = y1;
+        isImplicit[segmentCount] = implicit;
+        segmentCount++;
+    }
+
+    /**
+     * Builds the node for the segments from..to, and its descendants.
+     * Consecutive segments of a path are close to each other. Therefore the
+     * segments are split in path order.
+     *
+     * @return the index of the node.
+     */
+    private int buildNode(int from, int to) {
+        int node = nodeCount++;
+        nodeFrom[node] = from;
+        nodeTo[node] = to;
+        int b = node * 4;
+        if (to - from <= LEAF_SIZE) {
+            nodeRight[node] = -1;
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int s = from * 4, end = to * 4; s < end; s += 2) {
+                minX = Math.min(minX, segments[s]);
+                minY = Math.min(minY, segments[s + 1]);
+                maxX = Math.max(maxX, segments[s]);
+                maxY = Math.max(maxY, segments[s + 1]);
+            }
+            nodeBounds[b] = minX;
+            nodeBounds[b + 1] = minY;
+            nodeBounds[b + 2] = maxX;
+            nodeBounds[b + 3] = maxY;
+        } else {
+            // Split at a multiple of the leaf size, so that the leaves are full
+            int leaves = (to - from + LEAF_SIZE - 1) / LEAF_SIZE;
+            int mid = from + (leaves / 2) * LEAF_SIZE;
+            int left = buildNode(from, mid);
+            int right = buildNode(mid, to);
+            nodeRight[node] = right;
+            int lb = left * 4, rb = right * 4;
+            nodeBounds[b] = Math.min(nodeBounds[lb], nodeBounds[rb]);
+            nodeBounds[b + 1] = Math.min(nodeBounds[lb + 1], nodeBounds[rb + 1]);
+            nodeBounds[b + 2] = Math.max(nodeBounds[lb + 2], nodeBounds[rb + 2]);
+            nodeBounds[b + 3] = Math.max(nodeBounds[lb + 3], nodeBounds[rb + 3]);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the squared distance of the point to segment s.
+     */
+    private double squaredDistance(int s, double px, double py) {
+        int i = s * 4;
+        double x0 = segments[i], y0 = segments[i + 1];
+        double dx = segments[i + 2] - x0, dy = segments[i + 3] - y0;
+        double t = 0;
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared > 0) {
+            t = ((px - x0) * dx + (py - y0) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        double ex = x0 + t * dx - px;
+        double ey = y0 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Returns the squared distance of the point to the bounding box of a
+     * node.
+     */
+    private double squaredBoxDistance(int node, double px, double py) {
+        int b = node * 4;
+        double dx = Math.max(0, Math.max(nodeBounds[b] - px, px - nodeBounds[b + 2]));
+        double dy = Math.max(0, Math.max(nodeBounds[b + 1] - py, py - nodeBounds[b + 3]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns the number of times the ray from the point in positive
+     * x-direction crosses segment s, taking the direction of the segment
+     * into account. The rules are the same as in {@link Path2D}.
+     */
+    private int pointCrossings(int s, double px, double py) {
+        int i = s * 4;
+        double x0 = segments[i], y0 = segments[i + 1];
+        double x1 = segments[i + 2], y1 = segments[i + 3];
+        if (py < y0 && py < y1) {
+            return 0;
+        }
+        if (py >= y0 && py >= y1) {
+            return 0;
+        }
+        if (px >= x0 && px >= x1) {
+            return 0;
+        }
+        if (px < x0 && px < x1) {
+            return (y0 < y1) ? 1 : -1;
+        }
+        double xIntercept = x0 + (py - y0) * (x1 - x0) / (y1 - y0);
+        if (px >= xIntercept) {
+            return 0;
+        }
+        return (y0 < y1) ? 1 : -1;
+    }
+}
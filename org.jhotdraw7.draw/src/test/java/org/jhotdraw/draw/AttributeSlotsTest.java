@@ -0,0 +1,128 @@
+/* @(#)AttributeSlotsTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.jhotdraw.draw.AttributeKeys.FILL_COLOR;
+import static org.jhotdraw.draw.AttributeKeys.FONT_SIZE;
+import static org.jhotdraw.draw.AttributeKeys.STROKE_COLOR;
+import static org.jhotdraw.draw.AttributeKeys.STROKE_WIDTH;
+import static org.jhotdraw.draw.AttributeKeys.TEXT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link AttributeSlots}.
+ */
+public class AttributeSlotsTest {
+
+    @Test
+    public void testUnsetAttributeHasDefaultValue() {
+        AttributeSlots a = new AttributeSlots();
+        assertEquals(STROKE_WIDTH.getDefaultValue(), a.get(STROKE_WIDTH));
+        assertFalse(a.contains(STROKE_WIDTH));
+        assertEquals(0, a.size());
+    }
+
+    @Test
+    public void testPutGetAndRemove() {
+        AttributeSlots a = new AttributeSlots();
+        assertNull(a.put(STROKE_WIDTH, 3d));
+        assertNull(a.put(FILL_COLOR, Color.red));
+        assertEquals(3d, a.put(STROKE_WIDTH, 4d));
+        assertEquals(4d, a.get(STROKE_WIDTH));
+        assertEquals(Color.red, a.get(FILL_COLOR));
+        assertEquals(2, a.size());
+
+        assertEquals(4d, a.remove(STROKE_WIDTH));
+        assertFalse(a.contains(STROKE_WIDTH));
+        assertEquals(STROKE_WIDTH.getDefaultValue(), a.get(STROKE_WIDTH));
+        assertNull(a.remove(STROKE_WIDTH));
+        assertEquals(1, a.size());
+    }
+
+    @Test
+    public void testSlotsAreSortedByKeyIndex() {
+        AttributeSlots a = new AttributeSlots();
+        a.put(TEXT, "text");
+        a.put(FONT_SIZE, 10d);
+        a.put(STROKE_COLOR, Color.blue);
+        a.put(FILL_COLOR, Color.red);
+        a.put(STROKE_WIDTH, 2d);
+        assertEquals(5, a.size());
+        for (int i = 1; i < a.size(); i++) {
+            assertTrue(a.keyAt(i - 1).getIndex() < a.keyAt(i).getIndex());
+        }
+        for (int i = 0; i < a.size(); i++) {
+            assertSame(a.get(a.keyAt(i)), a.valueAt(i));
+        }
+    }
+
+    @Test
+    public void testNullValue() {
+        AttributeSlots a = new AttributeSlots();
+        a.put(FILL_COLOR, null);
+        assertTrue(a.contains(FILL_COLOR));
+        assertNull(a.get(FILL_COLOR));
+        assertThrows(NullPointerException.class, () -> a.put(STROKE_WIDTH, null));
+        assertFalse(a.contains(STROKE_WIDTH));
+    }
+
+    @Test
+    public void testCloneIsCopyOnWrite() {
+        AttributeSlots a = new AttributeSlots();
+        a.put(STROKE_WIDTH, 2d);
+        a.put(FILL_COLOR, Color.red);
+        AttributeSlots b = a.clone();
+
+        b.put(STROKE_WIDTH, 5d);
+        b.put(TEXT, "b");
+        a.remove(FILL_COLOR);
+
+        assertEquals(2d, a.get(STROKE_WIDTH));
+        assertFalse(a.contains(TEXT));
+        assertFalse(a.contains(FILL_COLOR));
+        assertEquals(5d, b.get(STROKE_WIDTH));
+        assertEquals("b", b.get(TEXT));
+        assertEquals(Color.red, b.get(FILL_COLOR));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        AttributeSlots a = new AttributeSlots();
+        a.put(STROKE_WIDTH, 2d);
+        a.put(FILL_COLOR, Color.red);
+        a.put(TEXT, null);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(a);
+        }
+        AttributeSlots b;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            b = (AttributeSlots) in.readObject();
+        }
+        assertEquals(a.toMap(), b.toMap());
+    }
+
+    @Test
+    public void testFigureRejectsNullForNonNullKey() {
+        RectangleFigure f = new RectangleFigure();
+        assertThrows(NullPointerException.class, () -> f.set(STROKE_WIDTH, null));
+        f.set(FILL_COLOR, null);
+        assertNull(f.get(FILL_COLOR));
+    }
+}
@@ -0,0 +1,120 @@
+/* @(#)ConnectionRoutingSchedulerTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.draw.liner.Liner;
+import org.jhotdraw.geom.BezierPath;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link ConnectionRoutingScheduler}.
+ */
+public class ConnectionRoutingSchedulerTest {
+
+    /**
+     * Counts how often each connection is lined out.
+     */
+    private static class CountingLiner implements Liner {
+        private final Map<String, Integer> counts;
+        private final String name;
+
+        CountingLiner(Map<String, Integer> counts, String name) {
+            this.counts = counts;
+            this.name = name;
+        }
+
+        @Override
+        public void lineout(ConnectionFigure figure) {
+            Integer count = counts.get(name);
+            counts.put(name, (count == null) ? 1 : count + 1);
+        }
+
+        @Override
+        public Collection<Handle> createHandles(BezierPath path) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Liner clone() {
+            return this;
+        }
+    }
+
+    private static LineConnectionFigure connect(Drawing d, Figure start, Figure end) {
+        LineConnectionFigure c = new LineConnectionFigure();
+        Rectangle2D.Double s = start.getBounds();
+        Rectangle2D.Double e = end.getBounds();
+        c.setStartPoint(new Point2D.Double(s.getCenterX(), s.getCenterY()));
+        c.setEndPoint(new Point2D.Double(e.getCenterX(), e.getCenterY()));
+        c.setStartConnector(new ChopRectangleConnector(start));
+        c.setEndConnector(new ChopRectangleConnector(end));
+        d.add(c);
+        return c;
+    }
+
+    @Test
+    public void testDependentConnectionIsRoutedOnce() {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        d.add(a);
+        d.add(b);
+        LineConnectionFigure c1 = connect(d, a, b);
+        LineConnectionFigure c2 = connect(d, c1, a);
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        c1.setLiner(new CountingLiner(counts, "c1"));
+        c2.setLiner(new CountingLiner(counts, "c2"));
+        counts.clear();
+
+        d.beginUpdate(null);
+        a.willChange();
+        a.setBounds(new Point2D.Double(0, 50), new Point2D.Double(10, 60));
+        a.changed();
+        d.endUpdate();
+
+        assertEquals("{c1=1, c2=1}", counts.toString());
+    }
+
+    /**
+     * Connection c3 depends on the moved figure and on connection c2, which
+     * only becomes dirty when connection c1 is re-routed.
+     */
+    @Test
+    public void testIndirectlyDependentConnectionIsRoutedAfterItsDependencies() {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        RectangleFigure x = new RectangleFigure(100, 100, 10, 10);
+        d.add(a);
+        d.add(b);
+        d.add(x);
+        LineConnectionFigure c1 = connect(d, a, b);
+        LineConnectionFigure c2 = connect(d, c1, x);
+        LineConnectionFigure c3 = connect(d, a, c2);
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        c1.setLiner(new CountingLiner(counts, "c1"));
+        c2.setLiner(new CountingLiner(counts, "c2"));
+        c3.setLiner(new CountingLiner(counts, "c3"));
+        counts.clear();
+
+        d.beginUpdate(null);
+        a.willChange();
+        a.setBounds(new Point2D.Double(0, 50), new Point2D.Double(10, 60));
+        a.changed();
+        d.endUpdate();
+
+        assertEquals("{c1=1, c2=1, c3=1}", counts.toString());
+    }
+}
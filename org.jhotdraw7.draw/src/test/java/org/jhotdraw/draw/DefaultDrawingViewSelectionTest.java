@@ -0,0 +1,116 @@
+/* @(#)DefaultDrawingViewSelectionTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.draw;
+
+import org.jhotdraw.draw.event.FigureSelectionEvent;
+import org.jhotdraw.draw.event.FigureSelectionListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the selection events which {@link DefaultDrawingView} fires.
+ */
+public class DefaultDrawingViewSelectionTest {
+
+    private final Figure a = new RectangleFigure(0, 0, 10, 10);
+    private final Figure b = new RectangleFigure(20, 0, 10, 10);
+    private final Figure c = new RectangleFigure(40, 0, 10, 10);
+
+    private DefaultDrawingView createView() {
+        Drawing drawing = new DefaultDrawing();
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(c);
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawing(drawing);
+        return view;
+    }
+
+    /**
+     * Records the added, removed, old and new figures of each event.
+     */
+    private static class RecordingListener implements FigureSelectionListener {
+        final List<String> events = new ArrayList<String>();
+        final List<Figure> figures;
+
+        RecordingListener(List<Figure> figures) {
+            this.figures = figures;
+        }
+
+        @Override
+        public void selectionChanged(FigureSelectionEvent evt) {
+            events.add("+" + names(evt.getAddedFigures()) + " -" + names(evt.getRemovedFigures())
+                    + " old" + names(evt.getOldSelection()) + " new" + names(evt.getNewSelection()));
+        }
+
+        /**
+         * Returns the sorted names of the figures, because the iteration
+         * order of the old selection is not specified.
+         */
+        private String names(Iterable<Figure> c) {
+            char[] names = new char[0];
+            for (Figure f : c) {
+                names = Arrays.copyOf(names, names.length + 1);
+                names[names.length - 1] = (char) ('a' + figures.indexOf(f));
+            }
+            Arrays.sort(names);
+            return "[" + new String(names) + "]";
+        }
+    }
+
+    @Test
+    public void testEventsDescribeTheDelta() {
+        DefaultDrawingView view = createView();
+        RecordingListener listener = new RecordingListener(Arrays.asList(a, b, c));
+        view.addFigureSelectionListener(listener);
+
+        view.addToSelection(a);
+        view.addToSelection(a);
+        view.addToSelection(Arrays.asList(a, b));
+        view.toggleSelection(a);
+        view.removeFromSelection(Arrays.asList(a, c));
+        view.selectAll();
+        view.clearSelection();
+        view.clearSelection();
+
+        assertEquals(Arrays.asList(
+                "+[a] -[] old[] new[a]",
+                "+[b] -[] old[a] new[ab]",
+                "+[] -[a] old[ab] new[b]",
+                "+[ac] -[] old[b] new[abc]",
+                "+[] -[abc] old[abc] new[]"), listener.events);
+    }
+
+    @Test
+    public void testListenerWhichChangesTheSelection() {
+        final DefaultDrawingView view = createView();
+        final List<Figure> figures = Arrays.asList(a, b, c);
+        RecordingListener listener = new RecordingListener(figures);
+        view.addFigureSelectionListener(listener);
+        // Listeners are notified last to first, so this listener changes the
+        // selection before the other listener receives the outer event
+        view.addFigureSelectionListener(new FigureSelectionListener() {
+            @Override
+            public void selectionChanged(FigureSelectionEvent evt) {
+                if (evt.getAddedFigures().contains(a)) {
+                    view.addToSelection(b);
+                }
+            }
+        });
+
+        view.addToSelection(a);
+
+        assertEquals(new HashSet<Figure>(Arrays.asList(a, b)), view.getSelectedFigures());
+        assertEquals(Arrays.asList(
+                "+[b] -[] old[a] new[ab]",
+                "+[a] -[] old[] new[a]"), listener.events);
+    }
+}
@@ -0,0 +1,132 @@
+/* @(#)DrawingTileCacheTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.jhotdraw.draw.AttributeKeys.FILL_COLOR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link DrawingTileCache} renders the same tiles in parallel as
+ * one tile at a time, and never draws a figure concurrently.
+ */
+public class DrawingTileCacheTest {
+
+    private static final int SIZE = 1000;
+
+    /**
+     * Records whether the figure is drawn by two threads at the same time.
+     */
+    private static class CheckingFigure extends EllipseFigure {
+        private static final long serialVersionUID = 1L;
+        private final transient AtomicInteger drawing = new AtomicInteger();
+        private final transient AtomicBoolean isDrawnConcurrently;
+
+        CheckingFigure(double x, double y, double w, double h, AtomicBoolean isDrawnConcurrently) {
+            super(x, y, w, h);
+            this.isDrawnConcurrently = isDrawnConcurrently;
+        }
+
+        @Override
+        public void draw(Graphics2D g) {
+            if (drawing.incrementAndGet() > 1) {
+                isDrawnConcurrently.set(true);
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.draw(g);
+            drawing.decrementAndGet();
+        }
+    }
+
+    private static Drawing createDrawing(AtomicBoolean isDrawnConcurrently) {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        // A large figure which is drawn into all tiles
+        CheckingFigure background = new CheckingFigure(10, 10, SIZE - 20, SIZE - 20, isDrawnConcurrently);
+        background.set(FILL_COLOR, Color.YELLOW);
+        d.add(background);
+        for (int i = 0; i < 40; i++) {
+            CheckingFigure f = new CheckingFigure((i * 97) % (SIZE - 60), (i * 53) % (SIZE - 60), 55, 40, isDrawnConcurrently);
+            f.set(FILL_COLOR, new Color(i * 6, 255 - i * 6, 128));
+            d.add(f);
+        }
+        return d;
+    }
+
+    @Test
+    public void testParallelRenderingIsIdenticalToSequentialRendering() {
+        AtomicBoolean isDrawnConcurrently = new AtomicBoolean();
+        Drawing drawing = createDrawing(isDrawnConcurrently);
+        BufferedImage parallel = renderTiled(drawing);
+        assertFalse(isDrawnConcurrently.get());
+
+        // Paint one tile at a time, so that each tile is rendered by the
+        // calling thread
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawing(drawing);
+        view.setDrawingTiled(true);
+        BufferedImage sequential = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = sequential.createGraphics();
+        for (int y = 0; y < SIZE; y += DrawingTileCache.TILE_SIZE) {
+            for (int x = 0; x < SIZE; x += DrawingTileCache.TILE_SIZE) {
+                g.setClip(x, y, DrawingTileCache.TILE_SIZE, DrawingTileCache.TILE_SIZE);
+                view.drawDrawingTiled(g);
+            }
+        }
+        g.dispose();
+
+        assertSameImage(sequential, parallel);
+    }
+
+    @Test
+    public void testInterruptedThreadRendersAllTiles() {
+        Drawing drawing = createDrawing(new AtomicBoolean());
+        BufferedImage expected = renderTiled(drawing);
+        Thread.currentThread().interrupt();
+        BufferedImage actual;
+        try {
+            actual = renderTiled(drawing);
+        } finally {
+            // Clears the interrupt status
+            assertTrue(Thread.interrupted());
+        }
+        assertSameImage(expected, actual);
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        int differences = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        assertEquals(0, differences);
+    }
+
+    private static BufferedImage renderTiled(Drawing drawing) {
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawing(drawing);
+        view.setDrawingTiled(true);
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, 0, SIZE, SIZE);
+        view.drawDrawingTiled(g);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,103 @@
+/* @(#)FigureSelectionModelTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.draw;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the operations of {@link FigureSelectionModel} return the
+ * figures which have actually been added or removed.
+ */
+public class FigureSelectionModelTest {
+
+    private final Figure a = new RectangleFigure();
+    private final Figure b = new RectangleFigure();
+    private final Figure c = new RectangleFigure();
+    private final Figure d = new RectangleFigure();
+
+    @Test
+    public void testAddAndRemove() {
+        FigureSelectionModel model = new FigureSelectionModel();
+        assertTrue(model.add(a));
+        assertFalse(model.add(a));
+        assertEquals(Arrays.asList(b, c), new ArrayList<Figure>(model.addAll(Arrays.asList(a, b, c, b))));
+        assertEquals(Arrays.asList(a, b, c), new ArrayList<Figure>(model.getSelectedFigures()));
+
+        assertTrue(model.remove(b));
+        assertFalse(model.remove(b));
+        assertEquals(Collections.singletonList(c), new ArrayList<Figure>(model.removeAll(Arrays.asList(c, d))));
+        assertEquals(Collections.singletonList(a), new ArrayList<Figure>(model.getSelectedFigures()));
+    }
+
+    @Test
+    public void testRetainAll() {
+        FigureSelectionModel model = new FigureSelectionModel();
+        model.addAll(Arrays.asList(a, b, c));
+        assertEquals(Arrays.asList(a, c), new ArrayList<Figure>(model.retainAll(new HashSet<Figure>(Arrays.asList(b, d)))));
+        assertEquals(Collections.singletonList(b), new ArrayList<Figure>(model.getSelectedFigures()));
+    }
+
+    @Test
+    public void testClearReturnsTheOldSelection() {
+        FigureSelectionModel model = new FigureSelectionModel();
+        model.addAll(Arrays.asList(a, b));
+        Set<Figure> removed = model.clear();
+        assertTrue(model.isEmpty());
+
+        // The returned set is not affected by later changes
+        model.add(c);
+        assertEquals(Arrays.asList(a, b), new ArrayList<Figure>(removed));
+    }
+
+    @Test
+    public void testSelectedFiguresIsAnUnmodifiableLiveView() {
+        FigureSelectionModel model = new FigureSelectionModel();
+        final Set<Figure> view = model.getSelectedFigures();
+        model.add(a);
+        assertTrue(view.contains(a));
+        model.clear();
+        assertTrue(view.isEmpty());
+        model.add(b);
+        assertEquals(1, view.size());
+        assertThrows(UnsupportedOperationException.class, () -> view.iterator().remove());
+        assertThrows(UnsupportedOperationException.class, () -> view.add(c));
+    }
+
+    @Test
+    public void testSerializedModelHasLiveView() throws IOException, ClassNotFoundException {
+        FigureSelectionModel model = new FigureSelectionModel();
+        model.addAll(Arrays.asList(a, b));
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(model);
+        }
+        FigureSelectionModel read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            read = (FigureSelectionModel) in.readObject();
+        }
+        Set<Figure> view = read.getSelectedFigures();
+        assertEquals(2, view.size());
+        read.add(c);
+        assertEquals(3, view.size());
+        assertTrue(view.contains(c));
+    }
+}
@@ -0,0 +1,120 @@
+/* @(#)QuadTreeDrawingTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.draw;
+
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.draw.liner.Liner;
+import org.jhotdraw.geom.BezierPath;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link QuadTreeDrawing}.
+ */
+public class QuadTreeDrawingTest {
+
+    /**
+     * Records the figures which are in the way of a connection when it is
+     * lined out.
+     */
+    private static class RecordingLiner implements Liner {
+        private final Drawing drawing;
+        private final Rectangle2D.Double area;
+        private final List<List<Figure>> found = new ArrayList<List<Figure>>();
+
+        RecordingLiner(Drawing drawing, Rectangle2D.Double area) {
+            this.drawing = drawing;
+            this.area = area;
+        }
+
+        @Override
+        public void lineout(ConnectionFigure figure) {
+            found.add(drawing.findFigures(area));
+        }
+
+        @Override
+        public Collection<Handle> createHandles(BezierPath path) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Liner clone() {
+            return this;
+        }
+    }
+
+    @Test
+    public void testFindFiguresAfterMove() {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        RectangleFigure r = new RectangleFigure(0, 0, 10, 10);
+        d.add(r);
+        move(r, 500, 500);
+        assertTrue(d.findFigures(new Rectangle2D.Double(-5, -5, 20, 20)).isEmpty());
+        assertEquals(Collections.singletonList(r), d.findFigures(new Rectangle2D.Double(495, 495, 20, 20)));
+    }
+
+    @Test
+    public void testFindFiguresAfterBatchOfMoves() {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        ArrayList<Figure> figures = new ArrayList<Figure>();
+        for (int i = 0; i < 200; i++) {
+            RectangleFigure r = new RectangleFigure(i * 20, 0, 10, 10);
+            figures.add(r);
+            d.add(r);
+        }
+        d.beginUpdate(null);
+        for (Figure f : figures) {
+            Rectangle2D.Double b = f.getBounds();
+            move(f, b.x, 1000);
+        }
+        d.endUpdate();
+        assertTrue(d.findFigures(new Rectangle2D.Double(-5, -5, 5000, 20)).isEmpty());
+        assertEquals(figures, d.findFigures(new Rectangle2D.Double(-5, 995, 5000, 20)));
+    }
+
+    @Test
+    public void testConnectionsAreRoutedWithUpdatedIndex() {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        RectangleFigure start = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure end = new RectangleFigure(100, 0, 10, 10);
+        RectangleFigure obstacle = new RectangleFigure(500, 500, 10, 10);
+        d.add(start);
+        d.add(end);
+        d.add(obstacle);
+        LineConnectionFigure c = new LineConnectionFigure();
+        c.setStartPoint(new Point2D.Double(10, 5));
+        c.setEndPoint(new Point2D.Double(100, 5));
+        c.setStartConnector(new ChopRectangleConnector(start));
+        c.setEndConnector(new ChopRectangleConnector(end));
+        d.add(c);
+        RecordingLiner liner = new RecordingLiner(d, new Rectangle2D.Double(45, -5, 20, 20));
+        c.setLiner(liner);
+        liner.found.clear();
+
+        d.beginUpdate(null);
+        move(obstacle, 50, 0);
+        move(start, 0, 2);
+        d.endUpdate();
+
+        assertEquals(1, liner.found.size());
+        assertTrue(liner.found.get(0).contains(obstacle));
+    }
+
+    private static void move(Figure f, double x, double y) {
+        Rectangle2D.Double b = f.getBounds();
+        f.willChange();
+        f.setBounds(new Point2D.Double(x, y), new Point2D.Double(x + b.width, y + b.height));
+        f.changed();
+    }
+}
@@ -0,0 +1,121 @@
+/* @(#)BezierFitterTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.geom;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link BezierFitter} fits the digitized points, and computes
+ * the same path incrementally, sequentially and concurrently.
+ */
+public class BezierFitterTest {
+
+    private static final double ERROR = 1.5;
+
+    /**
+     * Returns a zig-zag line with a wavy segment between each pair of corners.
+     */
+    private static double[] createPoints(int cornerCount) {
+        ArrayList<Double> list = new ArrayList<Double>();
+        for (int c = 0; c < cornerCount; c++) {
+            for (int i = 0; i < 20; i++) {
+                double x = c * 100 + i * 5;
+                double y = (c % 2 == 0 ? i : 20 - i) * 5 + Math.sin(i * 0.7) * 3;
+                list.add(x);
+                list.add(y);
+            }
+        }
+        double[] xy = new double[list.size()];
+        for (int i = 0; i < xy.length; i++) {
+            xy[i] = list.get(i);
+        }
+        return xy;
+    }
+
+    private static double[] toArray(BezierPath path) {
+        double[] a = new double[path.size() * 7];
+        for (int i = 0; i < path.size(); i++) {
+            BezierPath.Node node = path.get(i);
+            a[i * 7] = node.mask;
+            for (int j = 0; j < 3; j++) {
+                a[i * 7 + 1 + j * 2] = node.x[j];
+                a[i * 7 + 2 + j * 2] = node.y[j];
+            }
+        }
+        return a;
+    }
+
+    private static ArrayList<Point2D.Double> toList(double[] xy) {
+        ArrayList<Point2D.Double> points = new ArrayList<Point2D.Double>();
+        for (int i = 0; i < xy.length; i += 2) {
+            points.add(new Point2D.Double(xy[i], xy[i + 1]));
+        }
+        return points;
+    }
+
+    @Test
+    public void testFittedPathIsCloseToPoints() {
+        double[] xy = createPoints(5);
+        BezierPath path = BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 1);
+        for (Point2D.Double p : toList(xy)) {
+            assertTrue(path.outlineContains(p, ERROR * 2), "point " + p);
+        }
+    }
+
+    @Test
+    public void testBezierIsIdenticalToSequentialFit() {
+        double[] xy = createPoints(5);
+        assertArrayEquals(toArray(BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 1)),
+                toArray(Bezier.fitBezierPath(toList(xy), ERROR)));
+    }
+
+    @Test
+    public void testIncrementalFitIsIdenticalToSequentialFit() {
+        double[] xy = createPoints(5);
+        BezierFitter fitter = new BezierFitter(ERROR);
+        for (int i = 0; i < xy.length; i += 2) {
+            fitter.addPoint(xy[i], xy[i + 1]);
+        }
+        assertArrayEquals(toArray(BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 1)),
+                toArray(fitter.finish()));
+    }
+
+    @Test
+    public void testConcurrentFitIsIdenticalToSequentialFit() {
+        double[] xy = createPoints(60);
+        double[] expected = toArray(BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 1));
+        assertArrayEquals(expected, toArray(BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 4)));
+    }
+
+    @Test
+    public void testInterruptedConcurrentFitIsComplete() {
+        double[] xy = createPoints(60);
+        double[] expected = toArray(BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 1));
+
+        Thread.currentThread().interrupt();
+        double[] actual;
+        boolean interrupted;
+        try {
+            actual = toArray(BezierFitter.fitBezierPath(xy, xy.length / 2, ERROR, 4));
+        } finally {
+            interrupted = Thread.interrupted();
+        }
+        assertTrue(interrupted);
+        assertArrayEquals(expected, actual);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testEmptyPoints() {
+        assertTrue(BezierFitter.fitBezierPath(new double[0], 0, ERROR, 4).isEmpty());
+    }
+}
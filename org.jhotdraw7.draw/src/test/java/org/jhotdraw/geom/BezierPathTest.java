@@ -0,0 +1,75 @@
+/* @(#)BezierPathTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.geom;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the length computations of {@link BezierPath} with and without the
+ * cached flattened path.
+ */
+public class BezierPathTest {
+
+    private static BezierPath createPath(boolean isFlatteningCached) {
+        BezierPath path = new BezierPath();
+        path.setFlatteningCached(isFlatteningCached);
+        path.moveTo(0, 0);
+        path.lineTo(30, 0);
+        path.curveTo(40, 0, 50, 10, 50, 20);
+        path.lineTo(50, 60);
+        return path;
+    }
+
+    @Test
+    public void testCachedLengthIsIdenticalToUncachedLength() {
+        assertEquals(createPath(false).getLengthOfPath(0.1), createPath(true).getLengthOfPath(0.1), 1e-9);
+    }
+
+    @Test
+    public void testCachedLengthIsUpdatedWhenPathChanges() {
+        BezierPath path = createPath(true);
+        double before = path.getLengthOfPath(0.1);
+        path.lineTo(50, 100);
+        path.invalidatePath();
+        assertEquals(before + 40, path.getLengthOfPath(0.1), 1e-9);
+    }
+
+    @Test
+    public void testCachedLengthOfEmptyPathIsIdenticalToUncachedLength() {
+        BezierPath cached = new BezierPath();
+        cached.setFlatteningCached(true);
+        assertEquals(new BezierPath().getLengthOfPath(0.1), cached.getLengthOfPath(0.1));
+    }
+
+    @Test
+    public void testCachedLengthAtPointIsIdenticalToUncachedLength() {
+        BezierPath uncached = createPath(false);
+        BezierPath cached = createPath(true);
+        for (int i = 0; i < 40; i++) {
+            uncached.curveTo(60 + i * 10, 60, 60 + i * 10, 80, 65 + i * 10, 70);
+            cached.curveTo(60 + i * 10, 60, 60 + i * 10, 80, 65 + i * 10, 70);
+        }
+        Random r = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            Point2D.Double p = new Point2D.Double(r.nextDouble() * 500 - 20, r.nextDouble() * 120 - 20);
+            assertEquals(uncached.getLengthAtPoint(p, 0.1), cached.getLengthAtPoint(p, 0.1), 1e-9);
+        }
+        assertEquals(0, cached.getLengthAtPoint(new Point2D.Double(-5, -5), 0.1));
+        assertEquals(cached.getLengthOfPath(0.1), cached.getLengthAtPoint(new Point2D.Double(500, 70), 0.1), 1e-9);
+    }
+
+    @Test
+    public void testRelativePositionOnCachedPath() {
+        BezierPath path = createPath(true);
+        assertEquals(0.0, path.getRelativePositionOnPath(new Point2D.Double(0, 0), 0.1), 1e-9);
+        assertEquals(1.0, path.getRelativePositionOnPath(new Point2D.Double(50, 60), 0.1), 1e-9);
+        assertEquals(-1.0, path.getRelativePositionOnPath(new Point2D.Double(10, 10), 0.1));
+    }
+}
@@ -0,0 +1,177 @@
+/* @(#)CompactBezierPathTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.geom;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@link CompactBezierPath} with the {@link BezierPath} it has been
+ * created from.
+ */
+public class CompactBezierPathTest {
+
+    private static BezierPath createRandomPath(Random rnd) {
+        BezierPath path = new BezierPath();
+        int size = rnd.nextInt(6);
+        for (int i = 0; i < size; i++) {
+            BezierPath.Node node = new BezierPath.Node(rnd.nextInt(4),
+                    rnd.nextInt(100), rnd.nextInt(100),
+                    rnd.nextInt(100), rnd.nextInt(100),
+                    rnd.nextInt(100), rnd.nextInt(100));
+            node.keepColinear = rnd.nextBoolean();
+            path.add(node);
+        }
+        path.setClosed(rnd.nextBoolean());
+        path.setWindingRule(rnd.nextBoolean() ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
+        path.invalidatePath();
+        return path;
+    }
+
+    /**
+     * Returns the segments of the path iterator as a list of strings.
+     */
+    private static List<String> segments(PathIterator i) {
+        List<String> segments = new ArrayList<String>();
+        segments.add("winding " + i.getWindingRule());
+        double[] coords = new double[6];
+        for (; !i.isDone(); i.next()) {
+            Arrays.fill(coords, 0);
+            int type = i.currentSegment(coords);
+            segments.add(type + " " + Arrays.toString(coords));
+        }
+        return segments;
+    }
+
+    private static void assertSameNodes(BezierPath expected, BezierPath actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            BezierPath.Node e = expected.get(i);
+            BezierPath.Node a = actual.get(i);
+            assertEquals(e, a);
+            assertEquals(e.keepColinear, a.keepColinear);
+        }
+        assertEquals(expected.isClosed(), actual.isClosed());
+        assertEquals(expected.getWindingRule(), actual.getWindingRule());
+    }
+
+    @Test
+    public void testPathIteratorIsIdenticalToBezierPathIterator() {
+        Random rnd = new Random(1);
+        AffineTransform tx = AffineTransform.getRotateInstance(0.5, 20, 30);
+        for (int n = 0; n < 500; n++) {
+            BezierPath path = createRandomPath(rnd);
+            if (path.isClosed() && path.size() < 2) {
+                continue;
+            }
+            CompactBezierPath compact = new CompactBezierPath(path);
+            assertEquals(segments(new BezierPathIterator(path, null)), segments(compact.getPathIterator(null)));
+            assertEquals(segments(new BezierPathIterator(path, tx)), segments(compact.getPathIterator(tx)));
+        }
+    }
+
+    /**
+     * BezierPathIterator returns a SEG_MOVETO without coordinates for the
+     * closing segment of a closed path with less than two nodes.
+     */
+    @Test
+    public void testClosedPathWithLessThanTwoNodes() {
+        CompactBezierPath path = new CompactBezierPath();
+        path.setClosed(true);
+        assertEquals(Arrays.asList("winding 0", "4 [0.0, 0.0, 0.0, 0.0, 0.0, 0.0]", "4 [0.0, 0.0, 0.0, 0.0, 0.0, 0.0]"),
+                segments(path.getPathIterator(null)));
+        path.add(10, 20);
+        assertEquals(Arrays.asList("winding 0", "0 [10.0, 20.0, 0.0, 0.0, 0.0, 0.0]",
+                        "4 [0.0, 0.0, 0.0, 0.0, 0.0, 0.0]", "4 [0.0, 0.0, 0.0, 0.0, 0.0, 0.0]"),
+                segments(path.getPathIterator(null)));
+    }
+
+    @Test
+    public void testConversionKeepsAllNodes() {
+        Random rnd = new Random(2);
+        for (int n = 0; n < 200; n++) {
+            BezierPath path = createRandomPath(rnd);
+            assertSameNodes(path, new CompactBezierPath(path).toBezierPath());
+
+            // copyTo reuses the nodes of a path with more or fewer nodes
+            BezierPath reused = createRandomPath(rnd);
+            new CompactBezierPath(path).copyTo(reused);
+            assertSameNodes(path, reused);
+        }
+    }
+
+    @Test
+    public void testInsertAndRemove() {
+        CompactBezierPath path = new CompactBezierPath(1);
+        path.add(10, 10);
+        path.add(30, 30);
+        path.insert(1, BezierPath.C1_MASK, 20, 20, 15, 15, 25, 25);
+        assertEquals(3, path.size());
+        assertEquals(20, path.getX(1, 0));
+        assertEquals(15, path.getY(1, 1));
+        assertEquals(BezierPath.C1_MASK, path.getMask(1));
+        assertEquals(30, path.getX(2, 0));
+
+        path.remove(0);
+        assertEquals(2, path.size());
+        assertEquals(20, path.getX(0, 0));
+        assertEquals(30, path.getY(1, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> path.getX(2, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> path.insert(3, 0, 0, 0, 0, 0, 0, 0));
+
+        path.trimToSize();
+        path.add(40, 40);
+        assertEquals(3, path.size());
+        path.clear();
+        assertTrue(path.isEmpty());
+    }
+
+    @Test
+    public void testBoundsAreUpdatedWhenPathChanges() {
+        CompactBezierPath path = new CompactBezierPath();
+        path.moveTo(0, 0);
+        path.lineTo(10, 20);
+        assertEquals(new Rectangle2D.Double(0, 0, 10, 20), path.getBounds2D());
+        path.set(1, 0, 30, 40);
+        assertEquals(new Rectangle2D.Double(0, 0, 30, 40), path.getBounds2D());
+        path.transform(AffineTransform.getTranslateInstance(5, 5));
+        assertEquals(new Rectangle2D.Double(5, 5, 30, 40), path.getBounds2D());
+    }
+
+    @Test
+    public void testBoundsAreIdenticalToBezierPathBounds() {
+        Random rnd = new Random(3);
+        for (int n = 0; n < 200; n++) {
+            BezierPath path = createRandomPath(rnd);
+            assertEquals(path.getBounds2D(), new CompactBezierPath(path).getBounds2D());
+        }
+    }
+
+    @Test
+    public void testCloneIsIndependent() {
+        CompactBezierPath path = new CompactBezierPath();
+        path.moveTo(0, 0);
+        path.lineTo(10, 10);
+        CompactBezierPath clone = path.clone();
+        clone.set(1, 0, 50, 50);
+        clone.setKeepColinear(1, false);
+        assertEquals(10, path.getX(1, 0));
+        assertTrue(path.isKeepColinear(1));
+        assertFalse(clone.isKeepColinear(1));
+    }
+}
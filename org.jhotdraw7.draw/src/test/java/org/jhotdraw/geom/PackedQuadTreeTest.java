@@ -0,0 +1,262 @@
+/* @(#)PackedQuadTreeTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.geom;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the query results of {@link PackedQuadTree} with a linear search.
+ * The tree compares objects by identity, so the tests use interned strings
+ * or each string instance only once.
+ */
+public class PackedQuadTreeTest {
+
+    private static Rectangle2D.Double randomBounds(Random r, double extent) {
+        return new Rectangle2D.Double(
+                r.nextDouble() * extent - extent / 2, r.nextDouble() * extent - extent / 2,
+                r.nextDouble() * 50, r.nextDouble() * 50);
+    }
+
+    private static HashSet<String> intersects(Map<String, Rectangle2D.Double> objects, Rectangle2D.Double r) {
+        HashSet<String> result = new HashSet<String>();
+        for (Map.Entry<String, Rectangle2D.Double> e : objects.entrySet()) {
+            Rectangle2D.Double b = e.getValue();
+            if (b.getMinX() <= r.getMaxX() && b.getMinY() <= r.getMaxY()
+                    && b.getMaxX() >= r.getMinX() && b.getMaxY() >= r.getMinY()) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static HashSet<String> inside(Map<String, Rectangle2D.Double> objects, Rectangle2D.Double r) {
+        HashSet<String> result = new HashSet<String>();
+        for (Map.Entry<String, Rectangle2D.Double> e : objects.entrySet()) {
+            Rectangle2D.Double b = e.getValue();
+            if (b.getMinX() >= r.getMinX() && b.getMinY() >= r.getMinY()
+                    && b.getMaxX() <= r.getMaxX() && b.getMaxY() <= r.getMaxY()) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static HashSet<String> contains(Map<String, Rectangle2D.Double> objects, Point2D.Double p) {
+        HashSet<String> result = new HashSet<String>();
+        for (Map.Entry<String, Rectangle2D.Double> e : objects.entrySet()) {
+            Rectangle2D.Double b = e.getValue();
+            if (p.x >= b.getMinX() && p.y >= b.getMinY() && p.x <= b.getMaxX() && p.y <= b.getMaxY()) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static void assertQueries(PackedQuadTree<String> tree, Map<String, Rectangle2D.Double> objects, Random r, double extent) {
+        assertEquals(objects.size(), tree.size());
+        for (int i = 0; i < 50; i++) {
+            Rectangle2D.Double q = randomBounds(r, extent);
+            q.width *= 10;
+            q.height *= 10;
+            assertEquals(intersects(objects, q), tree.findIntersects(q));
+            assertEquals(intersects(objects, q), new HashSet<String>(tree.findIntersectsInOrder(q)));
+            assertEquals(inside(objects, q), tree.findInside(q));
+            assertEquals(inside(objects, q), new HashSet<String>(tree.findInsideInOrder(q)));
+            Point2D.Double p = new Point2D.Double(q.x, q.y);
+            assertEquals(contains(objects, p), tree.findContains(p));
+            assertEquals(contains(objects, p), new HashSet<String>(tree.findContainsInOrder(p)));
+        }
+    }
+
+    @Test
+    public void testAddUpdateRemove() {
+        Random r = new Random(7);
+        PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        LinkedHashMap<String, Rectangle2D.Double> objects = new LinkedHashMap<String, Rectangle2D.Double>();
+        for (int i = 0; i < 2000; i++) {
+            String o = ("o" + r.nextInt(1000)).intern();
+            if (r.nextInt(4) == 0) {
+                assertEquals(objects.remove(o) != null, tree.remove(o));
+            } else {
+                // Most objects lie outside of the initial bounds of the tree
+                Rectangle2D.Double b = randomBounds(r, 5000);
+                objects.put(o, b);
+                tree.add(o, b);
+            }
+        }
+        assertQueries(tree, objects, r, 6000);
+
+        tree.reorganize();
+        assertQueries(tree, objects, r, 6000);
+    }
+
+    @Test
+    public void testBulkLoadAndGrow() {
+        Random r = new Random(11);
+        LinkedHashMap<String, Rectangle2D.Double> objects = new LinkedHashMap<String, Rectangle2D.Double>();
+        for (int i = 0; i < 1000; i++) {
+            objects.put("o" + i, randomBounds(r, 1000));
+        }
+        PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        tree.bulkLoad(objects.keySet(), objects.values());
+        assertQueries(tree, objects, r, 1200);
+
+        // Add objects in a line far outside of the bulk loaded bounds
+        for (int i = 0; i < 1000; i++) {
+            Rectangle2D.Double b = new Rectangle2D.Double(-i * 100, i * 70, 10, 10);
+            objects.put("p" + i, b);
+            tree.add("p" + i, b);
+        }
+        assertQueries(tree, objects, r, 200000);
+    }
+
+    @Test
+    public void testBulkLoadOfSinglePointAndGrow() {
+        PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        tree.bulkLoad(Arrays.asList("a"), Arrays.asList(new Rectangle2D.Double(5, 5, 0, 0)));
+        LinkedHashMap<String, Rectangle2D.Double> objects = new LinkedHashMap<String, Rectangle2D.Double>();
+        objects.put("a", new Rectangle2D.Double(5, 5, 0, 0));
+        Random r = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            Rectangle2D.Double b = randomBounds(r, 3000);
+            objects.put("b" + i, b);
+            tree.add("b" + i, b);
+        }
+        assertQueries(tree, objects, r, 3000);
+    }
+
+    @Test
+    public void testInfiniteBounds() {
+        PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        Rectangle2D.Double infinite = new Rectangle2D.Double(0, 0, Double.POSITIVE_INFINITY, 10);
+        tree.add("infinite", infinite);
+        tree.add("finite", new Rectangle2D.Double(0, 0, 10, 10));
+        assertEquals(new HashSet<String>(Arrays.asList("infinite", "finite")),
+                tree.findIntersects(new Rectangle2D.Double(5, 5, 1, 1)));
+        tree.reorganize();
+        assertEquals(new HashSet<String>(Arrays.asList("infinite", "finite")),
+                tree.findIntersects(new Rectangle2D.Double(5, 5, 1, 1)));
+        assertTrue(tree.remove("infinite"));
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    public void testFindInOrder() {
+        PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        String[] names = {"d", "a", "c", "b", "e"};
+        int[] orders = {3, 0, 2, 1, 4};
+        for (int i = 0; i < names.length; i++) {
+            int h = tree.add(names[i], new Rectangle2D.Double(i * 10, 0, 100, 100));
+            tree.setOrder(h, orders[i]);
+        }
+        List<String> expected = Arrays.asList("a", "b", "c", "d", "e");
+        assertEquals(expected, tree.findIntersectsInOrder(new Rectangle2D.Double(50, 50, 1, 1)));
+        assertEquals(expected, tree.findContainsInOrder(new Point2D.Double(50, 50)));
+        assertEquals(expected, tree.sortInOrder(Arrays.asList(names)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        Random r = new Random(5);
+        PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        LinkedHashMap<String, Rectangle2D.Double> objects = new LinkedHashMap<String, Rectangle2D.Double>();
+        for (int i = 0; i < 500; i++) {
+            String o = "o" + i;
+            Rectangle2D.Double b = randomBounds(r, 2000);
+            objects.put(o, b);
+            tree.add(o, b);
+        }
+        // Leave free handles behind
+        for (int i = 0; i < 70; i++) {
+            String o = objects.keySet().iterator().next();
+            assertTrue(tree.remove(o));
+            objects.remove(o);
+        }
+
+        // Write the tree and the map into the same stream, so that they
+        // share the deserialized objects
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(tree);
+            out.writeObject(objects);
+        }
+        PackedQuadTree<String> readTree;
+        LinkedHashMap<String, Rectangle2D.Double> readObjects;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            readTree = (PackedQuadTree<String>) in.readObject();
+            readObjects = (LinkedHashMap<String, Rectangle2D.Double>) in.readObject();
+        }
+        assertQueries(readTree, readObjects, r, 2400);
+
+        String o = readObjects.keySet().iterator().next();
+        assertTrue(readTree.remove(o));
+        readObjects.remove(o);
+        Rectangle2D.Double b = randomBounds(r, 2000);
+        readObjects.put("p", b);
+        readTree.add("p", b);
+        assertQueries(readTree, readObjects, r, 2400);
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        final PackedQuadTree<String> tree = new PackedQuadTree<String>();
+        final LinkedHashMap<String, Rectangle2D.Double> objects = new LinkedHashMap<String, Rectangle2D.Double>();
+        Random r = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            Rectangle2D.Double b = randomBounds(r, 2000);
+            objects.put("o" + i, b);
+            tree.setOrder(tree.add("o" + i, b), i);
+        }
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random tr = new Random(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            Rectangle2D.Double q = randomBounds(tr, 2000);
+                            q.width *= 10;
+                            q.height *= 10;
+                            List<String> found = tree.findIntersectsInOrder(q);
+                            assertEquals(intersects(objects, q), new HashSet<String>(found));
+                            for (int j = 1; j < found.size(); j++) {
+                                assertTrue(tree.getOrder(tree.getHandle(found.get(j - 1))) < tree.getOrder(tree.getHandle(found.get(j))));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.<Throwable>emptyList(), failures);
+    }
+}
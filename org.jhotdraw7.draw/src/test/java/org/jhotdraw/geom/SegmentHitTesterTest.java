@@ -0,0 +1,132 @@
+/* @(#)SegmentHitTesterTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.geom;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the results of {@link SegmentHitTester} with {@link Path2D} and
+ * with distances computed by a linear search over the segments.
+ */
+public class SegmentHitTesterTest {
+
+    /**
+     * Creates an open, self-intersecting polyline with the specified number
+     * of points.
+     */
+    private static double[] createPoints(Random r, int count) {
+        double[] xy = new double[count * 2];
+        for (int i = 0; i < xy.length; i++) {
+            xy[i] = r.nextDouble() * 1000;
+        }
+        return xy;
+    }
+
+    private static Path2D.Double createPath(double[] xy, int windingRule) {
+        Path2D.Double path = new Path2D.Double(windingRule);
+        path.moveTo(xy[0], xy[1]);
+        for (int i = 2; i < xy.length; i += 2) {
+            path.lineTo(xy[i], xy[i + 1]);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the distance to the open polyline.
+     */
+    private static double distance(double[] xy, double x, double y) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 2; i < xy.length; i += 2) {
+            best = Math.min(best, Line2D.ptSegDist(xy[i - 2], xy[i - 1], xy[i], xy[i + 1], x, y));
+        }
+        return best;
+    }
+
+    @Test
+    public void testContainsIsIdenticalToPath2D() {
+        Random r = new Random(1);
+        for (int windingRule : new int[]{Path2D.WIND_EVEN_ODD, Path2D.WIND_NON_ZERO}) {
+            Path2D.Double path = createPath(createPoints(r, 200), windingRule);
+            SegmentHitTester hitTester = new SegmentHitTester(path);
+            for (int i = 0; i < 2000; i++) {
+                double x = r.nextDouble() * 1100 - 50, y = r.nextDouble() * 1100 - 50;
+                assertEquals(path.contains(x, y), hitTester.contains(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceIsIdenticalToLinearSearch() {
+        Random r = new Random(2);
+        double[] xy = createPoints(r, 200);
+        SegmentHitTester hitTester = new SegmentHitTester(createPath(xy, Path2D.WIND_EVEN_ODD));
+        for (int i = 0; i < 2000; i++) {
+            double x = r.nextDouble() * 1100 - 50, y = r.nextDouble() * 1100 - 50;
+            double expected = distance(xy, x, y);
+            assertEquals(expected, hitTester.getDistance(x, y), 1e-6);
+            assertEquals(expected <= 5, hitTester.outlineContains(x, y, 5));
+        }
+    }
+
+    @Test
+    public void testNearestSegmentOfPolylineIsIdenticalToLinearSearch() {
+        Random r = new Random(3);
+        double[] xy = createPoints(r, 200);
+        SegmentHitTester hitTester = new SegmentHitTester(xy, xy.length / 2, 0.1);
+        for (int i = 0; i < 2000; i++) {
+            double x = r.nextDouble() * 1100 - 50, y = r.nextDouble() * 1100 - 50;
+            // Segments which share a point can have the same distance, so
+            // the distance of the segment is compared instead of its index
+            int s = hitTester.getNearestSegment(x, y) * 2 + 2;
+            assertEquals(distance(xy, x, y),
+                    Line2D.ptSegDist(xy[s - 2], xy[s - 1], xy[s], xy[s + 1], x, y), 1e-6);
+        }
+    }
+
+    @Test
+    public void testImplicitClosingSegmentIsNotOnTheOutline() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(0, 0);
+        path.lineTo(100, 0);
+        path.lineTo(100, 100);
+        SegmentHitTester hitTester = new SegmentHitTester(path);
+
+        assertTrue(hitTester.outlineContains(50, 1, 2));
+        assertFalse(hitTester.outlineContains(50, 50, 2));
+        assertTrue(hitTester.contains(90, 50));
+        // (50, 50) lies on the implicit closing segment
+        assertEquals(50, hitTester.getDistance(50, 50), 1e-9);
+    }
+
+    @Test
+    public void testCurvesAreFlattened() {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(0, 0);
+        path.curveTo(0, 100, 100, 100, 100, 0);
+        SegmentHitTester hitTester = new SegmentHitTester(path, 0.01);
+
+        // The curve passes through (50, 75) at t=0.5
+        assertEquals(0, hitTester.getDistance(50, 75), 0.02);
+        assertEquals(25, hitTester.getDistance(50, 100), 0.02);
+    }
+
+    @Test
+    public void testEmptyShape() {
+        SegmentHitTester hitTester = new SegmentHitTester(new Path2D.Double());
+        assertFalse(hitTester.contains(0, 0));
+        assertFalse(hitTester.outlineContains(0, 0, 10));
+        assertEquals(Double.POSITIVE_INFINITY, hitTester.getDistance(0, 0));
+        assertTrue(hitTester.getBounds().isEmpty());
+        assertEquals(-1, hitTester.getNearestSegment(0, 0));
+    }
+}
@@ -4,10 +4,10 @@
 
 package org.jhotdraw.nanoxml;
 
+import net.n3.nanoxml.BufferedXMLReader;
 import net.n3.nanoxml.IXMLElement;
 import net.n3.nanoxml.IXMLParser;
 import net.n3.nanoxml.IXMLReader;
-import net.n3.nanoxml.StdXMLReader;
 import net.n3.nanoxml.XMLElement;
 import net.n3.nanoxml.XMLParserFactory;
 import org.jhotdraw.annotation.Nullable;
@@ -19,11 +19,13 @@ import org.jhotdraw.xml.DOMStorable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Stack;
+import java.util.zip.GZIPInputStream;
 
 /**
  * NanoXMLDOMInput.
@@ -64,8 +66,12 @@ public class NanoXMLDOMInput implements DOMInput, Disposable {
      */
     private Stack<IXMLElement> stack = new Stack<IXMLElement>();
 
+    /**
+     * Creates a new instance which reads UTF-8 encoded XML from the
+     * specified input stream. The input may be compressed with gzip.
+     */
     public NanoXMLDOMInput(DOMFactory factory, InputStream in) throws IOException {
-        this(factory, new InputStreamReader(in, "UTF8"));
+        this(factory, new InputStreamReader(decompress(in), "UTF8"));
     }
 
     public NanoXMLDOMInput(DOMFactory factory, Reader in) throws IOException {
@@ -74,7 +80,7 @@ public class NanoXMLDOMInput implements DOMInput, Disposable {
         try {
 
             IXMLParser parser = XMLParserFactory.createDefaultXMLParser();
-            IXMLReader reader = new StdXMLReader(in);
+            IXMLReader reader = new BufferedXMLReader(in);
             parser.setReader(reader);
             document = new XMLElement();
             current = (XMLElement) parser.parse();
@@ -301,4 +307,24 @@ public class NanoXMLDOMInput implements DOMInput, Disposable {
             document = null;
         }
     }
+
+    /**
+     * Returns a decompressing stream if the input starts with the gzip magic
+     * number, and the input otherwise.
+     */
+    private static InputStream decompress(InputStream in) throws IOException {
+        PushbackInputStream pin = new PushbackInputStream(in, 2);
+        byte[] magic = new byte[2];
+        int n = 0;
+        for (int r; n < 2 && (r = pin.read(magic, n, 2 - n)) != -1; ) {
+            n += r;
+        }
+        if (n > 0) {
+            pin.unread(magic, 0, n);
+        }
+        if (n == 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return new GZIPInputStream(pin, 8192);
+        }
+        return pin;
+    }
 }
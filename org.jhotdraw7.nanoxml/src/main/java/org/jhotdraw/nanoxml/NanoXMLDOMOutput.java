@@ -17,6 +17,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Stack;
 
 /**
@@ -42,7 +43,7 @@ public class NanoXMLDOMOutput implements DOMOutput, Disposable {
      * the XML DOM. A key in this map is a Java Object, a value in this map
      * is String representing a marshalled reference to that object.
      */
-    private HashMap<Object, String> objectids;
+    private IdentityHashMap<Object, String> objectids;
     /**
      * This map is used to cache prototype objects.
      */
@@ -71,7 +72,7 @@ public class NanoXMLDOMOutput implements DOMOutput, Disposable {
      */
     public NanoXMLDOMOutput(DOMFactory factory) {
         this.factory = factory;
-        objectids = new HashMap<Object, String>();
+        objectids = new IdentityHashMap<Object, String>();
         document = new XMLElement();//new HashMap(), false, false);
         current = document;
         stack = new Stack<XMLElement>();
@@ -220,8 +221,9 @@ public class NanoXMLDOMOutput implements DOMOutput, Disposable {
         if (tagName == null) throw new IllegalArgumentException("no tag name for:" + o);
         openElement(tagName);
         XMLElement element = current;
-        if (objectids.containsKey(o)) {
-            addAttribute("ref", objectids.get(o));
+        String ref = objectids.get(o);
+        if (ref != null) {
+            addAttribute("ref", ref);
         } else {
             String id = Integer.toString(objectids.size(), 16);
             objectids.put(o, id);
@@ -0,0 +1,552 @@
+/* @(#)NanoXMLStreamingDOMOutput.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.nanoxml;
+
+import org.jhotdraw.annotation.Nullable;
+import org.jhotdraw.xml.DOMFactory;
+import org.jhotdraw.xml.DOMOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * DOMOutput which streams the XML document to an output stream.
+ * <p>
+ * Unlike {@link NanoXMLDOMOutput}, this output does not build an
+ * {@code XMLElement} tree. The start tag of an element is encoded as soon as
+ * its first child or text is added, and the encoded characters are passed to
+ * the output stream whenever the buffer is full. The output uses the same
+ * encoding as {@link net.n3.nanoxml.XMLWriter}, and can be read with
+ * {@link NanoXMLDOMInput}.
+ * <p>
+ * An attribute can still be added to an element after its children, as long
+ * as its start tag is among the last 4096 characters of the buffer
+ * when the buffer is passed to the output stream. The attribute is
+ * then inserted into the start tag. This is sufficient for elements, which
+ * add an attribute after a few small children. Adding an attribute to an
+ * element whose start tag has already been passed to the output stream,
+ * throws an {@code IllegalStateException}.
+ * <p>
+ * References to objects written with {@link #writeObject} are tracked by
+ * identity.
+ * <p>
+ * The output can be compressed with gzip on the fly. NanoXMLDOMInput
+ * detects compressed input.
+ * <p>
+ * Call {@link #finish} after the last element has been closed.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class NanoXMLStreamingDOMOutput implements DOMOutput {
+
+    /**
+     * The number of buffered characters, at which the buffer is passed to the
+     * writer.
+     */
+    private static final int FLUSH_SIZE = 16384;
+    /**
+     * The number of characters at the end of the buffer, in which start tags
+     * are kept in the buffer when it is passed to the writer.
+     */
+    private static final int KEEP_SIZE = 4096;
+    /**
+     * Value of {@code tagStarts} for an element whose start tag has not been
+     * encoded yet.
+     */
+    private static final int PENDING = -1;
+    /**
+     * Value of {@code tagStarts} for an element whose start tag has been
+     * passed to the writer.
+     */
+    private static final int FLUSHED = -2;
+
+    /**
+     * The doctype of the XML document.
+     */
+    @Nullable
+    private String doctype;
+    /**
+     * This map is used to marshall references to objects to
+     * the XML DOM. A key in this map is a Java Object, a value in this map
+     * is String representing a marshalled reference to that object.
+     */
+    private IdentityHashMap<Object, String> objectids;
+    /**
+     * This map is used to cache prototype objects.
+     */
+    @Nullable
+    private HashMap<String, Object> prototypes;
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+    /**
+     * The gzip stream, or null if the output is not compressed.
+     */
+    @Nullable
+    private GZIPOutputStream gzip;
+    private Writer writer;
+    /**
+     * Buffer for characters which have not been passed to the writer yet.
+     */
+    private char[] buf = new char[FLUSH_SIZE + 1024];
+    private int len;
+    /**
+     * Temporary buffer for encoding a start tag.
+     */
+    private StringBuilder tagBuf = new StringBuilder();
+    /**
+     * Whether the document has been started.
+     */
+    private boolean isDocumentStarted;
+    /**
+     * The tag names of the open elements.
+     */
+    private ArrayList<String> tagNames = new ArrayList<String>();
+    /**
+     * For each open element, the indices in {@code buf} where its start tag
+     * starts and ends, and the index in {@code attributeNames} where its
+     * attributes start. The start is {@link #PENDING} or {@link #FLUSHED} if
+     * the start tag is not in the buffer.
+     */
+    private int[] tagStarts = new int[16];
+    private int[] tagEnds = new int[16];
+    private int[] attributeStarts = new int[16];
+    /**
+     * The attributes of the open elements. The attributes of an element
+     * follow the attributes of its parent.
+     */
+    private ArrayList<String> attributeNames = new ArrayList<String>();
+    private ArrayList<String> attributeValues = new ArrayList<String>();
+    /**
+     * The exception which occurred while writing, or null.
+     */
+    @Nullable
+    private IOException exception;
+
+    /**
+     * Creates a new instance which writes uncompressed XML.
+     */
+    public NanoXMLStreamingDOMOutput(DOMFactory factory, OutputStream out) throws IOException {
+        this(factory, out, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param factory the factory used to create objects
+     * @param out     the output stream
+     * @param isGZip  whether the output is compressed with gzip
+     */
+    public NanoXMLStreamingDOMOutput(DOMFactory factory, OutputStream out, boolean isGZip) throws IOException {
+        this.factory = factory;
+        objectids = new IdentityHashMap<Object, String>();
+        if (isGZip) {
+            gzip = new GZIPOutputStream(out, 8192);
+            out = gzip;
+        }
+        writer = new OutputStreamWriter(out, "UTF8");
+    }
+
+    /**
+     * Writes all buffered data to the output stream, and finishes the gzip
+     * stream. The output stream is not closed.
+     *
+     * @throws IOException           if an I/O error occurred while writing
+     *                               the document.
+     * @throws IllegalStateException if not all elements have been closed.
+     */
+    public void finish() throws IOException {
+        if (!tagNames.isEmpty()) {
+            throw new IllegalStateException("element not closed: " + tagNames.get(tagNames.size() - 1));
+        }
+        flushBuffer(len);
+        if (exception != null) {
+            throw exception;
+        }
+        writer.flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+    }
+
+    /**
+     * Puts a new element into the DOM Document.
+     * The new element is added as a child to the current element in the DOM
+     * document. Then it becomes the current element.
+     * The element must be closed using closeElement.
+     */
+    @Override
+    public void openElement(String tagName) {
+        if (!isDocumentStarted) {
+            isDocumentStarted = true;
+            if (doctype != null) {
+                write("<!DOCTYPE ");
+                write(doctype);
+                write(">\n");
+            }
+        }
+        int depth = tagNames.size();
+        if (depth > 0) {
+            writeStartTag(depth - 1);
+        }
+        if (depth == tagStarts.length) {
+            tagStarts = Arrays.copyOf(tagStarts, depth * 2);
+            tagEnds = Arrays.copyOf(tagEnds, depth * 2);
+            attributeStarts = Arrays.copyOf(attributeStarts, depth * 2);
+        }
+        tagStarts[depth] = PENDING;
+        attributeStarts[depth] = attributeNames.size();
+        tagNames.add(tagName);
+    }
+
+    /**
+     * Closes the current element of the DOM Document.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        int depth = tagNames.size() - 1;
+        String tagName = tagNames.remove(depth);
+        int attributeStart = attributeStarts[depth];
+        if (tagStarts[depth] == PENDING) {
+            encodeStartTag(tagName, attributeStart);
+            tagBuf.append("/>");
+            write(tagBuf);
+        } else {
+            write("</");
+            write(tagName);
+            write(">");
+        }
+        attributeNames.subList(attributeStart, attributeNames.size()).clear();
+        attributeValues.subList(attributeStart, attributeValues.size()).clear();
+        flushIfFull();
+    }
+
+    /**
+     * Adds a comment to the current element of the DOM Document.
+     */
+    @Override
+    public void addComment(String comment) {
+        // NanoXMLDOMOutput does not support comments
+    }
+
+    /**
+     * Adds a text to current element of the DOM Document.
+     * Note: Multiple consecutives texts will be merged.
+     */
+    @Override
+    public void addText(String text) {
+        if (text.length() > 0) {
+            writeStartTag(tagNames.size() - 1);
+            writeEncoded(text);
+            flushIfFull();
+        }
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, String value) {
+        if (value != null) {
+            int depth = tagNames.size() - 1;
+            if (tagStarts[depth] == FLUSHED) {
+                throw new IllegalStateException("attribute " + name + " added to element " + tagNames.get(depth)
+                        + " after its start tag has been written");
+            }
+            int index = -1;
+            for (int i = attributeStarts[depth], n = attributeNames.size(); i < n; i++) {
+                if (attributeNames.get(i).equals(name)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index == -1) {
+                attributeNames.add(name);
+                attributeValues.add(value);
+            } else {
+                attributeValues.set(index, value);
+            }
+            if (tagStarts[depth] != PENDING) {
+                // The attribute is added after a child or text
+                encodeStartTag(tagNames.get(depth), attributeStarts[depth]);
+                tagBuf.append('>');
+                replace(tagStarts[depth], tagEnds[depth], tagBuf);
+                tagEnds[depth] = tagStarts[depth] + tagBuf.length();
+            }
+        }
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, int value) {
+        addAttribute(name, Integer.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, boolean value) {
+        addAttribute(name, Boolean.valueOf(value).toString());
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, float value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Float.toString(value);
+        if (str.endsWith(".0")) str = str.substring(0, str.length() - 2);
+        addAttribute(name, str);
+    }
+
+    /**
+     * Adds an attribute to current element of the DOM Document.
+     */
+    @Override
+    public void addAttribute(String name, double value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Double.toString(value);
+        if (str.endsWith(".0")) str = str.substring(0, str.length() - 2);
+        addAttribute(name, str);
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        String tagName = factory.getName(o);
+        if (tagName == null) throw new IllegalArgumentException("no tag name for:" + o);
+        openElement(tagName);
+        String ref = objectids.get(o);
+        if (ref != null) {
+            addAttribute("ref", ref);
+        } else {
+            String id = Integer.toString(objectids.size(), 16);
+            objectids.put(o, id);
+            addAttribute("id", id);
+            factory.write(this, o);
+        }
+        closeElement();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, float value, float defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, int value, int defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, double value, double defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, boolean value, boolean defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String value, String defaultValue) {
+        if (value != null && !value.equals(defaultValue)) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public Object getPrototype() {
+        if (prototypes == null) {
+            prototypes = new HashMap<String, Object>();
+        }
+        String tagName = tagNames.get(tagNames.size() - 1);
+        if (!prototypes.containsKey(tagName)) {
+            prototypes.put(tagName, factory.create(tagName));
+        }
+        return prototypes.get(tagName);
+    }
+
+    /**
+     * Sets the doctype. This method must be called before the first element
+     * is opened.
+     */
+    @Override
+    public void setDoctype(String doctype) {
+        this.doctype = doctype;
+    }
+
+    /**
+     * Writes the start tag of an open element, if it has not been written yet.
+     */
+    private void writeStartTag(int depth) {
+        if (tagStarts[depth] == PENDING) {
+            encodeStartTag(tagNames.get(depth), attributeStarts[depth]);
+            tagBuf.append('>');
+            tagStarts[depth] = len;
+            write(tagBuf);
+            tagEnds[depth] = len;
+            flushIfFull();
+        }
+    }
+
+    /**
+     * Encodes the start tag of an element into {@code tagBuf}, except for
+     * the closing bracket.
+     */
+    private void encodeStartTag(String tagName, int attributeStart) {
+        tagBuf.setLength(0);
+        tagBuf.append('<');
+        tagBuf.append(tagName);
+        for (int i = attributeStart, n = attributeNames.size(); i < n; i++) {
+            tagBuf.append(' ');
+            tagBuf.append(attributeNames.get(i));
+            tagBuf.append("=\"");
+            encode(attributeValues.get(i), tagBuf);
+            tagBuf.append('"');
+        }
+    }
+
+    /**
+     * Writes a string encoding reserved characters like XMLWriter does.
+     */
+    private void writeEncoded(String str) {
+        tagBuf.setLength(0);
+        encode(str, tagBuf);
+        write(tagBuf);
+    }
+
+    /**
+     * Encodes reserved characters like XMLWriter does.
+     */
+    private static void encode(String str, StringBuilder out) {
+        for (int i = 0, n = str.length(); i < n; i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case 0x0A:
+                    out.append(c);
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '\'':
+                    out.append("&apos;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                default:
+                    if ((c < ' ') || (c > 0x7E)) {
+                        out.append("&#x");
+                        out.append(Integer.toString(c, 16));
+                        out.append(';');
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(minCapacity, buf.length * 2));
+        }
+    }
+
+    private void write(CharSequence str) {
+        int n = str.length();
+        ensureCapacity(len + n);
+        for (int i = 0; i < n; i++) {
+            buf[len++] = str.charAt(i);
+        }
+    }
+
+    /**
+     * Replaces the characters from index {@code from} to index {@code to}
+     * of the buffer.
+     */
+    private void replace(int from, int to, CharSequence str) {
+        int n = str.length();
+        ensureCapacity(len + n - (to - from));
+        System.arraycopy(buf, to, buf, from + n, len - to);
+        for (int i = 0; i < n; i++) {
+            buf[from + i] = str.charAt(i);
+        }
+        len += n - (to - from);
+    }
+
+    private void flushIfFull() {
+        if (len >= FLUSH_SIZE) {
+            flushBuffer(len - KEEP_SIZE);
+        }
+    }
+
+    /**
+     * Passes the buffered characters to the writer, except for the start
+     * tags of the open elements, which start at or after the specified
+     * index, and the characters following them. Since the methods of
+     * DOMOutput can not throw IOExceptions, an exception is kept until
+     * writeObject or finish is called.
+     */
+    private void flushBuffer(int keepFrom) {
+        int depth = tagNames.size();
+        int flushTo = len;
+        for (int i = 0; i < depth; i++) {
+            if (tagStarts[i] >= keepFrom) {
+                flushTo = tagStarts[i];
+                break;
+            }
+        }
+        if (flushTo > 0) {
+            if (exception == null) {
+                try {
+                    writer.write(buf, 0, flushTo);
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+            System.arraycopy(buf, flushTo, buf, 0, len - flushTo);
+            len -= flushTo;
+            for (int i = 0; i < depth; i++) {
+                if (tagStarts[i] >= flushTo) {
+                    tagStarts[i] -= flushTo;
+                    tagEnds[i] -= flushTo;
+                } else if (tagStarts[i] >= 0) {
+                    tagStarts[i] = FLUSHED;
+                }
+            }
+        }
+    }
+}
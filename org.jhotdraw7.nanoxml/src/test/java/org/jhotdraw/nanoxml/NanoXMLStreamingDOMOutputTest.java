@@ -0,0 +1,186 @@
+/* @(#)NanoXMLStreamingDOMOutputTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.nanoxml;
+
+import org.jhotdraw.xml.DOMOutput;
+import org.jhotdraw.xml.DefaultDOMFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link NanoXMLStreamingDOMOutput} writes the same document as
+ * {@link NanoXMLDOMOutput}.
+ */
+public class NanoXMLStreamingDOMOutputTest {
+
+    /**
+     * Writes the same document to a DOMOutput.
+     */
+    private interface Writer {
+        void write(DOMOutput out) throws IOException;
+    }
+
+    @Test
+    public void testEmptyElement() throws IOException {
+        assertSameOutput(out -> {
+            out.openElement("a");
+            out.closeElement();
+        });
+    }
+
+    @Test
+    public void testAttributesAndText() throws IOException {
+        assertSameOutput(out -> {
+            out.openElement("a");
+            out.addAttribute("s", "<&'\"ä>");
+            out.addAttribute("i", 42);
+            out.addAttribute("d", 2.0);
+            out.addAttribute("f", 0.5f);
+            out.addAttribute("b", true);
+            out.addText("text <&>\nline");
+            out.closeElement();
+        });
+    }
+
+    @Test
+    public void testAttributeAfterChildren() throws IOException {
+        String xml = assertSameOutput(out -> {
+            out.openElement("a");
+            out.addAttribute("x", 1);
+            out.openElement("b");
+            out.addAttribute("y", 2);
+            out.openElement("c");
+            out.closeElement();
+            out.addAttribute("z", 3);
+            out.closeElement();
+            out.addAttribute("w", 4);
+            out.closeElement();
+        });
+        assertEquals("<a x=\"1\" w=\"4\"><b y=\"2\" z=\"3\"><c/></b></a>", xml);
+    }
+
+    @Test
+    public void testAttributeIsReplaced() throws IOException {
+        String xml = assertSameOutput(out -> {
+            out.openElement("a");
+            out.addAttribute("x", 1);
+            out.addAttribute("y", 2);
+            out.openElement("b");
+            out.addAttribute("x", 3);
+            out.closeElement();
+            out.addAttribute("x", 4);
+            out.closeElement();
+        });
+        assertEquals("<a x=\"4\" y=\"2\"><b x=\"3\"/></a>", xml);
+    }
+
+    @Test
+    public void testLargeDocument() throws IOException {
+        assertSameOutput(out -> {
+            out.openElement("root");
+            for (int i = 0; i < 5000; i++) {
+                out.openElement("figure");
+                out.addAttribute("x", i);
+                out.openElement("a");
+                out.addText("text " + i);
+                out.closeElement();
+                out.addAttribute("y", -i);
+                out.closeElement();
+            }
+            out.closeElement();
+        });
+    }
+
+    @Test
+    public void testDocumentIsStreamedBeforeRootIsClosed() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        NanoXMLStreamingDOMOutput out = new NanoXMLStreamingDOMOutput(new DefaultDOMFactory(), buf);
+        out.openElement("root");
+        out.addAttribute("version", 1);
+        for (int i = 0; i < 10000; i++) {
+            out.openElement("figure");
+            out.addAttribute("x", i);
+            out.closeElement();
+        }
+        int written = buf.size();
+        assertTrue(written > 100000, "only " + written + " bytes have been written");
+        assertTrue(new String(buf.toByteArray(), StandardCharsets.UTF_8).startsWith("<root version=\"1\"><figure x=\"0\"/>"));
+
+        // The start tag of the root element has been written
+        assertThrows(IllegalStateException.class, () -> out.addAttribute("count", 10000));
+        out.closeElement();
+        out.finish();
+    }
+
+    @Test
+    public void testObjectReferences() throws IOException {
+        final String s = new String("s");
+        final String equal = new String("s");
+        String xml = assertSameOutput(out -> {
+            out.openElement("a");
+            out.writeObject(s);
+            out.writeObject(equal);
+            out.writeObject(s);
+            out.closeElement();
+        });
+        assertEquals("<a><string id=\"0\">s</string><string id=\"1\">s</string><string ref=\"0\"/></a>", xml);
+
+        NanoXMLDOMInput in = new NanoXMLDOMInput(new DefaultDOMFactory(),
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        in.openElement("a");
+        assertSame(in.readObject(0), in.readObject(2));
+    }
+
+    @Test
+    public void testGZipIsDetectedByInput() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        NanoXMLStreamingDOMOutput out = new NanoXMLStreamingDOMOutput(new DefaultDOMFactory(), buf, true);
+        out.openElement("a");
+        out.addAttribute("x", "value");
+        out.openElement("b");
+        out.addText("text");
+        out.closeElement();
+        out.closeElement();
+        out.finish();
+
+        NanoXMLDOMInput in = new NanoXMLDOMInput(new DefaultDOMFactory(), new ByteArrayInputStream(buf.toByteArray()));
+        in.openElement("a");
+        assertEquals("value", in.getAttribute("x", null));
+        in.openElement("b");
+        assertEquals("text", in.getText());
+    }
+
+    /**
+     * Writes a document with NanoXMLDOMOutput and with
+     * NanoXMLStreamingDOMOutput, and checks that both are identical.
+     *
+     * @return the document
+     */
+    private static String assertSameOutput(Writer writer) throws IOException {
+        NanoXMLDOMOutput domOutput = new NanoXMLDOMOutput(new DefaultDOMFactory());
+        writer.write(domOutput);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        domOutput.save(expected);
+        domOutput.dispose();
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        NanoXMLStreamingDOMOutput streamingOutput = new NanoXMLStreamingDOMOutput(new DefaultDOMFactory(), actual);
+        writer.write(streamingOutput);
+        streamingOutput.finish();
+
+        String xml = new String(expected.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(xml, new String(actual.toByteArray(), StandardCharsets.UTF_8));
+        return xml;
+    }
+}
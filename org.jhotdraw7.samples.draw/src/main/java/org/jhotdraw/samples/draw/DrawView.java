@@ -15,6 +15,7 @@ import org.jhotdraw.draw.QuadTreeDrawing;
 import org.jhotdraw.draw.TextAreaFigure;
 import org.jhotdraw.draw.TextFigure;
 import org.jhotdraw.draw.action.ButtonFactory;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.ImageInputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
@@ -113,8 +114,11 @@ public class DrawView extends AbstractView {
         Drawing drawing = new QuadTreeDrawing();
         DOMStorableInputOutputFormat ioFormat =
                 new DOMStorableInputOutputFormat(new DrawFigureFactory());
+        BinaryDOMStorableInputOutputFormat binaryFormat =
+                new BinaryDOMStorableInputOutputFormat(new DrawFigureFactory());
 
         drawing.addInputFormat(ioFormat);
+        drawing.addInputFormat(binaryFormat);
         ImageFigure prototype = new ImageFigure();
         drawing.addInputFormat(new ImageInputFormat(prototype));
         drawing.addInputFormat(new TextInputFormat(new TextFigure()));
@@ -123,6 +127,7 @@ public class DrawView extends AbstractView {
         drawing.addInputFormat(new TextInputFormat(taf));
 
         drawing.addOutputFormat(ioFormat);
+        drawing.addOutputFormat(binaryFormat);
         drawing.addOutputFormat(new ImageOutputFormat());
         return drawing;
     }
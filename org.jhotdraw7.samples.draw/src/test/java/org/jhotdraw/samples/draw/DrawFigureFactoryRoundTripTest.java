@@ -0,0 +1,180 @@
+/* @(#)DrawFigureFactoryRoundTripTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.draw;
+
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.BezierFigure;
+import org.jhotdraw.draw.DiamondFigure;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.EllipseFigure;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.GroupFigure;
+import org.jhotdraw.draw.ImageFigure;
+import org.jhotdraw.draw.LineConnectionFigure;
+import org.jhotdraw.draw.LineFigure;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.RectangleFigure;
+import org.jhotdraw.draw.RoundRectangleFigure;
+import org.jhotdraw.draw.TextAreaFigure;
+import org.jhotdraw.draw.TextFigure;
+import org.jhotdraw.draw.TriangleFigure;
+import org.jhotdraw.draw.connector.ChopBezierConnector;
+import org.jhotdraw.draw.connector.ChopDiamondConnector;
+import org.jhotdraw.draw.connector.ChopEllipseConnector;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.connector.ChopRoundRectangleConnector;
+import org.jhotdraw.draw.connector.ChopTriangleConnector;
+import org.jhotdraw.draw.connector.Connector;
+import org.jhotdraw.draw.decoration.ArrowTip;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
+import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
+import org.jhotdraw.draw.liner.CurvedLiner;
+import org.jhotdraw.draw.liner.ElbowLiner;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.nanoxml.NanoXMLDOMOutput;
+import org.jhotdraw.xml.DOMFactory;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.datatransfer.Transferable;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes a drawing with every storable of {@link DrawFigureFactory} with the
+ * XML and the binary format, and checks that the drawing reads back
+ * unchanged.
+ */
+public class DrawFigureFactoryRoundTripTest {
+
+    @Test
+    public void testStreamingOutputIsIdenticalToDOMOutput() throws IOException {
+        DrawFigureFactory factory = new DrawFigureFactory();
+        Drawing drawing = createDrawing();
+        assertEquals(toString(writeWithDOMOutput(factory, drawing)),
+                toString(writeXML(factory, drawing)));
+    }
+
+    @Test
+    public void testXMLRoundTrip() throws IOException {
+        DrawFigureFactory factory = new DrawFigureFactory();
+        byte[] expected = writeXML(factory, createDrawing());
+        Drawing drawing = new QuadTreeDrawing();
+        new DOMStorableInputOutputFormat(factory).read(new ByteArrayInputStream(expected), drawing, true);
+        assertEquals(toString(expected), toString(writeXML(factory, drawing)));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        DrawFigureFactory factory = new DrawFigureFactory();
+        Drawing original = createDrawing();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new BinaryDOMStorableInputOutputFormat(factory).write(buf, original);
+        Drawing drawing = new QuadTreeDrawing();
+        new BinaryDOMStorableInputOutputFormat(factory).read(new ByteArrayInputStream(buf.toByteArray()), drawing, true);
+        assertEquals(toString(writeXML(factory, original)), toString(writeXML(factory, drawing)));
+    }
+
+    @Test
+    public void testTransferableRoundTrip() throws Exception {
+        DrawFigureFactory factory = new DrawFigureFactory();
+        Drawing original = createDrawing();
+        DOMStorableInputOutputFormat format = new DOMStorableInputOutputFormat(factory);
+        Transferable t = format.createTransferable(original, new ArrayList<Figure>(original.getChildren()), 1.0);
+        Drawing drawing = new QuadTreeDrawing();
+        format.read(t, drawing, true);
+        assertArrayEquals(writeXML(factory, original), writeXML(factory, drawing));
+    }
+
+    /**
+     * Creates a drawing which holds every storable of the factory. The
+     * figures have attributes which differ from their prototypes, so that
+     * they write attributes after their child elements.
+     */
+    private static Drawing createDrawing() {
+        Drawing drawing = new QuadTreeDrawing();
+
+        RectangleFigure r = new RectangleFigure(10, 10, 40, 30);
+        r.set(AttributeKeys.FILL_COLOR, Color.yellow);
+        RoundRectangleFigure rr = new RoundRectangleFigure(100, 10, 40, 30);
+        rr.set(AttributeKeys.FILL_COLOR, Color.red);
+        rr.setArcWidth(12);
+        rr.setArcHeight(7);
+        EllipseFigure e = new EllipseFigure(10, 100, 40, 30);
+        e.set(AttributeKeys.STROKE_TYPE, AttributeKeys.StrokeType.DOUBLE);
+        TriangleFigure tri = new TriangleFigure(100, 100, 40, 30, AttributeKeys.Orientation.EAST);
+        tri.set(AttributeKeys.STROKE_PLACEMENT, AttributeKeys.StrokePlacement.INSIDE);
+        DiamondFigure d = new DiamondFigure(200, 10, 40, 30);
+        d.set(AttributeKeys.FILL_UNDER_STROKE, AttributeKeys.Underfill.FULL);
+        BezierFigure b = new BezierFigure(true);
+        b.addNode(new BezierPath.Node(200, 100));
+        b.addNode(new BezierPath.Node(240, 100));
+        b.addNode(new BezierPath.Node(220, 130));
+        LineFigure line = new LineFigure();
+        line.setBounds(new Point2D.Double(10, 200), new Point2D.Double(80, 240));
+        line.set(AttributeKeys.END_DECORATION, new ArrowTip());
+        TextFigure text = new TextFigure("Text");
+        text.setBounds(new Point2D.Double(100, 200), new Point2D.Double(140, 220));
+        TextAreaFigure textArea = new TextAreaFigure("Text area");
+        textArea.setBounds(new Point2D.Double(200, 200), new Point2D.Double(260, 240));
+        ImageFigure image = new ImageFigure(10, 300, 20, 20);
+        GroupFigure group = new GroupFigure();
+        group.add(new RectangleFigure(100, 300, 10, 10));
+        group.add(new EllipseFigure(120, 300, 10, 10));
+
+        Figure[] figures = {r, rr, e, tri, d, b, line, text, textArea, image, group};
+        for (Figure f : figures) {
+            drawing.add(f);
+        }
+
+        Connector[] connectors = {
+                new ChopRectangleConnector(r),
+                new ChopRoundRectangleConnector(rr),
+                new ChopEllipseConnector(e),
+                new ChopTriangleConnector(tri),
+                new ChopDiamondConnector(d),
+                new ChopBezierConnector(b)
+        };
+        for (int i = 0; i < connectors.length; i++) {
+            LineConnectionFigure c = new LineConnectionFigure();
+            c.setStartPoint(new Point2D.Double(0, 0));
+            c.setEndPoint(new Point2D.Double(1, 1));
+            c.setStartConnector(connectors[i]);
+            c.setEndConnector(connectors[(i + 1) % connectors.length]);
+            c.setLiner(i % 2 == 0 ? new ElbowLiner() : new CurvedLiner());
+            c.set(AttributeKeys.START_DECORATION, new ArrowTip());
+            c.updateConnection();
+            drawing.add(c);
+        }
+        return drawing;
+    }
+
+    private static byte[] writeWithDOMOutput(DOMFactory factory, Drawing drawing) throws IOException {
+        NanoXMLDOMOutput domo = new NanoXMLDOMOutput(factory);
+        domo.openElement(factory.getName(drawing));
+        drawing.write(domo);
+        domo.closeElement();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        domo.save(buf);
+        domo.dispose();
+        return buf.toByteArray();
+    }
+
+    private static byte[] writeXML(DOMFactory factory, Drawing drawing) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new DOMStorableInputOutputFormat(factory).write(buf, drawing);
+        return buf.toByteArray();
+    }
+
+    private static String toString(byte[] xml) {
+        return new String(xml, java.nio.charset.StandardCharsets.UTF_8);
+    }
+}
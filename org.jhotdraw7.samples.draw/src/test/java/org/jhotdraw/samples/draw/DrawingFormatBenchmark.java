@@ -0,0 +1,175 @@
+/* @(#)DrawingFormatBenchmark.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.draw;
+
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.BezierFigure;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.EllipseFigure;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.LineConnectionFigure;
+import org.jhotdraw.draw.LineFigure;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.RectangleFigure;
+import org.jhotdraw.draw.TextFigure;
+import org.jhotdraw.draw.connector.ChopEllipseConnector;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.decoration.ArrowTip;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
+import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
+import org.jhotdraw.geom.BezierPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing and reading a drawing with
+ * {@link BinaryDOMStorableInputOutputFormat} and with
+ * {@link DOMStorableInputOutputFormat}.
+ * <p>
+ * The drawing holds {@code figures} rectangles, ellipses, lines, bezier
+ * figures and text figures, and a connection for every tenth figure.
+ * <p>
+ * The setup checks that the drawing read back from the binary form writes
+ * the same XML as the original drawing.
+ * Run the benchmark from the IDE through {@link #main}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class DrawingFormatBenchmark {
+
+    @Param({"100000"})
+    public int figures;
+
+    private final DrawFigureFactory factory = new DrawFigureFactory();
+    private final DOMStorableInputOutputFormat xmlFormat = new DOMStorableInputOutputFormat(factory);
+    private final BinaryDOMStorableInputOutputFormat binaryFormat = new BinaryDOMStorableInputOutputFormat(factory);
+    private Drawing drawing;
+    private byte[] xml;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        drawing = createDrawing(figures);
+        xml = writeXML();
+        binary = writeBinary();
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        xmlFormat.write(buf, readBinary());
+        if (!Arrays.equals(xml, buf.toByteArray())) {
+            throw new IOException("The binary form does not read back to the same drawing");
+        }
+    }
+
+    private static Drawing createDrawing(int n) {
+        Random r = new Random(n);
+        Drawing drawing = new QuadTreeDrawing();
+        Figure previous = null;
+        for (int i = 0; i < n; i++) {
+            double x = r.nextInt(10000);
+            double y = r.nextInt(10000);
+            Figure f;
+            switch (i % 5) {
+                case 0:
+                    f = new RectangleFigure(x, y, 40, 30);
+                    f.set(AttributeKeys.FILL_COLOR, new Color(r.nextInt(0xffffff)));
+                    break;
+                case 1:
+                    f = new EllipseFigure(x, y, 40, 30);
+                    f.set(AttributeKeys.STROKE_WIDTH, 2d);
+                    break;
+                case 2:
+                    LineFigure line = new LineFigure();
+                    line.setBounds(new Point2D.Double(x, y), new Point2D.Double(x + 50, y + 20));
+                    line.set(AttributeKeys.END_DECORATION, new ArrowTip());
+                    f = line;
+                    break;
+                case 3:
+                    BezierFigure b = new BezierFigure(true);
+                    b.addNode(new BezierPath.Node(x, y));
+                    b.addNode(new BezierPath.Node(x + 40, y));
+                    b.addNode(new BezierPath.Node(x + 20, y + 30));
+                    f = b;
+                    break;
+                default:
+                    TextFigure text = new TextFigure("Figure " + i);
+                    text.setBounds(new Point2D.Double(x, y), new Point2D.Double(x + 60, y + 20));
+                    f = text;
+                    break;
+            }
+            drawing.add(f);
+
+            if (i % 10 == 1 && previous != null) {
+                LineConnectionFigure c = new LineConnectionFigure();
+                c.setStartPoint(new Point2D.Double(0, 0));
+                c.setEndPoint(new Point2D.Double(1, 1));
+                c.setStartConnector(new ChopRectangleConnector(previous));
+                c.setEndConnector(new ChopEllipseConnector(f));
+                c.updateConnection();
+                drawing.add(c);
+            }
+            previous = f;
+        }
+        return drawing;
+    }
+
+    @Benchmark
+    public byte[] writeXML() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        xmlFormat.write(buf, drawing);
+        return buf.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] writeBinary() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        binaryFormat.write(buf, drawing);
+        return buf.toByteArray();
+    }
+
+    @Benchmark
+    public Drawing readXML() throws IOException {
+        Drawing d = new QuadTreeDrawing();
+        xmlFormat.read(new ByteArrayInputStream(xml), d, true);
+        return d;
+    }
+
+    @Benchmark
+    public Drawing readBinary() throws IOException {
+        Drawing d = new QuadTreeDrawing();
+        binaryFormat.read(new ByteArrayInputStream(binary), d, true);
+        return d;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DrawingFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
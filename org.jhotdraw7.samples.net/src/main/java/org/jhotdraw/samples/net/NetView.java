@@ -12,6 +12,7 @@ import org.jhotdraw.draw.DefaultDrawingEditor;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.action.ButtonFactory;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
 import org.jhotdraw.draw.io.InputFormat;
@@ -136,9 +137,13 @@ public class NetView extends AbstractView {
         DefaultDrawing drawing = new DefaultDrawing();
         DOMStorableInputOutputFormat ioFormat =
                 new DOMStorableInputOutputFormat(new NetFactory());
+        BinaryDOMStorableInputOutputFormat binaryFormat =
+                new BinaryDOMStorableInputOutputFormat(new NetFactory());
         drawing.addInputFormat(ioFormat);
+        drawing.addInputFormat(binaryFormat);
         drawing.addInputFormat(new TextInputFormat(new NodeFigure()));
         drawing.addOutputFormat(ioFormat);
+        drawing.addOutputFormat(binaryFormat);
         drawing.addOutputFormat(new ImageOutputFormat());
         return drawing;
     }
@@ -0,0 +1,124 @@
+/* @(#)NetFactoryRoundTripTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.net;
+
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.GroupFigure;
+import org.jhotdraw.draw.LineConnectionFigure;
+import org.jhotdraw.draw.TextAreaFigure;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.connector.LocatorConnector;
+import org.jhotdraw.draw.decoration.ArrowTip;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
+import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
+import org.jhotdraw.draw.locator.RelativeLocator;
+import org.jhotdraw.nanoxml.NanoXMLDOMOutput;
+import org.jhotdraw.samples.net.figures.NodeFigure;
+import org.jhotdraw.xml.DOMFactory;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes a drawing with every storable of {@link NetFactory} with the
+ * XML and the binary format, and checks that the drawing reads back
+ * unchanged.
+ */
+public class NetFactoryRoundTripTest {
+
+    @Test
+    public void testStreamingOutputIsIdenticalToDOMOutput() throws IOException {
+        NetFactory factory = new NetFactory();
+        Drawing drawing = createDrawing();
+        assertEquals(writeWithDOMOutput(factory, drawing), writeXML(factory, drawing));
+    }
+
+    @Test
+    public void testXMLRoundTrip() throws IOException {
+        NetFactory factory = new NetFactory();
+        String expected = writeXML(factory, createDrawing());
+        Drawing drawing = new DefaultDrawing();
+        new DOMStorableInputOutputFormat(factory).read(
+                new ByteArrayInputStream(expected.getBytes(StandardCharsets.UTF_8)), drawing, true);
+        assertEquals(expected, writeXML(factory, drawing));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        NetFactory factory = new NetFactory();
+        Drawing original = createDrawing();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new BinaryDOMStorableInputOutputFormat(factory).write(buf, original);
+        Drawing drawing = new DefaultDrawing();
+        new BinaryDOMStorableInputOutputFormat(factory).read(new ByteArrayInputStream(buf.toByteArray()), drawing, true);
+        assertEquals(writeXML(factory, original), writeXML(factory, drawing));
+    }
+
+    /**
+     * Creates a drawing which holds every storable of the factory.
+     */
+    private static Drawing createDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        NodeFigure[] nodes = new NodeFigure[3];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new NodeFigure();
+            nodes[i].willChange();
+            nodes[i].setText("Node " + i);
+            nodes[i].setBounds(new Point2D.Double(i * 100, 10), new Point2D.Double(i * 100 + 50, 30));
+            nodes[i].changed();
+            drawing.add(nodes[i]);
+        }
+        nodes[2].set(AttributeKeys.STROKE_TYPE, AttributeKeys.StrokeType.DOUBLE);
+
+        LineConnectionFigure link1 = new LineConnectionFigure();
+        link1.setStartPoint(new Point2D.Double(0, 0));
+        link1.setEndPoint(new Point2D.Double(1, 1));
+        link1.setStartConnector(new LocatorConnector(nodes[0], RelativeLocator.east()));
+        link1.setEndConnector(new LocatorConnector(nodes[1], RelativeLocator.west()));
+        link1.set(AttributeKeys.END_DECORATION, new ArrowTip());
+        link1.updateConnection();
+        drawing.add(link1);
+
+        LineConnectionFigure link2 = new LineConnectionFigure();
+        link2.setStartPoint(new Point2D.Double(0, 0));
+        link2.setEndPoint(new Point2D.Double(1, 1));
+        link2.setStartConnector(new ChopRectangleConnector(nodes[1]));
+        link2.setEndConnector(new ChopRectangleConnector(nodes[2]));
+        link2.updateConnection();
+        drawing.add(link2);
+
+        GroupFigure group = new GroupFigure();
+        TextAreaFigure textArea = new TextAreaFigure("Text area");
+        textArea.setBounds(new Point2D.Double(10, 100), new Point2D.Double(70, 140));
+        group.add(textArea);
+        drawing.add(group);
+        return drawing;
+    }
+
+    private static String writeWithDOMOutput(DOMFactory factory, Drawing drawing) throws IOException {
+        NanoXMLDOMOutput domo = new NanoXMLDOMOutput(factory);
+        domo.openElement(factory.getName(drawing));
+        drawing.write(domo);
+        domo.closeElement();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        domo.save(buf);
+        domo.dispose();
+        return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String writeXML(DOMFactory factory, Drawing drawing) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new DOMStorableInputOutputFormat(factory).write(buf, drawing);
+        return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
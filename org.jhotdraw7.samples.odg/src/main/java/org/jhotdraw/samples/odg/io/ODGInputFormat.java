@@ -3,10 +3,11 @@
  */
 package org.jhotdraw.samples.odg.io;
 
+import net.n3.nanoxml.BufferedXMLReader;
+import net.n3.nanoxml.CompactXMLBuilder;
 import net.n3.nanoxml.IXMLElement;
 import net.n3.nanoxml.IXMLParser;
 import net.n3.nanoxml.IXMLReader;
-import net.n3.nanoxml.StdXMLReader;
 import net.n3.nanoxml.XMLException;
 import net.n3.nanoxml.XMLParserFactory;
 import org.jhotdraw.annotation.Nullable;
@@ -40,13 +41,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.StringReader;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
@@ -81,6 +89,16 @@ public class ODGInputFormat implements InputFormat {
      */
     private IXMLElement document;
     private ODGStylesReader styles;
+    /**
+     * The number of threads which create figures in parallel.
+     */
+    private int parallelism = 1;
+    /**
+     * The pool which creates figures in parallel, while a document is being
+     * read.
+     */
+    @Nullable
+    private ForkJoinPool pool;
 
     /**
      * Creates a new instance.
@@ -88,6 +106,25 @@ public class ODGInputFormat implements InputFormat {
     public ODGInputFormat() {
     }
 
+    /**
+     * Sets the number of threads which create the figures of a drawing page
+     * in parallel. The figures are the same as if they had been created
+     * sequentially.
+     * <p>
+     * The default value is 1, which means that figures are created
+     * sequentially.
+     */
+    public void setParallelism(int newValue) {
+        parallelism = Math.max(1, newValue);
+    }
+
+    /**
+     * Returns the number of threads which create figures in parallel.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
     @Override
     public javax.swing.filechooser.FileFilter getFileFilter() {
         return new ExtensionFileFilter("Open Document Drawing (ODG)", "odg");
@@ -206,8 +243,9 @@ public class ODGInputFormat implements InputFormat {
             e.initCause(ex);
             throw e;
         }
-        IXMLReader reader = new StdXMLReader(in);
+        IXMLReader reader = new BufferedXMLReader(in);
         parser.setReader(reader);
+        parser.setBuilder(new CompactXMLBuilder());
         try {
             document = (IXMLElement) parser.parse();
         } catch (XMLException ex) {
@@ -256,7 +294,17 @@ public class ODGInputFormat implements InputFormat {
             throw new IOException("'office:drawing' element expected: " + drawingElem.getName());
         }
 
-        readDrawingElement(drawingElem);
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        try {
+            readDrawingElement(drawingElem);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        }
 
         if (replace) {
             drawing.removeAllChildren();
@@ -373,14 +421,67 @@ public class ODGInputFormat implements InputFormat {
         • Animations
         • Presentation notes
          */
-        for (IXMLElement child : elem.getChildren()) {
-            ODGFigure figure = readElement(child);
+        for (ODGFigure figure : readElements(elem.getChildren())) {
             if (figure != null) {
                 figures.add(figure);
             }
         }
     }
 
+    /**
+     * Reads the specified sibling elements.
+     * <p>
+     * If figures are created in parallel, the elements are split up into
+     * ranges, which are read by tasks in the pool.
+     *
+     * @return the figures in the same order as the elements. An entry is null
+     * if the element does not represent a figure.
+     */
+    private ODGFigure[] readElements(final List<IXMLElement> elems) throws IOException {
+        final ODGFigure[] result = new ODGFigure[elems.size()];
+        int taskCount = Math.min(result.length, parallelism * 4);
+        if (pool == null || taskCount < 2) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = readElement(elems.get(i));
+            }
+            return result;
+        }
+
+        ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>(taskCount);
+        for (int t = 0; t < taskCount; t++) {
+            final int from = (int) ((long) result.length * t / taskCount);
+            final int to = (int) ((long) result.length * (t + 1) / taskCount);
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    for (int i = from; i < to; i++) {
+                        result[i] = readElement(elems.get(i));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("ODGInputFormat interrupted.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return result;
+    }
+
     /**
      * Reads an ODG element.
      */
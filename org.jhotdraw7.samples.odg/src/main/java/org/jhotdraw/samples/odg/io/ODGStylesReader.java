@@ -3,10 +3,11 @@
  */
 package org.jhotdraw.samples.odg.io;
 
+import net.n3.nanoxml.BufferedXMLReader;
+import net.n3.nanoxml.CompactXMLBuilder;
 import net.n3.nanoxml.IXMLElement;
 import net.n3.nanoxml.IXMLParser;
 import net.n3.nanoxml.IXMLReader;
-import net.n3.nanoxml.StdXMLReader;
 import net.n3.nanoxml.XMLException;
 import net.n3.nanoxml.XMLParserFactory;
 import org.jhotdraw.annotation.Nullable;
@@ -148,8 +149,9 @@ public class ODGStylesReader {
             e.initCause(ex);
             throw e;
         }
-        IXMLReader reader = new StdXMLReader(in);
+        IXMLReader reader = new BufferedXMLReader(in);
         parser.setReader(reader);
+        parser.setBuilder(new CompactXMLBuilder());
         IXMLElement document;
         try {
             document = (IXMLElement) parser.parse();
@@ -12,6 +12,7 @@ import org.jhotdraw.draw.DefaultDrawingEditor;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.action.ButtonFactory;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
 import org.jhotdraw.draw.io.ImageOutputFormat;
 import org.jhotdraw.draw.io.InputFormat;
@@ -110,11 +111,15 @@ public class PertView extends AbstractView {
         DefaultDrawing drawing = new DefaultDrawing();
         DOMStorableInputOutputFormat ioFormat =
                 new DOMStorableInputOutputFormat(new PertFactory());
+        BinaryDOMStorableInputOutputFormat binaryFormat =
+                new BinaryDOMStorableInputOutputFormat(new PertFactory());
         LinkedList<InputFormat> inputFormats = new LinkedList<InputFormat>();
         inputFormats.add(ioFormat);
+        inputFormats.add(binaryFormat);
         drawing.setInputFormats(inputFormats);
         LinkedList<OutputFormat> outputFormats = new LinkedList<OutputFormat>();
         outputFormats.add(ioFormat);
+        outputFormats.add(binaryFormat);
         outputFormats.add(new ImageOutputFormat());
         drawing.setOutputFormats(outputFormats);
         return drawing;
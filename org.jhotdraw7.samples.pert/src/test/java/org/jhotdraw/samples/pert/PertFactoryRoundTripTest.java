@@ -0,0 +1,129 @@
+/* @(#)PertFactoryRoundTripTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.pert;
+
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.GroupFigure;
+import org.jhotdraw.draw.TextAreaFigure;
+import org.jhotdraw.draw.TextFigure;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.connector.LocatorConnector;
+import org.jhotdraw.draw.decoration.ArrowTip;
+import org.jhotdraw.draw.io.BinaryDOMStorableInputOutputFormat;
+import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
+import org.jhotdraw.draw.locator.RelativeLocator;
+import org.jhotdraw.nanoxml.NanoXMLDOMOutput;
+import org.jhotdraw.samples.pert.figures.DependencyFigure;
+import org.jhotdraw.samples.pert.figures.TaskFigure;
+import org.jhotdraw.xml.DOMFactory;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes a drawing with every storable of {@link PertFactory} with the
+ * XML and the binary format, and checks that the drawing reads back
+ * unchanged.
+ */
+public class PertFactoryRoundTripTest {
+
+    @Test
+    public void testStreamingOutputIsIdenticalToDOMOutput() throws IOException {
+        PertFactory factory = new PertFactory();
+        Drawing drawing = createDrawing();
+        assertEquals(writeWithDOMOutput(factory, drawing), writeXML(factory, drawing));
+    }
+
+    @Test
+    public void testXMLRoundTrip() throws IOException {
+        PertFactory factory = new PertFactory();
+        String expected = writeXML(factory, createDrawing());
+        Drawing drawing = new DefaultDrawing();
+        new DOMStorableInputOutputFormat(factory).read(
+                new ByteArrayInputStream(expected.getBytes(StandardCharsets.UTF_8)), drawing, true);
+        assertEquals(expected, writeXML(factory, drawing));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        PertFactory factory = new PertFactory();
+        Drawing original = createDrawing();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new BinaryDOMStorableInputOutputFormat(factory).write(buf, original);
+        Drawing drawing = new DefaultDrawing();
+        new BinaryDOMStorableInputOutputFormat(factory).read(new ByteArrayInputStream(buf.toByteArray()), drawing, true);
+        assertEquals(writeXML(factory, original), writeXML(factory, drawing));
+    }
+
+    /**
+     * Creates a drawing which holds every storable of the factory. List
+     * figures and separator lines are only stored as part of a task.
+     */
+    private static Drawing createDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        TaskFigure[] tasks = new TaskFigure[3];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new TaskFigure();
+            tasks[i].setName("Task " + i);
+            tasks[i].setDuration(i + 1);
+            tasks[i].setBounds(new Point2D.Double(i * 150, 10), new Point2D.Double(i * 150 + 100, 80));
+            drawing.add(tasks[i]);
+        }
+        tasks[1].set(AttributeKeys.FILL_COLOR, Color.orange);
+
+        DependencyFigure dep1 = new DependencyFigure();
+        dep1.setStartPoint(new Point2D.Double(0, 0));
+        dep1.setEndPoint(new Point2D.Double(1, 1));
+        dep1.setStartConnector(new ChopRectangleConnector(tasks[0]));
+        dep1.setEndConnector(new ChopRectangleConnector(tasks[1]));
+        dep1.updateConnection();
+        drawing.add(dep1);
+
+        DependencyFigure dep2 = new DependencyFigure();
+        dep2.setStartPoint(new Point2D.Double(0, 0));
+        dep2.setEndPoint(new Point2D.Double(1, 1));
+        dep2.setStartConnector(new LocatorConnector(tasks[1], RelativeLocator.east()));
+        dep2.setEndConnector(new LocatorConnector(tasks[2], RelativeLocator.west()));
+        dep2.set(AttributeKeys.START_DECORATION, new ArrowTip());
+        dep2.updateConnection();
+        drawing.add(dep2);
+
+        GroupFigure group = new GroupFigure();
+        TextFigure text = new TextFigure("Text");
+        text.setBounds(new Point2D.Double(10, 200), new Point2D.Double(60, 220));
+        group.add(text);
+        TextAreaFigure textArea = new TextAreaFigure("Text area");
+        textArea.setBounds(new Point2D.Double(100, 200), new Point2D.Double(160, 240));
+        group.add(textArea);
+        drawing.add(group);
+        return drawing;
+    }
+
+    private static String writeWithDOMOutput(DOMFactory factory, Drawing drawing) throws IOException {
+        NanoXMLDOMOutput domo = new NanoXMLDOMOutput(factory);
+        domo.openElement(factory.getName(drawing));
+        drawing.write(domo);
+        domo.closeElement();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        domo.save(buf);
+        domo.dispose();
+        return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String writeXML(DOMFactory factory, Drawing drawing) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new DOMStorableInputOutputFormat(factory).write(buf, drawing);
+        return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
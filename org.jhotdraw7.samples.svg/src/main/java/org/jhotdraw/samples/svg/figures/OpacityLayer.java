@@ -0,0 +1,257 @@
+/* @(#)OpacityLayer.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+package org.jhotdraw.samples.svg.figures;
+
+import org.jhotdraw.annotation.Nullable;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Composites an SVG figure with an opacity below 1.
+ * <p>
+ * The figure is rendered into an offscreen image, which is then drawn with
+ * the opacity of the figure. Each figure, which has been drawn with an
+ * opacity below 1, holds a layer.
+ * <p>
+ * If the image of the whole drawing area of the figure is small enough,
+ * the layer keeps it until the figure is invalidated, or until the image is
+ * requested for a different scale factor or different rendering hints.
+ * An unchanged figure is then not rendered again when it is repainted.
+ * The total size of the kept images is limited. When the limit is exceeded,
+ * the images of the least recently drawn layers are discarded.
+ * <p>
+ * Otherwise only the clipped part of the drawing area is rendered into a
+ * temporary image. The temporary images are taken from a shared pool, in
+ * which images are held in buckets of power-of-two sizes.
+ * <p>
+ * Different figures may be drawn concurrently by different threads, for
+ * example by the tiled rendering of {@link org.jhotdraw.draw.DefaultDrawingView},
+ * but a figure and thus its layer is only drawn by one thread at a time.
+ * The kept images and the pool are shared by all layers, and are therefore
+ * guarded by a lock. Since a layer may discard the kept image of another
+ * layer, while the other layer composites it, a kept image is never changed
+ * or put into the pool after it has been rendered.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class OpacityLayer {
+
+    /**
+     * Renders the figure into the layer.
+     */
+    interface Painter {
+
+        void paint(Graphics2D g);
+    }
+
+    /**
+     * The maximal number of pixels of the image of a single layer, which is
+     * kept.
+     */
+    private static final int MAX_LAYER_PIXELS = 1 << 20;
+    /**
+     * The maximal number of pixels of all kept images.
+     */
+    private static final long MAX_KEPT_PIXELS = 1L << 24;
+    /**
+     * The maximal number of pixels of the images in the pool.
+     */
+    private static final long MAX_POOLED_PIXELS = 1L << 22;
+    private static final int MIN_BUCKET_SIZE = 64;
+
+    private static final Object lock = new Object();
+    /**
+     * The layers which keep an image, in the order in which they have been
+     * drawn, with the number of pixels of their images.
+     */
+    private static final LinkedHashMap<OpacityLayer, Integer> keptLayers = new LinkedHashMap<OpacityLayer, Integer>(16, 0.75f, true);
+    private static long keptPixels;
+    private static final HashMap<Long, ArrayList<BufferedImage>> pool = new HashMap<Long, ArrayList<BufferedImage>>();
+    private static long pooledPixels;
+
+    // The following fields are guarded by lock
+    @Nullable
+    private BufferedImage image;
+    private double scaleX, scaleY;
+    @Nullable
+    private Rectangle2D.Double area;
+    @Nullable
+    private RenderingHints hints;
+
+    /**
+     * Draws the figure with the specified opacity.
+     *
+     * @param g           the graphics.
+     * @param drawingArea the drawing area of the figure.
+     * @param opacity     the opacity.
+     * @param painter     renders the figure.
+     */
+    public void draw(Graphics2D g, Rectangle2D.Double drawingArea, double opacity, Painter painter) {
+        AffineTransform tx = g.getTransform();
+        double sx = tx.getScaleX();
+        double sy = tx.getScaleY();
+        int width = Math.max(1, (int) ((2 + drawingArea.width) * sx));
+        int height = Math.max(1, (int) ((2 + drawingArea.height) * sy));
+        if ((long) width * height <= MAX_LAYER_PIXELS) {
+            RenderingHints h = g.getRenderingHints();
+            BufferedImage img;
+            synchronized (lock) {
+                img = (image != null && scaleX == sx && scaleY == sy
+                        && drawingArea.equals(area) && h.equals(hints)) ? image : null;
+                if (img != null) {
+                    keptLayers.get(this);
+                }
+            }
+            if (img == null) {
+                img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                render(img, sx, sy, drawingArea, h, painter);
+                keep(img, sx, sy, drawingArea, h);
+            }
+            composite(g, img, width, height, drawingArea, opacity);
+        } else {
+            Rectangle2D.Double clippedArea = (Rectangle2D.Double) drawingArea.clone();
+            Rectangle2D clipBounds = g.getClipBounds();
+            if (clipBounds != null) {
+                Rectangle2D.intersect(clippedArea, clipBounds, clippedArea);
+            }
+            if (!clippedArea.isEmpty()) {
+                width = Math.max(1, (int) ((2 + clippedArea.width) * sx));
+                height = Math.max(1, (int) ((2 + clippedArea.height) * sy));
+                BufferedImage buf = acquire(width, height);
+                render(buf, sx, sy, clippedArea, g.getRenderingHints(), painter);
+                composite(g, buf, width, height, clippedArea, opacity);
+                release(buf);
+            }
+        }
+    }
+
+    /**
+     * Discards the kept image.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            if (image != null) {
+                image = null;
+                Integer pixels = keptLayers.remove(this);
+                if (pixels != null) {
+                    keptPixels -= pixels;
+                }
+            }
+        }
+    }
+
+    private void keep(BufferedImage img, double sx, double sy, Rectangle2D.Double drawingArea, RenderingHints h) {
+        synchronized (lock) {
+            Integer oldPixels = keptLayers.remove(this);
+            if (oldPixels != null) {
+                keptPixels -= oldPixels;
+            }
+            image = img;
+            scaleX = sx;
+            scaleY = sy;
+            area = (Rectangle2D.Double) drawingArea.clone();
+            hints = h;
+            int pixels = img.getWidth() * img.getHeight();
+            keptLayers.put(this, pixels);
+            keptPixels += pixels;
+
+            // Discard the images of the least recently drawn layers
+            for (Iterator<Map.Entry<OpacityLayer, Integer>> i = keptLayers.entrySet().iterator(); keptPixels > MAX_KEPT_PIXELS && i.hasNext(); ) {
+                Map.Entry<OpacityLayer, Integer> entry = i.next();
+                if (entry.getKey() != this) {
+                    keptPixels -= entry.getValue();
+                    entry.getKey().image = null;
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    private static void render(BufferedImage buf, double sx, double sy, Rectangle2D.Double area, RenderingHints hints, Painter painter) {
+        Graphics2D gr = buf.createGraphics();
+        try {
+            gr.setRenderingHints(hints);
+            gr.scale(sx, sy);
+            gr.translate((int) -area.x, (int) -area.y);
+            painter.paint(gr);
+        } finally {
+            gr.dispose();
+        }
+    }
+
+    private static void composite(Graphics2D g, BufferedImage buf, int width, int height, Rectangle2D.Double area, double opacity) {
+        Composite savedComposite = g.getComposite();
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opacity));
+        int x = (int) area.x;
+        int y = (int) area.y;
+        g.drawImage(buf, x, y, x + 2 + (int) area.width, y + 2 + (int) area.height,
+                0, 0, width, height, null);
+        g.setComposite(savedComposite);
+    }
+
+    /**
+     * Takes a cleared image of at least the specified size from the pool.
+     */
+    private static BufferedImage acquire(int width, int height) {
+        int bucketWidth = bucketSize(width);
+        int bucketHeight = bucketSize(height);
+        BufferedImage buf = null;
+        synchronized (lock) {
+            ArrayList<BufferedImage> bucket = pool.get(bucketKey(bucketWidth, bucketHeight));
+            if (bucket != null && !bucket.isEmpty()) {
+                buf = bucket.remove(bucket.size() - 1);
+                pooledPixels -= (long) bucketWidth * bucketHeight;
+            }
+        }
+        if (buf == null) {
+            buf = new BufferedImage(bucketWidth, bucketHeight, BufferedImage.TYPE_INT_ARGB);
+        } else {
+            Graphics2D gr = buf.createGraphics();
+            gr.setComposite(AlphaComposite.Clear);
+            gr.fillRect(0, 0, width, height);
+            gr.dispose();
+        }
+        return buf;
+    }
+
+    /**
+     * Returns an image to the pool. The image is discarded, if the pool is
+     * full.
+     */
+    private static void release(BufferedImage buf) {
+        long pixels = (long) buf.getWidth() * buf.getHeight();
+        synchronized (lock) {
+            if (pooledPixels + pixels <= MAX_POOLED_PIXELS) {
+                Long key = bucketKey(buf.getWidth(), buf.getHeight());
+                ArrayList<BufferedImage> bucket = pool.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<BufferedImage>();
+                    pool.put(key, bucket);
+                }
+                bucket.add(buf);
+                pooledPixels += pixels;
+            }
+        }
+    }
+
+    private static int bucketSize(int size) {
+        return Math.max(MIN_BUCKET_SIZE, Integer.highestOneBit(size - 1) << 1);
+    }
+
+    private static Long bucketKey(int width, int height) {
+        return ((long) width << 32) | height;
+    }
+}
@@ -4,6 +4,7 @@
 
 package org.jhotdraw.samples.svg.figures;
 
+import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.AbstractAttributedFigure;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.samples.svg.SVGAttributeKeys;
@@ -12,15 +13,11 @@ import org.jhotdraw.util.ResourceBundleUtil;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
-import java.awt.AlphaComposite;
-import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.event.ActionEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
 import java.util.Collection;
 import java.util.LinkedList;
 
@@ -36,6 +33,11 @@ import static org.jhotdraw.samples.svg.SVGAttributeKeys.TRANSFORM;
  */
 public abstract class SVGAttributedFigure extends AbstractAttributedFigure {
     private static final long serialVersionUID = 1L;
+    /**
+     * This is used to composite the figure, if its opacity is below 1.
+     */
+    @Nullable
+    private transient OpacityLayer opacityLayer;
 
     /**
      * Creates a new instance.
@@ -49,31 +51,15 @@ public abstract class SVGAttributedFigure extends AbstractAttributedFigure {
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
             if (opacity != 1d) {
-                Rectangle2D.Double drawingArea = getDrawingArea();
-
-                Rectangle2D clipBounds = g.getClipBounds();
-                if (clipBounds != null) {
-                    Rectangle2D.intersect(drawingArea, clipBounds, drawingArea);
-                }
-
-                if (!drawingArea.isEmpty()) {
-
-                    BufferedImage buf = new BufferedImage(
-                            Math.max(1, (int) ((2 + drawingArea.width) * g.getTransform().getScaleX())),
-                            Math.max(1, (int) ((2 + drawingArea.height) * g.getTransform().getScaleY())),
-                            BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D gr = buf.createGraphics();
-                    gr.scale(g.getTransform().getScaleX(), g.getTransform().getScaleY());
-                    gr.translate((int) -drawingArea.x, (int) -drawingArea.y);
-                    gr.setRenderingHints(g.getRenderingHints());
-                    drawFigure(gr);
-                    gr.dispose();
-                    Composite savedComposite = g.getComposite();
-                    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opacity));
-                    g.drawImage(buf, (int) drawingArea.x, (int) drawingArea.y,
-                            2 + (int) drawingArea.width, 2 + (int) drawingArea.height, null);
-                    g.setComposite(savedComposite);
+                if (opacityLayer == null) {
+                    opacityLayer = new OpacityLayer();
                 }
+                opacityLayer.draw(g, getDrawingArea(), opacity, new OpacityLayer.Painter() {
+                    @Override
+                    public void paint(Graphics2D gr) {
+                        drawFigure(gr);
+                    }
+                });
             } else {
                 drawFigure(g);
             }
@@ -111,10 +97,27 @@ public abstract class SVGAttributedFigure extends AbstractAttributedFigure {
     public <T> void set(AttributeKey<T> key, T newValue) {
         if (key == TRANSFORM) {
             invalidate();
+        } else if (opacityLayer != null) {
+            opacityLayer.invalidate();
         }
         super.set(key, newValue);
     }
 
+    @Override
+    protected void invalidate() {
+        super.invalidate();
+        if (opacityLayer != null) {
+            opacityLayer.invalidate();
+        }
+    }
+
+    @Override
+    public SVGAttributedFigure clone() {
+        SVGAttributedFigure that = (SVGAttributedFigure) super.clone();
+        that.opacityLayer = null;
+        return that;
+    }
+
     @Override
     public Collection<Action> getActions(Point2D.Double p) {
         LinkedList<Action> actions = new LinkedList<Action>();
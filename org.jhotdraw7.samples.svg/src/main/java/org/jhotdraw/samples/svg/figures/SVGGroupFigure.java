@@ -3,6 +3,7 @@
  */
 package org.jhotdraw.samples.svg.figures;
 
+import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.GroupFigure;
@@ -10,11 +11,8 @@ import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
 import org.jhotdraw.samples.svg.SVGAttributeKeys;
 
-import java.awt.AlphaComposite;
-import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -35,6 +33,11 @@ public class SVGGroupFigure extends GroupFigure implements SVGFigure {
     private static final long serialVersionUID = 1L;
 
     private HashMap<AttributeKey<?>, Object> attributes = new HashMap<AttributeKey<?>, Object>();
+    /**
+     * This is used to composite the figure, if its opacity is below 1.
+     */
+    @Nullable
+    private transient OpacityLayer opacityLayer;
 
     /**
      * Creates a new instance.
@@ -78,31 +81,15 @@ public class SVGGroupFigure extends GroupFigure implements SVGFigure {
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
             if (opacity != 1d) {
-                Rectangle2D.Double drawingArea = getDrawingArea();
-
-                Rectangle2D clipBounds = g.getClipBounds();
-                if (clipBounds != null) {
-                    Rectangle2D.intersect(drawingArea, clipBounds, drawingArea);
-                }
-
-                if (!drawingArea.isEmpty()) {
-
-                    BufferedImage buf = new BufferedImage(
-                            Math.max(1, (int) ((2 + drawingArea.width) * g.getTransform().getScaleX())),
-                            Math.max(1, (int) ((2 + drawingArea.height) * g.getTransform().getScaleY())),
-                            BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D gr = buf.createGraphics();
-                    gr.scale(g.getTransform().getScaleX(), g.getTransform().getScaleY());
-                    gr.translate((int) -drawingArea.x, (int) -drawingArea.y);
-                    gr.setRenderingHints(g.getRenderingHints());
-                    super.draw(gr);
-                    gr.dispose();
-                    Composite savedComposite = g.getComposite();
-                    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opacity));
-                    g.drawImage(buf, (int) drawingArea.x, (int) drawingArea.y,
-                            2 + (int) drawingArea.width, 2 + (int) drawingArea.height, null);
-                    g.setComposite(savedComposite);
+                if (opacityLayer == null) {
+                    opacityLayer = new OpacityLayer();
                 }
+                opacityLayer.draw(g, getDrawingArea(), opacity, new OpacityLayer.Painter() {
+                    @Override
+                    public void paint(Graphics2D gr) {
+                        SVGGroupFigure.super.draw(gr);
+                    }
+                });
             } else {
                 super.draw(g);
             }
@@ -171,10 +158,19 @@ public class SVGGroupFigure extends GroupFigure implements SVGFigure {
         return buf.toString();
     }
 
+    @Override
+    protected void invalidate() {
+        super.invalidate();
+        if (opacityLayer != null) {
+            opacityLayer.invalidate();
+        }
+    }
+
     @Override
     public SVGGroupFigure clone() {
         SVGGroupFigure that = (SVGGroupFigure) super.clone();
         that.attributes = new HashMap<AttributeKey<?>, Object>(this.attributes);
+        that.opacityLayer = null;
         return that;
     }
 }
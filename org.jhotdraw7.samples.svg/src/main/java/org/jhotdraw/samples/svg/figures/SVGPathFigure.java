@@ -12,8 +12,7 @@ import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
 import org.jhotdraw.geom.Geom;
-import org.jhotdraw.geom.GrowStroke;
-import org.jhotdraw.geom.Shapes;
+import org.jhotdraw.geom.SegmentHitTester;
 import org.jhotdraw.samples.svg.Gradient;
 import org.jhotdraw.samples.svg.SVGAttributeKeys;
 import org.jhotdraw.samples.svg.SVGLabels;
@@ -25,9 +24,7 @@ import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.UndoableEdit;
-import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
-import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.Shape;
@@ -38,7 +35,6 @@ import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -76,6 +72,17 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
      */
     @Nullable
     private transient Shape cachedHitShape;
+    /**
+     * This is used to perform faster hit testing on the outline and on the
+     * interior of the path.
+     */
+    @Nullable
+    private transient SegmentHitTester cachedHitTester;
+    /**
+     * This is used to composite the figure, if its opacity is below 1.
+     */
+    @Nullable
+    private transient OpacityLayer opacityLayer;
     private static final boolean DEBUG = false;
 
     /**
@@ -100,31 +107,15 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         opacity = Math.min(Math.max(0d, opacity), 1d);
         if (opacity != 0d) {
             if (opacity != 1d) {
-                Rectangle2D.Double drawingArea = getDrawingArea();
-
-                Rectangle2D clipBounds = g.getClipBounds();
-                if (clipBounds != null) {
-                    Rectangle2D.intersect(drawingArea, clipBounds, drawingArea);
-                }
-
-                if (!drawingArea.isEmpty()) {
-
-                    BufferedImage buf = new BufferedImage(
-                            Math.max(1, (int) ((2 + drawingArea.width) * g.getTransform().getScaleX())),
-                            Math.max(1, (int) ((2 + drawingArea.height) * g.getTransform().getScaleY())),
-                            BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D gr = buf.createGraphics();
-                    gr.scale(g.getTransform().getScaleX(), g.getTransform().getScaleY());
-                    gr.translate((int) -drawingArea.x, (int) -drawingArea.y);
-                    gr.setRenderingHints(g.getRenderingHints());
-                    drawFigure(gr);
-                    gr.dispose();
-                    Composite savedComposite = g.getComposite();
-                    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opacity));
-                    g.drawImage(buf, (int) drawingArea.x, (int) drawingArea.y,
-                            2 + (int) drawingArea.width, 2 + (int) drawingArea.height, null);
-                    g.setComposite(savedComposite);
+                if (opacityLayer == null) {
+                    opacityLayer = new OpacityLayer();
                 }
+                opacityLayer.draw(g, getDrawingArea(), opacity, new OpacityLayer.Painter() {
+                    @Override
+                    public void paint(Graphics2D gr) {
+                        drawFigure(gr);
+                    }
+                });
             } else {
                 drawFigure(g);
             }
@@ -175,6 +166,10 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         cachedPath = null;
         cachedDrawingArea = null;
         cachedHitShape = null;
+        cachedHitTester = null;
+        if (opacityLayer != null) {
+            opacityLayer.invalidate();
+        }
     }
 
     protected Path2D.Double getPath() {
@@ -200,6 +195,13 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
         return cachedHitShape;
     }
 
+    protected SegmentHitTester getHitTester() {
+        if (cachedHitTester == null) {
+            cachedHitTester = new SegmentHitTester(getPath());
+        }
+        return cachedHitTester;
+    }
+
     // int count;
     @Override
     public Rectangle2D.Double getDrawingArea() {
@@ -239,22 +241,19 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
             }
         }
         boolean isClosed = getChild(0).get(PATH_CLOSED);
+        SegmentHitTester hitTester = getHitTester();
         if (isClosed && get(FILL_COLOR) == null && get(FILL_GRADIENT) == null) {
-            return getHitShape().contains(p);
+            // The hit stroke contains the point, if the point is near the outline
+            return hitTester.outlineContains(p.x, p.y,
+                    Math.max(1d, AttributeKeys.getStrokeTotalWidth(this)) / 2d);
         }
-        /*
-        return cachedPath.contains(p2);
-         */
         double tolerance = Math.max(2f, AttributeKeys.getStrokeTotalWidth(this) / 2d);
         if (isClosed || get(FILL_COLOR) != null || get(FILL_GRADIENT) != null) {
-            if (getPath().contains(p)) {
+            if (hitTester.contains(p.x, p.y)) {
                 return true;
             }
             double grow = AttributeKeys.getPerpendicularHitGrowth(this) /** 2d*/;
-            GrowStroke gs = new GrowStroke(grow,
-                    (AttributeKeys.getStrokeTotalWidth(this)
-                            * get(STROKE_MITER_LIMIT)));
-            if (gs.createStrokedShape(getPath()).contains(p)) {
+            if (hitTester.outlineContains(p.x, p.y, grow)) {
                 return true;
             } else {
                 if (isClosed) {
@@ -263,7 +262,7 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
             }
         }
         if (!isClosed) {
-            if (Shapes.outlineContains(getPath(), p, tolerance)) {
+            if (hitTester.outlineContains(p.x, p.y, tolerance)) {
                 return true;
             }
         }
@@ -528,6 +527,7 @@ public class SVGPathFigure extends AbstractAttributedCompositeFigure implements
     @Override
     public SVGPathFigure clone() {
         SVGPathFigure that = (SVGPathFigure) super.clone();
+        that.opacityLayer = null;
         return that;
     }
 
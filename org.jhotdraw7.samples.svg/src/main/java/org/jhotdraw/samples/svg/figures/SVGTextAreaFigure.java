@@ -5,6 +5,7 @@ package org.jhotdraw.samples.svg.figures;
 
 import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.LevelOfDetailPolicy;
 import org.jhotdraw.draw.TextHolderFigure;
 import org.jhotdraw.draw.handle.BoundsOutlineHandle;
 import org.jhotdraw.draw.handle.FontSizeHandle;
@@ -96,11 +97,20 @@ public class SVGTextAreaFigure extends SVGAttributedFigure
 
     @Override
     protected void drawFill(Graphics2D g) {
+        LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+        if (lod != null && !lod.isTextReadable(g, getFontSize())) {
+            lod.drawUnreadableText(g, getBounds(), getFontSize());
+            return;
+        }
         g.fill(getTextShape());
     }
 
     @Override
     protected void drawStroke(Graphics2D g) {
+        LevelOfDetailPolicy lod = (LevelOfDetailPolicy) g.getRenderingHint(LevelOfDetailPolicy.KEY);
+        if (lod != null && !lod.isTextReadable(g, getFontSize())) {
+            return;
+        }
         g.draw(getTextShape());
     }
     // SHAPE AND BOUNDS
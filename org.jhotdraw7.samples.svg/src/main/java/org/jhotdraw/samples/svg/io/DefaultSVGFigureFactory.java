@@ -8,6 +8,7 @@ import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.CompositeFigure;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.CompactBezierPath;
 import org.jhotdraw.samples.svg.Gradient;
 import org.jhotdraw.samples.svg.LinearGradient;
 import org.jhotdraw.samples.svg.RadialGradient;
@@ -36,10 +37,39 @@ import java.util.Map;
  */
 public class DefaultSVGFigureFactory implements SVGFigureFactory {
 
+    /**
+     * Whether {@link #createPath(CompactBezierPath[], Map)} creates the
+     * figure from the compact paths, or delegates to
+     * {@link #createPath(BezierPath[], Map)}.
+     */
+    private boolean isCompactPathFactory;
+
     /**
      * Creates a new instance.
+     * <p>
+     * Subclasses may override {@link #createPath(BezierPath[], Map)}. So
+     * that the override is called, the compact variant of
+     * {@code createPath} delegates to it, unless the subclass opts in with
+     * {@link #setCompactPathFactory}.
      */
     public DefaultSVGFigureFactory() {
+        isCompactPathFactory = getClass() == DefaultSVGFigureFactory.class;
+    }
+
+    /**
+     * Sets whether {@link #createPath(CompactBezierPath[], Map)} creates the
+     * figure from the compact paths, instead of converting them and
+     * delegating to {@link #createPath(BezierPath[], Map)}.
+     * <p>
+     * Subclasses which do not override the {@code BezierPath[]} variant of
+     * {@code createPath} should set this to true.
+     */
+    protected final void setCompactPathFactory(boolean newValue) {
+        isCompactPathFactory = newValue;
+    }
+
+    protected final boolean isCompactPathFactory() {
+        return isCompactPathFactory;
     }
 
     @Override
@@ -117,6 +147,22 @@ public class DefaultSVGFigureFactory implements SVGFigureFactory {
         return figure;
     }
 
+    @Override
+    public Figure createPath(CompactBezierPath[] beziers, Map<AttributeKey<?>, Object> a) {
+        if (!isCompactPathFactory) {
+            return SVGFigureFactory.super.createPath(beziers, a);
+        }
+        SVGPathFigure figure = new SVGPathFigure();
+        figure.removeAllChildren();
+        for (int i = 0; i < beziers.length; i++) {
+            SVGBezierFigure bf = new SVGBezierFigure();
+            bf.setBezierPath(beziers[i]);
+            figure.add(bf);
+        }
+        figure.setAttributes(a);
+        return figure;
+    }
+
     @Override
     public CompositeFigure createG(Map<AttributeKey<?>, Object> a) {
         SVGGroupFigure figure = new SVGGroupFigure();
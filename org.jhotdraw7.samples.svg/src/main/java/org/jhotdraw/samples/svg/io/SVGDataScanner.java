@@ -0,0 +1,269 @@
+/* @(#)SVGDataScanner.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.svg.io;
+
+/**
+ * Scans the values of SVG attributes, which consist of numbers, command
+ * letters and keywords, such as path data, point lists and transform lists.
+ * <p>
+ * Numbers are parsed directly from the characters of the value, without
+ * creating intermediate strings. White space and commas between the tokens
+ * are skipped.
+ * <p>
+ * The scanner copies the value into a character array, which is reused
+ * when the scanner is reset to a value of equal or smaller length.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class SVGDataScanner {
+
+    /**
+     * Powers of ten which can be represented exactly by a double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+    /**
+     * The largest mantissa which can be represented exactly by a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private char[] chars = new char[64];
+    private int length;
+    private int pos;
+    private String str = "";
+    /**
+     * Holds the value of the number, after a call to {@link #nextNumber} or
+     * {@link #nextFlag} returned true.
+     */
+    public double nval;
+
+    public SVGDataScanner() {
+    }
+
+    public SVGDataScanner(String str) {
+        reset(str);
+    }
+
+    /**
+     * Resets the scanner to the beginning of the specified value.
+     */
+    public void reset(String str) {
+        this.str = str;
+        length = str.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        str.getChars(0, length, chars, 0);
+        pos = 0;
+    }
+
+    /**
+     * Returns the value that is being scanned.
+     */
+    public String getString() {
+        return str;
+    }
+
+    /**
+     * Returns the current position in the value.
+     */
+    public int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Skips white space and commas.
+     *
+     * @return false if the end of the value has been reached.
+     */
+    public boolean skipSeparators() {
+        while (pos < length && (chars[pos] <= ' ' || chars[pos] == ',')) {
+            pos++;
+        }
+        return pos < length;
+    }
+
+    /**
+     * Returns the next character without consuming it, or -1 if the end of
+     * the value has been reached.
+     */
+    public int peek() {
+        return pos < length ? chars[pos] : -1;
+    }
+
+    /**
+     * Skips separators, and returns the next character, or -1 if the end of
+     * the value has been reached.
+     */
+    public int nextChar() {
+        return skipSeparators() ? chars[pos++] : -1;
+    }
+
+    /**
+     * Skips separators, and consumes the specified character.
+     *
+     * @return false if the next character is not the specified character.
+     */
+    public boolean skipChar(char c) {
+        if (skipSeparators() && chars[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips separators, and consumes the specified word, if it is not
+     * followed by another letter.
+     *
+     * @return false if the next word is not the specified word.
+     */
+    public boolean skipWord(String word) {
+        if (!skipSeparators()) {
+            return false;
+        }
+        int n = word.length();
+        if (pos + n > length
+                || pos + n < length && Character.isLetter(chars[pos + n])) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (chars[pos + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        pos += n;
+        return true;
+    }
+
+    /**
+     * Skips separators, and returns true if the next character starts a
+     * number.
+     */
+    public boolean isNumberAhead() {
+        if (!skipSeparators()) {
+            return false;
+        }
+        char c = chars[pos];
+        return c >= '0' && c <= '9' || c == '.' || c == '-' || c == '+';
+    }
+
+    /**
+     * Skips separators, and scans a number. The value of the number is
+     * stored in {@link #nval}.
+     * <p>
+     * A number ends at the first character which can not be part of it.
+     * Therefore, in {@code "1.5.5-2"} the numbers 1.5, .5 and -2 are found.
+     *
+     * @return false if the next token is not a number. The position is
+     * not changed in this case.
+     */
+    public boolean nextNumber() {
+        if (!skipSeparators()) {
+            return false;
+        }
+        int start = pos;
+        int i = pos;
+        boolean isNegative = false;
+        if (chars[i] == '-' || chars[i] == '+') {
+            isNegative = chars[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean isExact = true;
+        for (; i < length && chars[i] >= '0' && chars[i] <= '9'; i++) {
+            hasDigits = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (chars[i] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                isExact = false;
+            }
+        }
+        if (i < length && chars[i] == '.') {
+            i++;
+            for (; i < length && chars[i] >= '0' && chars[i] <= '9'; i++) {
+                hasDigits = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (chars[i] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    isExact = false;
+                }
+            }
+        }
+        if (!hasDigits) {
+            return false;
+        }
+        if (i < length && (chars[i] == 'e' || chars[i] == 'E')) {
+            int j = i + 1;
+            boolean isNegativeExponent = false;
+            if (j < length && (chars[j] == '-' || chars[j] == '+')) {
+                isNegativeExponent = chars[j] == '-';
+                j++;
+            }
+            if (j < length && chars[j] >= '0' && chars[j] <= '9') {
+                int e = 0;
+                for (; j < length && chars[j] >= '0' && chars[j] <= '9'; j++) {
+                    if (e < 10000) {
+                        e = e * 10 + (chars[j] - '0');
+                    }
+                }
+                exponent += isNegativeExponent ? -e : e;
+                i = j;
+            }
+        }
+        pos = i;
+
+        double value;
+        if (isExact && mantissa <= MAX_EXACT_MANTISSA
+                && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact, so a single operation yields the
+            // correctly rounded result.
+            value = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            nval = isNegative ? -value : value;
+        } else {
+            nval = Double.parseDouble(new String(chars, start, i - start));
+        }
+        return true;
+    }
+
+    /**
+     * Skips separators, and scans a flag. A flag is a single '0' or '1'
+     * character, which does not need to be separated from the next number.
+     * For compatibility with lenient writers, a flag which is followed by a
+     * decimal point is scanned as a number. The value of the flag is stored
+     * in {@link #nval}.
+     *
+     * @return false if the next token is not a flag or a number.
+     */
+    public boolean nextFlag() {
+        if (!skipSeparators()) {
+            return false;
+        }
+        if ((chars[pos] == '0' || chars[pos] == '1')
+                && (pos + 1 == length || chars[pos + 1] != '.')) {
+            nval = chars[pos++] - '0';
+            return true;
+        }
+        return nextNumber();
+    }
+}
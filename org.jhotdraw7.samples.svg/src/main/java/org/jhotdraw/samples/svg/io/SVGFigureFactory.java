@@ -9,6 +9,7 @@ import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.CompositeFigure;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.CompactBezierPath;
 import org.jhotdraw.samples.svg.Gradient;
 
 import javax.swing.text.StyledDocument;
@@ -58,6 +59,22 @@ public interface SVGFigureFactory {
             BezierPath[] beziers,
             Map<AttributeKey<?>, Object> attributes);
 
+    /**
+     * Creates a path figure from compact bezier paths.
+     * <p>
+     * The default implementation converts the paths into {@link BezierPath}
+     * instances and delegates to {@link #createPath(BezierPath[], Map)}.
+     */
+    public default Figure createPath(
+            CompactBezierPath[] beziers,
+            Map<AttributeKey<?>, Object> attributes) {
+        BezierPath[] paths = new BezierPath[beziers.length];
+        for (int i = 0; i < beziers.length; i++) {
+            paths[i] = beziers[i].toBezierPath();
+        }
+        return createPath(paths, attributes);
+    }
+
     public CompositeFigure createG(Map<AttributeKey<?>, Object> attributes);
 
     public Figure createText(
@@ -3,11 +3,14 @@
  */
 package org.jhotdraw.samples.svg.io;
 
+import net.n3.nanoxml.BufferedXMLReader;
+import net.n3.nanoxml.IXMLBuilder;
 import net.n3.nanoxml.IXMLElement;
 import net.n3.nanoxml.IXMLParser;
 import net.n3.nanoxml.IXMLReader;
-import net.n3.nanoxml.StdXMLReader;
+import net.n3.nanoxml.XMLElement;
 import net.n3.nanoxml.XMLException;
+import net.n3.nanoxml.XMLParseException;
 import net.n3.nanoxml.XMLParserFactory;
 import org.jhotdraw.annotation.Nullable;
 import org.jhotdraw.draw.AttributeKey;
@@ -17,9 +20,9 @@ import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.CompactBezierPath;
 import org.jhotdraw.gui.filechooser.ExtensionFileFilter;
 import org.jhotdraw.io.Base64;
-import org.jhotdraw.io.StreamPosTokenizer;
 import org.jhotdraw.nanoxml.css.NanoXMLStyleManager;
 import org.jhotdraw.samples.svg.Gradient;
 import org.jhotdraw.samples.svg.figures.SVGFigure;
@@ -49,21 +52,29 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static org.jhotdraw.samples.svg.SVGAttributeKeys.FILL_COLOR;
 import static org.jhotdraw.samples.svg.SVGAttributeKeys.FILL_GRADIENT;
@@ -148,9 +159,9 @@ public class SVGInputFormat implements InputFormat {
     @Nullable
     private HashMap<IXMLElement, Object> elementObjects;
     /**
-     * Tokenizer for parsing SVG path expressions.
+     * Scanner for parsing SVG path data and point lists.
      */
-    private StreamPosTokenizer toPathTokenizer;
+    private SVGDataScanner scanner = new SVGDataScanner();
     /**
      * FontFormatter for parsing font family names.
      */
@@ -223,6 +234,535 @@ public class SVGInputFormat implements InputFormat {
      */
     @Nullable
     private IXMLElement document;
+    /**
+     * Whether documents are read in streaming mode.
+     */
+    private boolean isStreaming;
+    /**
+     * Whether the document that is currently being read is read in streaming
+     * mode.
+     */
+    private boolean isStreamingDocument;
+    /**
+     * The number of threads which create figures in parallel.
+     */
+    private int parallelism = 1;
+    /**
+     * The pool which creates figures in parallel, while a document is being
+     * read. This is null if figures are created sequentially, and in
+     * workers.
+     */
+    @Nullable
+    private ForkJoinPool pool;
+    /**
+     * Holds the tasks which have been submitted to the pool, and whose
+     * element objects have not been merged yet.
+     */
+    @Nullable
+    private ArrayList<ReadTask> pendingTasks;
+    /**
+     * In a worker, holds the element objects of the reader which created the
+     * worker. The reader does not change them while the worker is running.
+     */
+    @Nullable
+    private HashMap<IXMLElement, Object> sharedElementObjects;
+    /**
+     * The approximate number of elements which are read by a single task.
+     */
+    private static final int TASK_WEIGHT = 256;
+
+    /**
+     * Thrown in streaming mode, when an element references an element that
+     * has not been read yet, or that has already been discarded.
+     */
+    private static class UnresolvedReferenceException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public UnresolvedReferenceException(String href) {
+            super("SVGInputFormat can not resolve reference " + href + " in streaming mode.");
+        }
+    }
+
+    /**
+     * Converts a streamed "svg", "g" or "a" element into a figure. The
+     * figure is created when the attributes of the element have been read,
+     * and its children are added to the figure one by one while the document
+     * is being parsed.
+     */
+    private class StreamedContainer {
+
+        private final IXMLElement elem;
+        @Nullable
+        private CompositeFigure g;
+        /**
+         * The view box transform of an "svg" element. This is null for "g" and
+         * "a" elements.
+         */
+        @Nullable
+        private AffineTransform viewBoxTransform;
+        @Nullable
+        private String href;
+        @Nullable
+        private String target;
+
+        public StreamedContainer(IXMLElement elem) throws IOException {
+            this.elem = elem;
+            if (isSVGElement(elem, "svg")) {
+                viewBoxTransform = pushViewport(elem);
+            } else if (isSVGElement(elem, "g")) {
+                g = createGFigure(elem);
+            } else {
+                HashMap<AttributeKey<?>, Object> a = new HashMap<AttributeKey<?>, Object>();
+                readCoreAttributes(elem, a);
+                g = factory.createG(a);
+                href = readAttribute(elem, "xlink:href", null);
+                if (href == null) {
+                    href = readAttribute(elem, "href", null);
+                }
+                target = readAttribute(elem, "target", null);
+            }
+        }
+
+        public void add(IXMLElement child, @Nullable Figure childFigure) {
+            if (viewBoxTransform != null) {
+                addSVGChild(child, childFigure, viewBoxTransform);
+            } else if (isSVGElement(elem, "a")) {
+                addAChild(g, child, childFigure, href, target);
+            } else {
+                addGChild(g, child, childFigure);
+            }
+        }
+
+        @Nullable
+        public Figure end() throws IOException {
+            Figure f;
+            if (viewBoxTransform != null) {
+                viewportStack.pop();
+                f = null;
+            } else if (isSVGElement(elem, "a")) {
+                f = (g.getChildCount() == 1) ? g.getChild(0) : g;
+            } else {
+                transformGFigure(elem, g);
+                f = g;
+            }
+            if (f instanceof SVGFigure && ((SVGFigure) f).isEmpty()) {
+                f = null;
+            }
+            return f;
+        }
+    }
+
+    /**
+     * Builds the document in streaming mode.
+     * <p>
+     * The outermost "svg" element, and the "svg", "g" and "a" elements which
+     * are nested directly inside of it, are streamed: their figures are
+     * created before their children are parsed. All other elements are parsed
+     * into a DOM subtree, which is converted into a figure as soon as the
+     * element ends. Subtrees of definition elements are retained, so that they
+     * can be referenced by subsequent elements. All other subtrees are
+     * discarded.
+     */
+    private class StreamingBuilder implements IXMLBuilder {
+
+        private final IXMLElement prototype = new XMLElement();
+        /**
+         * The current element and its ancestors.
+         */
+        private final ArrayDeque<IXMLElement> stack = new ArrayDeque<IXMLElement>();
+        /**
+         * The streamed elements which are ancestors of the current element.
+         */
+        private final ArrayDeque<StreamedContainer> containers = new ArrayDeque<StreamedContainer>();
+        @Nullable
+        private IXMLElement root;
+        /**
+         * The outermost "svg" element.
+         */
+        @Nullable
+        private IXMLElement svg;
+
+        @Override
+        public void startBuilding(String systemID, int lineNr) {
+            stack.clear();
+            containers.clear();
+            root = null;
+            svg = null;
+        }
+
+        @Override
+        public void newProcessingInstruction(String target, Reader reader) {
+            // nothing to do
+        }
+
+        @Override
+        public void startElement(String name, String nsPrefix, String nsURI, String systemID, int lineNr) {
+            String fullName = (nsPrefix == null) ? name : nsPrefix + ':' + name;
+            IXMLElement elem = prototype.createElement(fullName, nsURI, systemID, lineNr);
+            if (stack.isEmpty()) {
+                root = elem;
+            } else {
+                stack.peek().addChild(elem);
+            }
+            stack.push(elem);
+        }
+
+        @Override
+        public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type)
+                throws Exception {
+            String fullName = (nsPrefix == null) ? key : nsPrefix + ':' + key;
+            IXMLElement top = stack.peek();
+            if (top.hasAttribute(fullName)) {
+                throw new XMLParseException(top.getSystemID(), top.getLineNr(),
+                        "Duplicate attribute: " + key);
+            }
+            if (nsPrefix != null) {
+                top.setAttribute(fullName, nsURI, value);
+            } else {
+                top.setAttribute(fullName, value);
+            }
+        }
+
+        @Override
+        public void elementAttributesProcessed(String name, String nsPrefix, String nsURI)
+                throws Exception {
+            IXMLElement elem = stack.peek();
+            boolean isStreamed;
+            if (svg == null) {
+                isStreamed = isSVGElement(elem, "svg");
+                if (isStreamed) {
+                    svg = elem;
+                }
+            } else {
+                isStreamed = !containers.isEmpty()
+                        && elem.getParent() == containers.peek().elem
+                        && (isSVGElement(elem, "svg") || isSVGElement(elem, "g") || isSVGElement(elem, "a"));
+            }
+            if (isStreamed) {
+                flattenStyle(elem);
+                containers.push(new StreamedContainer(elem));
+            }
+        }
+
+        @Override
+        public void endElement(String name, String nsPrefix, String nsURI)
+                throws Exception {
+            IXMLElement elem = stack.pop();
+            if (elem.getChildrenCount() == 1) {
+                IXMLElement child = elem.getChildAtIndex(0);
+                if (child.getName() == null) {
+                    elem.setContent(child.getContent());
+                    elem.removeChildAtIndex(0);
+                }
+            }
+
+            if (containers.isEmpty()) {
+                return;
+            }
+            StreamedContainer container = containers.peek();
+            if (container.elem == elem) {
+                containers.pop();
+                Figure f = container.end();
+                if (!containers.isEmpty()) {
+                    containers.peek().add(elem, f);
+                    elem.getParent().removeChild(elem);
+                }
+            } else if (elem.getParent() == container.elem) {
+                flattenStyles(elem);
+                identifyElements(elem);
+                container.add(elem, readElement(elem));
+                if (!isDefinition(elem)) {
+                    forgetElements(elem);
+                    elem.getParent().removeChild(elem);
+                }
+            }
+        }
+
+        @Override
+        public void addPCData(Reader reader, String systemID, int lineNr) {
+            IXMLElement top = stack.peek();
+            if (top == null
+                    || !containers.isEmpty() && containers.peek().elem == top) {
+                // Skip the white space between the children of streamed elements
+                return;
+            }
+            StringBuilder buf = new StringBuilder();
+            char[] cbuf = new char[2048];
+            try {
+                for (int count = reader.read(cbuf); count != -1; count = reader.read(cbuf)) {
+                    buf.append(cbuf, 0, count);
+                }
+            } catch (IOException e) {
+                // we keep the data that we have read so far
+            }
+            IXMLElement elem = prototype.createElement(null, systemID, lineNr);
+            elem.setContent(buf.toString());
+            top.addChild(elem);
+        }
+
+        @Override
+        @Nullable
+        public Object getResult() {
+            return root;
+        }
+    }
+
+    /**
+     * Returns true if the element defines an object that can be referenced
+     * by other elements, or whose purpose is to be referenced. These
+     * elements are kept in streaming mode.
+     */
+    private static boolean isDefinition(IXMLElement elem) {
+        return isSVGElement(elem, "defs")
+                || isSVGElement(elem, "linearGradient")
+                || isSVGElement(elem, "radialGradient")
+                || isSVGElement(elem, "solidColor")
+                || isSVGElement(elem, "style")
+                || isSVGElement(elem, "symbol")
+                || isSVGElement(elem, "pattern")
+                || isSVGElement(elem, "clipPath")
+                || isSVGElement(elem, "mask")
+                || isSVGElement(elem, "marker");
+    }
+
+    /**
+     * Reads a range of sibling elements with a worker, when figures are
+     * created in parallel.
+     */
+    private class ReadTask implements Callable<Figure[]> {
+
+        private final List<IXMLElement> elems;
+        private final int from;
+        private final int to;
+        private final SVGInputFormat worker;
+        @Nullable
+        private Future<Figure[]> future;
+
+        public ReadTask(List<IXMLElement> elems, int from, int to) {
+            this.elems = elems;
+            this.from = from;
+            this.to = to;
+            this.worker = createWorker();
+        }
+
+        @Override
+        public Figure[] call() throws IOException {
+            Figure[] result = new Figure[to - from];
+            for (int i = from; i < to; i++) {
+                result[i - from] = worker.readElement(elems.get(i));
+            }
+            return result;
+        }
+
+        /**
+         * Waits until the task is done, and returns the figures.
+         */
+        public Figure[] getResult() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("SVGInputFormat interrupted.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Creates a worker which reads elements in a task. The worker shares the
+     * read-only state of the document with this reader, and gets its own
+     * copy of the state which is changed while elements are being read.
+     */
+    private SVGInputFormat createWorker() {
+        SVGInputFormat worker = new SVGInputFormat(factory);
+        worker.url = url;
+        worker.document = document;
+        worker.identifiedElements = identifiedElements;
+        worker.styleManager = styleManager;
+        worker.elementObjects = new HashMap<IXMLElement, Object>();
+        worker.sharedElementObjects = elementObjects;
+        worker.viewportStack = new Stack<Viewport>();
+        worker.viewportStack.addAll(viewportStack);
+        return worker;
+    }
+
+    /**
+     * Returns the number of elements in the subtree of the specified element,
+     * or -1 if the subtree can not be read independently from the elements
+     * which precede it. This is the case if the subtree contains definitions,
+     * which change the objects that later elements can reference, or nested
+     * "svg" elements, which change the viewport attributes of the drawing.
+     */
+    private int getIndependentWeight(IXMLElement elem, @Nullable HashSet<IXMLElement> visited) {
+        if (elem.getNamespace() != null
+                && !elem.getNamespace().equals(SVG_NAMESPACE)) {
+            return 1;
+        }
+        if (isDefinition(elem) || isSVGElement(elem, "svg")) {
+            return -1;
+        }
+        int weight = 1;
+        if (isSVGElement(elem, "use")) {
+            // A use element reads the referenced element again
+            String href = readAttribute(elem, "xlink:href", null);
+            IXMLElement refElem = (href != null && href.startsWith("#"))
+                    ? identifiedElements.get(href.substring(1)) : null;
+            if (refElem != null) {
+                if (visited == null) {
+                    visited = new HashSet<IXMLElement>();
+                }
+                if (!visited.add(refElem)) {
+                    return -1;
+                }
+                int refWeight = getIndependentWeight(refElem, visited);
+                visited.remove(refElem);
+                if (refWeight < 0) {
+                    return -1;
+                }
+                weight += refWeight;
+            }
+        }
+        for (IXMLElement child : elem.getChildren()) {
+            int childWeight = getIndependentWeight(child, visited);
+            if (childWeight < 0) {
+                return -1;
+            }
+            weight += childWeight;
+        }
+        return weight;
+    }
+
+    /**
+     * Reads the specified sibling elements.
+     * <p>
+     * If figures are created in parallel, runs of independent elements are
+     * read by tasks in the pool. Elements which are not independent are read
+     * by this reader, after all submitted tasks are done. Large independent
+     * "g" and "a" elements are read by this reader as well, so that their
+     * children can be read in parallel. This reader never changes
+     * elementObjects while a task is running.
+     *
+     * @return the figures in the same order as the elements. An entry is null
+     * if the element does not represent a figure.
+     */
+    private Figure[] readElements(List<IXMLElement> elems) throws IOException {
+        Figure[] result = new Figure[elems.size()];
+        if (pool == null) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = readElement(elems.get(i));
+            }
+            return result;
+        }
+
+        ArrayList<ReadTask> tasks = new ArrayList<ReadTask>();
+        int batchStart = 0;
+        int batchWeight = 0;
+        for (int i = 0; i < result.length; i++) {
+            IXMLElement elem = elems.get(i);
+            int weight = getIndependentWeight(elem, null);
+            if (weight < 0 || weight > TASK_WEIGHT
+                    && (isSVGElement(elem, "g") || isSVGElement(elem, "a"))) {
+                submitTask(tasks, elems, batchStart, i);
+                // Reading the element on this thread changes elementObjects,
+                // which the workers of the pending tasks read
+                synchronizeTasks();
+                result[i] = readElement(elem);
+                batchStart = i + 1;
+                batchWeight = 0;
+            } else {
+                batchWeight += weight;
+                if (batchWeight >= TASK_WEIGHT) {
+                    submitTask(tasks, elems, batchStart, i + 1);
+                    batchStart = i + 1;
+                    batchWeight = 0;
+                }
+            }
+        }
+        submitTask(tasks, elems, batchStart, result.length);
+
+        for (ReadTask task : tasks) {
+            Figure[] figures = task.getResult();
+            System.arraycopy(figures, 0, result, task.from, figures.length);
+        }
+        return result;
+    }
+
+    /**
+     * Submits a task which reads the specified range of elements.
+     */
+    private void submitTask(ArrayList<ReadTask> tasks, List<IXMLElement> elems, int from, int to) {
+        if (from < to) {
+            ReadTask task = new ReadTask(elems, from, to);
+            task.future = pool.submit(task);
+            tasks.add(task);
+            pendingTasks.add(task);
+        }
+    }
+
+    /**
+     * Waits until all submitted tasks are done, and merges the element
+     * objects that their workers have created. The objects are only merged
+     * when no worker is running anymore, because the workers read
+     * elementObjects.
+     * <p>
+     * This method must be called before this reader changes elementObjects
+     * while tasks are pending.
+     */
+    private void synchronizeTasks() throws IOException {
+        for (ReadTask task : pendingTasks) {
+            task.getResult();
+        }
+        for (ReadTask task : pendingTasks) {
+            elementObjects.putAll(task.worker.elementObjects);
+        }
+        pendingTasks.clear();
+    }
+
+    /**
+     * Returns the object which has been created from the element with the
+     * specified id, or null.
+     */
+    @Nullable
+    private Object getElementObject(String id) {
+        IXMLElement elem = identifiedElements.get(id);
+        if (elem == null) {
+            return null;
+        }
+        Object obj = elementObjects.get(elem);
+        if (obj == null && sharedElementObjects != null) {
+            obj = sharedElementObjects.get(elem);
+        }
+        return obj;
+    }
+
+    /**
+     * Removes an element and its descendants from the hashtables
+     * {@code identifiedElements} and {@code elementObjects}.
+     */
+    private void forgetElements(IXMLElement elem) {
+        String id = elem.getAttribute("id", "");
+        if (identifiedElements.get(id) == elem) {
+            identifiedElements.remove(id);
+        }
+        id = elem.getAttribute("xml:id", "");
+        if (identifiedElements.get(id) == elem) {
+            identifiedElements.remove(id);
+        }
+        elementObjects.remove(elem);
+
+        for (IXMLElement child : elem.getChildren()) {
+            forgetElements(child);
+        }
+    }
 
     /**
      * Creates a new instance.
@@ -254,6 +794,11 @@ public class SVGInputFormat implements InputFormat {
         BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
         try {
             read(in, drawing, replace);
+        } catch (UnresolvedReferenceException e) {
+            // The file uses forward references, read it again into a DOM
+            in.close();
+            in = new BufferedInputStream(new FileInputStream(file));
+            readDOM(in, drawing, replace);
         } finally {
             in.close();
         }
@@ -265,12 +810,75 @@ public class SVGInputFormat implements InputFormat {
         InputStream in = url.openStream();
         try {
             read(in, drawing, replace);
+        } catch (UnresolvedReferenceException e) {
+            // The file uses forward references, read it again into a DOM
+            in.close();
+            in = url.openStream();
+            readDOM(in, drawing, replace);
         } finally {
             in.close();
         }
         this.url = null;
     }
 
+    /**
+     * Sets whether documents are read in streaming mode.
+     * <p>
+     * In streaming mode, figures are created while the document is being
+     * parsed. The reader only keeps the {@code defs}, gradient, solid color,
+     * style, symbol, pattern, clip path, mask and marker elements, and the
+     * ancestors of the current element in memory.
+     * All other elements are discarded as soon as their figures have been
+     * created. This allows to read SVG files which are too large to be held
+     * in memory as a DOM.
+     * <p>
+     * Streaming mode has the following limitations:
+     * <ul>
+     * <li>CSS rules only apply to elements which follow the {@code style}
+     * element.</li>
+     * <li>An {@code xlink:href} reference can only be resolved if it points
+     * to a preceding definition element, or to a preceding element in the same
+     * top level shape. When reading from a {@code File} or an {@code URL},
+     * the reader falls back to DOM mode if a reference can not be resolved.
+     * When reading from an {@code InputStream}, an {@code IOException} is
+     * thrown.</li>
+     * </ul>
+     * The default value is false.
+     */
+    public void setStreaming(boolean newValue) {
+        isStreaming = newValue;
+    }
+
+    /**
+     * Returns true if documents are read in streaming mode.
+     */
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
+    /**
+     * Sets the number of threads which create figures in parallel, after
+     * a document has been parsed into a DOM.
+     * <p>
+     * The figures are the same as if they had been created sequentially.
+     * Elements which can not be read independently from their preceding
+     * elements, such as definitions and nested "svg" elements, are read one at
+     * a time, after all preceding elements have been read.
+     * <p>
+     * This setting has no effect in streaming mode. The default value is 1,
+     * which means that figures are created sequentially.
+     */
+    public void setParallelism(int newValue) {
+        parallelism = Math.max(1, newValue);
+    }
+
+    /**
+     * Returns the number of threads which create figures in parallel.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
     /**
      * This is the main reading method.
      *
@@ -282,11 +890,31 @@ public class SVGInputFormat implements InputFormat {
      */
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
+        read(in, drawing, replace, isStreaming);
+    }
+
+    /**
+     * Reads the input stream with streaming mode turned off. The input
+     * stream is read with {@link #read(InputStream, Drawing, boolean)}, so
+     * that subclasses can decode it.
+     */
+    private void readDOM(InputStream in, Drawing drawing, boolean replace) throws IOException {
+        boolean wasStreaming = isStreaming;
+        isStreaming = false;
+        try {
+            read(in, drawing, replace);
+        } finally {
+            isStreaming = wasStreaming;
+        }
+    }
+
+    private void read(InputStream in, Drawing drawing, boolean replace, boolean streaming) throws IOException {
         long start;
         if (DEBUG) {
             start = System.currentTimeMillis();
         }
         this.figures = new LinkedList<Figure>();
+        this.isStreamingDocument = streaming;
         IXMLParser parser;
         try {
             parser = XMLParserFactory.createDefaultXMLParser();
@@ -298,14 +926,23 @@ public class SVGInputFormat implements InputFormat {
         if (DEBUG) {
             System.out.println("SVGInputFormat parser created " + (System.currentTimeMillis() - start));
         }
-        IXMLReader reader = new StdXMLReader(in);
+        IXMLReader reader = new BufferedXMLReader(in);
         parser.setReader(reader);
         if (DEBUG) {
             System.out.println("SVGInputFormat reader created " + (System.currentTimeMillis() - start));
         }
+        StreamingBuilder streamingBuilder = null;
+        if (streaming) {
+            initStorageContext(null);
+            streamingBuilder = new StreamingBuilder();
+            parser.setBuilder(streamingBuilder);
+        }
         try {
             document = (IXMLElement) parser.parse();
         } catch (XMLException ex) {
+            if (ex.getException() instanceof IOException) {
+                throw (IOException) ex.getException();
+            }
             IOException e = new IOException(ex.getMessage());
             e.initCause(ex);
             throw e;
@@ -314,49 +951,14 @@ public class SVGInputFormat implements InputFormat {
             System.out.println("SVGInputFormat document created " + (System.currentTimeMillis() - start));
         }
 
-        // Search for the first 'svg' element in the XML document
-        // in preorder sequence
-        IXMLElement svg = document;
-        Stack<Iterator<IXMLElement>> stack = new Stack<Iterator<IXMLElement>>();
-        LinkedList<IXMLElement> ll = new LinkedList<IXMLElement>();
-        ll.add(document);
-        stack.push(ll.iterator());
-        while (!stack.empty() && stack.peek().hasNext()) {
-            Iterator<IXMLElement> iter = stack.peek();
-            IXMLElement node = iter.next();
-
-            Iterator<IXMLElement> children = (node.getChildren() == null) ? null : node.getChildren().iterator();
-
-            if (!iter.hasNext()) {
-                stack.pop();
-            }
-            if (children != null && children.hasNext()) {
-                stack.push(children);
+        if (streaming) {
+            // The figures have been created by the builder
+            if (streamingBuilder.svg == null) {
+                throw new IOException("'svg' element expected: " + document.getName());
             }
-            if (node.getName() != null
-                    && node.getName().equals("svg")
-                    && (node.getNamespace() == null
-                    || node.getNamespace().equals(SVG_NAMESPACE))) {
-                svg = node;
-                break;
-            }
-        }
-
-
-        if (svg.getName() == null
-                || !svg.getName().equals("svg")
-                || (svg.getNamespace() != null
-                && !svg.getNamespace().equals(SVG_NAMESPACE))) {
-            throw new IOException("'svg' element expected: " + svg.getName());
+        } else {
+            readDocument();
         }
-        //long end1 = System.currentTimeMillis();
-
-        // Flatten CSS Styles
-        initStorageContext(document);
-        flattenStyles(svg);
-        //long end2 = System.currentTimeMillis();
-
-        readElement(svg);
 
         if (DEBUG) {
             long end = System.currentTimeMillis();
@@ -392,12 +994,81 @@ public class SVGInputFormat implements InputFormat {
         elementObjects = null;
         viewportStack = null;
         styleManager = null;
+    }
+
+    /**
+     * Reads the figures from the DOM of the document.
+     */
+    private void readDocument() throws IOException {
+        // Search for the first 'svg' element in the XML document
+        // in preorder sequence
+        IXMLElement svg = document;
+        Stack<Iterator<IXMLElement>> stack = new Stack<Iterator<IXMLElement>>();
+        LinkedList<IXMLElement> ll = new LinkedList<IXMLElement>();
+        ll.add(document);
+        stack.push(ll.iterator());
+        while (!stack.empty() && stack.peek().hasNext()) {
+            Iterator<IXMLElement> iter = stack.peek();
+            IXMLElement node = iter.next();
+
+            Iterator<IXMLElement> children = (node.getChildren() == null) ? null : node.getChildren().iterator();
 
+            if (!iter.hasNext()) {
+                stack.pop();
+            }
+            if (children != null && children.hasNext()) {
+                stack.push(children);
+            }
+            if (isSVGElement(node, "svg")) {
+                svg = node;
+                break;
+            }
+        }
+
+
+        if (!isSVGElement(svg, "svg")) {
+            throw new IOException("'svg' element expected: " + svg.getName());
+        }
+        //long end1 = System.currentTimeMillis();
+
+        // Flatten CSS Styles
+        initStorageContext(document);
+        flattenStyles(svg);
+        //long end2 = System.currentTimeMillis();
+
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+            pendingTasks = new ArrayList<ReadTask>();
+        }
+        try {
+            readElement(svg);
+            if (pool != null) {
+                synchronizeTasks();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+                pendingTasks = null;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the element has the specified name, and if it is in the
+     * SVG namespace or has no namespace.
+     */
+    private static boolean isSVGElement(IXMLElement elem, String name) {
+        return name.equals(elem.getName())
+                && (elem.getNamespace() == null
+                || elem.getNamespace().equals(SVG_NAMESPACE));
     }
 
     private void initStorageContext(IXMLElement root) {
         identifiedElements = new HashMap<String, IXMLElement>();
-        identifyElements(root);
+        if (root != null) {
+            identifyElements(root);
+        }
         elementObjects = new HashMap<IXMLElement, Object>();
         viewportStack = new Stack<Viewport>();
         viewportStack.push(new Viewport());
@@ -421,19 +1092,7 @@ public class SVGInputFormat implements InputFormat {
             if (elem.getNamespace() == null
                     || elem.getNamespace().equals(SVG_NAMESPACE)) {
 
-                String style = readAttribute(elem, "style", null);
-                if (style != null) {
-                    for (String styleProperty : style.split(";")) {
-                        String[] stylePropertyElements = styleProperty.split(":");
-                        if (stylePropertyElements.length == 2
-                                && !elem.hasAttribute(stylePropertyElements[0].trim(), SVG_NAMESPACE)) {
-                            //if (DEBUG) System.out.println("flatten:"+Arrays.toString(stylePropertyElements));
-                            elem.setAttribute(stylePropertyElements[0].trim(), SVG_NAMESPACE, stylePropertyElements[1].trim());
-                        }
-                    }
-                }
-
-                styleManager.applyStylesTo(elem);
+                flattenStyle(elem);
 
                 for (IXMLElement child : elem.getChildren()) {
                     flattenStyles(child);
@@ -442,6 +1101,26 @@ public class SVGInputFormat implements InputFormat {
         }
     }
 
+    /**
+     * Flattens the CSS styles of a single element, without flattening the
+     * styles of its children.
+     */
+    private void flattenStyle(IXMLElement elem) {
+        String style = readAttribute(elem, "style", null);
+        if (style != null) {
+            for (String styleProperty : style.split(";")) {
+                String[] stylePropertyElements = styleProperty.split(":");
+                if (stylePropertyElements.length == 2
+                        && !elem.hasAttribute(stylePropertyElements[0].trim(), SVG_NAMESPACE)) {
+                    //if (DEBUG) System.out.println("flatten:"+Arrays.toString(stylePropertyElements));
+                    elem.setAttribute(stylePropertyElements[0].trim(), SVG_NAMESPACE, stylePropertyElements[1].trim());
+                }
+            }
+        }
+
+        styleManager.applyStylesTo(elem);
+    }
+
     /**
      * Reads an SVG element of any kind.
      *
@@ -546,26 +1225,51 @@ public class SVGInputFormat implements InputFormat {
      */
     private Figure readGElement(IXMLElement elem)
             throws IOException {
+        CompositeFigure g = createGFigure(elem);
+
+        List<IXMLElement> children = elem.getChildren();
+        Figure[] childFigures = readElements(children);
+        for (int i = 0; i < childFigures.length; i++) {
+            addGChild(g, children.get(i), childFigures[i]);
+        }
+        transformGFigure(elem, g);
+        return g;
+    }
+
+    /**
+     * Creates the figure for an SVG "g" element.
+     */
+    private CompositeFigure createGFigure(IXMLElement elem)
+            throws IOException {
         HashMap<AttributeKey<?>, Object> a = new HashMap<AttributeKey<?>, Object>();
         readCoreAttributes(elem, a);
         readOpacityAttribute(elem, a);
-        CompositeFigure g = factory.createG(a);
+        return factory.createG(a);
+    }
 
-        for (IXMLElement child : elem.getChildren()) {
-            Figure childFigure = readElement(child);
-            // skip invisible elements
-            if (readAttribute(child, "visibility", "visible").equals("visible")
-                    && !readAttribute(child, "display", "inline").equals("none")) {
-                if (childFigure != null) {
-                    g.basicAdd(childFigure);
-                }
+    /**
+     * Adds the figure of a child element to the figure of an SVG "g" element.
+     */
+    private void addGChild(CompositeFigure g, IXMLElement child, @Nullable Figure childFigure) {
+        // skip invisible elements
+        if (readAttribute(child, "visibility", "visible").equals("visible")
+                && !readAttribute(child, "display", "inline").equals("none")) {
+            if (childFigure != null) {
+                g.basicAdd(childFigure);
             }
         }
+    }
+
+    /**
+     * Applies the transform attribute of an SVG "g" element to its figure.
+     */
+    private void transformGFigure(IXMLElement elem, CompositeFigure g)
+            throws IOException {
+        HashMap<AttributeKey<?>, Object> a = new HashMap<AttributeKey<?>, Object>();
         readTransformAttribute(elem, a);
         if (TRANSFORM.get(a) != null) {
             g.transform(TRANSFORM.get(a));
         }
-        return g;
     }
 
     /**
@@ -586,34 +1290,57 @@ public class SVGInputFormat implements InputFormat {
             System.out.println("SVGInputFormat.readAElement href=" + href);
         }
 
-        for (IXMLElement child : elem.getChildren()) {
-            Figure childFigure = readElement(child);
-            // skip invisible elements
-            if (readAttribute(child, "visibility", "visible").equals("visible")
-                    && !readAttribute(child, "display", "inline").equals("none")) {
-                if (childFigure != null) {
-                    g.basicAdd(childFigure);
-                }
-            }
-            if (childFigure != null) {
-                childFigure.set(LINK, href);
-                childFigure.set(LINK_TARGET, target);
-            } else {
-                if (DEBUG) {
-                    System.out.println("SVGInputFormat <a> has no child figure");
-                }
-            }
+        List<IXMLElement> children = elem.getChildren();
+        Figure[] childFigures = readElements(children);
+        for (int i = 0; i < childFigures.length; i++) {
+            addAChild(g, children.get(i), childFigures[i], href, target);
         }
 
         return (g.getChildCount() == 1) ? g.getChild(0) : g;
     }
 
+    /**
+     * Adds the figure of a child element to the figure of an SVG "a" element.
+     */
+    private void addAChild(CompositeFigure g, IXMLElement child, @Nullable Figure childFigure,
+                           @Nullable String href, @Nullable String target) {
+        addGChild(g, child, childFigure);
+        if (childFigure != null) {
+            childFigure.set(LINK, href);
+            childFigure.set(LINK_TARGET, target);
+        } else {
+            if (DEBUG) {
+                System.out.println("SVGInputFormat <a> has no child figure");
+            }
+        }
+    }
+
     /**
      * Reads an SVG "svg" element.
      */
     @Nullable
     private Figure readSVGElement(IXMLElement elem)
             throws IOException {
+        AffineTransform viewBoxTransform = pushViewport(elem);
+
+        // Read the figures
+        List<IXMLElement> children = elem.getChildren();
+        Figure[] childFigures = readElements(children);
+        for (int i = 0; i < childFigures.length; i++) {
+            addSVGChild(children.get(i), childFigures[i], viewBoxTransform);
+        }
+
+        viewportStack.pop();
+        return null;
+    }
+
+    /**
+     * Establishes the viewport of an SVG "svg" element.
+     *
+     * @return the view box transform of the viewport.
+     */
+    private AffineTransform pushViewport(IXMLElement elem)
+            throws IOException {
         // Establish a new viewport
         Viewport viewport = new Viewport();
 
@@ -673,24 +1400,23 @@ public class SVGInputFormat implements InputFormat {
 
         viewportStack.push(viewport);
         readViewportAttributes(elem, viewportStack.firstElement().attributes);
+        return viewBoxTransform;
+    }
 
+    /**
+     * Adds the figure of a child element of an SVG "svg" element to the
+     * figures of the drawing.
+     */
+    private void addSVGChild(IXMLElement child, @Nullable Figure childFigure, AffineTransform viewBoxTransform) {
+        // skip invisible elements
+        if (readAttribute(child, "visibility", "visible").equals("visible")
+                && !readAttribute(child, "display", "inline").equals("none")) {
 
-        // Read the figures
-        for (IXMLElement child : elem.getChildren()) {
-            Figure childFigure = readElement(child);
-            // skip invisible elements
-            if (readAttribute(child, "visibility", "visible").equals("visible")
-                    && !readAttribute(child, "display", "inline").equals("none")) {
-
-                if (childFigure != null) {
-                    childFigure.transform(viewBoxTransform);
-                    figures.add(childFigure);
-                }
+            if (childFigure != null) {
+                childFigure.transform(viewBoxTransform);
+                figures.add(childFigure);
             }
         }
-
-        viewportStack.pop();
-        return null;
     }
 
     /**
@@ -936,7 +1662,7 @@ public class SVGInputFormat implements InputFormat {
         readOpacityAttribute(elem, a);
         readShapeAttributes(elem, a);
 
-        BezierPath[] beziers = toPath(elem, readAttribute(elem, "d", ""));
+        CompactBezierPath[] beziers = toPath(elem, readAttribute(elem, "d", ""));
 
         Figure figure = factory.createPath(beziers, a);
         elementObjects.put(elem, figure);
@@ -1204,11 +1930,17 @@ public class SVGInputFormat implements InputFormat {
         if (href != null && href.startsWith("#")) {
             IXMLElement refElem = identifiedElements.get(href.substring(1));
             if (refElem == null) {
+                if (isStreamingDocument) {
+                    throw new UnresolvedReferenceException(href);
+                }
                 if (DEBUG) {
                     System.out.println("SVGInputFormat couldn't find href for <use> element:" + href);
                 }
             } else {
-                Figure obj = readElement(refElem);
+                // A symbol is only rendered through a use element, where it
+                // is rendered like a group
+                Figure obj = isSVGElement(refElem, "symbol")
+                        ? readGElement(refElem) : readElement(refElem);
                 if (obj != null) {
                     Figure figure = obj.clone();
                     for (Map.Entry<AttributeKey<?>, Object> entry : a2.entrySet()) {
@@ -1424,7 +2156,29 @@ public class SVGInputFormat implements InputFormat {
      * The values are separated by commas with optional white space.
      */
     public static String[] toCommaSeparatedArray(String str) throws IOException {
-        return str.split("\\s*,\\s*");
+        ArrayList<String> values = new ArrayList<String>();
+        int start = 0;
+        int nonEmpty = 0;
+        for (int comma = str.indexOf(','); comma != -1; comma = str.indexOf(',', start)) {
+            int end = comma;
+            while (end > start && Character.isWhitespace(str.charAt(end - 1))) {
+                end--;
+            }
+            values.add(str.substring(start, end));
+            if (end > start) {
+                nonEmpty = values.size();
+            }
+            start = comma + 1;
+            while (start < str.length() && Character.isWhitespace(str.charAt(start))) {
+                start++;
+            }
+        }
+        if (values.isEmpty() || start < str.length()) {
+            values.add(str.substring(start));
+            nonEmpty = values.size();
+        }
+        // Like String.split, we remove trailing empty values
+        return values.subList(0, nonEmpty).toArray(new String[nonEmpty]);
     }
 
     /**
@@ -1433,12 +2187,32 @@ public class SVGInputFormat implements InputFormat {
      * space.
      */
     public static String[] toWSOrCommaSeparatedArray(String str) throws IOException {
-        String[] result = str.split("(\\s*,\\s*|\\s+)");
-        if (result.length == 1 && result[0].equals("")) {
-            return new String[0];
-        } else {
-            return result;
+        ArrayList<String> values = new ArrayList<String>();
+        int i = 0;
+        int n = str.length();
+        while (i < n && Character.isWhitespace(str.charAt(i))) {
+            i++;
         }
+        while (i < n) {
+            int start = i;
+            while (i < n && str.charAt(i) != ',' && !Character.isWhitespace(str.charAt(i))) {
+                i++;
+            }
+            values.add(str.substring(start, i));
+            while (i < n && Character.isWhitespace(str.charAt(i))) {
+                i++;
+            }
+            if (i < n && str.charAt(i) == ',') {
+                i++;
+                while (i < n && Character.isWhitespace(str.charAt(i))) {
+                    i++;
+                }
+                if (i == n) {
+                    break;
+                }
+            }
+        }
+        return values.toArray(new String[values.size()]);
     }
 
     /**
@@ -1472,78 +2246,71 @@ public class SVGInputFormat implements InputFormat {
      * as specified in http://www.w3.org/TR/SVGMobile12/shapes.html#PointsBNF
      */
     private Point2D.Double[] toPoints(IXMLElement elem, String str) throws IOException {
+        SVGDataScanner sc = scanner;
+        sc.reset(str);
+        double[] coords = new double[16];
+        int n = 0;
+        while (sc.nextNumber()) {
+            if (n == coords.length) {
+                coords = Arrays.copyOf(coords, n * 2);
+            }
+            coords[n++] = sc.nval;
+        }
+        if (sc.skipSeparators()) {
+            throw new IOException("Illegal character at position " + sc.getPosition() + " in points " + str);
+        }
 
-        StringTokenizer tt = new StringTokenizer(str, " ,");
-        Point2D.Double[] points = new Point2D.Double[tt.countTokens() / 2];
+        Point2D.Double[] points = new Point2D.Double[n / 2];
         for (int i = 0; i < points.length; i++) {
-
-            points[i] = new Point2D.Double(
-                    toNumber(elem, tt.nextToken()),
-                    toNumber(elem, tt.nextToken()));
+            points[i] = new Point2D.Double(coords[i * 2], coords[i * 2 + 1]);
         }
         return points;
     }
 
     /**
-     * Returns a value as a BezierPath array.
+     * Returns a value as a CompactBezierPath array.
      * as specified in http://www.w3.org/TR/SVGMobile12/paths.html#PathDataBNF
      * <p>
      * Also supports elliptical arc commands 'a' and 'A' as specified in
      * http://www.w3.org/TR/SVG/paths.html#PathDataEllipticalArcCommands
      */
-    private BezierPath[] toPath(IXMLElement elem, String str) throws IOException {
-        LinkedList<BezierPath> paths = new LinkedList<BezierPath>();
+    private CompactBezierPath[] toPath(IXMLElement elem, String str) throws IOException {
+        ArrayList<CompactBezierPath> paths = new ArrayList<CompactBezierPath>();
 
-        BezierPath path = null;
+        CompactBezierPath path = null;
         Point2D.Double p = new Point2D.Double();
         Point2D.Double c1 = new Point2D.Double();
         Point2D.Double c2 = new Point2D.Double();
 
-        StreamPosTokenizer tt;
-        if (toPathTokenizer == null) {
-            tt = new StreamPosTokenizer(new StringReader(str));
-            tt.resetSyntax();
-            tt.parseNumbers();
-            tt.parseExponents();
-            tt.parsePlusAsNumber();
-            tt.whitespaceChars(0, ' ');
-            tt.whitespaceChars(',', ',');
-            toPathTokenizer = tt;
-        } else {
-            tt = toPathTokenizer;
-            tt.setReader(new StringReader(str));
-        }
-
+        SVGDataScanner sc = scanner;
+        sc.reset(str);
 
         char nextCommand = 'M';
         char command = 'M';
         Commands:
-        while (tt.nextToken() != StreamPosTokenizer.TT_EOF) {
-            if (tt.ttype > 0) {
-                command = (char) tt.ttype;
-            } else {
+        while (sc.skipSeparators()) {
+            if (sc.isNumberAhead()) {
                 command = nextCommand;
-                tt.pushBack();
+            } else {
+                command = (char) sc.nextChar();
             }
 
-            BezierPath.Node node;
-
             switch (command) {
                 case 'M':
                     // absolute-moveto x y
                     if (path != null) {
                         paths.add(path);
                     }
-                    path = new BezierPath();
+                    path = new CompactBezierPath();
 
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'M' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'M' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'M' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'M' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.moveTo(p.x, p.y);
                     nextCommand = 'L';
                     break;
@@ -1552,16 +2319,16 @@ public class SVGInputFormat implements InputFormat {
                     if (path != null) {
                         paths.add(path);
                     }
-                    path = new BezierPath();
+                    path = new CompactBezierPath();
 
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 'm' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 'm' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 'm' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 'm' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.moveTo(p.x, p.y);
                     nextCommand = 'l';
 
@@ -1569,22 +2336,20 @@ public class SVGInputFormat implements InputFormat {
                 case 'Z':
                 case 'z':
                     // close path
-                    p.x = path.get(0).x[0];
-                    p.y = path.get(0).y[0];
+                    p.x = path.getX(0, 0);
+                    p.y = path.getY(0, 0);
 
                     // If the last point and the first point are the same, we
                     // can merge them
                     if (path.size() > 1) {
-                        BezierPath.Node first = path.get(0);
-                        BezierPath.Node last = path.get(path.size() - 1);
-                        if (first.x[0] == last.x[0]
-                                && first.y[0] == last.y[0]) {
-                            if ((last.mask & BezierPath.C1_MASK) != 0) {
-                                first.mask |= BezierPath.C1_MASK;
-                                first.x[1] = last.x[1];
-                                first.y[1] = last.y[1];
+                        int last = path.size() - 1;
+                        if (path.getX(0, 0) == path.getX(last, 0)
+                                && path.getY(0, 0) == path.getY(last, 0)) {
+                            if ((path.getMask(last) & BezierPath.C1_MASK) != 0) {
+                                path.setMask(0, path.getMask(0) | BezierPath.C1_MASK);
+                                path.set(0, 1, path.getX(last, 1), path.getY(last, 1));
                             }
-                            path.remove(path.size() - 1);
+                            path.remove(last);
                         }
                     }
                     path.setClosed(true);
@@ -1592,200 +2357,198 @@ public class SVGInputFormat implements InputFormat {
                     break;
                 case 'L':
                     // absolute-lineto x y
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'L' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'L' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'L' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'L' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.lineTo(p.x, p.y);
                     nextCommand = 'L';
 
                     break;
                 case 'l':
                     // relative-lineto dx dy
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 'l' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 'l' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 'l' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 'l' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.lineTo(p.x, p.y);
                     nextCommand = 'l';
 
                     break;
                 case 'H':
                     // absolute-horizontal-lineto x
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'H' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'H' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
+                    p.x = sc.nval;
                     path.lineTo(p.x, p.y);
                     nextCommand = 'H';
 
                     break;
                 case 'h':
                     // relative-horizontal-lineto dx
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 'h' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 'h' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
+                    p.x += sc.nval;
                     path.lineTo(p.x, p.y);
                     nextCommand = 'h';
 
                     break;
                 case 'V':
                     // absolute-vertical-lineto y
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'V' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'V' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.lineTo(p.x, p.y);
                     nextCommand = 'V';
 
                     break;
                 case 'v':
                     // relative-vertical-lineto dy
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 'v' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 'v' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.lineTo(p.x, p.y);
                     nextCommand = 'v';
 
                     break;
                 case 'C':
                     // absolute-curveto x1 y1 x2 y2 x y
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x1 coordinate missing for 'C' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x1 coordinate missing for 'C' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y1 coordinate missing for 'C' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y1 coordinate missing for 'C' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.y = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x2 coordinate missing for 'C' at position " + tt.getStartPosition() + " in " + str);
+                    c1.y = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x2 coordinate missing for 'C' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y2 coordinate missing for 'C' at position " + tt.getStartPosition() + " in " + str);
+                    c2.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y2 coordinate missing for 'C' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.y = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'C' at position " + tt.getStartPosition() + " in " + str);
+                    c2.y = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'C' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'C' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'C' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.curveTo(c1.x, c1.y, c2.x, c2.y, p.x, p.y);
                     nextCommand = 'C';
                     break;
 
                 case 'c':
                     // relative-curveto dx1 dy1 dx2 dy2 dx dy
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx1 coordinate missing for 'c' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx1 coordinate missing for 'c' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.x = p.x + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy1 coordinate missing for 'c' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = p.x + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy1 coordinate missing for 'c' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.y = p.y + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx2 coordinate missing for 'c' at position " + tt.getStartPosition() + " in " + str);
+                    c1.y = p.y + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx2 coordinate missing for 'c' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.x = p.x + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy2 coordinate missing for 'c' at position " + tt.getStartPosition() + " in " + str);
+                    c2.x = p.x + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy2 coordinate missing for 'c' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.y = p.y + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 'c' at position " + tt.getStartPosition() + " in " + str);
+                    c2.y = p.y + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 'c' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 'c' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 'c' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.curveTo(c1.x, c1.y, c2.x, c2.y, p.x, p.y);
                     nextCommand = 'c';
                     break;
 
                 case 'S':
                     // absolute-shorthand-curveto x2 y2 x y
-                    node = path.get(path.size() - 1);
-                    c1.x = node.x[0] * 2d - node.x[1];
-                    c1.y = node.y[0] * 2d - node.y[1];
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x2 coordinate missing for 'S' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = path.getX(path.size() - 1, 0) * 2d - path.getX(path.size() - 1, 1);
+                    c1.y = path.getY(path.size() - 1, 0) * 2d - path.getY(path.size() - 1, 1);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x2 coordinate missing for 'S' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y2 coordinate missing for 'S' at position " + tt.getStartPosition() + " in " + str);
+                    c2.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y2 coordinate missing for 'S' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.y = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'S' at position " + tt.getStartPosition() + " in " + str);
+                    c2.y = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'S' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'S' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'S' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.curveTo(c1.x, c1.y, c2.x, c2.y, p.x, p.y);
                     nextCommand = 'S';
                     break;
 
                 case 's':
                     // relative-shorthand-curveto dx2 dy2 dx dy
-                    node = path.get(path.size() - 1);
-                    c1.x = node.x[0] * 2d - node.x[1];
-                    c1.y = node.y[0] * 2d - node.y[1];
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx2 coordinate missing for 's' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = path.getX(path.size() - 1, 0) * 2d - path.getX(path.size() - 1, 1);
+                    c1.y = path.getY(path.size() - 1, 0) * 2d - path.getY(path.size() - 1, 1);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx2 coordinate missing for 's' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.x = p.x + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy2 coordinate missing for 's' at position " + tt.getStartPosition() + " in " + str);
+                    c2.x = p.x + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy2 coordinate missing for 's' at position " + sc.getPosition() + " in " + str);
                     }
-                    c2.y = p.y + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 's' at position " + tt.getStartPosition() + " in " + str);
+                    c2.y = p.y + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 's' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 's' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 's' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.curveTo(c1.x, c1.y, c2.x, c2.y, p.x, p.y);
                     nextCommand = 's';
                     break;
 
                 case 'Q':
                     // absolute-quadto x1 y1 x y
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x1 coordinate missing for 'Q' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x1 coordinate missing for 'Q' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y1 coordinate missing for 'Q' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y1 coordinate missing for 'Q' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.y = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'Q' at position " + tt.getStartPosition() + " in " + str);
+                    c1.y = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'Q' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'Q' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'Q' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.quadTo(c1.x, c1.y, p.x, p.y);
                     nextCommand = 'Q';
 
@@ -1793,39 +2556,38 @@ public class SVGInputFormat implements InputFormat {
 
                 case 'q':
                     // relative-quadto dx1 dy1 dx dy
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx1 coordinate missing for 'q' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx1 coordinate missing for 'q' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.x = p.x + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy1 coordinate missing for 'q' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = p.x + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy1 coordinate missing for 'q' at position " + sc.getPosition() + " in " + str);
                     }
-                    c1.y = p.y + tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 'q' at position " + tt.getStartPosition() + " in " + str);
+                    c1.y = p.y + sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 'q' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 'q' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 'q' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.quadTo(c1.x, c1.y, p.x, p.y);
                     nextCommand = 'q';
 
                     break;
                 case 'T':
                     // absolute-shorthand-quadto x y
-                    node = path.get(path.size() - 1);
-                    c1.x = node.x[0] * 2d - node.x[1];
-                    c1.y = node.y[0] * 2d - node.y[1];
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'T' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = path.getX(path.size() - 1, 0) * 2d - path.getX(path.size() - 1, 1);
+                    c1.y = path.getY(path.size() - 1, 0) * 2d - path.getY(path.size() - 1, 1);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'T' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'T' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'T' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
                     path.quadTo(c1.x, c1.y, p.x, p.y);
                     nextCommand = 'T';
 
@@ -1833,17 +2595,16 @@ public class SVGInputFormat implements InputFormat {
 
                 case 't':
                     // relative-shorthand-quadto dx dy
-                    node = path.get(path.size() - 1);
-                    c1.x = node.x[0] * 2d - node.x[1];
-                    c1.y = node.y[0] * 2d - node.y[1];
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dx coordinate missing for 't' at position " + tt.getStartPosition() + " in " + str);
+                    c1.x = path.getX(path.size() - 1, 0) * 2d - path.getX(path.size() - 1, 1);
+                    c1.y = path.getY(path.size() - 1, 0) * 2d - path.getY(path.size() - 1, 1);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dx coordinate missing for 't' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("dy coordinate missing for 't' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("dy coordinate missing for 't' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
                     path.quadTo(c1.x, c1.y, p.x, p.y);
                     nextCommand = 's';
 
@@ -1852,36 +2613,36 @@ public class SVGInputFormat implements InputFormat {
 
                 case 'A': {
                     // absolute-elliptical-arc rx ry x-axis-rotation large-arc-flag sweep-flag x y
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("rx coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("rx coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
                     // If rX or rY have negative signs, these are dropped;
                     // the absolute value is used instead.
-                    double rx = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("ry coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    double rx = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("ry coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    double ry = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x-axis-rotation missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    double ry = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x-axis-rotation missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    double xAxisRotation = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("large-arc-flag missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    double xAxisRotation = sc.nval;
+                    if (!sc.nextFlag()) {
+                        throw new IOException("large-arc-flag missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    boolean largeArcFlag = tt.nval != 0;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("sweep-flag missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    boolean largeArcFlag = sc.nval != 0;
+                    if (!sc.nextFlag()) {
+                        throw new IOException("sweep-flag missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    boolean sweepFlag = tt.nval != 0;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    boolean sweepFlag = sc.nval != 0;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    p.x = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y = tt.nval;
+                    p.y = sc.nval;
 
                     path.arcTo(rx, ry, xAxisRotation, largeArcFlag, sweepFlag, p.x, p.y);
 
@@ -1890,36 +2651,36 @@ public class SVGInputFormat implements InputFormat {
                 }
                 case 'a': {
                     // absolute-elliptical-arc rx ry x-axis-rotation large-arc-flag sweep-flag x y
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("rx coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    if (!sc.nextNumber()) {
+                        throw new IOException("rx coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
                     // If rX or rY have negative signs, these are dropped;
                     // the absolute value is used instead.
-                    double rx = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("ry coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    double rx = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("ry coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    double ry = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x-axis-rotation missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    double ry = sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x-axis-rotation missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    double xAxisRotation = tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("large-arc-flag missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    double xAxisRotation = sc.nval;
+                    if (!sc.nextFlag()) {
+                        throw new IOException("large-arc-flag missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    boolean largeArcFlag = tt.nval != 0;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("sweep-flag missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    boolean largeArcFlag = sc.nval != 0;
+                    if (!sc.nextFlag()) {
+                        throw new IOException("sweep-flag missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    boolean sweepFlag = tt.nval != 0;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("x coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    boolean sweepFlag = sc.nval != 0;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("x coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.x += tt.nval;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                        throw new IOException("y coordinate missing for 'A' at position " + tt.getStartPosition() + " in " + str);
+                    p.x += sc.nval;
+                    if (!sc.nextNumber()) {
+                        throw new IOException("y coordinate missing for 'A' at position " + sc.getPosition() + " in " + str);
                     }
-                    p.y += tt.nval;
+                    p.y += sc.nval;
 
                     path.arcTo(rx, ry, xAxisRotation, largeArcFlag, sweepFlag, p.x, p.y);
 
@@ -1938,7 +2699,7 @@ public class SVGInputFormat implements InputFormat {
             paths.add(path);
         }
 
-        return paths.toArray(new BezierPath[paths.size()]);
+        return paths.toArray(new CompactBezierPath[paths.size()]);
     }
 
     /* Reads core attributes as listed in
@@ -2922,6 +3683,10 @@ public class SVGInputFormat implements InputFormat {
         if (stops.size() == 0) {
             // FIXME - Implement xlink support throughouth SVGInputFormat
             String xlink = readAttribute(elem, "xlink:href", "");
+            if (isStreamingDocument && xlink.startsWith("#")
+                    && identifiedElements.get(xlink.substring(1)) == null) {
+                throw new UnresolvedReferenceException(xlink);
+            }
             if (xlink.startsWith("#")
                     && identifiedElements.get(xlink.substring(1)) != null) {
 
@@ -3008,6 +3773,10 @@ public class SVGInputFormat implements InputFormat {
         if (stops.size() == 0) {
             // FIXME - Implement xlink support throughout SVGInputFormat
             String xlink = readAttribute(elem, "xlink:href", "");
+            if (isStreamingDocument && xlink.startsWith("#")
+                    && identifiedElements.get(xlink.substring(1)) == null) {
+                throw new UnresolvedReferenceException(xlink);
+            }
             if (xlink.startsWith("#")
                     && identifiedElements.get(xlink.substring(1)) != null) {
                 stops = identifiedElements.get(xlink.substring(1)).getChildrenNamed("stop", SVG_NAMESPACE);
@@ -3233,9 +4002,8 @@ public class SVGInputFormat implements InputFormat {
             }
         } else if (str.startsWith("url(")) {
             String href = value.substring(4, value.length() - 1);
-            if (identifiedElements.containsKey(href.substring(1))
-                    && elementObjects.containsKey(identifiedElements.get(href.substring(1)))) {
-                Object obj = elementObjects.get(identifiedElements.get(href.substring(1)));
+            Object obj = getElementObject(href.substring(1));
+            if (obj != null) {
                 return obj;
             }
             // XXX - Implement me
@@ -3353,76 +4121,82 @@ public class SVGInputFormat implements InputFormat {
 
         if (str != null && !str.equals("none")) {
 
-            StreamPosTokenizer tt = new StreamPosTokenizer(new StringReader(str));
-            tt.resetSyntax();
-            tt.wordChars('a', 'z');
-            tt.wordChars('A', 'Z');
-            tt.wordChars(128 + 32, 255);
-            tt.whitespaceChars(0, ' ');
-            tt.whitespaceChars(',', ',');
-            tt.parseNumbers();
-            tt.parseExponents();
-
-            while (tt.nextToken() != StreamPosTokenizer.TT_EOF) {
-                if (tt.ttype != StreamPosTokenizer.TT_WORD) {
+            SVGDataScanner sc = new SVGDataScanner(str);
+
+            while (sc.skipSeparators()) {
+                if (!Character.isLetter(sc.peek())) {
                     throw new IOException("Illegal transform " + str);
                 }
-                String type = tt.sval;
-                if (tt.nextToken() != '(') {
+                String type;
+                if (sc.skipWord("matrix")) {
+                    type = "matrix";
+                } else if (sc.skipWord("translate")) {
+                    type = "translate";
+                } else if (sc.skipWord("scale")) {
+                    type = "scale";
+                } else if (sc.skipWord("rotate")) {
+                    type = "rotate";
+                } else if (sc.skipWord("skewX")) {
+                    type = "skewX";
+                } else if (sc.skipWord("skewY")) {
+                    type = "skewY";
+                } else if (sc.skipWord("ref")) {
+                    type = "ref";
+                } else {
+                    throw new IOException("Unknown transform at position " + sc.getPosition() + " in " + str + " in element " + elem);
+                }
+                if (!sc.skipChar('(')) {
                     throw new IOException("'(' not found in transform " + str);
                 }
                 if ("matrix".equals(type)) {
                     double[] m = new double[6];
                     for (int i = 0; i < 6; i++) {
-                        if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
-                            throw new IOException("Matrix value " + i + " not found in transform " + str + " token:" + tt.ttype + " " + tt.sval);
+                        if (!sc.nextNumber()) {
+                            throw new IOException("Matrix value " + i + " not found in transform " + str + " at position " + sc.getPosition());
                         }
-                        m[i] = tt.nval;
+                        m[i] = sc.nval;
                     }
                     t.concatenate(new AffineTransform(m));
 
                 } else if ("translate".equals(type)) {
                     double tx, ty;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+                    if (!sc.nextNumber()) {
                         throw new IOException("X-translation value not found in transform " + str);
                     }
-                    tx = tt.nval;
-                    if (tt.nextToken() == StreamPosTokenizer.TT_NUMBER) {
-                        ty = tt.nval;
+                    tx = sc.nval;
+                    if (sc.nextNumber()) {
+                        ty = sc.nval;
                     } else {
-                        tt.pushBack();
                         ty = 0;
                     }
                     t.translate(tx, ty);
 
                 } else if ("scale".equals(type)) {
                     double sx, sy;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+                    if (!sc.nextNumber()) {
                         throw new IOException("X-scale value not found in transform " + str);
                     }
-                    sx = tt.nval;
-                    if (tt.nextToken() == StreamPosTokenizer.TT_NUMBER) {
-                        sy = tt.nval;
+                    sx = sc.nval;
+                    if (sc.nextNumber()) {
+                        sy = sc.nval;
                     } else {
-                        tt.pushBack();
                         sy = sx;
                     }
                     t.scale(sx, sy);
 
                 } else if ("rotate".equals(type)) {
                     double angle, cx, cy;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+                    if (!sc.nextNumber()) {
                         throw new IOException("Angle value not found in transform " + str);
                     }
-                    angle = tt.nval;
-                    if (tt.nextToken() == StreamPosTokenizer.TT_NUMBER) {
-                        cx = tt.nval;
-                        if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+                    angle = sc.nval;
+                    if (sc.nextNumber()) {
+                        cx = sc.nval;
+                        if (!sc.nextNumber()) {
                             throw new IOException("Y-center value not found in transform " + str);
                         }
-                        cy = tt.nval;
+                        cy = sc.nval;
                     } else {
-                        tt.pushBack();
                         cx = cy = 0;
                     }
                     t.rotate(angle * Math.PI / 180d, cx, cy);
@@ -3430,32 +4204,30 @@ public class SVGInputFormat implements InputFormat {
 
                 } else if ("skewX".equals(type)) {
                     double angle;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+                    if (!sc.nextNumber()) {
                         throw new IOException("Skew angle not found in transform " + str);
                     }
-                    angle = tt.nval;
+                    angle = sc.nval;
                     t.concatenate(new AffineTransform(
                             1, 0, Math.tan(angle * Math.PI / 180), 1, 0, 0));
 
                 } else if ("skewY".equals(type)) {
                     double angle;
-                    if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+                    if (!sc.nextNumber()) {
                         throw new IOException("Skew angle not found in transform " + str);
                     }
-                    angle = tt.nval;
+                    angle = sc.nval;
                     t.concatenate(new AffineTransform(
                             1, Math.tan(angle * Math.PI / 180), 0, 1, 0, 0));
 
-                } else if ("ref".equals(type)) {
+                } else /*if ("ref".equals(type))*/ {
                     System.err.println("SVGInputFormat warning: ignored ref(...) transform attribute in element " + elem);
-                    while (tt.nextToken() != ')' && tt.ttype != StreamPosTokenizer.TT_EOF) {
+                    while (sc.skipSeparators() && sc.peek() != ')') {
                         // ignore tokens between brackets
+                        sc.nextChar();
                     }
-                    tt.pushBack();
-                } else {
-                    throw new IOException("Unknown transform " + type + " in " + str + " in element " + elem);
                 }
-                if (tt.nextToken() != ')') {
+                if (!sc.skipChar(')')) {
                     throw new IOException("')' not found in transform " + str);
                 }
             }
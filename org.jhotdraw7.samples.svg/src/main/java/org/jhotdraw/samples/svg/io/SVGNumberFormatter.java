@@ -0,0 +1,124 @@
+/* @(#)SVGNumberFormatter.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.svg.io;
+
+/**
+ * Formats numbers for SVG attribute values.
+ * <p>
+ * A number is formatted with the fewest fraction digits that are needed to
+ * read back the same value. The digits are appended directly to a
+ * {@code StringBuilder}, without creating intermediate strings.
+ * <p>
+ * Numbers with a magnitude between 10<sup>-3</sup> and 10<sup>7</sup> are
+ * formatted in plain decimal notation. All other numbers, and numbers which
+ * need more digits than can be computed exactly with a {@code long}, are
+ * formatted like {@link Float#toString} or {@link Double#toString} does,
+ * without a trailing {@code ".0"}.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+final class SVGNumberFormatter {
+
+    /**
+     * Powers of ten which can be represented exactly by a double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+    private static final long[] LONG_POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L, 10000000000L, 100000000000L,
+            1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L,
+            1000000000000000000L
+    };
+    /**
+     * The largest mantissa which can be represented exactly by a double.
+     */
+    private static final double MAX_EXACT_MANTISSA = (double) (1L << 53);
+
+    /**
+     * Prevent instance creation.
+     */
+    private SVGNumberFormatter() {
+    }
+
+    /**
+     * Returns the number as a string.
+     *
+     * @param number           the number.
+     * @param isFloatPrecision set this to true, if the number only needs to
+     *                         be read back with float precision.
+     */
+    public static String toString(double number, boolean isFloatPrecision) {
+        StringBuilder buf = new StringBuilder(16);
+        append(buf, number, isFloatPrecision);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the number to the specified buffer.
+     *
+     * @param buf              the buffer.
+     * @param number           the number.
+     * @param isFloatPrecision set this to true, if the number only needs to
+     *                         be read back with float precision.
+     */
+    public static void append(StringBuilder buf, double number, boolean isFloatPrecision) {
+        double value = isFloatPrecision ? (double) (float) number : number;
+        double abs = Math.abs(value);
+        if (value == 0d) {
+            buf.append(1d / value < 0d ? "-0" : "0");
+            return;
+        }
+        if (abs >= 1e-3 && abs < 1e7) {
+            for (int k = 0; k < LONG_POWERS_OF_TEN.length; k++) {
+                double scaled = abs * POWERS_OF_TEN[k];
+                if (scaled >= MAX_EXACT_MANTISSA) {
+                    break;
+                }
+                double mantissa = Math.rint(scaled);
+                // The division of two exact operands yields the correctly
+                // rounded value, which is what a reader gets when it parses
+                // the digits.
+                double candidate = mantissa / POWERS_OF_TEN[k];
+                if (isFloatPrecision ? (float) candidate == (float) abs : candidate == abs) {
+                    appendFixed(buf, value < 0d, (long) mantissa, k);
+                    return;
+                }
+            }
+        }
+
+        String str = isFloatPrecision ? Float.toString((float) value) : Double.toString(value);
+        if (str.endsWith(".0")) {
+            buf.append(str, 0, str.length() - 2);
+        } else {
+            buf.append(str);
+        }
+    }
+
+    /**
+     * Appends mantissa * 10<sup>-fractionDigits</sup> in plain decimal
+     * notation.
+     */
+    private static void appendFixed(StringBuilder buf, boolean isNegative, long mantissa, int fractionDigits) {
+        if (isNegative) {
+            buf.append('-');
+        }
+        long pow = LONG_POWERS_OF_TEN[fractionDigits];
+        buf.append(mantissa / pow);
+        if (fractionDigits > 0) {
+            buf.append('.');
+            long fraction = mantissa % pow;
+            for (long p = pow / 10; p > fraction && p > 1; p /= 10) {
+                buf.append('0');
+            }
+            buf.append(fraction);
+        }
+    }
+}
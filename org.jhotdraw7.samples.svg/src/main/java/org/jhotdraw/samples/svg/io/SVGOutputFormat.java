@@ -13,6 +13,7 @@ import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.CompactBezierPath;
 import org.jhotdraw.gui.datatransfer.InputStreamTransferable;
 import org.jhotdraw.gui.filechooser.ExtensionFileFilter;
 import org.jhotdraw.io.Base64;
@@ -45,6 +46,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -52,9 +54,11 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.text.AttributedCharacterIterator;
 import java.text.AttributedString;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -124,6 +128,15 @@ public class SVGOutputFormat implements OutputFormat {
      * Set this to true for pretty printing.
      */
     private boolean isPrettyPrint;
+    /**
+     * Whether documents are written in streaming mode.
+     */
+    private boolean isStreaming;
+    /**
+     * Whether paths are written with the compact variant of
+     * {@code createPath}.
+     */
+    private boolean isCompactPathWriter;
     private static final HashMap<Integer, String> strokeLinejoinMap;
 
     static {
@@ -152,8 +165,39 @@ public class SVGOutputFormat implements OutputFormat {
 
     /**
      * Creates a new instance.
+     * <p>
+     * Subclasses may override the {@code BezierPath[]} variant of
+     * {@code createPath}. So that the override is called, paths are written
+     * with that variant, unless the subclass opts in with
+     * {@link #setCompactPathWriter}.
      */
     public SVGOutputFormat() {
+        this(SVGOutputFormat.class);
+    }
+
+    /**
+     * Creates a new instance, which writes paths with the
+     * {@code CompactBezierPath[]} variant of {@code createPath} if it is
+     * an instance of exactly the specified class.
+     */
+    SVGOutputFormat(Class<? extends SVGOutputFormat> compactPathWriterClass) {
+        isCompactPathWriter = getClass() == compactPathWriterClass;
+    }
+
+    /**
+     * Sets whether paths are written with the {@code CompactBezierPath[]}
+     * variant of {@code createPath}, instead of the {@code BezierPath[]}
+     * variant.
+     * <p>
+     * Subclasses which do not override the {@code BezierPath[]} variant of
+     * {@code createPath} should set this to true.
+     */
+    protected final void setCompactPathWriter(boolean newValue) {
+        isCompactPathWriter = newValue;
+    }
+
+    protected final boolean isCompactPathWriter() {
+        return isCompactPathWriter;
     }
 
     public javax.swing.filechooser.FileFilter getFileFilter() {
@@ -172,17 +216,34 @@ public class SVGOutputFormat implements OutputFormat {
         return isPrettyPrint;
     }
 
+    /**
+     * Sets whether documents are written in streaming mode.
+     * <p>
+     * In streaming mode, the elements of a figure are written to the output
+     * stream as soon as they have been created, and are then discarded.
+     * The children of group figures are streamed one at a time. This allows
+     * to write drawings which are too large to be held in memory as a DOM.
+     * <p>
+     * In streaming mode, a gradient is written into a {@code defs} element
+     * right before the first element which uses it, instead of into a single
+     * {@code defs} element at the beginning of the document. Group figures
+     * are written with {@link #createG} instead of {@link #writeGElement}.
+     * <p>
+     * The default value is false.
+     */
+    public void setStreaming(boolean newValue) {
+        isStreaming = newValue;
+    }
+
+    /**
+     * Returns true if documents are written in streaming mode.
+     */
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
     protected void writeElement(IXMLElement parent, Figure f) throws IOException {
-        // Write link attribute as encosing "a" element
-        if (f.get(LINK) != null && f.get(LINK).trim().length() > 0) {
-            IXMLElement aElement = parent.createElement("a");
-            aElement.setAttribute("xlink:href", f.get(LINK));
-            if (f.get(LINK_TARGET) != null && f.get(LINK).trim().length() > 0) {
-                aElement.setAttribute("target", f.get(LINK_TARGET));
-            }
-            parent.addChild(aElement);
-            parent = aElement;
-        }
+        parent = writeLinkElement(parent, f);
 
         // Write the actual element
         if (f instanceof SVGEllipseFigure) {
@@ -234,6 +295,24 @@ public class SVGOutputFormat implements OutputFormat {
         }
     }
 
+    /**
+     * Writes the link attribute of the figure as an enclosing "a" element.
+     *
+     * @return the "a" element, or the parent if the figure has no link.
+     */
+    private IXMLElement writeLinkElement(IXMLElement parent, Figure f) {
+        if (f.get(LINK) != null && f.get(LINK).trim().length() > 0) {
+            IXMLElement aElement = parent.createElement("a");
+            aElement.setAttribute("xlink:href", f.get(LINK));
+            if (f.get(LINK_TARGET) != null && f.get(LINK).trim().length() > 0) {
+                aElement.setAttribute("target", f.get(LINK_TARGET));
+            }
+            parent.addChild(aElement);
+            return aElement;
+        }
+        return parent;
+    }
+
     protected void writeCircleElement(IXMLElement parent, SVGEllipseFigure f) throws IOException {
         parent.addChild(
                 createCircle(
@@ -378,9 +457,20 @@ public class SVGOutputFormat implements OutputFormat {
     }
 
     protected void writePathElement(IXMLElement parent, SVGPathFigure f) throws IOException {
-        BezierPath[] beziers = new BezierPath[f.getChildCount()];
+        if (!isCompactPathWriter) {
+            BezierPath[] beziers = new BezierPath[f.getChildCount()];
+            for (int i = 0; i < beziers.length; i++) {
+                beziers[i] = ((BezierFigure) f.getChild(i)).getBezierPath();
+            }
+            parent.addChild(createPath(
+                    document,
+                    beziers,
+                    f.getAttributes()));
+            return;
+        }
+        CompactBezierPath[] beziers = new CompactBezierPath[f.getChildCount()];
         for (int i = 0; i < beziers.length; i++) {
-            beziers[i] = ((BezierFigure) f.getChild(i)).getBezierPath();
+            beziers[i] = ((BezierFigure) f.getChild(i)).getCompactBezierPath();
         }
         parent.addChild(createPath(
                 document,
@@ -399,12 +489,23 @@ public class SVGOutputFormat implements OutputFormat {
         return elem;
     }
 
+    protected IXMLElement createPath(IXMLElement doc,
+                                     CompactBezierPath[] beziers,
+                                     Map<AttributeKey<?>, Object> attributes) throws IOException {
+        IXMLElement elem = doc.createElement("path");
+        writeShapeAttributes(elem, attributes);
+        writeOpacityAttribute(elem, attributes);
+        writeTransformAttribute(elem, attributes);
+        writeAttribute(elem, "d", toPath(beziers), null);
+        return elem;
+    }
+
     protected void writePolygonElement(IXMLElement parent, SVGPathFigure f) throws IOException {
         LinkedList<Point2D.Double> points = new LinkedList<Point2D.Double>();
         for (int i = 0, n = f.getChildCount(); i < n; i++) {
-            BezierPath bezier = ((BezierFigure) f.getChild(i)).getBezierPath();
-            for (BezierPath.Node node : bezier) {
-                points.add(new Point2D.Double(node.x[0], node.y[0]));
+            CompactBezierPath bezier = ((BezierFigure) f.getChild(i)).getCompactBezierPath();
+            for (int j = 0, m = bezier.size(); j < m; j++) {
+                points.add(new Point2D.Double(bezier.getX(j, 0), bezier.getY(j, 0)));
             }
         }
 
@@ -429,9 +530,9 @@ public class SVGOutputFormat implements OutputFormat {
     protected void writePolylineElement(IXMLElement parent, SVGPathFigure f) throws IOException {
         LinkedList<Point2D.Double> points = new LinkedList<Point2D.Double>();
         for (int i = 0, n = f.getChildCount(); i < n; i++) {
-            BezierPath bezier = ((BezierFigure) f.getChild(i)).getBezierPath();
-            for (BezierPath.Node node : bezier) {
-                points.add(new Point2D.Double(node.x[0], node.y[0]));
+            CompactBezierPath bezier = ((BezierFigure) f.getChild(i)).getCompactBezierPath();
+            for (int j = 0, m = bezier.size(); j < m; j++) {
+                points.add(new Point2D.Double(bezier.getX(j, 0), bezier.getY(j, 0)));
             }
         }
 
@@ -540,8 +641,8 @@ public class SVGOutputFormat implements OutputFormat {
                 bufX.append(',');
                 bufY.append(',');
             }
-            bufX.append(toNumber(coordinates[i].getX()));
-            bufY.append(toNumber(coordinates[i].getY()));
+            appendNumber(bufX, coordinates[i].getX());
+            appendNumber(bufY, coordinates[i].getY());
         }
         StringBuilder bufR = new StringBuilder();
         if (rotate != null) {
@@ -549,7 +650,7 @@ public class SVGOutputFormat implements OutputFormat {
                 if (i != 0) {
                     bufR.append(',');
                 }
-                bufR.append(toNumber(rotate[i]));
+                appendNumber(bufR, rotate[i]);
             }
         }
         writeAttribute(elem, "x", bufX.toString(), "0");
@@ -1040,7 +1141,7 @@ public class SVGOutputFormat implements OutputFormat {
                 if (i != 0) {
                     buf.append(',');
                 }
-                buf.append(toNumber(dashes[i]));
+                appendNumber(buf, dashes[i]);
             }
             writeAttribute(elem, "stroke-dasharray", buf.toString(), null);
         }
@@ -1290,48 +1391,60 @@ public class SVGOutputFormat implements OutputFormat {
      * as specified in http://www.w3.org/TR/SVGMobile12/paths.html#PathDataBNF
      */
     public static String toPath(BezierPath[] paths) {
+        CompactBezierPath[] compactPaths = new CompactBezierPath[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            compactPaths[i] = new CompactBezierPath(paths[i]);
+        }
+        return toPath(compactPaths);
+    }
+
+    /**
+     * Returns a value as a SVG Path attribute.
+     * as specified in http://www.w3.org/TR/SVGMobile12/paths.html#PathDataBNF
+     */
+    public static String toPath(CompactBezierPath[] paths) {
         StringBuilder buf = new StringBuilder();
 
         for (int j = 0; j < paths.length; j++) {
-            BezierPath path = paths[j];
+            CompactBezierPath path = paths[j];
 
             if (path.size() == 0) {
                 // nothing to do
             } else if (path.size() == 1) {
-                BezierPath.Node current = path.get(0);
+                int current = 0;
                 buf.append("M ");
-                buf.append(toNumber(current.x[0]));
+                appendNumber(buf, path.getX(current, 0));
                 buf.append(' ');
-                buf.append(toNumber(current.y[0]));
+                appendNumber(buf, path.getY(current, 0));
                 //buf.append(" L ");
-                buf.append(toNumber(current.x[0]));
+                appendNumber(buf, path.getX(current, 0));
                 buf.append(' ');
-                buf.append(toNumber(current.y[0] + 1));
+                appendNumber(buf, path.getY(current, 0) + 1);
             } else {
-                BezierPath.Node previous;
-                BezierPath.Node current;
+                int previous;
+                int current;
 
-                previous = current = path.get(0);
+                previous = current = 0;
                 buf.append("M ");
-                buf.append(toNumber(current.x[0]));
+                appendNumber(buf, path.getX(current, 0));
                 buf.append(' ');
-                buf.append(toNumber(current.y[0]));
+                appendNumber(buf, path.getY(current, 0));
                 char nextCommand = 'L';
                 for (int i = 1, n = path.size(); i < n; i++) {
                     previous = current;
-                    current = path.get(i);
+                    current = i;
 
-                    if ((previous.mask & BezierPath.C2_MASK) == 0) {
-                        if ((current.mask & BezierPath.C1_MASK) == 0) {
+                    if ((path.getMask(previous) & BezierPath.C2_MASK) == 0) {
+                        if ((path.getMask(current) & BezierPath.C1_MASK) == 0) {
                             if (nextCommand != 'L') {
                                 buf.append(" L ");
                                 nextCommand = 'L';
                             } else {
                                 buf.append(' ');
                             }
-                            buf.append(toNumber(current.x[0]));
+                            appendNumber(buf, path.getX(current, 0));
                             buf.append(' ');
-                            buf.append(toNumber(current.y[0]));
+                            appendNumber(buf, path.getY(current, 0));
                         } else {
                             if (nextCommand != 'Q') {
                                 buf.append(" Q ");
@@ -1339,29 +1452,29 @@ public class SVGOutputFormat implements OutputFormat {
                             } else {
                                 buf.append(' ');
                             }
-                            buf.append(toNumber(current.x[1]));
+                            appendNumber(buf, path.getX(current, 1));
                             buf.append(' ');
-                            buf.append(toNumber(current.y[1]));
+                            appendNumber(buf, path.getY(current, 1));
                             buf.append(' ');
-                            buf.append(toNumber(current.x[0]));
+                            appendNumber(buf, path.getX(current, 0));
                             buf.append(' ');
-                            buf.append(toNumber(current.y[0]));
+                            appendNumber(buf, path.getY(current, 0));
                         }
                     } else {
-                        if ((current.mask & BezierPath.C1_MASK) == 0) {
+                        if ((path.getMask(current) & BezierPath.C1_MASK) == 0) {
                             if (nextCommand != 'Q') {
                                 buf.append(" Q ");
                                 nextCommand = 'Q';
                             } else {
                                 buf.append(' ');
                             }
-                            buf.append(toNumber(previous.x[2]));
+                            appendNumber(buf, path.getX(previous, 2));
                             buf.append(' ');
-                            buf.append(toNumber(previous.y[2]));
+                            appendNumber(buf, path.getY(previous, 2));
                             buf.append(' ');
-                            buf.append(toNumber(current.x[0]));
+                            appendNumber(buf, path.getX(current, 0));
                             buf.append(' ');
-                            buf.append(toNumber(current.y[0]));
+                            appendNumber(buf, path.getY(current, 0));
                         } else {
                             if (nextCommand != 'C') {
                                 buf.append(" C ");
@@ -1369,36 +1482,36 @@ public class SVGOutputFormat implements OutputFormat {
                             } else {
                                 buf.append(' ');
                             }
-                            buf.append(toNumber(previous.x[2]));
+                            appendNumber(buf, path.getX(previous, 2));
                             buf.append(' ');
-                            buf.append(toNumber(previous.y[2]));
+                            appendNumber(buf, path.getY(previous, 2));
                             buf.append(' ');
-                            buf.append(toNumber(current.x[1]));
+                            appendNumber(buf, path.getX(current, 1));
                             buf.append(' ');
-                            buf.append(toNumber(current.y[1]));
+                            appendNumber(buf, path.getY(current, 1));
                             buf.append(' ');
-                            buf.append(toNumber(current.x[0]));
+                            appendNumber(buf, path.getX(current, 0));
                             buf.append(' ');
-                            buf.append(toNumber(current.y[0]));
+                            appendNumber(buf, path.getY(current, 0));
                         }
                     }
                 }
                 if (path.isClosed()) {
                     if (path.size() > 1) {
-                        previous = path.get(path.size() - 1);
-                        current = path.get(0);
+                        previous = path.size() - 1;
+                        current = 0;
 
-                        if ((previous.mask & BezierPath.C2_MASK) == 0) {
-                            if ((current.mask & BezierPath.C1_MASK) == 0) {
+                        if ((path.getMask(previous) & BezierPath.C2_MASK) == 0) {
+                            if ((path.getMask(current) & BezierPath.C1_MASK) == 0) {
                                 if (nextCommand != 'L') {
                                     buf.append(" L ");
                                     nextCommand = 'L';
                                 } else {
                                     buf.append(' ');
                                 }
-                                buf.append(toNumber(current.x[0]));
+                                appendNumber(buf, path.getX(current, 0));
                                 buf.append(' ');
-                                buf.append(toNumber(current.y[0]));
+                                appendNumber(buf, path.getY(current, 0));
                             } else {
                                 if (nextCommand != 'Q') {
                                     buf.append(" Q ");
@@ -1406,29 +1519,29 @@ public class SVGOutputFormat implements OutputFormat {
                                 } else {
                                     buf.append(' ');
                                 }
-                                buf.append(toNumber(current.x[1]));
+                                appendNumber(buf, path.getX(current, 1));
                                 buf.append(' ');
-                                buf.append(toNumber(current.y[1]));
+                                appendNumber(buf, path.getY(current, 1));
                                 buf.append(' ');
-                                buf.append(toNumber(current.x[0]));
+                                appendNumber(buf, path.getX(current, 0));
                                 buf.append(' ');
-                                buf.append(toNumber(current.y[0]));
+                                appendNumber(buf, path.getY(current, 0));
                             }
                         } else {
-                            if ((current.mask & BezierPath.C1_MASK) == 0) {
+                            if ((path.getMask(current) & BezierPath.C1_MASK) == 0) {
                                 if (nextCommand != 'Q') {
                                     buf.append(" Q ");
                                     nextCommand = 'Q';
                                 } else {
                                     buf.append(' ');
                                 }
-                                buf.append(toNumber(previous.x[2]));
+                                appendNumber(buf, path.getX(previous, 2));
                                 buf.append(' ');
-                                buf.append(toNumber(previous.y[2]));
+                                appendNumber(buf, path.getY(previous, 2));
                                 buf.append(' ');
-                                buf.append(toNumber(current.x[0]));
+                                appendNumber(buf, path.getX(current, 0));
                                 buf.append(' ');
-                                buf.append(toNumber(current.y[0]));
+                                appendNumber(buf, path.getY(current, 0));
                             } else {
                                 if (nextCommand != 'C') {
                                     buf.append(" C ");
@@ -1436,17 +1549,17 @@ public class SVGOutputFormat implements OutputFormat {
                                 } else {
                                     buf.append(' ');
                                 }
-                                buf.append(toNumber(previous.x[2]));
+                                appendNumber(buf, path.getX(previous, 2));
                                 buf.append(' ');
-                                buf.append(toNumber(previous.y[2]));
+                                appendNumber(buf, path.getY(previous, 2));
                                 buf.append(' ');
-                                buf.append(toNumber(current.x[1]));
+                                appendNumber(buf, path.getX(current, 1));
                                 buf.append(' ');
-                                buf.append(toNumber(current.y[1]));
+                                appendNumber(buf, path.getY(current, 1));
                                 buf.append(' ');
-                                buf.append(toNumber(current.x[0]));
+                                appendNumber(buf, path.getX(current, 0));
                                 buf.append(' ');
-                                buf.append(toNumber(current.y[0]));
+                                appendNumber(buf, path.getY(current, 0));
                             }
                         }
                     }
@@ -1462,11 +1575,14 @@ public class SVGOutputFormat implements OutputFormat {
      * Returns a double array as a number attribute value.
      */
     public static String toNumber(double number) {
-        String str = (isFloatPrecision) ? Float.toString((float) number) : Double.toString(number);
-        if (str.endsWith(".0")) {
-            str = str.substring(0, str.length() - 2);
-        }
-        return str;
+        return SVGNumberFormatter.toString(number, isFloatPrecision);
+    }
+
+    /**
+     * Appends a number attribute value to the specified buffer.
+     */
+    private static void appendNumber(StringBuilder buf, double number) {
+        SVGNumberFormatter.append(buf, number, isFloatPrecision);
     }
 
     /**
@@ -1479,9 +1595,9 @@ public class SVGOutputFormat implements OutputFormat {
             if (i != 0) {
                 buf.append(", ");
             }
-            buf.append(toNumber(points[i].x));
+            appendNumber(buf, points[i].x);
             buf.append(',');
-            buf.append(toNumber(points[i].y));
+            appendNumber(buf, points[i].y);
         }
         return buf.toString();
     }
@@ -1499,10 +1615,10 @@ public class SVGOutputFormat implements OutputFormat {
                 // translate(<tx> [<ty>]), specifies a translation by tx and ty.
                 // If <ty> is not provided, it is assumed to be zero.
                 buf.append("translate(");
-                buf.append(toNumber(t.getTranslateX()));
+                appendNumber(buf, t.getTranslateX());
                 if (t.getTranslateY() != 0d) {
                     buf.append(' ');
-                    buf.append(toNumber(t.getTranslateY()));
+                    appendNumber(buf, t.getTranslateY());
                 }
                 buf.append(')');
                 break;
@@ -1522,7 +1638,7 @@ public class SVGOutputFormat implements OutputFormat {
             // translate(<cx>, <cy>) rotate(<rotate-angle>)
             // translate(-<cx>, -<cy>).
             buf.append("rotate(");
-            buf.append(toNumber(t.getScaleX()));
+            appendNumber(buf, t.getScaleX());
             buf.append(')');
             break;*/
             case AffineTransform.TYPE_UNIFORM_SCALE:
@@ -1530,7 +1646,7 @@ public class SVGOutputFormat implements OutputFormat {
                 // and sy. If <sy> is not provided, it is assumed to be equal
                 // to <sx>.
                 buf.append("scale(");
-                buf.append(toNumber(t.getScaleX()));
+                appendNumber(buf, t.getScaleX());
                 buf.append(')');
                 break;
             case AffineTransform.TYPE_GENERAL_SCALE:
@@ -1539,9 +1655,9 @@ public class SVGOutputFormat implements OutputFormat {
                 // and sy. If <sy> is not provided, it is assumed to be equal
                 // to <sx>.
                 buf.append("scale(");
-                buf.append(toNumber(t.getScaleX()));
+                appendNumber(buf, t.getScaleX());
                 buf.append(' ');
-                buf.append(toNumber(t.getScaleY()));
+                appendNumber(buf, t.getScaleY());
                 buf.append(')');
                 break;
             default:
@@ -1556,7 +1672,7 @@ public class SVGOutputFormat implements OutputFormat {
                     if (i != 0) {
                         buf.append(' ');
                     }
-                    buf.append(toNumber(matrix[i]));
+                    appendNumber(buf, matrix[i]);
                 }
                 buf.append(')');
                 break;
@@ -1619,6 +1735,11 @@ public class SVGOutputFormat implements OutputFormat {
 
         initStorageContext(document);
 
+        if (isStreaming) {
+            writeStreaming(out, figures);
+            return;
+        }
+
         defs = new XMLElement("defs");
         document.addChild(defs);
 
@@ -1641,6 +1762,77 @@ public class SVGOutputFormat implements OutputFormat {
         document.dispose();
     }
 
+    /**
+     * Writes the figures in streaming mode.
+     */
+    private void writeStreaming(OutputStream out, java.util.List<Figure> figures) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        StreamingXMLWriter writer = new StreamingXMLWriter(w, isPrettyPrint, "  ");
+
+        // Write XML prolog
+        writer.writeLine("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+
+        // Write XML content
+        writer.startElement(document);
+        for (Figure f : figures) {
+            writeStreamedElement(writer, f);
+        }
+        writer.endElement(document);
+
+        // Flush writer
+        w.flush();
+        document.dispose();
+        defs = null;
+    }
+
+    /**
+     * Writes a figure in streaming mode. The elements of the figure are
+     * written and discarded right away, the children of a group figure
+     * are streamed one at a time.
+     */
+    private void writeStreamedElement(StreamingXMLWriter writer, Figure f) throws IOException {
+        IXMLElement container = new XMLElement("g");
+        defs = new XMLElement("defs");
+        if (f instanceof SVGGroupFigure && ((SVGGroupFigure) f).getChildCount() > 0) {
+            SVGGroupFigure group = (SVGGroupFigure) f;
+            IXMLElement parent = writeLinkElement(container, f);
+            IXMLElement elem = createG(document, f.getAttributes());
+            writeDefs(writer);
+            if (parent != container) {
+                writer.startElement(parent);
+            }
+            writer.startElement(elem);
+            for (Figure child : group.getChildren()) {
+                writeStreamedElement(writer, child);
+            }
+            writer.endElement(elem);
+            if (parent != container) {
+                writer.endElement(parent);
+            }
+        } else {
+            writeElement(container, f);
+            writeDefs(writer);
+            for (IXMLElement elem : container.iterableChildren()) {
+                writer.writeElement(elem);
+            }
+        }
+        container.dispose();
+    }
+
+    /**
+     * Writes the definitions which have been created for the current figure
+     * in streaming mode.
+     */
+    private void writeDefs(StreamingXMLWriter writer) throws IOException {
+        if (defs.hasChildren()) {
+            writer.writeElement(defs);
+            // The gradients can be referenced by their ids from now on
+            identifiedElements.clear();
+        }
+        defs.dispose();
+        defs = new XMLElement("defs");
+    }
+
     private void initStorageContext(IXMLElement root) {
         identifiedElements = new HashMap<IXMLElement, String>();
         gradientToIDMap = new HashMap<Gradient, String>();
@@ -1665,4 +1857,213 @@ public class SVGOutputFormat implements OutputFormat {
         write(buf, drawing, figures);
         return new InputStreamTransferable(new DataFlavor(SVG_MIMETYPE, "Image SVG"), buf.toByteArray());
     }
+
+    /**
+     * Writes XML elements to a writer. The output is the same as the output
+     * of {@link XMLWriter}, but the writer is not flushed after each element,
+     * and the start tag and the end tag of an element can be written
+     * separately, so that its children can be streamed.
+     */
+    private static class StreamingXMLWriter {
+
+        private final Writer writer;
+        private final boolean isPrettyPrint;
+        private final String indentation;
+        private final String lineSeparator = System.lineSeparator();
+        /**
+         * The number of elements which have been started but not ended.
+         */
+        private int depth;
+
+        public StreamingXMLWriter(Writer writer, boolean isPrettyPrint, String indentation) {
+            this.writer = writer;
+            this.isPrettyPrint = isPrettyPrint;
+            this.indentation = indentation;
+        }
+
+        public void writeLine(String str) throws IOException {
+            writer.write(str);
+            writer.write(lineSeparator);
+        }
+
+        /**
+         * Writes the start tag of the element. The children of the element
+         * are not written.
+         */
+        public void startElement(IXMLElement elem) throws IOException {
+            writeIndentation(depth);
+            writeStartTag(elem);
+            writer.write('>');
+            writeLineSeparator();
+            depth++;
+        }
+
+        /**
+         * Writes the end tag of the element.
+         */
+        public void endElement(IXMLElement elem) throws IOException {
+            depth--;
+            writeIndentation(depth);
+            writer.write("</");
+            writer.write(elem.getFullName());
+            writer.write('>');
+            writeLineSeparator();
+        }
+
+        /**
+         * Writes the element and all its children.
+         */
+        public void writeElement(IXMLElement elem) throws IOException {
+            writeElement(elem, depth);
+        }
+
+        private void writeElement(IXMLElement elem, int indent) throws IOException {
+            writeIndentation(indent);
+            if (elem.getName() == null) {
+                if (elem.getContent() != null) {
+                    if (isPrettyPrint) {
+                        writeEncoded(elem.getContent().trim());
+                        writer.write(lineSeparator);
+                    } else {
+                        writeEncoded(elem.getContent());
+                    }
+                }
+                return;
+            }
+
+            writeStartTag(elem);
+            if (elem.getContent() != null && elem.getContent().length() > 0) {
+                writer.write('>');
+                writeEncoded(elem.getContent());
+                writer.write("</");
+                writer.write(elem.getFullName());
+                writer.write('>');
+                writeLineSeparator();
+            } else if (elem.hasChildren()) {
+                writer.write('>');
+                writeLineSeparator();
+                for (IXMLElement child : elem.iterableChildren()) {
+                    writeElement(child, indent + 1);
+                }
+                writeIndentation(indent);
+                writer.write("</");
+                writer.write(elem.getFullName());
+                writer.write('>');
+                writeLineSeparator();
+            } else {
+                writer.write("/>");
+                writeLineSeparator();
+            }
+        }
+
+        /**
+         * Writes the start tag of the element without the closing '>'.
+         */
+        private void writeStartTag(IXMLElement elem) throws IOException {
+            writer.write('<');
+            writer.write(elem.getFullName());
+
+            ArrayList<String> nsprefixes = null;
+            if (elem.getNamespace() != null) {
+                if (elem.getName().equals(elem.getFullName())) {
+                    writer.write(" xmlns=\"");
+                    writer.write(elem.getNamespace());
+                    writer.write('"');
+                } else {
+                    String prefix = elem.getFullName();
+                    prefix = prefix.substring(0, prefix.indexOf(':'));
+                    nsprefixes = new ArrayList<String>();
+                    nsprefixes.add(prefix);
+                    writer.write(" xmlns:");
+                    writer.write(prefix);
+                    writer.write("=\"");
+                    writer.write(elem.getNamespace());
+                    writer.write('"');
+                }
+            }
+
+            for (String key : elem.iterableAttributeNames()) {
+                int index = key.indexOf(':');
+                if (index >= 0) {
+                    String namespace = elem.getAttributeNamespace(key);
+                    if (namespace != null) {
+                        String prefix = key.substring(0, index);
+                        if (nsprefixes == null) {
+                            nsprefixes = new ArrayList<String>();
+                        }
+                        if (!nsprefixes.contains(prefix)) {
+                            writer.write(" xmlns:");
+                            writer.write(prefix);
+                            writer.write("=\"");
+                            writer.write(namespace);
+                            writer.write('"');
+                            nsprefixes.add(prefix);
+                        }
+                    }
+                }
+            }
+
+            for (String key : elem.iterableAttributeNames()) {
+                writer.write(' ');
+                writer.write(key);
+                writer.write("=\"");
+                writeEncoded(elem.getAttribute(key, null));
+                writer.write('"');
+            }
+        }
+
+        private void writeIndentation(int indent) throws IOException {
+            if (isPrettyPrint) {
+                for (int i = 0; i < indent; i++) {
+                    writer.write(indentation);
+                }
+            }
+        }
+
+        private void writeLineSeparator() throws IOException {
+            if (isPrettyPrint) {
+                writer.write(lineSeparator);
+            }
+        }
+
+        /**
+         * Writes a string encoding reserved characters.
+         */
+        private void writeEncoded(String str) throws IOException {
+            int start = 0;
+            for (int i = 0, n = str.length(); i < n; i++) {
+                char c = str.charAt(i);
+                String replacement;
+                switch (c) {
+                    case 0x0A:
+                        continue;
+                    case '<':
+                        replacement = "&lt;";
+                        break;
+                    case '>':
+                        replacement = "&gt;";
+                        break;
+                    case '&':
+                        replacement = "&amp;";
+                        break;
+                    case '\'':
+                        replacement = "&apos;";
+                        break;
+                    case '"':
+                        replacement = "&quot;";
+                        break;
+                    default:
+                        if (c >= ' ' && c <= 0x7E) {
+                            continue;
+                        }
+                        replacement = "&#x" + Integer.toString(c, 16) + ';';
+                        break;
+                }
+                writer.write(str, start, i - start);
+                writer.write(replacement);
+                start = i + 1;
+            }
+            writer.write(str, start, str.length() - start);
+        }
+    }
 }
@@ -13,6 +13,9 @@ import java.util.zip.GZIPOutputStream;
 
 /**
  * SVGZOutputFormat.
+ * <p>
+ * In streaming mode (see {@link #setStreaming}), the compressed data is
+ * written to the output stream while the drawing is being traversed.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -23,6 +26,7 @@ public class SVGZOutputFormat extends SVGOutputFormat {
      * Creates a new instance.
      */
     public SVGZOutputFormat() {
+        super(SVGZOutputFormat.class);
     }
 
     @Override
@@ -38,9 +42,8 @@ public class SVGZOutputFormat extends SVGOutputFormat {
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        GZIPOutputStream gout = new GZIPOutputStream(out);
+        GZIPOutputStream gout = new GZIPOutputStream(out, 8192);
         super.write(gout, drawing, drawing.getChildren());
         gout.finish();
-
     }
 }
@@ -0,0 +1,225 @@
+/* @(#)SVGDataScannerBenchmark.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.svg.io;
+
+import org.jhotdraw.geom.CompactBezierPath;
+import org.jhotdraw.io.StreamPosTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SVGDataScanner} with the {@link StreamPosTokenizer} and
+ * {@link StringTokenizer} based parsing that {@link SVGInputFormat} used
+ * before, on path data and point lists with {@code segments} segments.
+ * <p>
+ * Both variants of a pair append the same coordinates to a
+ * {@link CompactBezierPath}, so that only the cost of scanning the
+ * attribute value differs.
+ * <p>
+ * The setup checks that both variants of a pair produce the same path.
+ * Run the benchmark from the IDE through {@link #main}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SVGDataScannerBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int segments;
+
+    private String pathData;
+    private String points;
+    private final SVGDataScanner scanner = new SVGDataScanner();
+    private final StreamPosTokenizer tokenizer = new StreamPosTokenizer();
+
+    @Setup
+    public void setup() throws IOException {
+        Random rnd = new Random(segments);
+        StringBuilder d = new StringBuilder("M 0 0");
+        StringBuilder p = new StringBuilder();
+        for (int i = 0; i < segments; i++) {
+            if (i % 2 == 0) {
+                d.append(" L ").append(coordinate(rnd)).append(',').append(coordinate(rnd));
+            } else {
+                d.append(" C ").append(coordinate(rnd)).append(' ').append(coordinate(rnd))
+                        .append(' ').append(coordinate(rnd)).append(' ').append(coordinate(rnd))
+                        .append(' ').append(coordinate(rnd)).append(' ').append(coordinate(rnd));
+            }
+            p.append(coordinate(rnd)).append(',').append(coordinate(rnd)).append(' ');
+        }
+        d.append(" Z");
+        pathData = d.toString();
+        points = p.toString();
+
+        tokenizer.resetSyntax();
+        tokenizer.parseNumbers();
+        tokenizer.parseExponents();
+        tokenizer.parsePlusAsNumber();
+        tokenizer.whitespaceChars(0, ' ');
+        tokenizer.whitespaceChars(',', ',');
+
+        if (!isSamePath(scannerPath(), tokenizerPath())) {
+            throw new IOException("SVGDataScanner and StreamPosTokenizer disagree on path data");
+        }
+        if (!isSamePath(scannerPoints(), tokenizerPoints())) {
+            throw new IOException("SVGDataScanner and StringTokenizer disagree on points");
+        }
+    }
+
+    private static boolean isSamePath(CompactBezierPath a, CompactBezierPath b) {
+        if (a.size() != b.size() || a.isClosed() != b.isClosed()) {
+            return false;
+        }
+        for (int i = 0, n = a.size(); i < n; i++) {
+            if (a.getMask(i) != b.getMask(i)) {
+                return false;
+            }
+            for (int c = 0; c < 3; c++) {
+                if (Math.abs(a.getX(i, c) - b.getX(i, c)) > 1e-9
+                        || Math.abs(a.getY(i, c) - b.getY(i, c)) > 1e-9) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String coordinate(Random rnd) {
+        return String.format(Locale.ENGLISH, "%.3f", rnd.nextDouble() * 2000 - 1000);
+    }
+
+    @Benchmark
+    public CompactBezierPath scannerPath() throws IOException {
+        CompactBezierPath path = new CompactBezierPath();
+        SVGDataScanner sc = scanner;
+        sc.reset(pathData);
+        char command = 'M';
+        while (sc.skipSeparators()) {
+            if (!sc.isNumberAhead()) {
+                command = (char) sc.nextChar();
+            }
+            switch (command) {
+                case 'M':
+                    path.moveTo(scannerNumber(), scannerNumber());
+                    command = 'L';
+                    break;
+                case 'L':
+                    path.lineTo(scannerNumber(), scannerNumber());
+                    break;
+                case 'C':
+                    path.curveTo(scannerNumber(), scannerNumber(), scannerNumber(),
+                            scannerNumber(), scannerNumber(), scannerNumber());
+                    break;
+                case 'Z':
+                    path.setClosed(true);
+                    break;
+                default:
+                    throw new IOException("Illegal command " + command);
+            }
+        }
+        return path;
+    }
+
+    private double scannerNumber() throws IOException {
+        if (!scanner.nextNumber()) {
+            throw new IOException("Number expected at position " + scanner.getPosition());
+        }
+        return scanner.nval;
+    }
+
+    @Benchmark
+    public CompactBezierPath tokenizerPath() throws IOException {
+        CompactBezierPath path = new CompactBezierPath();
+        StreamPosTokenizer tt = tokenizer;
+        tt.setReader(new StringReader(pathData));
+        char command = 'M';
+        while (tt.nextToken() != StreamPosTokenizer.TT_EOF) {
+            if (tt.ttype > 0) {
+                command = (char) tt.ttype;
+            } else {
+                tt.pushBack();
+            }
+            switch (command) {
+                case 'M':
+                    path.moveTo(tokenizerNumber(), tokenizerNumber());
+                    command = 'L';
+                    break;
+                case 'L':
+                    path.lineTo(tokenizerNumber(), tokenizerNumber());
+                    break;
+                case 'C':
+                    path.curveTo(tokenizerNumber(), tokenizerNumber(), tokenizerNumber(),
+                            tokenizerNumber(), tokenizerNumber(), tokenizerNumber());
+                    break;
+                case 'Z':
+                    path.setClosed(true);
+                    break;
+                default:
+                    throw new IOException("Illegal command " + command);
+            }
+        }
+        return path;
+    }
+
+    private double tokenizerNumber() throws IOException {
+        if (tokenizer.nextToken() != StreamPosTokenizer.TT_NUMBER) {
+            throw new IOException("Number expected at position " + tokenizer.getStartPosition());
+        }
+        return tokenizer.nval;
+    }
+
+    @Benchmark
+    public CompactBezierPath scannerPoints() {
+        CompactBezierPath path = new CompactBezierPath();
+        path.moveTo(0, 0);
+        SVGDataScanner sc = scanner;
+        sc.reset(points);
+        while (sc.nextNumber()) {
+            double x = sc.nval;
+            sc.nextNumber();
+            path.lineTo(x, sc.nval);
+        }
+        return path;
+    }
+
+    @Benchmark
+    public CompactBezierPath tokenizerPoints() {
+        CompactBezierPath path = new CompactBezierPath();
+        path.moveTo(0, 0);
+        StringTokenizer tt = new StringTokenizer(points, " ,");
+        for (int i = tt.countTokens() / 2; i > 0; i--) {
+            path.lineTo(Double.parseDouble(tt.nextToken()), Double.parseDouble(tt.nextToken()));
+        }
+        return path;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SVGDataScannerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
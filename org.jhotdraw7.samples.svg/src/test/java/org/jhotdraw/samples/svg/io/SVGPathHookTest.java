@@ -0,0 +1,135 @@
+/* @(#)SVGPathHookTest.java
+ * Copyright © The authors and contributors of JHotDraw. MIT License.
+ */
+
+package org.jhotdraw.samples.svg.io;
+
+import net.n3.nanoxml.IXMLElement;
+import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.CompactBezierPath;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that overrides of the {@code BezierPath[]} variants of
+ * {@code createPath} are still called by {@link SVGInputFormat} and
+ * {@link SVGOutputFormat}, and that subclasses can opt in to the
+ * {@code CompactBezierPath[]} variants.
+ */
+public class SVGPathHookTest {
+
+    private static final String SVG = "<?xml version=\"1.0\"?>"
+            + "<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.2\" baseProfile=\"tiny\">"
+            + "<path d=\"M 10 10 C 20 0 30 0 40 10 L 40 30 Z\"/>"
+            + "</svg>";
+
+    private static class LegacyFactory extends DefaultSVGFigureFactory {
+        int pathCount;
+
+        @Override
+        public Figure createPath(BezierPath[] beziers, Map<AttributeKey<?>, Object> a) {
+            pathCount++;
+            return super.createPath(beziers, a);
+        }
+    }
+
+    private static class LegacyOutputFormat extends SVGOutputFormat {
+        int pathCount;
+
+        @Override
+        protected IXMLElement createPath(IXMLElement doc, BezierPath[] beziers,
+                                         Map<AttributeKey<?>, Object> attributes) throws IOException {
+            pathCount++;
+            return super.createPath(doc, beziers, attributes);
+        }
+    }
+
+    private static class CompactFactory extends LegacyFactory {
+        int compactPathCount;
+
+        CompactFactory() {
+            setCompactPathFactory(true);
+        }
+
+        @Override
+        public Figure createPath(CompactBezierPath[] beziers, Map<AttributeKey<?>, Object> a) {
+            compactPathCount++;
+            return super.createPath(beziers, a);
+        }
+    }
+
+    private static class CompactOutputFormat extends LegacyOutputFormat {
+        int compactPathCount;
+
+        CompactOutputFormat() {
+            setCompactPathWriter(true);
+        }
+
+        @Override
+        protected IXMLElement createPath(IXMLElement doc, CompactBezierPath[] beziers,
+                                         Map<AttributeKey<?>, Object> attributes) throws IOException {
+            compactPathCount++;
+            return super.createPath(doc, beziers, attributes);
+        }
+    }
+
+    @Test
+    public void testInputFormatCallsCompactFactoryMethodAfterOptIn() throws IOException {
+        CompactFactory factory = new CompactFactory();
+        Drawing drawing = new QuadTreeDrawing();
+        new SVGInputFormat(factory).read(new ByteArrayInputStream(SVG.getBytes(StandardCharsets.UTF_8)), drawing, true);
+
+        assertEquals(1, factory.compactPathCount);
+        assertEquals(0, factory.pathCount);
+        assertEquals(1, drawing.getChildCount());
+    }
+
+    @Test
+    public void testOutputFormatCallsCompactHookAfterOptIn() throws IOException {
+        Drawing drawing = new QuadTreeDrawing();
+        new SVGInputFormat().read(new ByteArrayInputStream(SVG.getBytes(StandardCharsets.UTF_8)), drawing, true);
+
+        CompactOutputFormat format = new CompactOutputFormat();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.write(out, drawing);
+
+        assertEquals(1, format.compactPathCount);
+        assertEquals(0, format.pathCount);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains("<path"));
+    }
+
+    @Test
+    public void testInputFormatCallsOverriddenBezierPathFactoryMethod() throws IOException {
+        LegacyFactory factory = new LegacyFactory();
+        Drawing drawing = new QuadTreeDrawing();
+        new SVGInputFormat(factory).read(new ByteArrayInputStream(SVG.getBytes(StandardCharsets.UTF_8)), drawing, true);
+
+        assertEquals(1, factory.pathCount);
+        assertEquals(1, drawing.getChildCount());
+    }
+
+    @Test
+    public void testOutputFormatCallsOverriddenBezierPathHook() throws IOException {
+        Drawing drawing = new QuadTreeDrawing();
+        new SVGInputFormat().read(new ByteArrayInputStream(SVG.getBytes(StandardCharsets.UTF_8)), drawing, true);
+
+        LegacyOutputFormat format = new LegacyOutputFormat();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.write(out, drawing);
+
+        assertEquals(1, format.pathCount);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains("<path"));
+    }
+}